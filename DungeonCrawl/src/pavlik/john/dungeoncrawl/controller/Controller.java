@@ -1,18 +1,25 @@
 package pavlik.john.dungeoncrawl.controller;
 
 import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
 import java.util.HashSet;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.Set;
-import java.util.Timer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
 
 import pavlik.john.dungeoncrawl.exceptions.PersistenceStateException;
 import pavlik.john.dungeoncrawl.model.Character;
 import pavlik.john.dungeoncrawl.model.Consumable;
 import pavlik.john.dungeoncrawl.model.Container;
 import pavlik.john.dungeoncrawl.model.Navigation;
+import pavlik.john.dungeoncrawl.model.ILocalObserver;
 import pavlik.john.dungeoncrawl.model.IModelObserver;
 import pavlik.john.dungeoncrawl.model.Item;
 import pavlik.john.dungeoncrawl.model.NonPlayerCharacter;
@@ -25,10 +32,26 @@ import pavlik.john.dungeoncrawl.model.events.Trigger;
 import pavlik.john.dungeoncrawl.model.events.triggers.SayTrigger;
 import pavlik.john.dungeoncrawl.model.events.triggers.SightTrigger;
 import pavlik.john.dungeoncrawl.persistence.GamePersistence;
+import pavlik.john.dungeoncrawl.persistence.WorldJournal;
+import pavlik.john.dungeoncrawl.persistence.WorldVersions;
+import pavlik.john.dungeoncrawl.persistence.WorldView;
 import pavlik.john.dungeoncrawl.view.TextUtilities;
 
 /**
- * 
+ * The operations users may perform on a world. Operations may be called from any number of threads
+ * at once: those that only involve the place where a player is lock just that place, so players in
+ * different places are served in parallel, while operations that may reach the whole world, such as
+ * the world tick, run alone. See {@link WorldLock}.
+ * <p>
+ * A controller may instead queue commands, when created with <code>queueCommands</code> or with the
+ * {@value #COMMAND_QUEUE_PROPERTY} system property set to true. Commands passed to
+ * {@link #submit(Supplier)} are then applied one at a time by a single simulation thread, which
+ * also ticks the world between them, and the caller gets their result later through a
+ * {@link CompletableFuture}.
+ * <p>
+ * Worlds are ticked on as many threads as the {@value #TICK_THREADS_PROPERTY} system property
+ * gives, one by default. See {@link Universe#setTickParallelism(int)}.
+ *
  * @author John Pavlik
  *
  * @version 1.2
@@ -36,8 +59,30 @@ import pavlik.john.dungeoncrawl.view.TextUtilities;
  */
 public final class Controller {
 
-  private Universe f_world;
-  private Timer f_timer;
+  /**
+   * Name of the system property that makes controllers queue commands for a single simulation thread
+   */
+  public static final String     COMMAND_QUEUE_PROPERTY = "dungeoncrawl.controller.commandQueue";
+
+  /**
+   * Name of the system property that sets the number of threads that tick each world
+   */
+  public static final String     TICK_THREADS_PROPERTY  = "dungeoncrawl.tick.threads";
+
+  /**
+   * Writes the worlds saved in the background, one at a time
+   */
+  private static final Executor  SAVER                  = Executors.newSingleThreadExecutor(Controller::newSaver);
+
+  private volatile Universe      f_world;
+  private volatile WorldJournal  f_journal;
+  /**
+   * Versions of the world kept for saving it while it runs, or null until it is first saved
+   */
+  private WorldVersions          f_versions;
+  private final ControllerTimer  f_timer                = new ControllerTimer(this);
+  private final WorldLock        f_lock                 = new WorldLock();
+  private final SimulationThread f_simulation;
 
   /**
    * Creates a new instance of <code>Controller</code> for the default world.
@@ -52,7 +97,7 @@ public final class Controller {
 
   /**
    * Creates a new instance of <code>Controller</code> for the specified world file, which it
-   * loads.
+   * loads. Commands are queued if the {@value #COMMAND_QUEUE_PROPERTY} system property is true.
    *
    * @param fileName
    *          the world file to load
@@ -60,12 +105,35 @@ public final class Controller {
    *           if anything goes wrong
    */
   public Controller(String fileName) throws PersistenceStateException {
+    this(fileName, Boolean.getBoolean(COMMAND_QUEUE_PROPERTY));
+  }
+
+  /**
+   * Creates a new instance of <code>Controller</code> for the specified world file, which it
+   * loads.
+   *
+   * @param fileName
+   *          the world file to load
+   * @param queueCommands
+   *          true to apply submitted commands and ticks on a single simulation thread, false to
+   *          apply commands on the thread that submits them and tick on a timer
+   * @throws PersistenceStateException
+   *           if anything goes wrong
+   */
+  public Controller(String fileName, boolean queueCommands) throws PersistenceStateException {
     try {
-      setWorld(GamePersistence.loadWorld(fileName), fileName);
+      final Universe world = GamePersistence.loadWorld(fileName);
+      f_simulation = queueCommands ? new SimulationThread(f_timer) : null;
+      setWorld(world, fileName);
     } catch (IllegalStateException | NullPointerException | InvalidPathException | PersistenceStateException e) {
       throw e;
     }
     // Updates periodic world values
+    if (f_simulation != null) {
+      f_simulation.start();
+    } else {
+      f_timer.start();
+    }
   }
 
   /**
@@ -78,26 +146,28 @@ public final class Controller {
    * @return A Result of CHARACTER_NOT_FOUND, CANT_USE_ITEM (if either is not combat capable),
    *         ALREADY_IN_COMBAT, or SUCCESS
    */
-  public synchronized Result attack(Player player, String command) {
-    final Character targetCharacter = getWorld().getCharacter(command);
-    if (targetCharacter == null) {
-      return Result.CHARACTER_NOT_FOUND;
-    } else {
-      if ((player.getCharacterClass() == null) || (targetCharacter.getCharacterClass() == null)) {
-        return Result.CANT_USE_ITEM;
-      } else if (targetCharacter.getLocation() == player.getLocation()) {
-        if (player.inCombat() && player.getCurrentTarget() == targetCharacter) {
-          return Result.ALREADY_IN_COMBAT;
-        } else if (!targetCharacter.isConscious()) {
-          return Result.UNCONSCIOUS_TARGET;
+  public Result attack(Player player, String command) {
+    return f_lock.aroundCharacter(player, () -> {
+      final Character targetCharacter = getWorld().getCharacter(command);
+      if (targetCharacter == null) {
+        return Result.CHARACTER_NOT_FOUND;
+      } else {
+        if ((player.getCharacterClass() == null) || (targetCharacter.getCharacterClass() == null)) {
+          return Result.CANT_USE_ITEM;
+        } else if (targetCharacter.getLocation() == player.getLocation()) {
+          if (player.inCombat() && player.getCurrentTarget() == targetCharacter) {
+            return Result.ALREADY_IN_COMBAT;
+          } else if (!targetCharacter.isConscious()) {
+            return Result.UNCONSCIOUS_TARGET;
+          } else {
+            player.startAttack(targetCharacter);
+            return Result.SUCCESS;
+          }
         } else {
-          player.startAttack(targetCharacter);
-          return Result.SUCCESS;
+          return Result.CHARACTER_NOT_FOUND;
         }
-      } else {
-        return Result.CHARACTER_NOT_FOUND;
       }
-    }
+    });
   }
 
   private boolean canTakeItem(Container source, Item item) {
@@ -113,8 +183,9 @@ public final class Controller {
    *          The direction to travel
    * @return true if travel is allowed and the player is not missing any needed items
    */
-  public synchronized boolean canTravel(Player player, Navigation direction) {
-    return player.getLocation().isTravelAllowedToward(direction) && !isMissingItems(player, direction);
+  public boolean canTravel(Player player, Navigation direction) {
+    return f_lock.aroundCharacter(player, () -> player.getLocation().isTravelAllowedToward(direction)
+        && !isMissingItems(player, direction));
   }
 
   /**
@@ -126,28 +197,45 @@ public final class Controller {
    *          The name of the weapon to equip
    * @return A Result of type SUCCESS, CANT_USE_ITEM, ITEM_NOT_TAKEABLE, or ITEM_NOT_FOUND
    */
-  public synchronized Result equip(Player player, String weaponString) {
-    if (weaponString == null) {
-      player.unequip();
-      return Result.SUCCESS;
-    }
-    final Optional<Item> item = getItemForPlayer(player, weaponString, true);
-    if (item.isPresent()) {
-      final boolean isWeapon = item.get() instanceof Weapon;
-      Weapon weapon = null;
-      if (isWeapon) {
-        weapon = (Weapon) item.get();
+  public Result equip(Player player, String weaponString) {
+    return f_lock.aroundCharacter(player, () -> {
+      if (weaponString == null) {
+        player.unequip();
+        return Result.SUCCESS;
       }
-      if (!isWeapon || player.getCharacterClass() == null
-          || !player.getCharacterClass().canUseWeaponType(weapon.getType())) {
-        return Result.CANT_USE_ITEM;
+      final Optional<Item> item = getItemForPlayer(player, weaponString, true);
+      if (item.isPresent()) {
+        final boolean isWeapon = item.get() instanceof Weapon;
+        Weapon weapon = null;
+        if (isWeapon) {
+          weapon = (Weapon) item.get();
+        }
+        if (!isWeapon || player.getCharacterClass() == null
+            || !player.getCharacterClass().canUseWeaponType(weapon.getType())) {
+          return Result.CANT_USE_ITEM;
+        } else {
+          player.setCurrentWeapon(weapon);
+          return Result.SUCCESS;
+        }
       } else {
-        player.setCurrentWeapon(weapon);
-        return Result.SUCCESS;
+        return Result.ITEM_NOT_FOUND;
       }
-    } else {
-      return Result.ITEM_NOT_FOUND;
-    }
+    });
+  }
+
+  /**
+   * Execute an event trigger on behalf of a player, such as something the player chose to say to an
+   * NPC. Triggers may change anything in the world, so nothing else runs at the same time.
+   *
+   * @param player
+   *          The current player
+   * @param trigger
+   *          The trigger to execute
+   * @throws IllegalStateException
+   *           if the trigger finds the world in an inconsistent state
+   */
+  public void executeTrigger(Player player, Trigger trigger) throws IllegalStateException {
+    f_lock.exclusive(() -> trigger.execute(player));
   }
 
   /**
@@ -155,32 +243,26 @@ public final class Controller {
    *
    * @return a String ready for display
    */
-  public synchronized String getAvailablePlayers() {
-    final StringBuffer buffer = new StringBuffer();
-    int count = 1;
-    for (final Player player : f_world.getPlayers()) {
-      if (!player.isOccupied()) {
-        buffer.append(count++);
-        buffer.append(". ");
-        buffer.append(player.toString());
-        buffer.append(TextUtilities.LINESEP);
+  public String getAvailablePlayers() {
+    return f_lock.shared(() -> {
+      final StringBuffer buffer = new StringBuffer();
+      int count = 1;
+      for (final Player player : f_world.getPlayersView()) {
+        if (!player.isOccupied()) {
+          buffer.append(count++);
+          buffer.append(". ");
+          buffer.append(player.toString());
+          buffer.append(TextUtilities.LINESEP);
+        }
       }
-    }
-    return buffer.toString();
+      return buffer.toString();
+    });
   }
 
   private Item getItem(String itemName) {
-    itemName = itemName.toUpperCase();
-    Item item = getWorld().getItem(itemName);
-    if (item == null) {
-      /*
-       * Perform a check to see if the user put the article (e.g. "a", "an", "the") in front of the
-       * name of the item.
-       */
-      itemName = TextUtilities.trimArticles(itemName, getWorld().getValidArticles());
-      item = getWorld().getItem(itemName);
-    }
-    return item;
+    // The world's index also finds the item if the user put an article (e.g. "a", "an", "the") in
+    // front of its name
+    return getWorld().getItem(itemName);
   }
 
   /**
@@ -196,19 +278,37 @@ public final class Controller {
    * @return An Optional Item that will be empty if the player could not access the provided item or
    *         the item could not be identified.
    */
-  public synchronized Optional<Item> getItemForPlayer(Player player, String itemName, boolean takeItem) {
-    final Item item = getWorld().getItem(itemName);
+  public Optional<Item> getItemForPlayer(Player player, String itemName, boolean takeItem) {
+    return f_lock.aroundCharacter(player, () -> {
+      final Item item = getWorld().getItem(itemName);
 
-    // If item not found in player inventory, check to see if it's located at this place in
-    // the world.
-    if (takeItem && !player.getContainer().isPresent(item) && player.getLocation().getContainer().isPresent(item)) {
-      swapItem(player, player.getContainer(), player.getLocation().getContainer(), itemName, Item.Action.TAKE);
-    }
-    if (player.getContainer().isPresent(item) || player.getLocation().getContainer().isPresent(item)) {
-      return Optional.ofNullable(item);
-    } else {
-      return Optional.empty();
-    }
+      // If item not found in player inventory, check to see if it's located at this place in
+      // the world.
+      if (takeItem && !player.getContainer().isPresent(item) && player.getLocation().getContainer().isPresent(item)) {
+        swapItem(player, player.getContainer(), player.getLocation().getContainer(), itemName, Item.Action.TAKE);
+      }
+      if (player.getContainer().isPresent(item) || player.getLocation().getContainer().isPresent(item)) {
+        return Optional.ofNullable(item);
+      } else {
+        return Optional.empty();
+      }
+    });
+  }
+
+  /**
+   * Reports how well the world has kept to its tick rate since it was loaded
+   *
+   * @return a snapshot of the tick durations, lag, overruns and skipped ticks
+   */
+  public TickStatistics getTickStatistics() {
+    return f_timer.getStatistics();
+  }
+
+  /**
+   * @return the timer that ticks the world
+   */
+  ControllerTimer getTimer() {
+    return f_timer;
   }
 
   /**
@@ -216,7 +316,7 @@ public final class Controller {
    *
    * @return the world associated with this controller.
    */
-  public synchronized Universe getWorld() {
+  public Universe getWorld() {
     return f_world;
   }
 
@@ -229,32 +329,30 @@ public final class Controller {
    *          The player who is giving away the item
    * @param toPlayerName
    *          The player getting the item
-   * @return a Result, with the reason set as the item name or player name if either could not be
+   * @return an Outcome, with the reason set as the item name or player name if either could not be
    *         found
    */
-  public synchronized Result giveItem(String itemName, Player fromPlayer, String toPlayerName) {
-    final Player toPlayer = getWorld().getPlayer(toPlayerName);
-    final Optional<Item> item = getItemForPlayer(fromPlayer, itemName, true);
-    if (!item.isPresent()) {
-      final Result retVal = Result.ITEM_NOT_FOUND;
-      retVal.setReason(itemName);
-      return retVal;
-    }
+  public Outcome giveItem(String itemName, Player fromPlayer, String toPlayerName) {
+    return f_lock.aroundCharacter(fromPlayer, () -> {
+      final Player toPlayer = getWorld().getPlayer(toPlayerName);
+      final Optional<Item> item = getItemForPlayer(fromPlayer, itemName, true);
+      if (!item.isPresent()) {
+        return Result.ITEM_NOT_FOUND.withReason(itemName);
+      }
 
-    if (toPlayer == null || !fromPlayer.sameLocationAs(toPlayer)) {
-      final Result retVal = Result.CHARACTER_NOT_FOUND;
-      retVal.setReason(toPlayerName);
-      return retVal;
-    }
-    Result retVal;
-    if ((retVal = swapItem(fromPlayer, toPlayer.getContainer(), fromPlayer.getContainer(), item.get().getName(),
-        Action.GIVE)).equals(Result.SUCCESS)) {
-      f_world.playerLosesItem(fromPlayer, item.get());
-      f_world.playerGainsItem(toPlayer, item.get());
-      return Result.SUCCESS;
-    } else {
-      return retVal;
-    }
+      if (toPlayer == null || !fromPlayer.sameLocationAs(toPlayer)) {
+        return Result.CHARACTER_NOT_FOUND.withReason(toPlayerName);
+      }
+      Outcome retVal;
+      if ((retVal = swapItem(fromPlayer, toPlayer.getContainer(), fromPlayer.getContainer(), item.get().getName(),
+          Action.GIVE)).getResult() == Result.SUCCESS) {
+        f_world.playerLosesItem(fromPlayer, item.get());
+        f_world.playerGainsItem(toPlayer, item.get());
+        return retVal;
+      } else {
+        return retVal;
+      }
+    });
   }
 
   /**
@@ -266,24 +364,24 @@ public final class Controller {
    *          The player giving money
    * @param toPlayerName
    *          The player receiving money
-   * @return An
-   */
-  public synchronized Result giveMoney(String moneyString, Player fromPlayer, String toPlayerName) {
-    final Player toPlayer = getWorld().getPlayer(toPlayerName);
-    final int money = Integer.parseInt(moneyString);
-    if (fromPlayer.getMoney() < money || money < 1) {
-      return Result.INSUFFICIENT_MONEY;
-    } else if (toPlayer == null || !fromPlayer.sameLocationAs(toPlayer)) {
-      final Result retVal = Result.CHARACTER_NOT_FOUND;
-      retVal.setReason(toPlayerName);
-      return retVal;
-    } else {
-      fromPlayer.changeMoney(-money);
-      f_world.moneyChanged(fromPlayer, -money);
-      toPlayer.changeMoney(money);
-      f_world.moneyChanged(toPlayer, money);
-      return Result.SUCCESS;
-    }
+   * @return An Outcome, with the reason set as the player name if that player could not be found
+   */
+  public Outcome giveMoney(String moneyString, Player fromPlayer, String toPlayerName) {
+    return f_lock.aroundCharacter(fromPlayer, () -> {
+      final Player toPlayer = getWorld().getPlayer(toPlayerName);
+      final int money = Integer.parseInt(moneyString);
+      if (fromPlayer.getMoney() < money || money < 1) {
+        return Outcome.of(Result.INSUFFICIENT_MONEY);
+      } else if (toPlayer == null || !fromPlayer.sameLocationAs(toPlayer)) {
+        return Result.CHARACTER_NOT_FOUND.withReason(toPlayerName);
+      } else {
+        fromPlayer.changeMoney(-money);
+        f_world.moneyChanged(fromPlayer, -money);
+        toPlayer.changeMoney(money);
+        f_world.moneyChanged(toPlayer, money);
+        return Outcome.of(Result.SUCCESS);
+      }
+    });
   }
 
   /**
@@ -296,14 +394,16 @@ public final class Controller {
    * @return true if the player is missing items and cannot move there, false if the player has all
    *         the items
    */
-  public synchronized boolean isMissingItems(Player player, Navigation direction) {
-    if (player.getLocation().isTravelAllowedToward(direction)) {
-      final Place newPlayerLocation = player.getLocation().getTravelDestinationToward(direction);
-      final Set<Item> missingItems = newPlayerLocation.missingItems(player.getContainer());
-      return !missingItems.isEmpty();
-    } else {
-      return false;
-    }
+  public boolean isMissingItems(Player player, Navigation direction) {
+    return f_lock.aroundCharacter(player, () -> {
+      if (player.getLocation().isTravelAllowedToward(direction)) {
+        final Place newPlayerLocation = player.getLocation().getTravelDestinationToward(direction);
+        final Set<Item> missingItems = newPlayerLocation.missingItems(player.getContainer());
+        return !missingItems.isEmpty();
+      } else {
+        return false;
+      }
+    });
   }
 
   /**
@@ -314,9 +414,31 @@ public final class Controller {
    * @throws PersistenceStateException
    *           If anything goes wrong with the loading process
    */
-  public synchronized void loadWorld(String fileName) throws PersistenceStateException {
+  public void loadWorld(String fileName) throws PersistenceStateException {
     final Universe newWorld = GamePersistence.loadWorld(fileName);
-    setWorld(newWorld, fileName);
+    f_lock.exclusive(() -> {
+      finishJournal();
+      f_lock.clearPlaces();
+      setWorld(newWorld, fileName);
+    });
+  }
+
+  /**
+   * Loads a world autosaved by {@link #startAutosave(String)}, as it was when its journal was last
+   * committed. Autosaving does not carry on until it is started again.
+   *
+   * @param fileName
+   *          The name of the autosave's snapshot
+   * @throws PersistenceStateException
+   *           If anything goes wrong with the loading process
+   */
+  public void recoverWorld(String fileName) throws PersistenceStateException {
+    final Universe newWorld = WorldJournal.recover(Paths.get(fileName).normalize());
+    f_lock.exclusive(() -> {
+      finishJournal();
+      f_lock.clearPlaces();
+      setWorld(newWorld, fileName);
+    });
   }
 
   /**
@@ -327,31 +449,33 @@ public final class Controller {
    * @return a Player if available, or null if the player could not be identified by name or was
    *         currently occupied by a different user
    */
-  public synchronized Player playAs(String name) {
-    Player player = f_world.getPlayer(name);
-    if (player == null && name.matches("\\d+")) {
-      final int chosen = Integer.parseInt(name);
-      int index = 1;
-      for (final Player checkPlayer : f_world.getPlayers()) {
-        if (!checkPlayer.isOccupied()) {
-          if (index == chosen) {
-            player = checkPlayer;
-            break;
-          } else {
-            index++;
+  public Player playAs(String name) {
+    return f_lock.exclusive(() -> {
+      Player player = f_world.getPlayer(name);
+      if (player == null && name.matches("\\d+")) {
+        final int chosen = Integer.parseInt(name);
+        int index = 1;
+        for (final Player checkPlayer : f_world.getPlayersView()) {
+          if (!checkPlayer.isOccupied()) {
+            if (index == chosen) {
+              player = checkPlayer;
+              break;
+            } else {
+              index++;
+            }
           }
         }
       }
-    }
-    if (player != null) {
-      if (player.isOccupied()) {
-        player = null;
-      } else {
-        player.setOccupied(true);
-        f_world.playerJoined(player);
+      if (player != null) {
+        if (player.isOccupied()) {
+          player = null;
+        } else {
+          player.setOccupied(true);
+          f_world.playerJoined(player);
+        }
       }
-    }
-    return player;
+      return player;
+    });
   }
 
   /**
@@ -365,20 +489,22 @@ public final class Controller {
    *          The name of the item that is a container to store it in
    * @return true if the moving the item was successful, false otherwise
    */
-  public synchronized boolean putItemInItemContainer(Player player, String itemToPut, String itemContainerString) {
-    final Optional<Item> item = getItemForPlayer(player, itemToPut, true);
-    final Optional<Item> itemContainer = getItemForPlayer(player, itemContainerString, false);
+  public boolean putItemInItemContainer(Player player, String itemToPut, String itemContainerString) {
+    return f_lock.aroundCharacter(player, () -> {
+      final Optional<Item> item = getItemForPlayer(player, itemToPut, true);
+      final Optional<Item> itemContainer = getItemForPlayer(player, itemContainerString, false);
 
-    if (item != null
-        && itemContainer.isPresent()
-        && itemContainer.get().getContainer() != null
-        && swapItem(player, itemContainer.get().getContainer(), player.getContainer(), itemToPut, Action.GIVE).equals(
-            Result.SUCCESS)) {
-      getWorld().putItemInItem(player, item.get(), itemContainer.get());
-      return true;
-    } else {
-      return false;
-    }
+      if (item != null
+          && itemContainer.isPresent()
+          && itemContainer.get().getContainer() != null
+          && swapItem(player, itemContainer.get().getContainer(), player.getContainer(), itemToPut, Action.GIVE)
+              .getResult() == Result.SUCCESS) {
+        getWorld().putItemInItem(player, item.get(), itemContainer.get());
+        return true;
+      } else {
+        return false;
+      }
+    });
   }
 
   /**
@@ -387,24 +513,143 @@ public final class Controller {
    * @param player
    *          The player to release
    */
-  public synchronized void releasePlayer(Player player) {
-    if (player != null && player.isOccupied()) {
-      player.setOccupied(false);
-      f_world.playerQuit(player);
-    }
+  public void releasePlayer(Player player) {
+    f_lock.exclusive(() -> {
+      if (player != null && player.isOccupied()) {
+        player.setOccupied(false);
+        f_world.playerQuit(player);
+      }
+    });
   }
 
   /**
    * Saves the current state of the {@link Universe} to a file. This world can be loaded and game play
-   * resumed using {@link #loadWorld(String)}.
+   * resumed using {@link #loadWorld(String)}. The world is only held still while a view of it is
+   * captured, and goes on being ticked and played while the view is written.
    *
    * @param fileName
    *          The name of the file to create
    * @throws PersistenceStateException
    *           if anything goes wrong during saving
    */
-  public synchronized void saveWorld(String fileName) throws PersistenceStateException {
-    GamePersistence.saveWorld(f_world, fileName);
+  public void saveWorld(String fileName) throws PersistenceStateException {
+    try (WorldView view = capture()) {
+      GamePersistence.saveWorld(view, fileName);
+    }
+  }
+
+  /**
+   * Saves the current state of the {@link Universe} to a file on a background thread, as
+   * {@link #saveWorld(String)} does.
+   *
+   * @param fileName
+   *          The name of the file to create
+   * @return a future that completes once the world is saved, or exceptionally with whatever went
+   *         wrong
+   */
+  public CompletableFuture<Void> saveWorldInBackground(String fileName) {
+    final WorldView view = capture();
+    return CompletableFuture.runAsync(() -> {
+      try (WorldView captured = view) {
+        GamePersistence.saveWorld(captured, fileName);
+      } catch (final PersistenceStateException e) {
+        throw new CompletionException(e);
+      }
+    }, SAVER);
+  }
+
+  /**
+   * Saves the current state of the {@link Universe}, and the tick it has reached, to a binary
+   * snapshot. The snapshot can be loaded and game play resumed from that tick using
+   * {@link #loadWorld(String)}.
+   *
+   * @param fileName
+   *          The name of the file to create
+   * @throws PersistenceStateException
+   *           if anything goes wrong during saving
+   */
+  public void saveSnapshot(String fileName) throws PersistenceStateException {
+    try (WorldView view = capture()) {
+      GamePersistence.saveSnapshot(view, fileName);
+    }
+  }
+
+  /**
+   * Saves the current state of the {@link Universe}, and the tick it has reached, to a binary
+   * snapshot on a background thread, as {@link #saveSnapshot(String)} does.
+   *
+   * @param fileName
+   *          The name of the file to create
+   * @return a future that completes once the snapshot is saved, or exceptionally with whatever went
+   *         wrong
+   */
+  public CompletableFuture<Void> saveSnapshotInBackground(String fileName) {
+    final WorldView view = capture();
+    return CompletableFuture.runAsync(() -> {
+      try (WorldView captured = view) {
+        GamePersistence.saveSnapshot(captured, fileName);
+      } catch (final PersistenceStateException e) {
+        throw new CompletionException(e);
+      }
+    }, SAVER);
+  }
+
+  private static Thread newSaver(Runnable runnable) {
+    final Thread thread = new Thread(runnable, "World saver");
+    thread.setDaemon(true);
+    return thread;
+  }
+
+  /**
+   * Capture a view of the world as it is now. The world is held still only while the view is
+   * captured, which copies nothing. Versions of the world are kept from its first save on.
+   */
+  private WorldView capture() {
+    return f_lock.exclusive(() -> {
+      if (f_versions == null) {
+        f_versions = WorldVersions.attach(f_world);
+      }
+      return f_versions.capture();
+    });
+  }
+
+  /**
+   * Autosaves the world from now on. A snapshot of the world is saved to a file, and every change
+   * made to it after that is journaled beside the snapshot and committed to disk every
+   * {@value WorldJournal#DEFAULT_COMMIT_MILLIS} milliseconds, only ever between commands and ticks.
+   * Once the journal has grown it is compacted into a new snapshot on a background thread, from a
+   * view of the world captured after a tick. After a crash the world is restored with
+   * {@link #recoverWorld(String)}.
+   *
+   * @param fileName
+   *          The name of the snapshot file, the journal is named after it
+   * @throws PersistenceStateException
+   *           if the snapshot or journal cannot be written
+   */
+  public void startAutosave(String fileName) throws PersistenceStateException {
+    f_lock.exclusive(() -> {
+      finishJournal();
+      f_journal = WorldJournal.open(f_world, Paths.get(fileName).normalize(), WorldJournal.DEFAULT_COMMIT_MILLIS,
+          action -> f_lock.exclusive(action::run));
+    });
+  }
+
+  /**
+   * Stop autosaving the world, once the changes not yet committed to the journal have been
+   *
+   * @throws PersistenceStateException
+   *           if the journal cannot be written
+   */
+  public void stopAutosave() throws PersistenceStateException {
+    f_lock.exclusive(this::finishJournal);
+  }
+
+  private void finishJournal() throws PersistenceStateException {
+    final WorldJournal journal = f_journal;
+    if (journal != null) {
+      f_journal = null;
+      journal.finish();
+    }
   }
 
   /**
@@ -420,13 +665,18 @@ public final class Controller {
    *           if world is null
    */
   private void setWorld(Universe world, String fileName) throws NullPointerException {
+    if (f_versions != null) {
+      f_versions.detach();
+      f_versions = null;
+    }
     if (world == null) {
       final Universe tempWorld = new Universe();
-      for (final IModelObserver o : f_world.getObservers()) {
+      for (final IModelObserver o : f_world.getObserversView()) {
         tempWorld.addObserver(o);
       }
       f_world = tempWorld;
       f_world.worldLoaded("Unable to load world, loaded a trivial world instead.");
+      refileObservers(tempWorld);
       return;
     } else if (f_world != null) {
       /*
@@ -436,22 +686,67 @@ public final class Controller {
         world.addObserver(o);
         f_world.removeObserver(o);
       }
+      f_world.setTickParallelism(1);
     }
+    world.setTickParallelism(Math.max(1, Integer.getInteger(TICK_THREADS_PROPERTY, 1)));
     f_world = world;
     world.worldLoaded(fileName);
-    if (f_timer != null) {
-      f_timer.cancel();
+    refileObservers(world);
+    f_timer.restart(f_world.getTickRate(), f_world.getCurrentTick());
+  }
+
+  /**
+   * Observers carried over from the old world were registered under the players they observed
+   * there. Hearing that the world was loaded has left them observing no player, so register them
+   * again under their players in the new world.
+   */
+  private static void refileObservers(Universe world) {
+    for (final IModelObserver o : world.getObserversView()) {
+      if (o instanceof ILocalObserver) {
+        world.observedPlayerChanged((ILocalObserver) o);
+      }
     }
-    f_timer = new Timer(true);
-    f_timer.schedule(new ControllerTimer(this), f_world.getTickRate(), f_world.getTickRate());
   }
 
   /**
    * Stop the worldtimer and let it gracefully shut down at the conclusion of the current tick if
-   * running.
+   * running. Queued commands that have not been applied yet are cancelled. An autosave commits the
+   * rest of its journal and stops.
    */
   public void stopWorld() {
-    f_timer.cancel();
+    if (f_simulation != null) {
+      f_simulation.finish();
+    } else {
+      f_timer.stop();
+    }
+    try {
+      finishJournal();
+    } catch (final PersistenceStateException e) {
+      f_world.notifyException(e.getMessage());
+    }
+  }
+
+  /**
+   * Apply a command to the world. If this controller queues commands, the command is applied later
+   * by the simulation thread, after every command submitted before it, and this returns at once.
+   * Otherwise the command is applied before this returns.
+   *
+   * @param command
+   *          The command to apply, typically one or more calls to this controller's operations
+   * @return a future that completes with the result of the command, or exceptionally with whatever
+   *         it threw or a CancellationException if the world was stopped first
+   */
+  public <T> CompletableFuture<T> submit(Supplier<T> command) {
+    if (f_simulation != null) {
+      return f_simulation.submit(command);
+    }
+    final CompletableFuture<T> result = new CompletableFuture<>();
+    try {
+      result.complete(command.get());
+    } catch (final RuntimeException e) {
+      result.completeExceptionally(e);
+    }
+    return result;
   }
 
   /**
@@ -467,46 +762,47 @@ public final class Controller {
    *          The string unique identifier/name of the item.
    * @param itemAction
    *          The type of action performed with this swap, either a drop or pickup
-   * @return An Optional of Item if the item was successfully moved, empty otherwise.
+   * @return An Outcome of SUCCESS if the item was moved, with the reason set to the item's message
+   *         if it could not be taken
    */
-  public synchronized Result swapItem(Player f_player, Container destination, Container source, String itemName,
+  public Outcome swapItem(Player f_player, Container destination, Container source, String itemName,
       Action itemAction) {
-    final Item worldItem = getItem(itemName);
-
-    if (worldItem != null && source.isPresent(worldItem)) {
-      if (canTakeItem(source, worldItem)) {
-        if (source.moveItem(destination, worldItem)) {
-          switch (itemAction) {
-            case DROP:
-              final long dropPoints = worldItem.getDropAndZeroizePoints();
-              final long dropPlacePoints = worldItem.getDropAndZeroizePoints(f_player.getLocation());
-              final long totalPoints = dropPoints + dropPlacePoints;
-              f_player.addPoints(totalPoints);
-              if (f_player.getCurrentWeapon().equals(worldItem)) {
-                equip(f_player, null);
-              }
-              getWorld().characterDroppedItem(f_player, worldItem, totalPoints);
-              break;
-            case TAKE:
-              final long points = worldItem.getTakeAndZeroizePoints();
-              f_player.addPoints(points);
-              getWorld().playerTookItem(f_player, worldItem, points);
-              break;
-            case GIVE:
-              // Do nothing
+    return f_lock.aroundCharacter(f_player, () -> {
+      final Item worldItem = getItem(itemName);
+
+      if (worldItem != null && source.isPresent(worldItem)) {
+        if (canTakeItem(source, worldItem)) {
+          if (source.moveItem(destination, worldItem)) {
+            switch (itemAction) {
+              case DROP:
+                final long dropPoints = worldItem.getDropAndZeroizePoints();
+                final long dropPlacePoints = worldItem.getDropAndZeroizePoints(f_player.getLocation());
+                final long totalPoints = dropPoints + dropPlacePoints;
+                f_player.addPoints(totalPoints);
+                if (f_player.getCurrentWeapon().equals(worldItem)) {
+                  equip(f_player, null);
+                }
+                getWorld().characterDroppedItem(f_player, worldItem, totalPoints);
+                break;
+              case TAKE:
+                final long points = worldItem.getTakeAndZeroizePoints();
+                f_player.addPoints(points);
+                getWorld().playerTookItem(f_player, worldItem, points);
+                break;
+              case GIVE:
+                // Do nothing
+            }
+            return Outcome.of(Result.SUCCESS);
+          } else {
+            return Outcome.of(Result.UNKNOWN_FAILURE);
           }
-          return Result.SUCCESS;
         } else {
-          return Result.UNKNOWN_FAILURE;
+          return Result.ITEM_NOT_TAKEABLE.withReason(worldItem.cantTakeMessage());
         }
       } else {
-        final Result retVal = Result.ITEM_NOT_TAKEABLE;
-        retVal.setReason(worldItem.cantTakeMessage());
-        return retVal;
+        return Outcome.of(Result.ITEM_NOT_FOUND);
       }
-    } else {
-      return Result.ITEM_NOT_FOUND;
-    }
+    });
   }
 
   /**
@@ -517,35 +813,37 @@ public final class Controller {
    *          The current player
    * @param itemNames
    *          The items that the player is attempting to synthesize
-   * @return a {@link Result} result, if Synthesis result is item not found, the reason will be set
+   * @return an {@link Outcome}, if the result is item not found the reason will be set
    */
-  public synchronized Result synthesizeItems(Player player, Set<String> itemNames) {
-    final Set<Item> items = new HashSet<>(itemNames.size());
-    for (final String name : itemNames) {
-      final Optional<Item> item = getItemForPlayer(player, name, true);
-      if (item.isPresent()) {
-        items.add(item.get());
-      } else {
-        return Result.ITEM_NOT_FOUND.setReason(name);
-      }
-    }
-    final Item newItem = getWorld().synthesizeItems(items);
-    if (newItem != null) {
-      for (final Item item : items) {
-        Result result;
-        if ((result = swapItem(player, f_world.getNowherePlace().getContainer(), player.getContainer(), item.getName(),
-            Action.GIVE)).equals(Result.SUCCESS)) {
-          f_world.playerLosesItem(player, item);
+  public Outcome synthesizeItems(Player player, Set<String> itemNames) {
+    return f_lock.aroundCharacter(player, () -> {
+      final Set<Item> items = new HashSet<>(itemNames.size());
+      for (final String name : itemNames) {
+        final Optional<Item> item = getItemForPlayer(player, name, true);
+        if (item.isPresent()) {
+          items.add(item.get());
         } else {
-          return result;
+          return Result.ITEM_NOT_FOUND.withReason(name);
         }
       }
-      swapItem(player, player.getContainer(), f_world.getNowherePlace().getContainer(), newItem.getName(), Action.GIVE);
-      f_world.playerGainsItem(player, newItem);
-      return Result.SUCCESS;
-    } else {
-      return Result.NO_ITEM_CREATED;
-    }
+      final Item newItem = getWorld().synthesizeItems(items);
+      if (newItem != null) {
+        for (final Item item : items) {
+          Outcome result;
+          if ((result = swapItem(player, f_world.getNowherePlace().getContainer(), player.getContainer(), item.getName(),
+              Action.GIVE)).getResult() == Result.SUCCESS) {
+            f_world.playerLosesItem(player, item);
+          } else {
+            return result;
+          }
+        }
+        swapItem(player, player.getContainer(), f_world.getNowherePlace().getContainer(), newItem.getName(), Action.GIVE);
+        f_world.playerGainsItem(player, newItem);
+        return Outcome.of(Result.SUCCESS);
+      } else {
+        return Outcome.of(Result.NO_ITEM_CREATED);
+      }
+    }, getWorld().getNowherePlace());
   }
 
   /**
@@ -559,19 +857,21 @@ public final class Controller {
    *          The name of the item that is a container to store it in
    * @return true if the moving the item was successful, false otherwise
    */
-  public synchronized boolean takeItemFromItemContainer(Player player, String itemToTake, String itemContainerString) {
-    final Item item = getWorld().getItem(itemToTake);
-    final Optional<Item> itemContainer = getItemForPlayer(player, itemContainerString, false);
-    if (item != null
-        && itemContainer.isPresent()
-        && itemContainer.get().getContainer() != null
-        && swapItem(player, player.getContainer(), itemContainer.get().getContainer(), itemToTake, Action.GIVE).equals(
-            Result.SUCCESS)) {
-      getWorld().takeItemfromItem(player, item, itemContainer.get());
-      return true;
-    } else {
-      return false;
-    }
+  public boolean takeItemFromItemContainer(Player player, String itemToTake, String itemContainerString) {
+    return f_lock.aroundCharacter(player, () -> {
+      final Item item = getWorld().getItem(itemToTake);
+      final Optional<Item> itemContainer = getItemForPlayer(player, itemContainerString, false);
+      if (item != null
+          && itemContainer.isPresent()
+          && itemContainer.get().getContainer() != null
+          && swapItem(player, player.getContainer(), itemContainer.get().getContainer(), itemToTake, Action.GIVE)
+              .getResult() == Result.SUCCESS) {
+        getWorld().takeItemfromItem(player, item, itemContainer.get());
+        return true;
+      } else {
+        return false;
+      }
+    });
   }
 
   /**
@@ -583,10 +883,12 @@ public final class Controller {
    *          The NPC the player is talking to
    * @return A list of Events that represent what the Player can say to the NPC
    */
-  public synchronized List<SayTrigger> talkToNPC(Player player, NonPlayerCharacter npc) {
-    final List<SayTrigger> currentEvents = npc.getSayTriggers(player);
-    getWorld().talkToNPC(player, npc, currentEvents);
-    return currentEvents;
+  public List<SayTrigger> talkToNPC(Player player, NonPlayerCharacter npc) {
+    return f_lock.aroundCharacter(player, () -> {
+      final List<SayTrigger> currentEvents = npc.getSayTriggers(player);
+      getWorld().talkToNPC(player, npc, currentEvents);
+      return currentEvents;
+    });
   }
 
   /**
@@ -595,9 +897,45 @@ public final class Controller {
    * @param numTicks
    *          the number of ticks since this world started
    */
-  public synchronized void tick(long numTicks) {
+  public void tick(long numTicks) {
+    f_lock.exclusive(() -> tickWorld(numTicks));
+  }
+
+  /**
+   * Tick the world forward for the timer, unless the world the tick was counted for has been
+   * replaced while the tick waited for the world lock
+   *
+   * @param numTicks
+   *          the number of ticks since this world started
+   * @param isCurrent
+   *          checked under the world lock, false if the tick belongs to a world since replaced
+   * @return true if the world was ticked, false if the tick was dropped
+   */
+  boolean tick(long numTicks, BooleanSupplier isCurrent) {
+    return f_lock.exclusive(() -> {
+      if (!isCurrent.getAsBoolean()) {
+        return false;
+      }
+      tickWorld(numTicks);
+      return true;
+    });
+  }
+
+  private void tickWorld(long numTicks) {
     try {
       f_world.tick(numTicks);
+      final WorldJournal journal = f_journal;
+      if (journal != null && journal.needsCompaction() && journal.startCompaction()) {
+        // Written on the saver thread, the world goes on being ticked meanwhile
+        final WorldView view = capture();
+        CompletableFuture.runAsync(() -> {
+          try (WorldView captured = view) {
+            journal.compact(captured);
+          } catch (final PersistenceStateException e) {
+            f_world.notifyException(e.getMessage());
+          }
+        }, SAVER);
+      }
     } catch (final Exception e) {
       e.printStackTrace();
       f_world.notifyException("Exception " + e.toString());
@@ -614,40 +952,61 @@ public final class Controller {
    * @throws NullPointerException
    *           if direction is null
    */
-  public synchronized void travel(Player player, Navigation direction) throws NullPointerException {
+  public void travel(Player player, Navigation direction) throws NullPointerException {
     if (direction == null) {
       throw new NullPointerException("direction cannot be null");
     }
-    final Place playerLocation = player.getLocation();
-    if (canTravel(player, direction)) {
-      final Place newPlayerLocation = playerLocation.getTravelDestinationToward(direction);
-      final Place startLocation = player.getLocation();
-      player.disengageCombat();
-      /*
-       * Move the player
-       */
-      player.setLocation(newPlayerLocation);
-      getWorld().playerMoved(player, startLocation, player.getLocation());
+    Boolean moved;
+    Place destination;
+    do {
+      final Place expectedDestination = player.getLocation().getTravelDestinationToward(direction);
+      destination = expectedDestination;
+      final Place[] destinationPlaces = destination == null ? new Place[0] : new Place[] { destination };
+      moved = f_lock.aroundCharacter(player, () -> {
+        final Place playerLocation = player.getLocation();
+        if (playerLocation.getTravelDestinationToward(direction) != expectedDestination) {
+          // The player was moved before the destination could be locked, try again
+          return null;
+        }
+        if (!canTravel(player, direction)) {
+          return false;
+        }
+        player.disengageCombat();
+        /*
+         * Move the player
+         */
+        player.setLocation(expectedDestination);
+        getWorld().playerMoved(player, playerLocation, player.getLocation());
+        return true;
+      }, destinationPlaces);
+    } while (moved == null);
+    if (moved) {
+      arrived(player, destination);
+    }
+  }
+
+  /**
+   * Run the consequences of a player arriving somewhere, which may reach anywhere in the world
+   */
+  private void arrived(Player player, Place newPlayerLocation) {
+    f_lock.exclusive(() -> {
+      if (player.getLocation() != newPlayerLocation) {
+        return;
+      }
       /*
        * Check to see if the new location ends the game.
        */
       if (newPlayerLocation.getWinCondition()) {
         getWorld().setGameOver(true);
       } else {
-        for (final Character character : newPlayerLocation.getAllCharacters()) {
-          if (character instanceof NonPlayerCharacter) {
-            final NonPlayerCharacter npc = (NonPlayerCharacter) character;
-            for (final Trigger trigger : npc.getCurrentState().getEventTriggers()) {
-              if (trigger instanceof SightTrigger) {
-                trigger.execute(player);
-              }
-            }
-          }
+        for (final SightTrigger trigger : newPlayerLocation.getArrivalTriggers(player)) {
+          trigger.execute(player);
         }
       }
-    }
+    });
   }
 
+
   /**
    * Allow a player to use an item on the specified target character
    *
@@ -657,38 +1016,38 @@ public final class Controller {
    *          The name of the item to use
    * @param targetName
    *          The name of the character to target
-   * @return a Result CANT_USE_ITEM if it's not consumable, a SUCCESS, an ALREADY_IN_COMBAT if the
-   *         item is on cooldown, or an ITEM_NOT_FOUND
+   * @return an Outcome of CANT_USE_ITEM if it's not consumable, a SUCCESS, an ALREADY_IN_COMBAT with
+   *         the seconds left as the reason if the item is on cooldown, or an ITEM_NOT_FOUND
    */
-  public synchronized Result useItem(Player player, String itemName, String targetName) {
-    final Character character = player.getLocation().getCharacter(targetName);
-    if (character == null) {
-      return Result.CHARACTER_NOT_FOUND;
-    }
-    try {
-      final Item item = getItem(itemName);
-      if (player.getContainer().isPresent(item)) {
-        if (!(item instanceof Consumable)) {
-          return Result.CANT_USE_ITEM;
-        } else {
-          final Consumable consumable = (Consumable) item;
-          if (consumable.canUseItem(getWorld().getCurrentTick())) {
-            player.useItem(consumable, character);
-            return Result.SUCCESS;
-          } else if (!consumable.hasUsesLeft()) {
-            return Result.ITEM_CONSUMED;
+  public Outcome useItem(Player player, String itemName, String targetName) {
+    return f_lock.exclusive(() -> {
+      final Character character = player.getLocation().getCharacter(targetName);
+      if (character == null) {
+        return Outcome.of(Result.CHARACTER_NOT_FOUND);
+      }
+      try {
+        final Item item = getItem(itemName);
+        if (player.getContainer().isPresent(item)) {
+          if (!(item instanceof Consumable)) {
+            return Outcome.of(Result.CANT_USE_ITEM);
           } else {
-            final Result retVal = Result.ALREADY_IN_COMBAT;
-            retVal.setReason(Double.toString(getWorld().getTickRate() / 1000.0
-                * consumable.ticksRemaining(getWorld().getCurrentTick())));
-            return retVal;
+            final Consumable consumable = (Consumable) item;
+            if (consumable.canUseItem(getWorld().getCurrentTick())) {
+              player.useItem(consumable, character);
+              return Outcome.of(Result.SUCCESS);
+            } else if (!consumable.hasUsesLeft()) {
+              return Outcome.of(Result.ITEM_CONSUMED);
+            } else {
+              return Result.ALREADY_IN_COMBAT.withReason(Double.toString(getWorld().getTickRate() / 1000.0
+                  * consumable.ticksRemaining(getWorld().getCurrentTick())));
+            }
           }
+        } else {
+          return Outcome.of(Result.ITEM_NOT_FOUND);
         }
-      } else {
-        return Result.ITEM_NOT_FOUND;
+      } catch (final NoSuchElementException e) {
+        return Outcome.of(Result.ITEM_NOT_FOUND);
       }
-    } catch (final NoSuchElementException e) {
-      return Result.ITEM_NOT_FOUND;
-    }
+    });
   }
 }
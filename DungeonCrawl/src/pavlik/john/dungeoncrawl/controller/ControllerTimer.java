@@ -1,41 +1,251 @@
 package pavlik.john.dungeoncrawl.controller;
 
-import java.util.TimerTask;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import pavlik.john.dungeoncrawl.model.Universe;
 
 /**
  * This class is used to incorporate timed actions in a {@link Universe}.
+ * <p>
+ * Ticks are scheduled at a fixed rate from the moment the world was loaded, so a slow tick does not
+ * push back every tick after it. Ticks that are missed anyway are run late or skipped according to
+ * the {@link TickPolicy}, and the timer keeps {@link TickStatistics} of how well it kept time.
+ * Skipped ticks are never run, so the tick count passed to the world only counts ticks that ran.
+ * <p>
+ * The timer ticks the world on its own thread once {@link #start()}ed; a {@link SimulationThread}
+ * instead asks it when the next tick is due and runs it between commands.
  *
  * @author Jay Giametta
  * @author John Pavlik
  *
- * @version 1.4
+ * @version 1.5
  * @see Universe
  */
-public class ControllerTimer extends TimerTask {
+public class ControllerTimer {
 
-  private final Controller f_controller;
+  private final Controller         f_controller;
+  private final TickPolicy         f_policy;
+  private ScheduledExecutorService f_executor;
+  private ScheduledFuture<?>       f_wakeUp;
 
-  private long             f_numTicks;
+  private long                     f_tickRateNanos = 0;
+  private long                     f_numTicks;
+  private long                     f_firstTick;
+  private long                     f_nextTick;
+  private int                      f_generation    = 0;
+
+  private long                     f_skippedTicks;
+  private long                     f_overruns;
+  private long                     f_lastDurationNanos;
+  private long                     f_maxDurationNanos;
+  private long                     f_totalDurationNanos;
+  private long                     f_lastLagNanos;
+  private long                     f_maxLagNanos;
 
   /**
-   * Creates a new instance of <code>ControllerTimer</code> for the default world.
+   * Creates a new instance of <code>ControllerTimer</code> with the tick policy selected by the
+   * {@value TickPolicy#POLICY_PROPERTY} system property.
    *
    * @param controller
    *          the {@link Controller} associated with this timer
    */
   ControllerTimer(Controller controller) {
+    this(controller, TickPolicy.fromSystemProperty());
+  }
+
+  /**
+   * Creates a new instance of <code>ControllerTimer</code>. It does not tick until
+   * {@link #restart(long)} has given it a tick rate.
+   *
+   * @param controller
+   *          the {@link Controller} associated with this timer
+   * @param policy
+   *          what to do about missed ticks
+   */
+  ControllerTimer(Controller controller, TickPolicy policy) {
     f_controller = controller;
+    f_policy = policy;
+  }
+
+  /**
+   * @return what this timer does about missed ticks
+   */
+  TickPolicy getPolicy() {
+    return f_policy;
   }
 
   /**
-   * Increments the timer's tick counter
+   * @return a snapshot of the statistics since the world was loaded
    */
-  @Override
-  public void run() {
-    f_numTicks++;
-    f_controller.tick(f_numTicks);
+  synchronized TickStatistics getStatistics() {
+    return new TickStatistics(f_numTicks - f_firstTick, f_skippedTicks, f_overruns, f_lastDurationNanos,
+        f_maxDurationNanos, f_totalDurationNanos, f_lastLagNanos, f_maxLagNanos);
   }
 
+  /**
+   * How long until the next tick is due
+   *
+   * @param now
+   *          The current {@link System#nanoTime()}
+   * @return the nanoseconds remaining, 0 or less if a tick is due, or Long.MAX_VALUE if the timer
+   *         has no tick rate yet
+   */
+  synchronized long nanosUntilDue(long now) {
+    if (f_tickRateNanos == 0) {
+      return Long.MAX_VALUE;
+    }
+    return f_nextTick - now;
+  }
+
+  /**
+   * Count ticks and statistics from the beginning again, for a newly loaded world. The first tick
+   * is due one tick rate from now.
+   *
+   * @param tickRateMillis
+   *          The milliseconds between ticks of the world, must be positive
+   * @throws IllegalArgumentException
+   *           if the tick rate is not positive
+   */
+  void restart(long tickRateMillis) {
+    restart(tickRateMillis, 0);
+  }
+
+  /**
+   * Count ticks and statistics again for a newly loaded world, carrying on from the tick the world
+   * has reached. The next tick is due one tick rate from now.
+   *
+   * @param tickRateMillis
+   *          The milliseconds between ticks of the world, must be positive
+   * @param currentTick
+   *          The tick the world has reached, 0 for a world that has not started
+   * @throws IllegalArgumentException
+   *           if the tick rate is not positive
+   */
+  synchronized void restart(long tickRateMillis, long currentTick) {
+    if (tickRateMillis < 1) {
+      throw new IllegalArgumentException("tickRateMillis must be positive");
+    }
+    f_generation++;
+    f_tickRateNanos = TimeUnit.MILLISECONDS.toNanos(tickRateMillis);
+    f_nextTick = System.nanoTime() + f_tickRateNanos;
+    f_numTicks = currentTick;
+    f_firstTick = currentTick;
+    f_skippedTicks = 0;
+    f_overruns = 0;
+    f_lastDurationNanos = 0;
+    f_maxDurationNanos = 0;
+    f_totalDurationNanos = 0;
+    f_lastLagNanos = 0;
+    f_maxLagNanos = 0;
+    scheduleWakeUp();
+  }
+
+  private void scheduleWakeUp() {
+    if (f_executor == null || f_tickRateNanos == 0) {
+      return;
+    }
+    if (f_wakeUp != null) {
+      f_wakeUp.cancel(false);
+    }
+    try {
+      f_wakeUp = f_executor.schedule(this::wakeUp, Math.max(0, f_nextTick - System.nanoTime()),
+          TimeUnit.NANOSECONDS);
+    } catch (final RejectedExecutionException e) {
+      // Stopped
+    }
+  }
+
+  /**
+   * Tick the world on a thread of this timer's own until {@link #stop()} is called
+   */
+  synchronized void start() {
+    if (f_executor != null) {
+      throw new IllegalStateException("The timer has already been started");
+    }
+    f_executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      final Thread thread = new Thread(runnable, "World timer");
+      thread.setDaemon(true);
+      return thread;
+    });
+    scheduleWakeUp();
+  }
+
+  /**
+   * Stop ticking the world on this timer's thread, at the conclusion of the current tick if running
+   */
+  synchronized void stop() {
+    if (f_executor != null) {
+      // A scheduled executor still runs delayed tasks after shutdown unless they are cancelled
+      if (f_wakeUp != null) {
+        f_wakeUp.cancel(false);
+      }
+      f_executor.shutdown();
+    }
+  }
+
+  /**
+   * Run the next tick if it is due. Ticks that are overdue beyond it are skipped or left for the
+   * following calls according to the policy.
+   *
+   * @param now
+   *          The current {@link System#nanoTime()}
+   * @return true if a tick ran
+   */
+  boolean tickIfDue(long now) {
+    final long numTicks;
+    final long lag;
+    final int generation;
+    synchronized (this) {
+      if (f_tickRateNanos == 0 || now < f_nextTick) {
+        return false;
+      }
+      final long skipped = f_policy.ticksToSkip((now - f_nextTick) / f_tickRateNanos + 1);
+      f_skippedTicks += skipped;
+      f_nextTick += skipped * f_tickRateNanos;
+      lag = now - f_nextTick;
+      f_nextTick += f_tickRateNanos;
+      numTicks = ++f_numTicks;
+      generation = f_generation;
+    }
+    // The world is ticked outside this monitor, as loading a new world restarts the timer. The
+    // tick is dropped if a new world was loaded while it waited for the world lock.
+    final long start = System.nanoTime();
+    if (!f_controller.tick(numTicks, () -> isGeneration(generation))) {
+      return false;
+    }
+    final long duration = System.nanoTime() - start;
+    synchronized (this) {
+      if (generation == f_generation) {
+        if (duration > f_tickRateNanos) {
+          f_overruns++;
+        }
+        f_lastDurationNanos = duration;
+        f_maxDurationNanos = Math.max(f_maxDurationNanos, duration);
+        f_totalDurationNanos += duration;
+        f_lastLagNanos = lag;
+        f_maxLagNanos = Math.max(f_maxLagNanos, lag);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @param generation
+   *          The generation a tick was counted in
+   * @return true if the timer has not been restarted for another world since
+   */
+  synchronized boolean isGeneration(int generation) {
+    return generation == f_generation;
+  }
+
+  private void wakeUp() {
+    tickIfDue(System.nanoTime());
+    synchronized (this) {
+      scheduleWakeUp();
+    }
+  }
 }
@@ -0,0 +1,78 @@
+package pavlik.john.dungeoncrawl.controller;
+
+/**
+ * A {@link Result} together with the reason for it, such as the name of the item an action failed
+ * on. Outcomes never change, so one can be handed to any thread.
+ *
+ * @author John
+ *
+ */
+public final class Outcome {
+
+  private static final Outcome[] PLAIN = new Outcome[Result.values().length];
+
+  static {
+    for (final Result result : Result.values()) {
+      PLAIN[result.ordinal()] = new Outcome(result, null);
+    }
+  }
+
+  private final Result f_result;
+  private final String f_reason;
+
+  private Outcome(Result result, String reason) {
+    f_result = result;
+    f_reason = reason;
+  }
+
+  /**
+   * Get the outcome of a result without a reason
+   *
+   * @param result
+   *          The result
+   * @return the shared outcome of that result
+   */
+  public static Outcome of(Result result) {
+    if (result == null) {
+      throw new NullPointerException("Result cannot be null");
+    }
+    return PLAIN[result.ordinal()];
+  }
+
+  /**
+   * Make the outcome of a result with a reason
+   *
+   * @param result
+   *          The result
+   * @param reason
+   *          The reason for the result
+   * @return a new outcome
+   */
+  static Outcome of(Result result, String reason) {
+    if (result == null) {
+      throw new NullPointerException("Result cannot be null");
+    }
+    return new Outcome(result, reason);
+  }
+
+  /**
+   * @return the result
+   */
+  public Result getResult() {
+    return f_result;
+  }
+
+  /**
+   * Get the reason for the result, such as the name of the item the action failed on
+   *
+   * @return the reason, or null if none was given
+   */
+  public String getReason() {
+    return f_reason;
+  }
+
+  @Override
+  public String toString() {
+    return f_reason == null ? f_result.toString() : f_result + " (" + f_reason + ")";
+  }
+}
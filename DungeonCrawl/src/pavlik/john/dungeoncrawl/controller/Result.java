@@ -51,26 +51,15 @@ public enum Result {
    * Used if an item is attempted to be used that has a limited amount of uses
    */
   ITEM_CONSUMED;
-  String itemFailure = null;
 
   /**
-   * Get the item that the synthesis failed on
+   * Pair this result with the reason for it, such as the name of the item the action failed on
    *
-   * @return the name of the item
+   * @param reason
+   *          The reason for the result
+   * @return a new {@link Outcome}, this constant is left unchanged
    */
-  public String getReason() {
-    return itemFailure;
-  }
-
-  /**
-   * Set the name of the item the synthesis failed on
-   *
-   * @param name
-   *          The name of the item
-   * @return this SynthesisFailed enum
-   */
-  public Result setReason(String name) {
-    itemFailure = name;
-    return this;
+  public Outcome withReason(String reason) {
+    return Outcome.of(this, reason);
   }
 }
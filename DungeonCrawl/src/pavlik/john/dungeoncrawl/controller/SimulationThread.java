@@ -0,0 +1,111 @@
+package pavlik.john.dungeoncrawl.controller;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * The single thread that changes a world when its {@link Controller} queues commands. Commands are
+ * applied one at a time in the order they were submitted, and the world tick runs between them when
+ * it is due, so no command ever waits on a lock held by another and every tick sees the same
+ * sequence of commands before it.
+ *
+ * @author John
+ */
+final class SimulationThread extends Thread {
+
+  /**
+   * A command waiting to be applied, with the future that receives its result
+   */
+  private static final class QueuedCommand<T> {
+    private final Supplier<T>          f_command;
+    private final CompletableFuture<T> f_result = new CompletableFuture<>();
+
+    QueuedCommand(Supplier<T> command) {
+      f_command = command;
+    }
+
+    void run() {
+      try {
+        f_result.complete(f_command.get());
+      } catch (final RuntimeException e) {
+        f_result.completeExceptionally(e);
+      }
+    }
+  }
+
+  private final ControllerTimer                  f_timer;
+  private final BlockingQueue<QueuedCommand<?>> f_commands = new LinkedBlockingQueue<>();
+  private volatile boolean                       f_finished = false;
+
+  /**
+   * Package constructor
+   *
+   * @param timer
+   *          The timer that decides when the world is ticked
+   */
+  SimulationThread(ControllerTimer timer) {
+    super("Simulation");
+    f_timer = timer;
+    setDaemon(true);
+  }
+
+  /**
+   * Stop applying commands. Commands still queued are cancelled.
+   */
+  void finish() {
+    f_finished = true;
+    interrupt();
+  }
+
+  @Override
+  public void run() {
+    while (!f_finished) {
+      final long now = System.nanoTime();
+      final long wait = f_timer.nanosUntilDue(now);
+      if (wait <= 0) {
+        f_timer.tickIfDue(now);
+        continue;
+      }
+      try {
+        final QueuedCommand<?> command = f_commands.poll(wait, TimeUnit.NANOSECONDS);
+        if (command != null) {
+          command.run();
+        }
+      } catch (final InterruptedException e) {
+        // Checks whether finished
+      }
+    }
+    QueuedCommand<?> command;
+    while ((command = f_commands.poll()) != null) {
+      command.f_result.completeExceptionally(new CancellationException("The world was stopped"));
+    }
+  }
+
+  /**
+   * Queue a command to be applied after those already waiting. A command submitted from this
+   * thread, by a command that is being applied, runs immediately instead.
+   *
+   * @param command
+   *          The command to apply
+   * @return a future that completes with the command's result once it has been applied
+   */
+  <T> CompletableFuture<T> submit(Supplier<T> command) {
+    final QueuedCommand<T> queued = new QueuedCommand<>(command);
+    if (Thread.currentThread() == this) {
+      queued.run();
+    } else if (f_finished) {
+      queued.f_result.completeExceptionally(new CancellationException("The world was stopped"));
+    } else {
+      f_commands.add(queued);
+      if (f_finished && f_commands.remove(queued)) {
+        // Stopped while this was being added, so the thread may have already cancelled the rest
+        queued.f_result.completeExceptionally(new CancellationException("The world was stopped"));
+      }
+    }
+    return queued.f_result;
+  }
+}
@@ -0,0 +1,75 @@
+package pavlik.john.dungeoncrawl.controller;
+
+import java.util.Locale;
+
+/**
+ * What the world timer does about ticks it missed because earlier ticks, or the machine, ran late.
+ * The policy is chosen when the JVM starts through the {@value #POLICY_PROPERTY} system property,
+ * e.g. <code>-Ddungeoncrawl.tick.policy=skip</code>, and defaults to {@link #CATCH_UP}.
+ *
+ * @author John
+ */
+public enum TickPolicy {
+  /**
+   * Run missed ticks back to back until the world is on schedule again, so the world keeps pace with
+   * the clock. If it falls more than {@link #MAX_CATCH_UP_TICKS} behind, the oldest are skipped.
+   */
+  CATCH_UP,
+  /**
+   * Skip missed ticks and run the next one at the following scheduled time, so the world slows
+   * down rather than bursting.
+   */
+  SKIP;
+
+  /**
+   * The most ticks the {@link #CATCH_UP} policy runs back to back before skipping the rest
+   */
+  public static final int    MAX_CATCH_UP_TICKS = 10;
+
+  /**
+   * Name of the system property that selects the tick policy
+   */
+  public static final String POLICY_PROPERTY    = "dungeoncrawl.tick.policy";
+
+  /**
+   * Find the policy with the given name, ignoring case and treating '-' as '_'.
+   *
+   * @param name
+   *          The name of a policy, such as "skip" or "catch-up"
+   * @return the matching TickPolicy, or {@link #CATCH_UP} if name is null or unknown
+   */
+  public static TickPolicy fromName(String name) {
+    if (name != null) {
+      final String normalized = name.trim().toUpperCase(Locale.ENGLISH).replace('-', '_');
+      for (final TickPolicy policy : values()) {
+        if (policy.name().equals(normalized)) {
+          return policy;
+        }
+      }
+    }
+    return CATCH_UP;
+  }
+
+  /**
+   * Get the policy selected by the {@value #POLICY_PROPERTY} system property
+   *
+   * @return the selected TickPolicy, or {@link #CATCH_UP} if none was selected
+   */
+  public static TickPolicy fromSystemProperty() {
+    return fromName(System.getProperty(POLICY_PROPERTY));
+  }
+
+  /**
+   * How many of the ticks that are overdue to skip
+   *
+   * @param overdue
+   *          The number of scheduled ticks whose time has passed, at least 1
+   * @return the number to skip, leaving at least one to run now
+   */
+  long ticksToSkip(long overdue) {
+    if (this == SKIP) {
+      return overdue - 1;
+    }
+    return Math.max(0, overdue - MAX_CATCH_UP_TICKS);
+  }
+}
@@ -0,0 +1,101 @@
+package pavlik.john.dungeoncrawl.controller;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A snapshot of how well the world timer has kept to its schedule since the world was loaded. Lag
+ * is how long after its scheduled time a tick started; an overrun is a tick that took longer than
+ * the tick rate to run.
+ *
+ * @author John
+ */
+public final class TickStatistics {
+
+  private final long f_ticks;
+  private final long f_skippedTicks;
+  private final long f_overruns;
+  private final long f_lastDurationNanos;
+  private final long f_maxDurationNanos;
+  private final long f_totalDurationNanos;
+  private final long f_lastLagNanos;
+  private final long f_maxLagNanos;
+
+  TickStatistics(long ticks, long skippedTicks, long overruns, long lastDurationNanos, long maxDurationNanos,
+      long totalDurationNanos, long lastLagNanos, long maxLagNanos) {
+    f_ticks = ticks;
+    f_skippedTicks = skippedTicks;
+    f_overruns = overruns;
+    f_lastDurationNanos = lastDurationNanos;
+    f_maxDurationNanos = maxDurationNanos;
+    f_totalDurationNanos = totalDurationNanos;
+    f_lastLagNanos = lastLagNanos;
+    f_maxLagNanos = maxLagNanos;
+  }
+
+  /**
+   * @return the mean time taken by a tick in nanoseconds, 0 if none has run
+   */
+  public long getAverageDurationNanos() {
+    return f_ticks == 0 ? 0 : f_totalDurationNanos / f_ticks;
+  }
+
+  /**
+   * @return the time taken by the most recent tick in nanoseconds
+   */
+  public long getLastDurationNanos() {
+    return f_lastDurationNanos;
+  }
+
+  /**
+   * @return how late the most recent tick started in nanoseconds
+   */
+  public long getLastLagNanos() {
+    return f_lastLagNanos;
+  }
+
+  /**
+   * @return the longest time taken by any tick in nanoseconds
+   */
+  public long getMaxDurationNanos() {
+    return f_maxDurationNanos;
+  }
+
+  /**
+   * @return the latest any tick started in nanoseconds
+   */
+  public long getMaxLagNanos() {
+    return f_maxLagNanos;
+  }
+
+  /**
+   * @return the number of ticks that took longer than the tick rate
+   */
+  public long getOverruns() {
+    return f_overruns;
+  }
+
+  /**
+   * @return the number of scheduled ticks that were skipped rather than run
+   */
+  public long getSkippedTicks() {
+    return f_skippedTicks;
+  }
+
+  /**
+   * @return the number of ticks that have run
+   */
+  public long getTicks() {
+    return f_ticks;
+  }
+
+  private static String millis(long nanos) {
+    return String.format("%.3fms", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+  }
+
+  @Override
+  public String toString() {
+    return f_ticks + " ticks (" + f_skippedTicks + " skipped, " + f_overruns + " overran), duration last "
+        + millis(f_lastDurationNanos) + " mean " + millis(getAverageDurationNanos()) + " max "
+        + millis(f_maxDurationNanos) + ", lag last " + millis(f_lastLagNanos) + " max " + millis(f_maxLagNanos);
+  }
+}
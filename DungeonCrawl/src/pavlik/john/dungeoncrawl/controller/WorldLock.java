@@ -0,0 +1,162 @@
+package pavlik.john.dungeoncrawl.controller;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+import pavlik.john.dungeoncrawl.model.Character;
+import pavlik.john.dungeoncrawl.model.Place;
+
+/**
+ * The locks that keep concurrent commands on one world consistent. A command that only changes the
+ * contents of a few places, and the characters and items in them, holds the world lock shared and
+ * locks just those places, so commands in different places run in parallel. Anything that may reach
+ * further, such as the world tick or an event trigger, holds the world lock exclusively and runs
+ * alone.
+ * <p>
+ * Locks are always taken in the same order, the world lock first and then places sorted by name,
+ * so commands cannot deadlock. The world lock cannot be upgraded: a thread that holds any place
+ * lock must not ask for the world exclusively.
+ *
+ * @author John
+ */
+final class WorldLock {
+
+  /**
+   * An action without a result that may fail with a checked exception
+   */
+  @FunctionalInterface
+  interface Action<E extends Exception> {
+    void run() throws E;
+  }
+
+  private final ReentrantReadWriteLock              f_worldLock  = new ReentrantReadWriteLock();
+  private final ConcurrentMap<String, ReentrantLock> f_placeLocks = new ConcurrentHashMap<>();
+
+  /**
+   * Run an action that may change any part of the world, while no other command runs
+   *
+   * @param action
+   *          The action to run
+   * @return the result of the action
+   * @throws IllegalStateException
+   *           if the current thread already holds the world lock shared
+   */
+  <T> T exclusive(Supplier<T> action) {
+    if (f_worldLock.getReadHoldCount() > 0 && !f_worldLock.isWriteLockedByCurrentThread()) {
+      throw new IllegalStateException("The world lock cannot be upgraded from shared to exclusive");
+    }
+    f_worldLock.writeLock().lock();
+    try {
+      return action.get();
+    } finally {
+      f_worldLock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Run an action that may change any part of the world, while no other command runs
+   *
+   * @param action
+   *          The action to run
+   * @throws E
+   *           if the action fails
+   * @throws IllegalStateException
+   *           if the current thread already holds the world lock shared
+   */
+  <E extends Exception> void exclusive(Action<E> action) throws E {
+    if (f_worldLock.getReadHoldCount() > 0 && !f_worldLock.isWriteLockedByCurrentThread()) {
+      throw new IllegalStateException("The world lock cannot be upgraded from shared to exclusive");
+    }
+    f_worldLock.writeLock().lock();
+    try {
+      action.run();
+    } finally {
+      f_worldLock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Forget the locks of every place, for when a new world replaces the old one. Must be called
+   * while holding the world lock exclusively.
+   */
+  void clearPlaces() {
+    if (!f_worldLock.isWriteLockedByCurrentThread()) {
+      throw new IllegalStateException("The world lock must be held exclusively to clear place locks");
+    }
+    f_placeLocks.clear();
+  }
+
+  private ReentrantLock[] lockPlaces(Place[] places) {
+    final Place[] sorted = places.clone();
+    Arrays.sort(sorted);
+    final ReentrantLock[] locks = new ReentrantLock[sorted.length];
+    int count = 0;
+    for (int i = 0; i < sorted.length; i++) {
+      if (i > 0 && sorted[i].equals(sorted[i - 1])) {
+        continue;
+      }
+      final ReentrantLock lock = f_placeLocks.computeIfAbsent(sorted[i].getName().toUpperCase(),
+          key -> new ReentrantLock());
+      lock.lock();
+      locks[count++] = lock;
+    }
+    return Arrays.copyOf(locks, count);
+  }
+
+  /**
+   * Run an action that only reads or changes the place a character is in and the given places. If
+   * the character moves before its place is locked, the locks are taken again around its new place.
+   *
+   * @param character
+   *          The character the action is for
+   * @param action
+   *          The action to run
+   * @param otherPlaces
+   *          Any other places the action reads or changes
+   * @return the result of the action
+   */
+  <T> T aroundCharacter(Character character, Supplier<T> action, Place... otherPlaces) {
+    Objects.requireNonNull(character, "character cannot be null");
+    f_worldLock.readLock().lock();
+    try {
+      while (true) {
+        final Place location = character.getLocation();
+        final Place[] places = Arrays.copyOf(otherPlaces, otherPlaces.length + 1);
+        places[otherPlaces.length] = location;
+        final ReentrantLock[] locks = lockPlaces(places);
+        try {
+          if (character.getLocation() == location) {
+            return action.get();
+          }
+        } finally {
+          for (int i = locks.length - 1; i >= 0; i--) {
+            locks[i].unlock();
+          }
+        }
+      }
+    } finally {
+      f_worldLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Run an action that only reads the world, alongside other commands that change single places
+   *
+   * @param action
+   *          The action to run
+   * @return the result of the action
+   */
+  <T> T shared(Supplier<T> action) {
+    f_worldLock.readLock().lock();
+    try {
+      return action.get();
+    } finally {
+      f_worldLock.readLock().unlock();
+    }
+  }
+}
@@ -7,10 +7,10 @@ import java.util.LinkedList;
 import java.util.Objects;
 import java.util.ResourceBundle;
 import java.util.Set;
+import java.util.SplittableRandom;
 
 import pavlik.john.dungeoncrawl.model.Consumable.EffectType;
 import pavlik.john.dungeoncrawl.model.events.State;
-import pavlik.john.dungeoncrawl.model.events.Trigger;
 import pavlik.john.dungeoncrawl.model.events.triggers.AttackedTrigger;
 import pavlik.john.dungeoncrawl.properties.Messages;
 import pavlik.john.dungeoncrawl.view.TextUtilities;
@@ -47,6 +47,10 @@ public abstract class Character implements HasContainer, Serializable {
    * The character's name
    */
   private final String      f_name;
+  /**
+   * The id given by the {@link Universe} this was created in, see {@link #getId()}
+   */
+  private int               f_id = Universe.NO_ID;
   /**
    * The character's article
    */
@@ -67,9 +71,32 @@ public abstract class Character implements HasContainer, Serializable {
   private Character         f_currentTarget;
   protected int             f_currentHealth;
   private boolean           f_isConscious    = true;
-  private int               unconsciousTime;
   private final Place       f_respawnLocation;
 
+  /**
+   * The value of a timer tick below when that behaviour is not scheduled
+   */
+  static final long         NOT_SCHEDULED    = -1;
+  /**
+   * The ticks between health regeneration pulses
+   */
+  static final int          REGEN_TICKS      = 15;
+  /*
+   * The ticks at which this character's timed behaviour is next due, each scheduled on the world's
+   * timing wheel. A wheel event that finds a later tick here has been superseded and does nothing.
+   */
+  private long              f_attackTick     = NOT_SCHEDULED;
+  private long              f_regenTick      = NOT_SCHEDULED;
+  private long              f_recoveryTick   = NOT_SCHEDULED;
+  private long              f_countdownTick  = NOT_SCHEDULED;
+
+  /**
+   * Rolls this character's attacks and heals. Every character has a generator of its own, derived
+   * from the world's seed and its id, so characters ticked in parallel share nothing and a world
+   * loaded with the same seed rolls the same numbers. See {@link Universe#setRandomSeed(long)}.
+   */
+  private transient SplittableRandom f_random;
+
   /**
    * Constructs a new character.
    *
@@ -118,6 +145,7 @@ public abstract class Character implements HasContainer, Serializable {
       f_currentHealth = 0;
       setUnconscious(cause);
     }
+    scheduleTick();
   }
 
   /**
@@ -129,6 +157,10 @@ public abstract class Character implements HasContainer, Serializable {
    */
   public void changeMoney(int coins) {
     f_money += coins;
+    final IWorldJournal journal = f_world.getJournal();
+    if (journal != null) {
+      journal.moneyChanged(this);
+    }
   }
 
   /**
@@ -142,7 +174,11 @@ public abstract class Character implements HasContainer, Serializable {
   @Override
   public boolean equals(Object obj) {
     if (obj instanceof Character) {
-      return f_name.equals(((Character) obj).f_name);
+      final Character other = (Character) obj;
+      if (f_id != Universe.NO_ID && other.f_id != Universe.NO_ID && f_world == other.f_world) {
+        return f_id == other.f_id;
+      }
+      return f_name.equals(other.f_name);
     }
     return super.equals(obj);
   }
@@ -257,7 +293,9 @@ public abstract class Character implements HasContainer, Serializable {
             if (targetList.addAll(getCharactersTargeting(target))) {
               done = false;
             }
-            if (target.getCurrentTarget() != null && targetList.add(target.getCurrentTarget())) {
+            // A fight in another place is not part of this group
+            final Character next = target.getCurrentTarget();
+            if (next != null && next.getLocation() == f_location && targetList.add(next)) {
               done = false;
             }
           }
@@ -330,6 +368,23 @@ public abstract class Character implements HasContainer, Serializable {
     return f_money;
   }
 
+  /**
+   * Get the id of this character, which is dense among the characters of the {@link Universe} it was
+   * created in, so it can index an array
+   *
+   * @return the id, or {@link Universe#NO_ID} if it has not been added to a world
+   */
+  public int getId() {
+    return f_id;
+  }
+
+  void setId(int id) {
+    if (f_id != Universe.NO_ID) {
+      throw new IllegalStateException(this + " already has id " + f_id);
+    }
+    f_id = id;
+  }
+
   /**
    * Gets the unique identifier of the character.
    *
@@ -339,6 +394,16 @@ public abstract class Character implements HasContainer, Serializable {
     return f_name;
   }
 
+  /**
+   * @return the generator that rolls this character's attacks and heals
+   */
+  SplittableRandom getRandom() {
+    if (f_random == null) {
+      f_random = f_world.createRandom(f_id);
+    }
+    return f_random;
+  }
+
   /**
    * Get the respawn location for this character
    *
@@ -358,11 +423,32 @@ public abstract class Character implements HasContainer, Serializable {
     return getArticle() + (getArticle().length() > 0 ? " " : "") + getName();
   }
 
+  /**
+   * @return the world this character was created in
+   */
+  Universe getWorld() {
+    return f_world;
+  }
+
   @Override
   public int hashCode() {
     return f_name.hashCode();
   }
 
+  private boolean needsRegen() {
+    return f_isConscious && f_class != null && f_currentHealth < f_class.getMaxHealth();
+  }
+
+  /**
+   * Whether this character has anything scheduled for a future tick: fighting, regenerating health or
+   * recovering from being knocked out. The world only ticks characters that do.
+   *
+   * @return true if a future tick may change this character
+   */
+  public boolean needsTick() {
+    return f_attackTick != NOT_SCHEDULED || f_regenTick != NOT_SCHEDULED || f_recoveryTick != NOT_SCHEDULED;
+  }
+
   /**
    * Check if this character is in combat
    *
@@ -381,6 +467,79 @@ public abstract class Character implements HasContainer, Serializable {
     return f_isConscious;
   }
 
+  /**
+   * Overwrite the class of this character without scheduling anything. Used by a
+   * {@link UniverseMirror} for a character that is simulated elsewhere.
+   *
+   * @param characterClass
+   *          The class of the character
+   */
+  void mirrorCharacterClass(CharacterClass characterClass) {
+    f_class = characterClass;
+    f_currentHealth = characterClass.getMaxHealth();
+  }
+
+  /**
+   * Move this character without journaling it. Used by a {@link UniverseMirror} for a character
+   * that is simulated elsewhere.
+   *
+   * @param place
+   *          The place where the character is
+   */
+  void mirrorLocation(Place place) {
+    f_location.removeCharacter(this);
+    place.addCharacter(this);
+    f_location = place;
+  }
+
+  /**
+   * Overwrite the money of this character without journaling it. Used by a {@link UniverseMirror}
+   * for a character that is simulated elsewhere.
+   *
+   * @param money
+   *          The money the character has
+   */
+  void mirrorMoney(int money) {
+    f_money = money;
+  }
+
+  /**
+   * Overwrite the health and consciousness of this character without any of the side effects of
+   * combat. Used by a {@link UniverseMirror} for a character that is simulated elsewhere.
+   *
+   * @param currentHealth
+   *          The current health of the character
+   * @param conscious
+   *          Whether the character is conscious
+   */
+  void mirrorState(int currentHealth, boolean conscious) {
+    f_currentHealth = currentHealth;
+    f_isConscious = conscious;
+  }
+
+  /**
+   * Overwrite the target of this character without scheduling any attack. Used by a
+   * {@link UniverseMirror} for a character that is simulated elsewhere.
+   *
+   * @param target
+   *          The character being attacked, or null if none is
+   */
+  void mirrorTarget(Character target) {
+    f_currentTarget = target;
+    f_inCombat = target != null;
+  }
+
+  /**
+   * Overwrite the weapon of this character without journaling it or telling observers. Used by a
+   * {@link UniverseMirror} for a character that is simulated elsewhere.
+   *
+   * @param weapon
+   *          The equipped weapon, or null if none is
+   */
+  void mirrorWeapon(Weapon weapon) {
+    f_currentWeapon = weapon;
+  }
+
   /**
    * Simple utility check to see if another player is in the same place as this player.
    *
@@ -401,16 +560,73 @@ public abstract class Character implements HasContainer, Serializable {
   public void setCharacterClass(CharacterClass characterClass) {
     f_class = new CharacterClass(characterClass);
     f_currentHealth = f_class.getMaxHealth();
+    scheduleTick();
+  }
+
+  /**
+   * Schedule a tick of this character on the world's timing wheel
+   *
+   * @param tick
+   *          The tick at which {@link #tickAction(long)} should be called
+   */
+  void scheduleAt(long tick) {
+    f_world.scheduleTick(this, tick);
+  }
+
+  /**
+   * Schedule whatever this character now has to do in future ticks. Called whenever the state that
+   * timed behaviour depends on changes.
+   */
+  void scheduleTick() {
+    scheduleTimers(f_world.getCurrentTick());
+  }
+
+  /**
+   * Schedule each timed behaviour that is called for and not already scheduled
+   *
+   * @param now
+   *          The current tick
+   */
+  void scheduleTimers(long now) {
+    if (f_inCombat && f_attackTick == NOT_SCHEDULED) {
+      final Weapon weapon = getCurrentWeapon();
+      f_attackTick = now + Math.max(1, weapon == null ? 1 : weapon.ticksRemaining(now));
+      scheduleAt(f_attackTick);
+    }
+    if (needsRegen() && f_regenTick == NOT_SCHEDULED) {
+      f_regenTick = (now / REGEN_TICKS + 1) * REGEN_TICKS;
+      scheduleAt(f_regenTick);
+    }
+    if (!f_isConscious && f_class != null && f_class.getKORecovery() >= 0 && f_recoveryTick == NOT_SCHEDULED) {
+      f_recoveryTick = now + f_class.getKORecovery();
+      scheduleAt(f_recoveryTick);
+      // Only players are shown the countdown, so only they need a tick for every step of it
+      if (this instanceof Player && f_recoveryTick > now + 1) {
+        f_countdownTick = now + 1;
+        scheduleAt(f_countdownTick);
+      }
+    }
+  }
+
+  /**
+   * Forget the generator of random numbers, so the next roll starts the sequence of the world's
+   * current seed
+   */
+  void resetRandom() {
+    f_random = null;
   }
 
   private void setConscious() {
     f_isConscious = true;
     if (getRespawnLocation() != null) {
-      final Place previousLocation = getLocation();
-      setLocation(getRespawnLocation());
-      f_world.characterRespawned(this, previousLocation, getLocation());
+      f_world.runBeyondPlace(() -> {
+        final Place previousLocation = getLocation();
+        setLocation(getRespawnLocation());
+        f_world.characterRespawned(this, previousLocation, getLocation());
+      });
     }
     f_world.characterWokeUp(this);
+    scheduleTick();
   }
 
   private void setCurrentTarget(Character target) {
@@ -427,11 +643,16 @@ public abstract class Character implements HasContainer, Serializable {
    */
   public void setCurrentWeapon(Weapon weapon) {
     f_currentWeapon = weapon;
+    final IWorldJournal journal = f_world.getJournal();
+    if (journal != null) {
+      journal.weaponChanged(this);
+    }
     f_world.characterEquippedWeapon(this, weapon);
   }
 
   private void setInCombat(boolean b) {
     f_inCombat = b;
+    scheduleTick();
   }
 
   /**
@@ -449,6 +670,10 @@ public abstract class Character implements HasContainer, Serializable {
     f_location.removeCharacter(this);
     place.addCharacter(this);
     f_location = place;
+    final IWorldJournal journal = f_world.getJournal();
+    if (journal != null) {
+      journal.locationChanged(this);
+    }
   }
 
   /**
@@ -469,6 +694,10 @@ public abstract class Character implements HasContainer, Serializable {
       f_world.characterDroppedItem(this, item, 0);
     }
     f_currentWeapon = null;
+    final IWorldJournal journal = f_world.getJournal();
+    if (journal != null) {
+      journal.weaponChanged(this);
+    }
     final int money = getMoney();
     if (money > 0) {
       causeCharacter.changeMoney(money);
@@ -478,6 +707,7 @@ public abstract class Character implements HasContainer, Serializable {
     f_world.characterKOCharacter(getCurrentTarget(), this);
 
     causeCharacter.disengageCombat();
+    scheduleTick();
   }
 
   /**
@@ -492,28 +722,37 @@ public abstract class Character implements HasContainer, Serializable {
   }
 
   /**
-   * Notify the character that time has passed in the world
+   * Notify the character that time has passed in the world. Runs whatever of its timed behaviour is
+   * due by this tick, and schedules what comes next.
    *
    * @param numTicks
    *          The number of ticks that have passed since the world was started
    */
   public void tickAction(long numTicks) {
-    if (inCombat() && getCurrentWeapon() != null && getCurrentWeapon().canUseItem(numTicks)) {
-      useItem(getCurrentWeapon(), getCurrentTarget());
+    if (f_attackTick != NOT_SCHEDULED && f_attackTick <= numTicks) {
+      f_attackTick = NOT_SCHEDULED;
+      if (inCombat() && getCurrentWeapon() != null && getCurrentWeapon().canUseItem(numTicks)) {
+        useItem(getCurrentWeapon(), getCurrentTarget());
+      }
     }
-    if (isConscious() && (numTicks % 15) == 0 && getCharacterClass() != null
-        && getCurrentHealth() < getCharacterClass().getMaxHealth()) {
-      changeHealth(this, getCharacterClass().getHealthRegen());
+    if (f_regenTick != NOT_SCHEDULED && f_regenTick <= numTicks) {
+      f_regenTick = NOT_SCHEDULED;
+      if (needsRegen()) {
+        changeHealth(this, getCharacterClass().getHealthRegen());
+      }
     }
-    if (!isConscious() && f_class.getKORecovery() >= 0) {
-      unconsciousTime++;
-      if (unconsciousTime >= f_class.getKORecovery()) {
-        unconsciousTime = 0;
-        setConscious();
-      } else if (f_class.getKORecovery() >= 0) {
-        f_world.characterKOCountdown(this, f_class.getKORecovery() - unconsciousTime);
+    if (f_recoveryTick != NOT_SCHEDULED && f_recoveryTick <= numTicks) {
+      f_recoveryTick = NOT_SCHEDULED;
+      f_countdownTick = NOT_SCHEDULED;
+      setConscious();
+    } else if (f_countdownTick != NOT_SCHEDULED && f_countdownTick <= numTicks) {
+      f_world.characterKOCountdown(this, (int) (f_recoveryTick - numTicks));
+      f_countdownTick = numTicks + 1 < f_recoveryTick ? numTicks + 1 : NOT_SCHEDULED;
+      if (f_countdownTick != NOT_SCHEDULED) {
+        scheduleAt(f_countdownTick);
       }
     }
+    scheduleTimers(numTicks);
   }
 
   @Override
@@ -526,6 +765,10 @@ public abstract class Character implements HasContainer, Serializable {
    */
   public void unequip() {
     f_currentWeapon = null;
+    final IWorldJournal journal = f_world.getJournal();
+    if (journal != null) {
+      journal.weaponChanged(this);
+    }
     f_world.characterUnequippedWeapon(this);
   }
 
@@ -545,8 +788,12 @@ public abstract class Character implements HasContainer, Serializable {
       final Character[] targetArray = targetList.toArray(new Character[0]);
       for (final Character target : targetArray) {
         if (target.getLocation() == f_location && target.getCharacterClass() != null) {
-          if (item.hitTarget(target)) {
-            final int effect = item.getEffect();
+          if (item.hitTarget(target, getRandom())) {
+            final int effect = item.getEffect(getRandom());
+            final IWorldJournal journal = f_world.getJournal();
+            if (journal != null && item.getUsesRemaining() >= 0) {
+              journal.usesChanged(item);
+            }
             switch (item.getEffectType()) {
               case DAMAGE:
                 if (target.isConscious()) {
@@ -557,10 +804,8 @@ public abstract class Character implements HasContainer, Serializable {
                   f_world.characterHitsCharacterFor(this, item.getUseString(), target, effect);
                   if (target instanceof NonPlayerCharacter) {
                     final State currentState = ((NonPlayerCharacter) target).getCurrentState();
-                    for (final Trigger trigger : currentState.getEventTriggers()) {
-                      if (trigger instanceof AttackedTrigger) {
-                        trigger.execute(this);
-                      }
+                    for (final AttackedTrigger trigger : currentState.getTriggers(AttackedTrigger.class)) {
+                      f_world.runBeyondPlace(() -> trigger.execute(this));
                     }
                   }
                   target.changeHealth(this, -effect);
@@ -580,10 +825,8 @@ public abstract class Character implements HasContainer, Serializable {
                   target.setCurrentTarget(this);
                   if (target instanceof NonPlayerCharacter) {
                     final State currentState = ((NonPlayerCharacter) target).getCurrentState();
-                    for (final Trigger trigger : currentState.getEventTriggers()) {
-                      if (trigger instanceof AttackedTrigger) {
-                        trigger.execute(this);
-                      }
+                    for (final AttackedTrigger trigger : currentState.getTriggers(AttackedTrigger.class)) {
+                      f_world.runBeyondPlace(() -> trigger.execute(this));
                     }
                   }
                 }
@@ -6,7 +6,7 @@ package pavlik.john.dungeoncrawl.model;
 import java.io.Serializable;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Random;
+import java.util.SplittableRandom;
 
 /**
  * Consumable items
@@ -30,7 +30,6 @@ public class Consumable extends Item {
     int                       f_numDice;
 
     int                       f_numSides;
-    transient Random          random           = new Random();
 
     /**
      * Public constructor
@@ -47,11 +46,23 @@ public class Consumable extends Item {
     }
 
     /**
-     * Get an effect by simulating dice rolls
+     * Get an effect by simulating dice rolls, outside of a world
      *
      * @return The amount of the effect
      */
     public int calculate() {
+      return calculate(new SplittableRandom());
+    }
+
+    /**
+     * Get an effect by simulating dice rolls
+     *
+     * @param random
+     *          The generator to roll the dice with, such as the one of the character using the
+     *          effect
+     * @return The amount of the effect
+     */
+    public int calculate(SplittableRandom random) {
       int effect = 0;
       for (int i = 0; i < f_numDice; i++) {
         effect += random.nextInt(f_numSides) + 1;
@@ -114,7 +125,6 @@ public class Consumable extends Item {
   private final int              f_hitChance;
   private final EffectTarget     f_target;
   private long                   f_lastUseTick;
-  private final transient Random random = new Random();
   private final String           f_hitSound;
   private final String           f_missSound;
 
@@ -157,18 +167,29 @@ public class Consumable extends Item {
   }
 
   /**
-   * Get a new random effect for this consumable. Will consume one use.
+   * Get a new random effect for this consumable, outside of a world. Will consume one use.
    *
    * @return the integer amount of the effect of the consumable
    */
   public int getEffect() {
+    return getEffect(new SplittableRandom());
+  }
+
+  /**
+   * Get a new random effect for this consumable. Will consume one use.
+   *
+   * @param random
+   *          The generator to roll the effect with
+   * @return the integer amount of the effect of the consumable
+   */
+  public int getEffect(SplittableRandom random) {
     if (f_usesRemaining == 0) {
       return 0;
     } else if (f_usesRemaining > 0) {
       f_usesRemaining -= 1;
     }
     // And if f_usesRemaining is negative then assume that means infinity uses
-    return f_effect.calculate();
+    return f_effect.calculate(random);
   }
 
   /**
@@ -269,13 +290,26 @@ public class Consumable extends Item {
   }
 
   /**
-   * See if the hit chance is high enough to hit this target
+   * See if the hit chance is high enough to hit this target, outside of a world
    *
    * @param target
    *          The specified target
    * @return true if the target was hit
    */
   public boolean hitTarget(Character target) {
+    return hitTarget(target, new SplittableRandom());
+  }
+
+  /**
+   * See if the hit chance is high enough to hit this target
+   *
+   * @param target
+   *          The specified target
+   * @param random
+   *          The generator to roll the hit with
+   * @return true if the target was hit
+   */
+  public boolean hitTarget(Character target, SplittableRandom random) {
     return random.nextInt(100) + 1 <= f_hitChance;
   }
 
@@ -290,6 +324,16 @@ public class Consumable extends Item {
     return ticksRemaining(nowTick) == 0;
   }
 
+  /**
+   * Used for persistence, when a journal of the world is replayed
+   *
+   * @param uses
+   *          How many uses remain, negative for unlimited uses
+   */
+  public void setUsesRemaining(int uses) {
+    f_usesRemaining = uses;
+  }
+
   /**
    * Save the last time this weapon has been used
    *
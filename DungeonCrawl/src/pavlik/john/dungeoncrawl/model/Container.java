@@ -19,8 +19,10 @@ public class Container implements Serializable {
   /**
    *
    */
-  private static final long serialVersionUID = 1L;
-  private Set<Item> f_items = null;
+  private static final long      serialVersionUID = 1L;
+  private Set<Item>              f_items          = null;
+  private transient Universe     f_world;
+  private transient HasContainer f_owner;
 
   /**
    * Public constructor that initializes the Map f_items to an empty TreeMap.
@@ -39,7 +41,12 @@ public class Container implements Serializable {
     if (item == null) {
       throw new NullPointerException("item cannot be null");
     }
-    f_items.add(item);
+    if (f_items.add(item) && f_world != null) {
+      final IWorldJournal journal = f_world.getJournal();
+      if (journal != null) {
+        journal.itemAdded(f_owner, item);
+      }
+    }
   }
 
   /**
@@ -74,6 +81,23 @@ public class Container implements Serializable {
     return f_items.contains(optional);
   }
 
+  /**
+   * Add or remove an item without journaling it. Used by a {@link UniverseMirror} for a container
+   * that is simulated elsewhere.
+   *
+   * @param item
+   *          Any non-null item
+   * @param present
+   *          true to add the item, false to remove it
+   */
+  void mirrorItem(Item item, boolean present) {
+    if (present) {
+      f_items.add(item);
+    } else {
+      f_items.remove(item);
+    }
+  }
+
   /**
    * Move an item from this container to destination container
    *
@@ -104,6 +128,29 @@ public class Container implements Serializable {
     if (item == null) {
       throw new NullPointerException("item cannot be null");
     }
-    return (f_items.remove(item) ? item : null);
+    if (!f_items.remove(item)) {
+      return null;
+    }
+    if (f_world != null) {
+      final IWorldJournal journal = f_world.getJournal();
+      if (journal != null) {
+        journal.itemRemoved(f_owner, item);
+      }
+    }
+    return item;
+  }
+
+  /**
+   * Tie this container to the place, character or item that has it, so the changes to it can be
+   * journaled
+   *
+   * @param world
+   *          The world the owner is in
+   * @param owner
+   *          The owner
+   */
+  void setOwner(Universe world, HasContainer owner) {
+    f_world = world;
+    f_owner = owner;
   }
 }
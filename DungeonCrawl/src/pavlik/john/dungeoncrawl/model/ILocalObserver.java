@@ -0,0 +1,23 @@
+package pavlik.john.dungeoncrawl.model;
+
+/**
+ * An observer that only needs to hear about what its player can perceive: events in the place
+ * where the player is, and events that concern the player itself. A {@link Universe} routes events
+ * that happen somewhere to these observers through the players in that place, so an event costs as
+ * much as the number of players who can perceive it. Events that concern the whole world, such as
+ * {@link IModelObserver#worldLoaded(Universe, String)} and {@link IModelObserver#gameOver(Universe)},
+ * still reach every observer.
+ *
+ * @author John
+ */
+public interface ILocalObserver extends IModelObserver {
+
+  /**
+   * The player whose surroundings this observer reports. It is read when the observer is added to a
+   * world, so the world must be told when it changes, see
+   * {@link Universe#observedPlayerChanged(ILocalObserver)}.
+   *
+   * @return the player, or null to hear about every event
+   */
+  Player getObservedPlayer();
+}
@@ -0,0 +1,90 @@
+package pavlik.john.dungeoncrawl.model;
+
+import java.util.Set;
+
+/**
+ * Told of every change to the state of a {@link Universe} that a save keeps, as it is made, so that
+ * a world saved earlier can be brought up to date after a crash. Each change reports the state the
+ * entity was left in. Changes may be reported from the threads of a parallel tick at once. See
+ * {@link Universe#addJournal(IWorldJournal)}.
+ *
+ * @author John
+ */
+public interface IWorldJournal {
+
+  /**
+   * An item was put in a container
+   *
+   * @param owner
+   *          The place, character or item whose container it is
+   * @param item
+   *          The item
+   */
+  void itemAdded(HasContainer owner, Item item);
+
+  /**
+   * An item was taken out of a container
+   *
+   * @param owner
+   *          The place, character or item whose container it is
+   * @param item
+   *          The item
+   */
+  void itemRemoved(HasContainer owner, Item item);
+
+  /**
+   * A character moved to another place
+   *
+   * @param character
+   *          The character, already in its new place
+   */
+  void locationChanged(Character character);
+
+  /**
+   * A character's money changed
+   *
+   * @param character
+   *          The character
+   */
+  void moneyChanged(Character character);
+
+  /**
+   * A player's score changed
+   *
+   * @param player
+   *          The player
+   */
+  void scoreChanged(Player player);
+
+  /**
+   * A character equipped a weapon or put it away
+   *
+   * @param character
+   *          The character
+   */
+  void weaponChanged(Character character);
+
+  /**
+   * An NPC changed state
+   *
+   * @param npc
+   *          The NPC, already in its new state
+   */
+  void stateChanged(NonPlayerCharacter npc);
+
+  /**
+   * A consumable was used up by one use
+   *
+   * @param consumable
+   *          The consumable
+   */
+  void usesChanged(Consumable consumable);
+
+  /**
+   * A recipe was used up by synthesizing its item, see {@link Universe#synthesizeItems(Set)}
+   *
+   * @param ingredients
+   *          The items the recipe combined
+   */
+  void recipeUsed(Set<Item> ingredients);
+}
@@ -46,6 +46,10 @@ public class Item implements Comparable<Item>, HasContainer, Serializable {
    * The item's name, should be a unique identifier among all items.
    */
   private final String             f_name;
+  /**
+   * The id given by the {@link Universe} this was created in, see {@link #getId()}
+   */
+  private int                      f_id = Universe.NO_ID;
   private final String             f_description;
   /**
    * The article for describing this item.
@@ -228,6 +232,23 @@ public class Item implements Comparable<Item>, HasContainer, Serializable {
     return toString() + ": " + getDescription();
   }
 
+  /**
+   * Get the id of this item, which is dense among the items of the {@link Universe} it was
+   * created in, so it can index an array
+   *
+   * @return the id, or {@link Universe#NO_ID} if it has not been added to a world
+   */
+  public int getId() {
+    return f_id;
+  }
+
+  void setId(int id) {
+    if (f_id != Universe.NO_ID) {
+      throw new IllegalStateException(this + " already has id " + f_id);
+    }
+    f_id = id;
+  }
+
   /**
    * Use {@link #toString()} if you want a unique name of the item
    *
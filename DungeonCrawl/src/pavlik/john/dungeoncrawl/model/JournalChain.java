@@ -0,0 +1,81 @@
+package pavlik.john.dungeoncrawl.model;
+
+import java.util.Set;
+
+/**
+ * Tells several journals of each change to a world, in the order they were added to it
+ *
+ * @author John
+ * @see Universe#addJournal(IWorldJournal)
+ */
+final class JournalChain implements IWorldJournal {
+
+  private final IWorldJournal[] f_journals;
+
+  JournalChain(IWorldJournal[] journals) {
+    f_journals = journals;
+  }
+
+  @Override
+  public void itemAdded(HasContainer owner, Item item) {
+    for (final IWorldJournal journal : f_journals) {
+      journal.itemAdded(owner, item);
+    }
+  }
+
+  @Override
+  public void itemRemoved(HasContainer owner, Item item) {
+    for (final IWorldJournal journal : f_journals) {
+      journal.itemRemoved(owner, item);
+    }
+  }
+
+  @Override
+  public void locationChanged(Character character) {
+    for (final IWorldJournal journal : f_journals) {
+      journal.locationChanged(character);
+    }
+  }
+
+  @Override
+  public void moneyChanged(Character character) {
+    for (final IWorldJournal journal : f_journals) {
+      journal.moneyChanged(character);
+    }
+  }
+
+  @Override
+  public void scoreChanged(Player player) {
+    for (final IWorldJournal journal : f_journals) {
+      journal.scoreChanged(player);
+    }
+  }
+
+  @Override
+  public void weaponChanged(Character character) {
+    for (final IWorldJournal journal : f_journals) {
+      journal.weaponChanged(character);
+    }
+  }
+
+  @Override
+  public void stateChanged(NonPlayerCharacter npc) {
+    for (final IWorldJournal journal : f_journals) {
+      journal.stateChanged(npc);
+    }
+  }
+
+  @Override
+  public void usesChanged(Consumable consumable) {
+    for (final IWorldJournal journal : f_journals) {
+      journal.usesChanged(consumable);
+    }
+  }
+
+  @Override
+  public void recipeUsed(Set<Item> ingredients) {
+    for (final IWorldJournal journal : f_journals) {
+      journal.recipeUsed(ingredients);
+    }
+  }
+}
@@ -0,0 +1,312 @@
+package pavlik.john.dungeoncrawl.model;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Predicate;
+
+/**
+ * A case insensitive index of the places, items and characters of a {@link Universe} by name, as
+ * typed by a user. Every name is registered folded with {@link #fold(String)}, alone and after
+ * each of the world's articles, so resolving a noun phrase such as "the  Sword" is a single hash
+ * lookup that finds every entity by that name along with its kind. Names are also kept in order so
+ * that the start of a name can be completed.
+ * <p>
+ * Names are looked up on every command, by many threads at once, so lookups take no lock: the
+ * index is kept in concurrent maps, and an entry's entities are volatile. Only adding names, which
+ * happens as the world is loaded and as players join, is synchronized.
+ *
+ * @author John
+ */
+public final class NameIndex implements Serializable {
+
+  /**
+   * The kinds of entity that can be found by name
+   */
+  public enum Kind {
+    /** A {@link Place} */
+    PLACE,
+    /** An {@link Item} */
+    ITEM,
+    /** A {@link NonPlayerCharacter} */
+    NPC,
+    /** A {@link Player} */
+    PLAYER
+  }
+
+  /**
+   * The entities that share a name, at most one of each kind
+   */
+  public static final class Entry implements Serializable {
+    /**
+     *
+     */
+    private static final long           serialVersionUID = 1L;
+    private final String                f_name;
+    private volatile Place              f_place;
+    private volatile Item               f_item;
+    private volatile NonPlayerCharacter f_npc;
+    private volatile Player             f_player;
+
+    Entry(String name) {
+      f_name = name;
+    }
+
+    /**
+     * @return the entity found, the first there is of a place, an item, an NPC and a player
+     */
+    public Object getEntity() {
+      switch (getKind()) {
+        case PLACE:
+          return f_place;
+        case ITEM:
+          return f_item;
+        case NPC:
+          return f_npc;
+        default:
+          return f_player;
+      }
+    }
+
+    /**
+     * @return the item by this name, or null if there is none
+     */
+    public Item getItem() {
+      return f_item;
+    }
+
+    /**
+     * @return the kind of {@link #getEntity()}
+     */
+    public Kind getKind() {
+      if (f_place != null) {
+        return Kind.PLACE;
+      } else if (f_item != null) {
+        return Kind.ITEM;
+      } else if (f_npc != null) {
+        return Kind.NPC;
+      }
+      return Kind.PLAYER;
+    }
+
+    /**
+     * @return the name as it was first registered, with its original case
+     */
+    public String getName() {
+      return f_name;
+    }
+
+    /**
+     * @return the NPC by this name, or null if there is none
+     */
+    public NonPlayerCharacter getNonPlayerCharacter() {
+      return f_npc;
+    }
+
+    /**
+     * @return the place by this name, or null if there is none
+     */
+    public Place getPlace() {
+      return f_place;
+    }
+
+    /**
+     * @return the player by this name, or null if there is none
+     */
+    public Player getPlayer() {
+      return f_player;
+    }
+
+    /**
+     * @return the entity by this name that holds a container, the first there is of a place, an
+     *         item with a container, an NPC and a player, or null if there is none
+     */
+    HasContainer getContainerHolder() {
+      if (f_place != null) {
+        return f_place;
+      } else if (f_item != null && f_item.getContainer() != null) {
+        return f_item;
+      } else if (f_npc != null) {
+        return f_npc;
+      }
+      return f_player;
+    }
+  }
+
+  /**
+   *
+   */
+  private static final long                           serialVersionUID = 1L;
+
+  /**
+   * Folded names, and folded names following each folded article, to their entries
+   */
+  private final Map<String, Entry>                    f_keyToEntry     = new ConcurrentHashMap<>();
+  /**
+   * Folded names alone, in order for completion
+   */
+  private final ConcurrentSkipListMap<String, Entry>  f_names          = new ConcurrentSkipListMap<>();
+  private final Set<String>                           f_foldedArticles = ConcurrentHashMap.newKeySet();
+
+  /**
+   * Fold a name into the form it is indexed under: upper case, without leading or trailing white
+   * space, and with any run of white space within it replaced by a single space.
+   *
+   * @param name
+   *          The name to fold
+   * @return the folded name
+   */
+  public static String fold(String name) {
+    final String upper = name.trim().toUpperCase();
+    StringBuilder folded = null;
+    boolean space = false;
+    for (int i = 0; i < upper.length(); i++) {
+      final char c = upper.charAt(i);
+      final boolean whitespace = java.lang.Character.isWhitespace(c);
+      if (folded == null && (whitespace && (space || c != ' '))) {
+        folded = new StringBuilder(upper.length()).append(upper, 0, i);
+      }
+      if (folded != null && !(whitespace && space)) {
+        folded.append(whitespace ? ' ' : c);
+      }
+      space = whitespace;
+    }
+    return folded == null ? upper : folded.toString();
+  }
+
+  synchronized void add(Item item) {
+    entry(item.getName()).f_item = item;
+  }
+
+  synchronized void add(NonPlayerCharacter npc) {
+    entry(npc.getName()).f_npc = npc;
+  }
+
+  synchronized void add(Place place) {
+    entry(place.getName()).f_place = place;
+  }
+
+  synchronized void add(Player player) {
+    entry(player.getName()).f_player = player;
+  }
+
+  /**
+   * Register an article that may prefix any name
+   *
+   * @param article
+   *          The article, such as "the"
+   */
+  synchronized void addArticle(String article) {
+    final String folded = fold(article);
+    if (folded.isEmpty() || !f_foldedArticles.add(folded)) {
+      return;
+    }
+    for (final Map.Entry<String, Entry> name : f_names.entrySet()) {
+      f_keyToEntry.putIfAbsent(folded + ' ' + name.getKey(), name.getValue());
+    }
+  }
+
+  /**
+   * Complete the start of a name, for tab completion. An article at the start is left out.
+   *
+   * @param prefix
+   *          The start of a name, ignoring case
+   * @return the names of every entity whose name starts with the prefix, in order, with their
+   *         original case
+   */
+  public List<String> complete(String prefix) {
+    String folded = fold(prefix);
+    final int space = folded.indexOf(' ');
+    if (space > 0 && f_foldedArticles.contains(folded.substring(0, space))) {
+      folded = folded.substring(space + 1);
+    }
+    final List<String> names = new ArrayList<>();
+    for (final Map.Entry<String, Entry> name : f_names.tailMap(folded).entrySet()) {
+      if (!name.getKey().startsWith(folded)) {
+        break;
+      }
+      names.add(name.getValue().f_name);
+    }
+    return names;
+  }
+
+  private Entry entry(String name) {
+    final String folded = fold(name);
+    Entry entry = f_names.get(folded);
+    if (entry == null) {
+      entry = new Entry(name);
+      f_names.put(folded, entry);
+      // A name shadows the same words read as an article and another name
+      f_keyToEntry.put(folded, entry);
+      for (final String article : f_foldedArticles) {
+        f_keyToEntry.putIfAbsent(article + ' ' + folded, entry);
+      }
+    }
+    return entry;
+  }
+
+  HasContainer getContainerHolder(String name) {
+    final Entry entry = resolve(name, e -> e.getContainerHolder() != null);
+    return entry == null ? null : entry.getContainerHolder();
+  }
+
+  Item getItem(String name) {
+    final Entry entry = resolve(name, e -> e.f_item != null);
+    return entry == null ? null : entry.f_item;
+  }
+
+  NonPlayerCharacter getNonPlayerCharacter(String name) {
+    final Entry entry = resolve(name, e -> e.f_npc != null);
+    return entry == null ? null : entry.f_npc;
+  }
+
+  Place getPlace(String name) {
+    final Entry entry = resolve(name, e -> e.f_place != null);
+    return entry == null ? null : entry.f_place;
+  }
+
+  Player getPlayer(String name) {
+    final Entry entry = resolve(name, e -> e.f_player != null);
+    return entry == null ? null : entry.f_player;
+  }
+
+  /**
+   * Resolve a noun phrase typed by a user to the entities it names
+   *
+   * @param phrase
+   *          A name, ignoring case and white space, optionally following an article
+   * @return the entities by that name, or null if there are none
+   * @throws NullPointerException
+   *           if phrase is null
+   */
+  public Entry resolve(String phrase) throws NullPointerException {
+    if (phrase == null) {
+      throw new NullPointerException("name cannot be null");
+    }
+    return f_keyToEntry.get(fold(phrase));
+  }
+
+  /**
+   * Resolve a noun phrase to the entities it names, if they include what is wanted. If they do not,
+   * but the phrase starts with an article, the rest of it is tried too.
+   */
+  private Entry resolve(String phrase, Predicate<Entry> wanted) {
+    final String folded = fold(phrase);
+    Entry entry = f_keyToEntry.get(folded);
+    if (entry != null && !wanted.test(entry)) {
+      entry = null;
+      final int space = folded.indexOf(' ');
+      if (space > 0 && f_foldedArticles.contains(folded.substring(0, space))) {
+        entry = f_keyToEntry.get(folded.substring(space + 1));
+        if (entry != null && !wanted.test(entry)) {
+          entry = null;
+        }
+      }
+    }
+    return entry;
+  }
+}
@@ -7,7 +7,6 @@ import java.util.Objects;
 import java.util.Set;
 
 import pavlik.john.dungeoncrawl.model.events.State;
-import pavlik.john.dungeoncrawl.model.events.Trigger;
 import pavlik.john.dungeoncrawl.model.events.triggers.HealthTrigger;
 import pavlik.john.dungeoncrawl.model.events.triggers.SayTrigger;
 import pavlik.john.dungeoncrawl.model.events.triggers.TimeTrigger;
@@ -28,6 +27,10 @@ public class NonPlayerCharacter extends Character {
   private static final long serialVersionUID = 1L;
   Collection<State> f_states;
   State             f_currentState;
+  /**
+   * The next tick at which a time trigger of the current state fires
+   */
+  private long      f_timeTriggerTick = NOT_SCHEDULED;
 
   /**
    * Constructor for a non-player character
@@ -61,13 +64,8 @@ public class NonPlayerCharacter extends Character {
 
   @Override
   protected void changeHealth(Character cause, int change) {
-    for (final Trigger trigger : f_currentState.getEventTriggers()) {
-      if (trigger instanceof HealthTrigger) {
-        final int hpTriggerValue = ((HealthTrigger) trigger).getHealth();
-        if (f_currentHealth + change <= hpTriggerValue && f_currentHealth > hpTriggerValue) {
-          trigger.execute(cause);
-        }
-      }
+    for (final HealthTrigger trigger : f_currentState.getHealthTriggers(f_currentHealth, f_currentHealth + change)) {
+      getWorld().runBeyondPlace(() -> trigger.execute(cause));
     }
     super.changeHealth(cause, change);
   }
@@ -81,6 +79,15 @@ public class NonPlayerCharacter extends Character {
     return f_currentState;
   }
 
+  /**
+   * The description of this NPC without the description of its current state, as it was created
+   *
+   * @return a String
+   */
+  public String getBaseDescription() {
+    return super.getDescription();
+  }
+
   @Override
   public String getDescription() {
     final StringBuilder description = new StringBuilder(super.getDescription());
@@ -101,9 +108,9 @@ public class NonPlayerCharacter extends Character {
    */
   public List<SayTrigger> getSayTriggers(Player player) {
     final List<SayTrigger> currentEvents = new ArrayList<>();
-    for (final Trigger eventTrigger : getCurrentState().getEventTriggers()) {
-      if (eventTrigger.meetsConditions(player) && eventTrigger instanceof SayTrigger) {
-        currentEvents.add((SayTrigger) eventTrigger);
+    for (final SayTrigger eventTrigger : getCurrentState().getTriggers(SayTrigger.class)) {
+      if (eventTrigger.meetsConditions(player)) {
+        currentEvents.add(eventTrigger);
       }
     }
     return currentEvents;
@@ -126,18 +133,61 @@ public class NonPlayerCharacter extends Character {
    */
   public void setCurrentState(State state) {
     f_currentState = Objects.requireNonNull(state);
+    final IWorldJournal journal = getWorld().getJournal();
+    if (journal != null) {
+      journal.stateChanged(this);
+    }
+    getLocation().stateChanged(this);
+    f_timeTriggerTick = NOT_SCHEDULED;
+    scheduleTick();
+  }
+
+  /**
+   * NPCs also need ticks while their current state has a time trigger
+   */
+  @Override
+  public boolean needsTick() {
+    return super.needsTick() || f_timeTriggerTick != NOT_SCHEDULED;
+  }
+
+  /**
+   * Time triggers fire on every multiple of their trigger time, so the next one due is the earliest
+   * multiple of any of them after now
+   */
+  @Override
+  void scheduleTimers(long now) {
+    super.scheduleTimers(now);
+    if (f_timeTriggerTick != NOT_SCHEDULED) {
+      return;
+    }
+    for (final TimeTrigger trigger : f_currentState.getTriggers(TimeTrigger.class)) {
+      final int triggerTime = trigger.getTriggerTime();
+      if (triggerTime > 0) {
+        final long next = (now / triggerTime + 1) * triggerTime;
+        if (f_timeTriggerTick == NOT_SCHEDULED || next < f_timeTriggerTick) {
+          f_timeTriggerTick = next;
+        }
+      }
+    }
+    if (f_timeTriggerTick != NOT_SCHEDULED) {
+      scheduleAt(f_timeTriggerTick);
+    }
   }
 
   @Override
   public void tickAction(long numTicks) {
     super.tickAction(numTicks);
-    for (final Trigger trigger : f_currentState.getEventTriggers()) {
-      if (trigger instanceof TimeTrigger) {
-        final int triggerTime = ((TimeTrigger) trigger).getTriggerTime();
-        if (numTicks % triggerTime == 0) {
-          trigger.execute(this);
-        }
+    if (f_timeTriggerTick == NOT_SCHEDULED || f_timeTriggerTick > numTicks) {
+      return;
+    }
+    f_timeTriggerTick = NOT_SCHEDULED;
+    final State state = f_currentState;
+    for (final TimeTrigger trigger : state.getTriggers(TimeTrigger.class)) {
+      final int triggerTime = trigger.getTriggerTime();
+      if (triggerTime > 0 && numTicks % triggerTime == 0) {
+        getWorld().runBeyondPlace(() -> trigger.execute(this));
       }
     }
+    scheduleTimers(numTicks);
   }
 }
@@ -0,0 +1,170 @@
+package pavlik.john.dungeoncrawl.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.LongConsumer;
+
+/**
+ * Runs the character ticks due at one tick of a {@link Universe} on a pool of worker threads, one
+ * partition per place. Fighting, healing and regenerating only touch the characters in one place,
+ * so the partitions run in parallel. Anything that may reach further is deferred with
+ * {@link #defer(Runnable)}: triggers, characters moving to another place, and notifications to
+ * observers. Once every partition is done the deferred actions are run on the ticking thread in a
+ * merge phase, partition by partition in the order of their places' ids, so a tick has the same
+ * outcome however its partitions were scheduled.
+ * <p>
+ * Within a partition characters are ticked in the order of their ids rather than the order their
+ * ticks were scheduled in.
+ *
+ * @author John
+ */
+final class ParallelTick implements TimingWheel.Dispatcher {
+
+  /**
+   * A scheduled tick of a character, which a parallel tick can place in a partition
+   */
+  static final class CharacterTick implements LongConsumer {
+    final Character f_character;
+
+    CharacterTick(Character character) {
+      f_character = character;
+    }
+
+    @Override
+    public void accept(long tick) {
+      f_character.tickAction(tick);
+    }
+  }
+
+  /**
+   * The characters of one place due at a tick, and the actions they deferred
+   */
+  private static final class Partition implements Callable<Void> {
+    final Place           f_place;
+    final List<Character> f_characters = new ArrayList<>();
+    final List<Runnable>  f_deferred   = new ArrayList<>();
+    long                  f_tick;
+    RuntimeException      f_failure;
+
+    Partition(Place place) {
+      f_place = place;
+    }
+
+    @Override
+    public Void call() {
+      DEFERRED.set(f_deferred);
+      try {
+        for (final Character character : f_characters) {
+          character.tickAction(f_tick);
+        }
+      } catch (final RuntimeException e) {
+        f_failure = e;
+      } finally {
+        DEFERRED.remove();
+      }
+      return null;
+    }
+  }
+
+  /**
+   * The deferred actions of the partition the current thread is running, if any
+   */
+  private static final ThreadLocal<List<Runnable>> DEFERRED = new ThreadLocal<>();
+
+  private final ForkJoinPool                       f_pool;
+
+  /**
+   * Package constructor
+   *
+   * @param parallelism
+   *          The number of worker threads
+   * @throws IllegalArgumentException
+   *           if parallelism is not positive
+   */
+  ParallelTick(int parallelism) {
+    f_pool = new ForkJoinPool(parallelism);
+  }
+
+  /**
+   * Defer an action to the merge phase, if the current thread is running a partition
+   *
+   * @param action
+   *          The action that may reach beyond the partition's place
+   * @return true if the action was deferred, false if the caller should run it now
+   */
+  static boolean defer(Runnable action) {
+    final List<Runnable> deferred = DEFERRED.get();
+    if (deferred == null) {
+      return false;
+    }
+    deferred.add(action);
+    return true;
+  }
+
+  @Override
+  public void dispatch(long tick, List<LongConsumer> events) {
+    final Map<Place, Partition> byPlace = new HashMap<>();
+    final List<LongConsumer> others = new ArrayList<>();
+    for (final LongConsumer event : events) {
+      if (event instanceof CharacterTick) {
+        final Character character = ((CharacterTick) event).f_character;
+        Partition partition = byPlace.get(character.getLocation());
+        if (partition == null) {
+          partition = new Partition(character.getLocation());
+          partition.f_tick = tick;
+          byPlace.put(partition.f_place, partition);
+        }
+        partition.f_characters.add(character);
+      } else {
+        others.add(event);
+      }
+    }
+    final Partition[] partitions = byPlace.values().toArray(new Partition[byPlace.size()]);
+    Arrays.sort(partitions, Comparator.comparingInt(partition -> partition.f_place.getId()));
+    for (final Partition partition : partitions) {
+      partition.f_characters.sort(Comparator.comparingInt(Character::getId));
+    }
+    if (partitions.length == 1) {
+      partitions[0].call();
+    } else if (partitions.length > 1) {
+      f_pool.invokeAll(Arrays.asList(partitions));
+    }
+
+    // Merge
+    RuntimeException failure = null;
+    for (final Partition partition : partitions) {
+      for (final Runnable action : partition.f_deferred) {
+        action.run();
+      }
+      if (failure == null) {
+        failure = partition.f_failure;
+      }
+    }
+    for (final LongConsumer event : others) {
+      event.accept(tick);
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /**
+   * @return the number of worker threads
+   */
+  int getParallelism() {
+    return f_pool.getParallelism();
+  }
+
+  /**
+   * Stop the worker threads once they are idle
+   */
+  void shutdown() {
+    f_pool.shutdown();
+  }
+}
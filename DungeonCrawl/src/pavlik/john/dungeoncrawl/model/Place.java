@@ -1,15 +1,19 @@
 package pavlik.john.dungeoncrawl.model;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.ResourceBundle;
 import java.util.Set;
 import java.util.TreeSet;
 
+import pavlik.john.dungeoncrawl.model.events.triggers.SightTrigger;
 import pavlik.john.dungeoncrawl.properties.Messages;
 import pavlik.john.dungeoncrawl.view.TextUtilities;
 
@@ -36,6 +40,10 @@ public class Place implements Comparable<Place>, HasContainer, Serializable {
    * identifies this instance within the game.
    */
   private final String                 f_name;
+  /**
+   * The id given by the {@link Universe} this was created in, see {@link #getId()}
+   */
+  private int                          f_id = Universe.NO_ID;
 
   /**
    * The immutable indefinite article with which to prefix the name so as to form a proper short
@@ -61,6 +69,26 @@ public class Place implements Comparable<Place>, HasContainer, Serializable {
    */
   private final Map<String, Character> f_charactersHere;
 
+  /**
+   * The sight triggers of the current states of the NPCs here, keyed by the upper case name of the
+   * character they watch for, or {@link SightTrigger#ANY_PLAYER} in upper case for any player
+   */
+  private final Map<String, List<ArrivalListener>> f_arrivalListeners = new HashMap<>();
+
+  /**
+   * A sight trigger of an NPC here
+   */
+  private static final class ArrivalListener implements Serializable {
+    private static final long        serialVersionUID = 1L;
+    private final NonPlayerCharacter f_npc;
+    private final SightTrigger       f_trigger;
+
+    ArrivalListener(NonPlayerCharacter npc, SightTrigger trigger) {
+      f_npc = npc;
+      f_trigger = trigger;
+    }
+  }
+
   /**
    * An immutable long description of this thing.
    */
@@ -121,6 +149,16 @@ public class Place implements Comparable<Place>, HasContainer, Serializable {
    */
   public void addCharacter(Character character) {
     f_charactersHere.put(character.getName().toUpperCase(), character);
+    if (character instanceof NonPlayerCharacter) {
+      addArrivalListeners((NonPlayerCharacter) character);
+    }
+  }
+
+  private void addArrivalListeners(NonPlayerCharacter npc) {
+    for (final SightTrigger trigger : npc.getCurrentState().getTriggers(SightTrigger.class)) {
+      f_arrivalListeners.computeIfAbsent(trigger.getValue().toUpperCase(), key -> new ArrayList<>(2)).add(
+          new ArrivalListener(npc, trigger));
+    }
   }
 
   /**
@@ -154,6 +192,36 @@ public class Place implements Comparable<Place>, HasContainer, Serializable {
     }
   }
 
+  /**
+   * Get the sight triggers of the NPCs here that watch for a character, either by name or as any
+   * player, in the order the NPCs arrived here.
+   *
+   * @param arriving
+   *          The character arriving here
+   * @return a new List of the triggers to execute
+   */
+  public List<SightTrigger> getArrivalTriggers(Character arriving) {
+    final String name = arriving.getName().toUpperCase();
+    final List<ArrivalListener> byName = f_arrivalListeners.get(name);
+    final List<ArrivalListener> anyPlayer = arriving instanceof Player && !name.equalsIgnoreCase(SightTrigger.ANY_PLAYER)
+        ? f_arrivalListeners.get(SightTrigger.ANY_PLAYER.toUpperCase()) : null;
+    if (byName == null && anyPlayer == null) {
+      return Collections.emptyList();
+    }
+    final List<SightTrigger> triggers = new ArrayList<>();
+    if (anyPlayer != null) {
+      for (final ArrivalListener listener : anyPlayer) {
+        triggers.add(listener.f_trigger);
+      }
+    }
+    if (byName != null) {
+      for (final ArrivalListener listener : byName) {
+        triggers.add(listener.f_trigger);
+      }
+    }
+    return triggers;
+  }
+
   /**
    * Get all of the Characters at this place
    *
@@ -181,12 +249,15 @@ public class Place implements Comparable<Place>, HasContainer, Serializable {
    * @return a {@link NonPlayerCharacter}
    */
   public Character getCharacter(String characterName) {
-    Character Character = f_charactersHere.get(characterName.toUpperCase());
-    if (Character == null) {
-      Character = f_charactersHere.get(TextUtilities.trimArticles(characterName.toUpperCase(), f_world
-          .getValidArticles()));
+    Character character = f_charactersHere.get(NameIndex.fold(characterName));
+    if (character == null) {
+      // The world's name index knows the name without any article
+      final Character named = f_world.getCharacter(characterName);
+      if (named != null && f_charactersHere.get(named.getName().toUpperCase()) == named) {
+        character = named;
+      }
     }
-    return Character;
+    return character;
   }
 
   /**
@@ -276,6 +347,23 @@ public class Place implements Comparable<Place>, HasContainer, Serializable {
     return msg.toString();
   }
 
+  /**
+   * Get the id of this place, which is dense among the places of the {@link Universe} it was
+   * created in, so it can index an array
+   *
+   * @return the id, or {@link Universe#NO_ID} if it has not been added to a world
+   */
+  public int getId() {
+    return f_id;
+  }
+
+  void setId(int id) {
+    if (f_id != Universe.NO_ID) {
+      throw new IllegalStateException(this + " already has id " + f_id);
+    }
+    f_id = id;
+  }
+
   /**
    * Gets the unique identifier of this.
    *
@@ -386,6 +474,29 @@ public class Place implements Comparable<Place>, HasContainer, Serializable {
    */
   public void removeCharacter(Character character) {
     f_charactersHere.remove(character.getName().toUpperCase());
+    if (character instanceof NonPlayerCharacter) {
+      removeArrivalListeners((NonPlayerCharacter) character);
+    }
+  }
+
+  private void removeArrivalListeners(NonPlayerCharacter npc) {
+    f_arrivalListeners.values().removeIf(listeners -> {
+      listeners.removeIf(listener -> listener.f_npc == npc);
+      return listeners.isEmpty();
+    });
+  }
+
+  /**
+   * Update the sight triggers watched for here after an NPC here changed state
+   *
+   * @param npc
+   *          The NPC that changed state
+   */
+  void stateChanged(NonPlayerCharacter npc) {
+    if (f_charactersHere.get(npc.getName().toUpperCase()) == npc) {
+      removeArrivalListeners(npc);
+      addArrivalListeners(npc);
+    }
   }
 
   /**
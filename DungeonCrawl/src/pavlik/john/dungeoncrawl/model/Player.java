@@ -51,7 +51,23 @@ public class Player extends Character {
    * @since 1.2
    */
   public Long addPoints(Long points) {
-    return f_points += points;
+    f_points += points;
+    final IWorldJournal journal = getWorld().getJournal();
+    if (journal != null) {
+      journal.scoreChanged(this);
+    }
+    return f_points;
+  }
+
+  /**
+   * Overwrite the score of this player without journaling it. Used by a {@link UniverseMirror} for
+   * a player that is simulated elsewhere.
+   *
+   * @param points
+   *          The score of the player
+   */
+  void mirrorScore(long points) {
+    f_points = points;
   }
 
   /**
@@ -0,0 +1,208 @@
+package pavlik.john.dungeoncrawl.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+/**
+ * A hierarchical timing wheel of events scheduled for future ticks of a {@link Universe}. Each
+ * level is a ring of {@value #SLOTS} slots; a slot of the lowest level holds the events of one
+ * tick, and a slot of each level above holds {@value #SLOTS} times as many ticks as one below. An
+ * event is kept in the lowest level that can hold it and moves down a level each time the wheel
+ * reaches its slot, so advancing the wheel one tick only touches the events due at that tick, plus
+ * an occasional slot of events moving down.
+ *
+ * @author John
+ */
+final class TimingWheel {
+
+  private static final int SLOT_BITS = 6;
+  private static final int SLOTS     = 1 << SLOT_BITS;
+  private static final int MASK      = SLOTS - 1;
+  private static final int LEVELS    = 4;
+
+  /**
+   * Runs the events due at a tick, in place of running them one after another
+   */
+  interface Dispatcher {
+    /**
+     * Run every event due at the tick, passing it the tick
+     *
+     * @param tick
+     *          The tick the events are due at
+     * @param events
+     *          The events, in the order they were scheduled
+     */
+    void dispatch(long tick, List<LongConsumer> events);
+  }
+
+  /**
+   * An event and the tick it is due at
+   */
+  private static final class Entry {
+    final long         f_tick;
+    final LongConsumer f_event;
+
+    Entry(long tick, LongConsumer event) {
+      f_tick = tick;
+      f_event = event;
+    }
+  }
+
+  /**
+   * The slots of each level, each a list made when an event is first put in it
+   */
+  private final List<Entry>[][] f_levels   = newLevels();
+  /**
+   * Events too far in the future for the highest level
+   */
+  private final List<Entry>     f_overflow = new ArrayList<>();
+  private long                  f_currentTick;
+  private int                   f_size     = 0;
+
+  @SuppressWarnings("unchecked")
+  private static List<Entry>[][] newLevels() {
+    // Arrays of a generic type can only be made unchecked
+    return (List<Entry>[][]) new List<?>[LEVELS][SLOTS];
+  }
+
+  /**
+   * Package constructor
+   *
+   * @param currentTick
+   *          The tick the wheel starts at, events are due after it
+   */
+  TimingWheel(long currentTick) {
+    f_currentTick = currentTick;
+  }
+
+  /**
+   * Advance the wheel to a tick, running every event that is due up to and including it in the
+   * order of their ticks. Events may schedule more events while they run; those due by the given
+   * tick run too.
+   *
+   * @param tick
+   *          The new current tick
+   */
+  void advanceTo(long tick) {
+    advanceTo(tick, null);
+  }
+
+  /**
+   * Advance the wheel to a tick like {@link #advanceTo(long)}, handing the events due at each tick
+   * to a dispatcher
+   *
+   * @param tick
+   *          The new current tick
+   * @param dispatcher
+   *          Runs the events due at each tick, or null to run them one after another
+   */
+  void advanceTo(long tick, Dispatcher dispatcher) {
+    while (true) {
+      final List<Entry> due;
+      synchronized (this) {
+        if (f_currentTick >= tick) {
+          return;
+        }
+        if (f_size == 0) {
+          f_currentTick = tick;
+          return;
+        }
+        f_currentTick++;
+        cascade();
+        final int slot = (int) (f_currentTick & MASK);
+        due = f_levels[0][slot];
+        if (due == null) {
+          continue;
+        }
+        f_levels[0][slot] = null;
+        f_size -= due.size();
+      }
+      if (dispatcher == null) {
+        for (final Entry entry : due) {
+          entry.f_event.accept(entry.f_tick);
+        }
+      } else {
+        final List<LongConsumer> events = new ArrayList<>(due.size());
+        for (final Entry entry : due) {
+          events.add(entry.f_event);
+        }
+        // Every event in a slot of the lowest level is due at the tick the wheel has reached
+        dispatcher.dispatch(due.get(0).f_tick, events);
+      }
+    }
+  }
+
+  /**
+   * Move the events of the slots the current tick has just reached down to the levels below
+   */
+  private void cascade() {
+    for (int level = 1; level < LEVELS; level++) {
+      if ((f_currentTick & ((1L << (SLOT_BITS * level)) - 1)) != 0) {
+        return;
+      }
+      final int slot = (int) ((f_currentTick >>> (SLOT_BITS * level)) & MASK);
+      final List<Entry> entries = f_levels[level][slot];
+      if (entries != null) {
+        f_levels[level][slot] = null;
+        f_size -= entries.size();
+        for (final Entry entry : entries) {
+          insert(entry);
+        }
+      }
+    }
+    if ((f_currentTick & ((1L << (SLOT_BITS * LEVELS)) - 1)) == 0 && !f_overflow.isEmpty()) {
+      final Entry[] entries = f_overflow.toArray(new Entry[f_overflow.size()]);
+      f_overflow.clear();
+      f_size -= entries.length;
+      for (final Entry entry : entries) {
+        insert(entry);
+      }
+    }
+  }
+
+  /**
+   * @return the tick the wheel has advanced to
+   */
+  synchronized long getCurrentTick() {
+    return f_currentTick;
+  }
+
+  private void insert(Entry entry) {
+    f_size++;
+    for (int level = 0; level < LEVELS; level++) {
+      // The lowest level whose ring the event falls within, judged by the digits above it
+      final int above = SLOT_BITS * (level + 1);
+      if ((entry.f_tick >>> above) == (f_currentTick >>> above)) {
+        final int slot = (int) ((entry.f_tick >>> (SLOT_BITS * level)) & MASK);
+        List<Entry> entries = f_levels[level][slot];
+        if (entries == null) {
+          entries = new ArrayList<>(4);
+          f_levels[level][slot] = entries;
+        }
+        entries.add(entry);
+        return;
+      }
+    }
+    f_overflow.add(entry);
+  }
+
+  /**
+   * Schedule an event. An event scheduled for the current tick or earlier is due on the next tick.
+   *
+   * @param tick
+   *          The tick the event is due at, passed to it when it runs
+   * @param event
+   *          The event to run
+   */
+  synchronized void schedule(long tick, LongConsumer event) {
+    insert(new Entry(Math.max(tick, f_currentTick + 1), event));
+  }
+
+  /**
+   * @return the number of events waiting
+   */
+  synchronized int size() {
+    return f_size;
+  }
+}
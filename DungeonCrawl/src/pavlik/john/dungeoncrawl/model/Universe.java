@@ -1,15 +1,20 @@
 package pavlik.john.dungeoncrawl.model;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.TreeMap;
+import java.util.SplittableRandom;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.function.Consumer;
 
 import pavlik.john.dungeoncrawl.model.Consumable.Effect;
 import pavlik.john.dungeoncrawl.model.Consumable.EffectTarget;
@@ -32,25 +37,40 @@ public final class Universe implements Serializable {
    */
   private static final long                     serialVersionUID        = 1L;
 
+  /**
+   * The id of an entity that has not been added to a world
+   */
+  public static final int                       NO_ID                   = -1;
+
   private final Set<String>                     f_articles              = new TreeSet<>();
 
   /**
-   * A map from an upper-case name (thus non-case sensitive) to a corresponding {@link Place}
-   * instance. Typically the key to this map will be <code>name.toUpperCase()</code>.
+   * The entities of this world indexed by their ids, see {@link Place#getId()}, {@link Item#getId()}
+   * and {@link Character#getId()}
    */
-  private final Map<String, Place>              f_keyToPlace            = new HashMap<>();
+  private final List<Place>                     f_places                = new ArrayList<>();
+  private final List<Item>                      f_items                 = new ArrayList<>();
+  private final List<Character>                 f_characters            = new ArrayList<>();
+  private final List<NonPlayerCharacter>        f_npcs                  = new ArrayList<>();
   /**
-   * A map from an upper-case name (thus non-case sensitive) to a corresponding {@link Item}
-   * instance. Typically the key to this map will be <code>name.toUpperCase()</code>.
+   * The players of this world, kept in order of their case insensitive names
    */
-  private final Map<String, Item>               f_keyToItem             = new HashMap<>();
+  private final List<Player>                    f_players               = new ArrayList<>();
 
   /**
-   * A map from an upper-case name to a corresponding {@link NonPlayerCharacter} instance.
+   * Read-only views of the entities, handed out instead of copies so iterating them allocates
+   * nothing
    */
-  private final Map<String, NonPlayerCharacter> f_keyToNPCs             = new HashMap<>();
+  private final List<Place>                     f_placesView            = Collections.unmodifiableList(f_places);
+  private final List<Item>                      f_itemsView             = Collections.unmodifiableList(f_items);
+  private final List<NonPlayerCharacter>        f_npcsView              = Collections.unmodifiableList(f_npcs);
+  private final List<Player>                    f_playersView           = Collections.unmodifiableList(f_players);
 
-  private final Map<String, HasContainer>       f_keyToContainers       = new HashMap<>();
+  /**
+   * The index from the case insensitive name of an entity, with or without an article, to the
+   * entity.
+   */
+  private final NameIndex                       f_names                 = new NameIndex();
   /**
    * A place that always exists in every world. It represents nowhere.
    */
@@ -58,31 +78,73 @@ public final class Universe implements Serializable {
                                                                             "You are in a very remote place.", false,
                                                                             null);
 
-  /**
-   * A {@link Player} that is controlled by, and represents, the user of the game.
-   */
-  private final Map<String, Player>             f_keyToPlayers          = new TreeMap<String, Player>();
-
   /**
    * The set of observers for this world. Notified when this world has changed in some interesting
-   * way.
+   * way. Observers come and go with network clients while the world is ticking, so the set is
+   * copied when it changes and every notification iterates a stable snapshot. Events that happen
+   * somewhere only reach an {@link ILocalObserver} if its player can perceive them.
    *
    * @see #addObserver(IModelObserver)
    * @see #removeObserver(IModelObserver)
    * @see #getObservers()
    * @see #notifyObservers()
    */
-  private final transient Set<IModelObserver>   f_observers             = new HashSet<IModelObserver>();
+  private final transient Set<IModelObserver>   f_observers             = new CopyOnWriteArraySet<IModelObserver>();
+  private final transient Set<IModelObserver>   f_observersView         = Collections.unmodifiableSet(f_observers);
+  /**
+   * The observers that hear about every event: those that are not {@link ILocalObserver}s, and those
+   * that had no player when they were added
+   */
+  private final transient Set<IModelObserver>   f_globalObservers       = new CopyOnWriteArraySet<IModelObserver>();
+  /**
+   * The other {@link ILocalObserver}s, by their player, see {@link #notifyAt(Place, Place, Consumer)}
+   */
+  private final transient Map<Player, Set<IModelObserver>> f_localObservers = new ConcurrentHashMap<>();
 
   private final Map<String, CharacterClass>     f_keyToCharacterClasses = new HashMap<String, CharacterClass>();
+  private final Collection<CharacterClass>      f_characterClassesView  = Collections
+                                                                            .unmodifiableCollection(f_keyToCharacterClasses
+                                                                                .values());
+
+  /**
+   * Ticks of characters that have something to do in the future, see {@link Character#needsTick()}.
+   * Idle characters are left out, so a tick costs as much as the activity due at that tick rather
+   * than the size of the world.
+   */
+  private final TimingWheel                     f_timers                = new TimingWheel(0);
+  /**
+   * Runs the ticks due at each tick in parallel, one partition per place, or null to run them on the
+   * ticking thread. See {@link #setTickParallelism(int)}.
+   */
+  private transient volatile ParallelTick       f_parallelTick;
+  /**
+   * The journals told of every change to the state of this world. See
+   * {@link #addJournal(IWorldJournal)}.
+   */
+  private final transient List<IWorldJournal>   f_journals              = new ArrayList<>();
+  /**
+   * The one journal in f_journals, a chain of them, or null if there are none
+   */
+  private transient volatile IWorldJournal      f_journal;
+  /**
+   * Set on a world that mirrors one simulated elsewhere, see {@link #setMirrored()}
+   */
+  private transient boolean                     f_mirrored;
   private long                                  f_tickRate              = 1000;
   private long                                  f_currentTick           = 0;
   private boolean                               f_allowCombat           = false;
+  /**
+   * The seed every character's generator of random numbers is derived from, saved with the world so
+   * that a session can be replayed. See {@link #setRandomSeed(long)}.
+   */
+  private long                                  f_randomSeed            = new SplittableRandom().nextLong();
 
   /**
-   * A map that takes a set of items, and maps it to a new item to be created
+   * A map that takes a set of items, and maps it to a new item to be created. The map itself never
+   * changes: adding or using up a recipe replaces it with a changed copy, so the recipes read by a
+   * save stay as they were when it started. Replaced while synchronized on this world.
    */
-  Map<Set<Item>, Item>                          f_itemCombinations      = new HashMap<>();
+  private volatile Map<Set<Item>, Item>         f_itemCombinations      = Collections.emptyMap();
 
   private String                                f_moneyName             = "gold pieces";
 
@@ -95,11 +157,21 @@ public final class Universe implements Serializable {
    *          The item to add
    */
   public void addItem(Item item) {
-    f_keyToItem.put(item.getName().toUpperCase(), item);
-    if (item.getContainer() != null) {
-      f_keyToContainers.put(item.getName().toUpperCase(), item);
+    if (item.getId() == NO_ID) {
+      item.setId(f_items.size());
+      f_items.add(item);
+      if (item.getContainer() != null) {
+        item.getContainer().setOwner(this, item);
+      }
+    }
+    f_names.add(item);
+    addArticle(item.getArticle());
+  }
+
+  private void addArticle(String article) {
+    if (f_articles.add(article)) {
+      f_names.addArticle(article);
     }
-    f_articles.add(item.getArticle());
   }
 
   /**
@@ -111,12 +183,40 @@ public final class Universe implements Serializable {
    * @param newItem
    *          The new item to be created
    */
-  public void addItemSynthesis(Set<Item> items, Item newItem) {
-    f_itemCombinations.put(items, newItem);
+  public synchronized void addItemSynthesis(Set<Item> items, Item newItem) {
+    final Map<Set<Item>, Item> recipes = new HashMap<>(f_itemCombinations);
+    recipes.put(items, newItem);
+    f_itemCombinations = Collections.unmodifiableMap(recipes);
+  }
+
+  /**
+   * Adds a journal to tell of every change to the state of this world that a save keeps: items
+   * moving between containers, characters moving, their money and equipped weapons, players'
+   * scores, NPCs' states and consumables' uses. Changes made before the journal is added are not
+   * reported, so it is added just after the world is saved. Has no effect if the journal was
+   * already added.
+   *
+   * @param journal
+   *          The journal
+   * @throws NullPointerException
+   *           if journal is null
+   */
+  public void addJournal(IWorldJournal journal) throws NullPointerException {
+    if (journal == null) {
+      throw new NullPointerException("journal cannot be null");
+    }
+    synchronized (f_journals) {
+      if (!f_journals.contains(journal)) {
+        f_journals.add(journal);
+        updateJournal();
+      }
+    }
   }
 
   /**
-   * Adds an observer to be notified when the world has changed in some interesting way.
+   * Adds an observer to be notified when the world has changed in some interesting way. An
+   * {@link ILocalObserver} is registered under its current player, and is only notified of events
+   * that player can perceive.
    *
    * @param observer
    *          the object to notify of changes to this world.
@@ -127,7 +227,56 @@ public final class Universe implements Serializable {
     if (observer == null) {
       throw new NullPointerException("observer cannot be null");
     }
-    f_observers.add(observer);
+    if (f_observers.add(observer)) {
+      fileObserver(observer);
+    }
+  }
+
+  /**
+   * Register an observer with the observers of everything, or of its player
+   */
+  private void fileObserver(IModelObserver observer) {
+    final Player player = observer instanceof ILocalObserver ? ((ILocalObserver) observer).getObservedPlayer()
+        : null;
+    if (player == null) {
+      f_globalObservers.add(observer);
+    } else {
+      f_localObservers.compute(player, (key, observers) -> {
+        final Set<IModelObserver> result = observers == null ? new CopyOnWriteArraySet<>() : observers;
+        result.add(observer);
+        return result;
+      });
+    }
+  }
+
+  private void unfileObserver(IModelObserver observer) {
+    if (!f_globalObservers.remove(observer)) {
+      for (final Player player : f_localObservers.keySet()) {
+        f_localObservers.computeIfPresent(player, (key, observers) -> {
+          observers.remove(observer);
+          return observers.isEmpty() ? null : observers;
+        });
+      }
+    }
+  }
+
+  /**
+   * Register an observer again under the player it observes now. Has no effect if the observer was
+   * not added to this world.
+   *
+   * @param observer
+   *          An observer of this world whose {@link ILocalObserver#getObservedPlayer()} has changed
+   * @throws NullPointerException
+   *           if observer is null
+   */
+  public void observedPlayerChanged(ILocalObserver observer) throws NullPointerException {
+    if (observer == null) {
+      throw new NullPointerException("observer cannot be null");
+    }
+    if (f_observers.contains(observer)) {
+      unfileObserver(observer);
+      fileObserver(observer);
+    }
   }
 
   /**
@@ -141,8 +290,10 @@ public final class Universe implements Serializable {
    *          The message being spoken
    */
   public void broadcastMessage(Character player, String speaker, String command) {
-    for (final IModelObserver observer : f_observers) {
-      observer.broadcastMessage(player, speaker, command);
+    if (player == null || player.getName().equals("WORLD")) {
+      notifyEveryone(observer -> observer.broadcastMessage(player, speaker, command));
+    } else {
+      notifyAt(locationOf(player), null, observer -> observer.broadcastMessage(player, speaker, command));
     }
   }
 
@@ -172,9 +323,7 @@ public final class Universe implements Serializable {
    *          The amount of points the player gained
    */
   public void characterDroppedItem(Character character, Item item, long totalPoints) {
-    for (final IModelObserver observer : f_observers) {
-      observer.characterPutItemOnGround(character, item, totalPoints);
-    }
+    notifyAt(locationOf(character), null, observer -> observer.characterPutItemOnGround(character, item, totalPoints));
   }
 
   /**
@@ -186,9 +335,7 @@ public final class Universe implements Serializable {
    *          The weapon
    */
   public void characterEquippedWeapon(Character character, Weapon weapon) {
-    for (final IModelObserver observer : f_observers) {
-      observer.characterEquippedWeapon(character, weapon);
-    }
+    notifyAt(locationOf(character), null, observer -> observer.characterEquippedWeapon(character, weapon));
   }
 
   /**
@@ -200,9 +347,7 @@ public final class Universe implements Serializable {
    *          The amount of healing
    */
   public void characterHeal(Character character, int heal) {
-    for (final IModelObserver observer : f_observers) {
-      observer.characterHeal(character, heal);
-    }
+    notifyAt(locationOf(character), null, observer -> observer.characterHeal(character, heal));
   }
 
   /**
@@ -218,12 +363,9 @@ public final class Universe implements Serializable {
    *          The amount of damage done
    */
   public void characterHitsCharacterFor(Character attacker, String combatMsg, Character target, int damage) {
-    if (target.getCurrentHealth() - damage < 0) {
-      damage = target.getCurrentHealth();
-    }
-    for (final IModelObserver observer : f_observers) {
-      observer.characterHitsCharacterFor(attacker, combatMsg, target, damage);
-    }
+    final int dealt = Math.min(damage, target.getCurrentHealth());
+    notifyAt(locationOf(attacker), locationOf(target),
+        observer -> observer.characterHitsCharacterFor(attacker, combatMsg, target, dealt));
   }
 
   /**
@@ -235,9 +377,7 @@ public final class Universe implements Serializable {
    *          Who was knocked out.
    */
   public void characterKOCharacter(Character attacker, Character target) {
-    for (final IModelObserver observer : f_observers) {
-      observer.characterWonFight(attacker, target);
-    }
+    notifyAt(locationOf(attacker), locationOf(target), observer -> observer.characterWonFight(attacker, target));
   }
 
   /**
@@ -249,9 +389,7 @@ public final class Universe implements Serializable {
    *          Ticks remaining to respawn
    */
   public void characterKOCountdown(Character character, int ticksRemaining) {
-    for (final IModelObserver observer : f_observers) {
-      observer.characterRespawnCountdown(character, ticksRemaining);
-    }
+    notifyAt(locationOf(character), null, observer -> observer.characterRespawnCountdown(character, ticksRemaining));
   }
 
   /**
@@ -265,9 +403,8 @@ public final class Universe implements Serializable {
    *          The target of the attack
    */
   public void characterMissedCharacter(Character character, String combatMsg, Character target) {
-    for (final IModelObserver observer : f_observers) {
-      observer.characterMissedCharacter(character, combatMsg, target);
-    }
+    notifyAt(locationOf(character), locationOf(target),
+        observer -> observer.characterMissedCharacter(character, combatMsg, target));
   }
 
   /**
@@ -281,9 +418,7 @@ public final class Universe implements Serializable {
    *          the new location
    */
   public void characterRespawned(Character character, Place previousLocation, Place newLocation) {
-    for (final IModelObserver observer : f_observers) {
-      observer.characterRespawned(character, previousLocation, newLocation);
-    }
+    notifyAt(previousLocation, newLocation, observer -> observer.characterRespawned(character, previousLocation, newLocation));
   }
 
   /**
@@ -297,9 +432,9 @@ public final class Universe implements Serializable {
    *          The amount of money transferred
    */
   public void characterTookMoney(Character fromCharacter, Character toCharacter, int money) {
-    for (final IModelObserver observer : f_observers) {
-      observer.characterTookMoney(fromCharacter, toCharacter, money, getMoneyName());
-    }
+    final String moneyName = getMoneyName();
+    notifyAt(locationOf(fromCharacter), locationOf(toCharacter),
+        observer -> observer.characterTookMoney(fromCharacter, toCharacter, money, moneyName));
   }
 
   /**
@@ -309,9 +444,7 @@ public final class Universe implements Serializable {
    *          The character
    */
   public void characterUnequippedWeapon(Character character) {
-    for (final IModelObserver observer : f_observers) {
-      observer.characterUnequippedWeapon(character);
-    }
+    notifyAt(locationOf(character), null, observer -> observer.characterUnequippedWeapon(character));
   }
 
   /**
@@ -321,9 +454,7 @@ public final class Universe implements Serializable {
    *          The character
    */
   public void characterWokeUp(Character character) {
-    for (final IModelObserver observer : f_observers) {
-      observer.characterWokeUp(character);
-    }
+    notifyAt(locationOf(character), null, observer -> observer.characterWokeUp(character));
   }
 
   /**
@@ -537,10 +668,14 @@ public final class Universe implements Serializable {
     }
     final NonPlayerCharacter newNPC = new NonPlayerCharacter(this, name, article, description, inventory, location,
         states, currentState, respawn);
-    f_keyToNPCs.put(name.toUpperCase(), newNPC);
-    f_keyToContainers.put(name.toUpperCase(), newNPC);
-    f_articles.add(article);
+    newNPC.setId(f_characters.size());
+    inventory.setOwner(this, newNPC);
+    f_characters.add(newNPC);
+    f_npcs.add(newNPC);
+    f_names.add(newNPC);
+    addArticle(article);
     location.addCharacter(newNPC);
+    newNPC.scheduleTick();
     return newNPC;
   }
 
@@ -585,9 +720,11 @@ public final class Universe implements Serializable {
           + "\" failed because the specified name already exists");
     }
     final Place newPlace = new Place(this, name, article, description, winCondition, sound);
-    f_keyToPlace.put(name.toUpperCase(), newPlace);
-    f_keyToContainers.put(name.toUpperCase(), newPlace);
-    f_articles.add(article);
+    newPlace.setId(f_places.size());
+    newPlace.getContainer().setOwner(this, newPlace);
+    f_places.add(newPlace);
+    f_names.add(newPlace);
+    addArticle(article);
     return newPlace;
   }
 
@@ -630,13 +767,33 @@ public final class Universe implements Serializable {
           + "\" failed because the specified name already exists");
     }
     final Player player = new Player(this, place, name, article, description, respawn);
-    f_keyToPlayers.put(name.toUpperCase(), player);
-    f_keyToContainers.put(name.toUpperCase(), player);
-    f_articles.add(article);
+    player.setId(f_characters.size());
+    player.getContainer().setOwner(this, player);
+    f_characters.add(player);
+    final String folded = NameIndex.fold(name);
+    int index = f_players.size();
+    while (index > 0 && NameIndex.fold(f_players.get(index - 1).getName()).compareTo(folded) > 0) {
+      index--;
+    }
+    f_players.add(index, player);
+    f_names.add(player);
+    addArticle(article);
     place.addCharacter(player);
+    player.scheduleTick();
     return player;
   }
 
+  /**
+   * Create the generator of random numbers of a character
+   *
+   * @param id
+   *          The character's id
+   * @return a generator determined by the seed of this world and the id
+   */
+  SplittableRandom createRandom(int id) {
+    return new SplittableRandom(f_randomSeed + id).split();
+  }
+
   /**
    * Factory constructor
    *
@@ -700,6 +857,12 @@ public final class Universe implements Serializable {
    * @return The Character
    */
   public Character getCharacter(String characterName) {
+    final NameIndex.Entry entry = resolve(characterName);
+    if (entry != null && entry.getNonPlayerCharacter() != null) {
+      return entry.getNonPlayerCharacter();
+    } else if (entry != null && entry.getPlayer() != null) {
+      return entry.getPlayer();
+    }
     Character character = getNonPlayerCharacter(characterName);
     if (character == null) {
       character = getPlayer(characterName);
@@ -707,6 +870,17 @@ public final class Universe implements Serializable {
     return character;
   }
 
+  /**
+   * Get a character, player or NPC, by its id
+   *
+   * @param id
+   *          The id of the character, see {@link Character#getId()}
+   * @return the character, or null if no character of this world has that id
+   */
+  public Character getCharacter(int id) {
+    return id >= 0 && id < f_characters.size() ? f_characters.get(id) : null;
+  }
+
   /**
    * Lookup a character class by name
    *
@@ -732,6 +906,15 @@ public final class Universe implements Serializable {
     return new HashSet<CharacterClass>(f_keyToCharacterClasses.values());
   }
 
+  /**
+   * Get a read-only view of all character classes in this world, which copies nothing
+   *
+   * @return A Collection of CharacterClass that changes as classes are created
+   */
+  public Collection<CharacterClass> getCharacterClassesView() {
+    return f_characterClassesView;
+  }
+
   /**
    * Locate the container that matches this location string. Container could be inside of a place,
    * an item, an NPC's inventory, or a player's inventory.
@@ -741,28 +924,13 @@ public final class Universe implements Serializable {
    * @return the Container matched or null if none were found
    */
   public Container getContainer(String locationString) {
-    return getContainer(locationString, false);
-  }
-
-  private Container getContainer(String locationString, boolean trimmed) {
-    locationString = locationString.toUpperCase();
-    if (f_keyToPlace.containsKey(locationString)) {
-      return f_keyToPlace.get(locationString).getContainer();
-    } else if (f_keyToItem.containsKey(locationString)) {
-      return f_keyToItem.get(locationString).getContainer();
-    } else if (f_keyToNPCs.containsKey(locationString)) {
-      return f_keyToNPCs.get(locationString).getContainer();
-    } else if (f_keyToPlayers.containsKey(locationString)) {
-      return f_keyToPlayers.get(locationString).getContainer();
-    } else if (!trimmed) {
-      return getContainer(TextUtilities.trimArticles(locationString, getValidArticles()), true);
-    } else {
-      return null;
-    }
+    final HasContainer hasContainer = f_names.getContainerHolder(locationString);
+    return hasContainer == null ? null : hasContainer.getContainer();
   }
 
   /**
-   * Access all of the valid crafting combinations in this world.
+   * Access all of the valid crafting combinations in this world. The set returned is the recipes
+   * as they are now and does not change as recipes are added or used up.
    *
    * @return A Set of Map.Entry that contains a Set of Items required and the new Item.
    */
@@ -770,6 +938,14 @@ public final class Universe implements Serializable {
     return f_itemCombinations.entrySet();
   }
 
+  /**
+   * @return the journal to tell of the changes to this world, which tells every journal added to
+   *         it, or null if there are none
+   */
+  public IWorldJournal getJournal() {
+    return f_journal;
+  }
+
   /**
    * Get the number of ticks since the world started
    *
@@ -793,11 +969,18 @@ public final class Universe implements Serializable {
     if (name == null) {
       throw new NullPointerException("name cannot be null");
     }
-    Item item = f_keyToItem.get(name.toUpperCase());
-    if (item == null) {
-      item = f_keyToItem.get(TextUtilities.trimArticles(name, getValidArticles()).toUpperCase());
-    }
-    return item;
+    return f_names.getItem(name);
+  }
+
+  /**
+   * Get an item by its id
+   *
+   * @param id
+   *          The id of the item, see {@link Item#getId()}
+   * @return the item, or null if no item of this world has that id
+   */
+  public Item getItem(int id) {
+    return id >= 0 && id < f_items.size() ? f_items.get(id) : null;
   }
 
   /**
@@ -806,7 +989,17 @@ public final class Universe implements Serializable {
    * @return a copy of the set of all Places in this world.
    */
   public Set<Item> getItems() {
-    return new HashSet<Item>(f_keyToItem.values());
+    return new HashSet<Item>(f_items);
+  }
+
+  /**
+   * Get a read-only view of all the items in this world, in order of their ids, which copies
+   * nothing
+   *
+   * @return a List of Item that grows as items are added
+   */
+  public List<Item> getItemsView() {
+    return f_itemsView;
   }
 
   /**
@@ -833,21 +1026,16 @@ public final class Universe implements Serializable {
     if (name == null) {
       throw new NullPointerException("name cannot be null");
     }
-    NonPlayerCharacter npc = f_keyToNPCs.get(name.toUpperCase());
-    if (npc == null) {
-      npc = f_keyToNPCs.get(TextUtilities.trimArticles(name.toUpperCase(), getValidArticles()));
-    }
-    return npc;
+    return f_names.getNonPlayerCharacter(name);
   }
 
   /**
-   * Returns a copy of all the NPCs in this world.
+   * Get a read-only view of all the NPCs in this world, in the order they were created.
    *
-   * @return a copy of the set of all NPCs in this world.
+   * @return a Collection of NonPlayerCharacter that grows as NPCs are created
    */
   public Collection<NonPlayerCharacter> getNonPlayerCharacters() {
-    return f_keyToNPCs.values();
-
+    return f_npcsView;
   }
 
   /**
@@ -868,6 +1056,27 @@ public final class Universe implements Serializable {
     return new HashSet<IModelObserver>(f_observers); // defensive copy
   }
 
+  /**
+   * Get a read-only view of the observers of this world, which copies nothing. Use
+   * {@link #getObservers()} instead to add or remove observers while iterating.
+   *
+   * @return the Set of observers, changing as observers are added and removed
+   */
+  public Set<IModelObserver> getObserversView() {
+    return f_observersView;
+  }
+
+  /**
+   * Get a place by its id
+   *
+   * @param id
+   *          The id of the place, see {@link Place#getId()}
+   * @return the place, or null if no place of this world has that id
+   */
+  public Place getPlace(int id) {
+    return id >= 0 && id < f_places.size() ? f_places.get(id) : null;
+  }
+
   /**
    * Gets the appropriate {@link Place} instance with the specified name.
    *
@@ -882,11 +1091,7 @@ public final class Universe implements Serializable {
     if (name == null) {
       throw new NullPointerException("name cannot be null");
     }
-    Place place = f_keyToPlace.get(name.toUpperCase());
-    if (place == null) {
-      place = f_keyToPlace.get(TextUtilities.trimArticles(name, getValidArticles()).toUpperCase());
-    }
-    return place;
+    return f_names.getPlace(name);
   }
 
   /**
@@ -911,7 +1116,17 @@ public final class Universe implements Serializable {
    * @return a copy of the set of all Places in this world.
    */
   public Set<Place> getPlaces() {
-    return new HashSet<Place>(f_keyToPlace.values());
+    return new HashSet<Place>(f_places);
+  }
+
+  /**
+   * Get a read-only view of all the places in this world, in order of their ids, which copies
+   * nothing
+   *
+   * @return a List of Place that grows as places are created
+   */
+  public List<Place> getPlacesView() {
+    return f_placesView;
   }
 
   /**
@@ -923,20 +1138,62 @@ public final class Universe implements Serializable {
    * @return the sole player within this world.
    */
   public Player getPlayer(String name) {
-    Player player = f_keyToPlayers.get(name.toUpperCase());
-    if (player == null) {
-      player = f_keyToPlayers.get(TextUtilities.trimArticles(name, getValidArticles()).toUpperCase());
+    if (name == null) {
+      throw new NullPointerException("name cannot be null");
     }
-    return player;
+    return f_names.getPlayer(name);
   }
 
   /**
    * Access the list of players in the game
    *
-   * @return A Collection of Player
+   * @return A copy of the players, in order of their names
    */
   public Player[] getPlayers() {
-    return f_keyToPlayers.values().toArray(new Player[0]);
+    return f_players.toArray(new Player[f_players.size()]);
+  }
+
+  /**
+   * Get a read-only view of the players in the game, in order of their names, which copies nothing
+   *
+   * @return a List of Player that grows as players are created
+   */
+  public List<Player> getPlayersView() {
+    return f_playersView;
+  }
+
+  /**
+   * Complete the start of the name of anything in this world, ignoring case and any article
+   *
+   * @param prefix
+   *          The start of a name, as typed by a user
+   * @return the names that start with it, in order
+   */
+  public List<String> completeName(String prefix) {
+    return f_names.complete(prefix);
+  }
+
+  /**
+   * Resolve a name typed by a user to everything in this world by that name, in a single lookup
+   *
+   * @param name
+   *          the non-null non-case sensitive name, optionally after an article
+   * @return the entities by that name, and the kind of the first of them, or null if nothing has
+   *         that name
+   * @throws NullPointerException
+   *           if name is null
+   */
+  public NameIndex.Entry resolve(String name) throws NullPointerException {
+    return f_names.resolve(name);
+  }
+
+  /**
+   * Get the seed of the random numbers this world rolls
+   *
+   * @return the seed
+   */
+  public long getRandomSeed() {
+    return f_randomSeed;
   }
 
   /**
@@ -948,6 +1205,17 @@ public final class Universe implements Serializable {
     return f_tickRate;
   }
 
+  /**
+   * Get the number of threads that tick this world
+   *
+   * @return the number of threads, 1 if the world is ticked on the thread that calls
+   *         {@link #tick(long)}
+   */
+  public int getTickParallelism() {
+    final ParallelTick parallelTick = f_parallelTick;
+    return parallelTick == null ? 1 : parallelTick.getParallelism();
+  }
+
   /**
    * Get all the valid articles of this world
    *
@@ -991,7 +1259,11 @@ public final class Universe implements Serializable {
     if (name == null) {
       throw new NullPointerException("name cannot be null");
     }
-    return f_keyToContainers.containsKey(name.toUpperCase());
+    return f_names.getContainerHolder(name) != null;
+  }
+
+  private static Place locationOf(Character character) {
+    return character == null ? null : character.getLocation();
   }
 
   /**
@@ -1003,8 +1275,49 @@ public final class Universe implements Serializable {
    *          The amount of money gained or lost (will be {&lt;0} if lost).
    */
   public void moneyChanged(Character player, int money) {
+    final String moneyName = getMoneyName();
+    notifyAt(locationOf(player), null, observer -> observer.characterMoneyChanged(player, money, moneyName));
+  }
+
+  /**
+   * Notify the observers that can perceive an event at one or two places: every observer in
+   * {@link #f_globalObservers}, and the observers of the players in those places. An event that
+   * concerns a player happens where the player is, so it reaches the player's observers too.
+   *
+   * @param place
+   *          Where the event happened, may be null
+   * @param otherPlace
+   *          Another place it was seen from, such as the destination of a move, may be null
+   * @param notification
+   *          The notification to give each observer
+   */
+  private void notifyAt(Place place, Place otherPlace, Consumer<IModelObserver> notification) {
+    if (f_parallelTick != null && ParallelTick.defer(() -> notifyAt(place, otherPlace, notification))) {
+      return;
+    }
+    for (final IModelObserver observer : f_globalObservers) {
+      notification.accept(observer);
+    }
+    if (!f_localObservers.isEmpty()) {
+      notifyPlayersIn(place, notification);
+      if (otherPlace != place) {
+        notifyPlayersIn(otherPlace, notification);
+      }
+    }
+  }
+
+  /**
+   * Notify every observer of an event that concerns the whole world
+   *
+   * @param notification
+   *          The notification to give each observer
+   */
+  private void notifyEveryone(Consumer<IModelObserver> notification) {
+    if (f_parallelTick != null && ParallelTick.defer(() -> notifyEveryone(notification))) {
+      return;
+    }
     for (final IModelObserver observer : f_observers) {
-      observer.characterMoneyChanged(player, money, getMoneyName());
+      notification.accept(observer);
     }
   }
 
@@ -1015,8 +1328,21 @@ public final class Universe implements Serializable {
    *          The string to display
    */
   public void notifyException(String string) {
-    for (final IModelObserver observer : f_observers) {
-      observer.broadcastMessage(new Player(this, getNowherePlace(), "WORLD", "THE", "", null), "THE WORLD", string);
+    final Player world = new Player(this, getNowherePlace(), "WORLD", "THE", "", null);
+    notifyEveryone(observer -> observer.broadcastMessage(world, "THE WORLD", string));
+  }
+
+  private void notifyPlayersIn(Place place, Consumer<IModelObserver> notification) {
+    if (place == null) {
+      return;
+    }
+    for (final Character character : place.getAllCharacters()) {
+      final Set<IModelObserver> observers = character instanceof Player ? f_localObservers.get(character) : null;
+      if (observers != null) {
+        for (final IModelObserver observer : observers) {
+          notification.accept(observer);
+        }
+      }
     }
   }
 
@@ -1029,9 +1355,7 @@ public final class Universe implements Serializable {
    *          The item gained
    */
   public void playerGainsItem(Character player, Item f_itemName) {
-    for (final IModelObserver observer : f_observers) {
-      observer.playerGainsItem(player, f_itemName);
-    }
+    notifyAt(locationOf(player), null, observer -> observer.playerGainsItem(player, f_itemName));
   }
 
   /**
@@ -1041,9 +1365,7 @@ public final class Universe implements Serializable {
    *          The player who joined
    */
   public void playerJoined(Player player) {
-    for (final IModelObserver observer : f_observers) {
-      observer.playerJoined(player);
-    }
+    notifyAt(locationOf(player), null, observer -> observer.playerJoined(player));
   }
 
   /**
@@ -1055,9 +1377,7 @@ public final class Universe implements Serializable {
    *          The item lost
    */
   public void playerLosesItem(Character player, Item f_itemName) {
-    for (final IModelObserver observer : f_observers) {
-      observer.playerLosesItem(player, f_itemName);
-    }
+    notifyAt(locationOf(player), null, observer -> observer.playerLosesItem(player, f_itemName));
   }
 
   /**
@@ -1071,9 +1391,7 @@ public final class Universe implements Serializable {
    *          The ending Place
    */
   public void playerMoved(Player player, Place startLocation, Place endLocation) {
-    for (final IModelObserver observer : f_observers) {
-      observer.playerMoved(player, startLocation, endLocation);
-    }
+    notifyAt(startLocation, endLocation, observer -> observer.playerMoved(player, startLocation, endLocation));
   }
 
   /**
@@ -1083,9 +1401,7 @@ public final class Universe implements Serializable {
    *          The player who quit
    */
   public void playerQuit(Player player) {
-    for (final IModelObserver observer : f_observers) {
-      observer.playerQuit(player);
-    }
+    notifyAt(locationOf(player), null, observer -> observer.playerQuit(player));
   }
 
   /**
@@ -1099,9 +1415,7 @@ public final class Universe implements Serializable {
    *          The amount of points the player gained
    */
   public void playerTookItem(Player player, Item item, long takePoints) {
-    for (final IModelObserver observer : f_observers) {
-      observer.playerTookItemFromGround(player, item, takePoints);
-    }
+    notifyAt(locationOf(player), null, observer -> observer.playerTookItemFromGround(player, item, takePoints));
   }
 
   /**
@@ -1113,8 +1427,10 @@ public final class Universe implements Serializable {
    *          The path to the sound file
    */
   public void playSound(Character cause, String soundPath) {
-    for (final IModelObserver observer : f_observers) {
-      observer.playSound(cause, soundPath);
+    if (cause == null) {
+      notifyEveryone(observer -> observer.playSound(cause, soundPath));
+    } else {
+      notifyAt(locationOf(cause), null, observer -> observer.playSound(cause, soundPath));
     }
   }
 
@@ -1129,9 +1445,7 @@ public final class Universe implements Serializable {
    *          The container item that itemMoved was stored inside
    */
   public void putItemInItem(Player player, Item itemMoved, Item itemContainer) {
-    for (final IModelObserver observer : f_observers) {
-      observer.playerPutItemInItem(player, itemMoved, itemContainer);
-    }
+    notifyAt(locationOf(player), null, observer -> observer.playerPutItemInItem(player, itemMoved, itemContainer));
   }
 
   /**
@@ -1147,7 +1461,23 @@ public final class Universe implements Serializable {
     if (observer == null) {
       throw new NullPointerException("observer cannot be null");
     }
-    f_observers.remove(observer);
+    if (f_observers.remove(observer)) {
+      unfileObserver(observer);
+    }
+  }
+
+  /**
+   * Run an action that may reach beyond the place of the character being ticked, such as a trigger
+   * or a move to another place. During a parallel tick it is deferred until every place has been
+   * ticked; otherwise it runs now.
+   *
+   * @param action
+   *          The action to run
+   */
+  void runBeyondPlace(Runnable action) {
+    if (f_parallelTick == null || !ParallelTick.defer(action)) {
+      action.run();
+    }
   }
 
   /**
@@ -1160,6 +1490,81 @@ public final class Universe implements Serializable {
     f_allowCombat = allowCombat;
   }
 
+  /**
+   * Schedule a tick of a character that has something to do in the future, such as attacking once
+   * its weapon has cooled down
+   *
+   * @param character
+   *          The character to tick
+   * @param tick
+   *          The tick at which to call {@link Character#tickAction(long)}
+   */
+  void scheduleTick(Character character, long tick) {
+    if (f_mirrored) {
+      return;
+    }
+    f_timers.schedule(tick, new ParallelTick.CharacterTick(character));
+  }
+
+  /**
+   * Make this world a mirror of one simulated elsewhere, such as on a multiplayer server. Nothing is
+   * ever scheduled on a mirror, so none of its characters act on their own.
+   */
+  void setMirrored() {
+    f_mirrored = true;
+  }
+
+  /**
+   * Start the clock of a world restored from a snapshot at the tick the snapshot was taken at.
+   * Nothing can have been scheduled yet, so this is done before any character is created.
+   *
+   * @param tick
+   *          The tick, not negative
+   * @throws IllegalArgumentException
+   *           if tick is negative
+   * @throws IllegalStateException
+   *           if anything has been scheduled
+   */
+  public void setCurrentTick(long tick) {
+    if (tick < 0) {
+      throw new IllegalArgumentException("tick cannot be negative: " + tick);
+    }
+    if (f_timers.size() > 0) {
+      throw new IllegalStateException("The current tick can only be set before anything is scheduled");
+    }
+    f_timers.advanceTo(tick);
+    f_currentTick = tick;
+  }
+
+  /**
+   * Removes a journal from this world. Has no effect if the journal was not added.
+   *
+   * @param journal
+   *          The journal to stop telling of changes to this world
+   * @throws NullPointerException
+   *           if journal is null
+   */
+  public void removeJournal(IWorldJournal journal) throws NullPointerException {
+    if (journal == null) {
+      throw new NullPointerException("journal cannot be null");
+    }
+    synchronized (f_journals) {
+      if (f_journals.remove(journal)) {
+        updateJournal();
+      }
+    }
+  }
+
+  private void updateJournal() {
+    if (f_journals.isEmpty()) {
+      f_journal = null;
+    } else if (f_journals.size() == 1) {
+      f_journal = f_journals.get(0);
+    } else {
+      f_journal = new JournalChain(f_journals.toArray(new IWorldJournal[f_journals.size()]));
+    }
+  }
+
   /**
    * Notifies this world that the game is over.
    *
@@ -1173,9 +1578,7 @@ public final class Universe implements Serializable {
     if (win) {
       f_gameWon = true;
     }
-    for (final IModelObserver observer : f_observers) {
-      observer.gameOver(this);
-    }
+    notifyEveryone(observer -> observer.gameOver(this));
   }
 
   /**
@@ -1188,6 +1591,44 @@ public final class Universe implements Serializable {
     f_moneyName = moneyName;
   }
 
+  /**
+   * Set the seed of the random numbers this world rolls. Each character rolls with a generator of
+   * its own, split from the seed and the character's id, so the numbers a character rolls do not
+   * depend on what other characters roll or on which thread ticks them. A world given the same seed
+   * and the same commands at the same ticks plays out the same way.
+   *
+   * @param seed
+   *          The seed
+   */
+  public void setRandomSeed(long seed) {
+    f_randomSeed = seed;
+    for (final Character character : f_characters) {
+      character.resetRandom();
+    }
+  }
+
+  /**
+   * Set the number of threads that tick this world. With more than one, the characters due at a
+   * tick are partitioned by the place they are in and the partitions are ticked in parallel; what
+   * may reach beyond a place, such as triggers, moves between places and notifications to
+   * observers, is applied afterwards on the ticking thread in a deterministic order.
+   *
+   * @param threads
+   *          The number of threads, 1 to tick on the thread that calls {@link #tick(long)}
+   * @throws IllegalArgumentException
+   *           if threads is not positive
+   */
+  public void setTickParallelism(int threads) throws IllegalArgumentException {
+    if (threads < 1) {
+      throw new IllegalArgumentException("threads must be positive: " + threads);
+    }
+    final ParallelTick previous = f_parallelTick;
+    f_parallelTick = threads == 1 ? null : new ParallelTick(threads);
+    if (previous != null) {
+      previous.shutdown();
+    }
+  }
+
   /**
    * The rate at which ticks occur in milliseconds
    *
@@ -1199,14 +1640,29 @@ public final class Universe implements Serializable {
   }
 
   /**
-   * Combine all of the items and see if a new item is created
+   * Combine all of the items and see if a new item is created. A recipe is used up once its item
+   * has been created.
    *
    * @param items
    *          The items to combine
    * @return the new item
    */
   public Item synthesizeItems(Set<Item> items) {
-    return f_itemCombinations.remove(items);
+    final Item newItem;
+    synchronized (this) {
+      newItem = f_itemCombinations.get(items);
+      if (newItem == null) {
+        return null;
+      }
+      final Map<Set<Item>, Item> recipes = new HashMap<>(f_itemCombinations);
+      recipes.remove(items);
+      f_itemCombinations = Collections.unmodifiableMap(recipes);
+    }
+    final IWorldJournal journal = f_journal;
+    if (journal != null) {
+      journal.recipeUsed(items);
+    }
+    return newItem;
   }
 
   /**
@@ -1220,9 +1676,7 @@ public final class Universe implements Serializable {
    *          The container item that itemMoved was retrieved from
    */
   public void takeItemfromItem(Player player, Item itemMoved, Item itemContainer) {
-    for (final IModelObserver observer : f_observers) {
-      observer.takeitemFromItem(player, itemMoved, itemContainer);
-    }
+    notifyAt(locationOf(player), null, observer -> observer.takeitemFromItem(player, itemMoved, itemContainer));
   }
 
   /**
@@ -1236,9 +1690,7 @@ public final class Universe implements Serializable {
    *          The list of things the player can say to the NPC
    */
   public void talkToNPC(Player player, NonPlayerCharacter npc, List<SayTrigger> currentEvents) {
-    for (final IModelObserver observer : f_observers) {
-      observer.playerTalkedToNPC(player, npc, currentEvents);
-    }
+    notifyAt(locationOf(player), null, observer -> observer.playerTalkedToNPC(player, npc, currentEvents));
   }
 
   /**
@@ -1249,12 +1701,7 @@ public final class Universe implements Serializable {
    */
   public void tick(long numTicks) {
     f_currentTick = numTicks;
-    for (final Character character : getNonPlayerCharacters()) {
-      character.tickAction(numTicks);
-    }
-    for (final Character character : getPlayers()) {
-      character.tickAction(numTicks);
-    }
+    f_timers.advanceTo(numTicks, f_parallelTick);
   }
 
   /**
@@ -1264,8 +1711,6 @@ public final class Universe implements Serializable {
    *          The filename of the world.xml file
    */
   public void worldLoaded(String fileName) {
-    for (final IModelObserver observer : f_observers) {
-      observer.worldLoaded(this, fileName);
-    }
+    notifyEveryone(observer -> observer.worldLoaded(this, fileName));
   }
 }
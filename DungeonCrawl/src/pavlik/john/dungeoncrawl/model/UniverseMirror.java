@@ -0,0 +1,431 @@
+package pavlik.john.dungeoncrawl.model;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import pavlik.john.dungeoncrawl.model.Consumable.Effect;
+import pavlik.john.dungeoncrawl.model.Consumable.EffectTarget;
+import pavlik.john.dungeoncrawl.model.events.State;
+import pavlik.john.dungeoncrawl.persistence.WireProtocol;
+
+/**
+ * A client side copy of the entities of a {@link Universe} hosted by a multiplayer server, built from
+ * {@link WireProtocol} frames. Each entity is created once, when the server first defines it, and is
+ * then updated in place as the server reports changes to it, so observers are always handed the same
+ * objects for the same entity.
+ * <p>
+ * Only what a client displays is mirrored: names, descriptions, sounds, exits, locations, health,
+ * weapons, money, score and the contents of containers. Game rules are never run on a mirror: its
+ * world never schedules anything, and changes are written straight into the entities' fields
+ * without journaling them, telling observers or starting combat.
+ *
+ * @author John
+ */
+public final class UniverseMirror {
+
+  private Universe                   f_world          = newWorld();
+  private final Map<Integer, Object> f_entities      = new HashMap<>();
+  /**
+   * The container each mirrored item is currently in, since items do not know where they are
+   */
+  private final Map<Item, Container> f_itemLocations = new IdentityHashMap<>();
+
+  /**
+   * Define the combat class of a previously defined character. The class's default weapon is
+   * registered under defaultWeaponId.
+   *
+   * @param characterId
+   *          The id of the character
+   * @param className
+   *          The name of the class
+   * @param maxHealth
+   *          The maximum health of the class
+   * @param defaultWeaponId
+   *          The id of the default weapon of the class
+   * @param weaponName
+   *          The name of the default weapon
+   * @param useString
+   *          The message displayed when the default weapon is used
+   * @param hitSound
+   *          The sound played when the default weapon hits
+   * @param missSound
+   *          The sound played when the default weapon misses
+   */
+  public void defineCharacterClass(int characterId, String className, int maxHealth, int defaultWeaponId,
+      String weaponName, String useString, String hitSound, String missSound) {
+    final Character character = getCharacter(characterId);
+    final CharacterClass characterClass = f_world.createCharacterClass(className, maxHealth, 0, Collections
+        .<String> emptyList(), useString, -1, 0, 0, 0, 0, EffectTarget.SINGLE, hitSound, missSound, weaponName);
+    character.mirrorCharacterClass(characterClass);
+    f_entities.putIfAbsent(defaultWeaponId, characterClass.getDefaultWeapon());
+  }
+
+  /**
+   * Define a player or non-player character
+   *
+   * @param id
+   *          The id of the character
+   * @param player
+   *          true for a Player, false for a NonPlayerCharacter
+   * @param name
+   *          The unique name of the character
+   * @param article
+   *          The article of the character
+   * @param description
+   *          The description of the character
+   * @param locationId
+   *          The id of a previously defined place where the character is
+   */
+  public void defineCharacter(int id, boolean player, String name, String article, String description,
+      int locationId) {
+    final Place location = getPlace(locationId);
+    Character character = player ? f_world.getPlayer(name) : f_world.getNonPlayerCharacter(name);
+    if (character == null) {
+      if (player) {
+        character = f_world.createPlayer(name, location, article, description, null);
+      } else {
+        final State state = new State(name, "");
+        final Set<State> states = new HashSet<>();
+        states.add(state);
+        character = f_world.createNPC(name, article, description, new Container(), location, states, state, null);
+      }
+    }
+    f_entities.put(id, character);
+  }
+
+  /**
+   * Define an item that is not a weapon
+   *
+   * @param id
+   *          The id of the item
+   * @param name
+   *          The unique name of the item
+   * @param article
+   *          The article of the item
+   * @param description
+   *          The description of the item
+   * @param takeable
+   *          Whether the item can be picked up
+   * @param container
+   *          Whether the item can store other items
+   */
+  public void defineItem(int id, String name, String article, String description, boolean takeable,
+      boolean container) {
+    Item item = f_world.getItem(name);
+    if (item == null) {
+      item = f_world.createItem(name, article, description, 0L, 0L, new HashMap<>(), takeable, "", new HashMap<>(),
+          container);
+    }
+    f_entities.put(id, item);
+  }
+
+  /**
+   * Define a place
+   *
+   * @param id
+   *          The id of the place
+   * @param name
+   *          The unique name of the place
+   * @param article
+   *          The article of the place
+   * @param description
+   *          The description of the place
+   * @param winCondition
+   *          Whether arriving at the place wins the game
+   * @param sound
+   *          The background sound of the place, may be null
+   */
+  public void definePlace(int id, String name, String article, String description, boolean winCondition,
+      String sound) {
+    Place place = f_world.getPlace(name);
+    if (place == null) {
+      place = f_world.createPlace(name, article, description, winCondition, sound);
+    }
+    f_entities.put(id, place);
+  }
+
+  /**
+   * Define a weapon
+   *
+   * @param id
+   *          The id of the weapon
+   * @param name
+   *          The unique name of the weapon
+   * @param article
+   *          The article of the weapon
+   * @param description
+   *          The description of the weapon
+   * @param useString
+   *          The message displayed when the weapon is used
+   * @param hitSound
+   *          The sound played when the weapon hits
+   * @param missSound
+   *          The sound played when the weapon misses
+   */
+  public void defineWeapon(int id, String name, String article, String description, String useString,
+      String hitSound, String missSound) {
+    Item weapon = f_world.getItem(name);
+    if (!(weapon instanceof Weapon)) {
+      weapon = f_world.createWeapon(name, article, description, 0, 0, new HashMap<>(), new HashMap<>(), null,
+          "mirror", new Effect(0, 0), 0, useString, 0, EffectTarget.SINGLE, hitSound, missSound);
+    }
+    f_entities.put(id, weapon);
+  }
+
+  private <T> T get(int id, Class<T> type) {
+    if (id == WireProtocol.NO_ENTITY) {
+      return null;
+    }
+    final Object entity = f_entities.get(id);
+    if (!type.isInstance(entity)) {
+      throw new IllegalStateException("Entity " + id + " is not a defined " + type.getSimpleName());
+    }
+    return type.cast(entity);
+  }
+
+  /**
+   * Get a mirrored character
+   *
+   * @param id
+   *          The id of the character
+   * @return The character, or null if id is {@link WireProtocol#NO_ENTITY}
+   * @throws IllegalStateException
+   *           if no character was defined with this id
+   */
+  public Character getCharacter(int id) {
+    return get(id, Character.class);
+  }
+
+  /**
+   * Get a mirrored item
+   *
+   * @param id
+   *          The id of the item
+   * @return The item, or null if id is {@link WireProtocol#NO_ENTITY}
+   * @throws IllegalStateException
+   *           if no item was defined with this id
+   */
+  public Item getItem(int id) {
+    return get(id, Item.class);
+  }
+
+  /**
+   * Get a mirrored non-player character
+   *
+   * @param id
+   *          The id of the non-player character
+   * @return The non-player character, or null if id is {@link WireProtocol#NO_ENTITY}
+   * @throws IllegalStateException
+   *           if no non-player character was defined with this id
+   */
+  public NonPlayerCharacter getNonPlayerCharacter(int id) {
+    return get(id, NonPlayerCharacter.class);
+  }
+
+  /**
+   * Get a mirrored place
+   *
+   * @param id
+   *          The id of the place
+   * @return The place, or null if id is {@link WireProtocol#NO_ENTITY}
+   * @throws IllegalStateException
+   *           if no place was defined with this id
+   */
+  public Place getPlace(int id) {
+    return get(id, Place.class);
+  }
+
+  /**
+   * Get a mirrored player
+   *
+   * @param id
+   *          The id of the player
+   * @return The player, or null if id is {@link WireProtocol#NO_ENTITY}
+   * @throws IllegalStateException
+   *           if no player was defined with this id
+   */
+  public Player getPlayer(int id) {
+    return get(id, Player.class);
+  }
+
+  /**
+   * Get a mirrored weapon
+   *
+   * @param id
+   *          The id of the weapon
+   * @return The weapon, or null if id is {@link WireProtocol#NO_ENTITY}
+   * @throws IllegalStateException
+   *           if no weapon was defined with this id
+   */
+  public Weapon getWeapon(int id) {
+    return get(id, Weapon.class);
+  }
+
+  /**
+   * Access the Universe that holds every mirrored entity
+   *
+   * @return the mirrored Universe
+   */
+  public Universe getWorld() {
+    return f_world;
+  }
+
+  private static Universe newWorld() {
+    final Universe world = new Universe();
+    world.setMirrored();
+    return world;
+  }
+
+  /**
+   * Forget every entity, for when the server loads a new world
+   */
+  public void reset() {
+    f_world = newWorld();
+    f_entities.clear();
+    f_itemLocations.clear();
+  }
+
+  /**
+   * Connect two previously defined places
+   *
+   * @param placeId
+   *          The id of the place to travel from
+   * @param direction
+   *          The direction of travel
+   * @param destinationId
+   *          The id of the place to travel to
+   */
+  public void setExit(int placeId, Navigation direction, int destinationId) {
+    getPlace(placeId).setTravelDestination(direction, getPlace(destinationId));
+  }
+
+  /**
+   * Update the world wide settings
+   *
+   * @param moneyName
+   *          The name of money in the world
+   * @param gameWon
+   *          Whether the game has been won
+   */
+  public void setWorldInfo(String moneyName, boolean gameWon) {
+    f_world.setMoneyName(moneyName);
+    if (gameWon) {
+      f_world.setGameOver(true);
+    }
+  }
+
+  /**
+   * Apply the movement of items into and out of a character, place or container item. An item that
+   * is added leaves whichever container it was in before.
+   *
+   * @param id
+   *          The id of a character, a place or an item that stores other items
+   * @param addedItemIds
+   *          The ids of the items now inside
+   * @param removedItemIds
+   *          The ids of the items no longer inside
+   */
+  public void changeContents(int id, int[] addedItemIds, int[] removedItemIds) {
+    final Container container = get(id, HasContainer.class).getContainer();
+    if (container == null) {
+      return;
+    }
+    for (final int itemId : removedItemIds) {
+      final Item item = getItem(itemId);
+      if (f_itemLocations.remove(item, container)) {
+        container.mirrorItem(item, false);
+      }
+    }
+    for (final int itemId : addedItemIds) {
+      final Item item = getItem(itemId);
+      final Container previous = f_itemLocations.put(item, container);
+      if (previous != container) {
+        if (previous != null) {
+          previous.mirrorItem(item, false);
+        }
+        container.mirrorItem(item, true);
+      }
+    }
+  }
+
+  /**
+   * Update the health of a previously defined character
+   *
+   * @param id
+   *          The id of the character
+   * @param health
+   *          The current health
+   * @param conscious
+   *          Whether the character is conscious
+   */
+  public void setHealth(int id, int health, boolean conscious) {
+    getCharacter(id).mirrorState(health, conscious);
+  }
+
+  /**
+   * Move a previously defined character
+   *
+   * @param id
+   *          The id of the character
+   * @param locationId
+   *          The id of the place where the character is
+   */
+  public void setLocation(int id, int locationId) {
+    getCharacter(id).mirrorLocation(getPlace(locationId));
+  }
+
+  /**
+   * Update the money of a previously defined character
+   *
+   * @param id
+   *          The id of the character
+   * @param money
+   *          The money the character has
+   */
+  public void setMoney(int id, int money) {
+    getCharacter(id).mirrorMoney(money);
+  }
+
+  /**
+   * Update the score of a previously defined character
+   *
+   * @param id
+   *          The id of the character
+   * @param score
+   *          The score of the character, ignored unless it is a player
+   */
+  public void setScore(int id, long score) {
+    final Character character = getCharacter(id);
+    if (character instanceof Player) {
+      ((Player) character).mirrorScore(score);
+    }
+  }
+
+  /**
+   * Update the character a previously defined character is attacking
+   *
+   * @param id
+   *          The id of the character
+   * @param targetId
+   *          The id of the character being attacked, or {@link WireProtocol#NO_ENTITY}
+   */
+  public void setTarget(int id, int targetId) {
+    getCharacter(id).mirrorTarget(getCharacter(targetId));
+  }
+
+  /**
+   * Update the weapon of a previously defined character
+   *
+   * @param id
+   *          The id of the character
+   * @param weaponId
+   *          The id of the current weapon, or {@link WireProtocol#NO_ENTITY}
+   */
+  public void setWeapon(int id, int weaponId) {
+    getCharacter(id).mirrorWeapon(getWeapon(weaponId));
+  }
+}
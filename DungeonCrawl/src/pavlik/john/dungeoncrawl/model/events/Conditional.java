@@ -1,6 +1,7 @@
 package pavlik.john.dungeoncrawl.model.events;
 
 import pavlik.john.dungeoncrawl.model.Character;
+import pavlik.john.dungeoncrawl.model.Universe;
 
 /**
  * A generic Conditional interface for checking if something can be done. Extends
@@ -16,6 +17,11 @@ public abstract class Conditional extends XMLAttribute {
    */
   private static final long serialVersionUID = 1L;
 
+  /**
+   * The cost of a conditional that does not say how costly it is
+   */
+  public static final int   DEFAULT_COST     = 10;
+
   /**
    * Public constructor for Conditionals
    *
@@ -38,4 +44,25 @@ public abstract class Conditional extends XMLAttribute {
    */
   public abstract boolean meetsConditions(Character cause);
 
+  /**
+   * How costly this conditional is to check relative to others. A trigger checks its cheapest
+   * conditionals first, so it can stop at the first that fails before reaching costlier ones.
+   *
+   * @return the relative cost, lower is cheaper
+   */
+  public int getCost() {
+    return DEFAULT_COST;
+  }
+
+  /**
+   * Look up any entities this conditional refers to by name, so it need not look them up each time
+   * it is checked. Called once the world has loaded; does nothing by default.
+   *
+   * @param world
+   *          The world this conditional belongs to
+   */
+  public void resolve(Universe world) {
+    // Nothing to resolve
+  }
+
 }
@@ -3,11 +3,21 @@ package pavlik.john.dungeoncrawl.model.events;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
+import pavlik.john.dungeoncrawl.model.events.triggers.HealthTrigger;
+
 /**
  * Represents the current mood of an NPC, and contains a list of potential events the player can
  * activate by interacting with this NPC.
+ * <p>
+ * Triggers are kept indexed by their type, so an NPC reacting to being seen, attacked or spoken to
+ * only looks at the triggers for that kind of interaction. Health triggers are kept in descending
+ * order of their health value, the order in which falling health crosses them.
  *
  * @author John
  * @since 1.3
@@ -21,6 +31,7 @@ public class State implements Serializable {
   private final String              f_name;
   private final String              f_description;
   private final Collection<Trigger> f_eventTriggers;
+  private final Map<Class<? extends Trigger>, List<Trigger>> f_triggersByType;
 
   /**
    * State constructor, names must be unique among States in order to distinguish them in the XML
@@ -33,6 +44,7 @@ public class State implements Serializable {
   public State(String name, String description) {
     f_name = Objects.requireNonNull(name, "State name cannot be null");
     f_eventTriggers = new ArrayList<>();
+    f_triggersByType = new HashMap<>();
     f_description = Objects.requireNonNull(description, "State " + name + "'s description cannot be null");
   }
 
@@ -44,11 +56,25 @@ public class State implements Serializable {
    * @return true if the event trigger was not already present, false otherwise
    */
   public boolean addEventTrigger(Trigger event) {
+    Objects.requireNonNull(event, "State " + f_name + "'s event trigger cannot be null");
+    // Index the trigger under its own class and any trigger classes it extends
+    for (Class<?> type = event.getClass(); type != Trigger.class; type = type.getSuperclass()) {
+      final List<Trigger> triggers = f_triggersByType.computeIfAbsent(type.asSubclass(Trigger.class),
+          key -> new ArrayList<>(2));
+      if (event instanceof HealthTrigger) {
+        triggers.add(insertionPoint(triggers, ((HealthTrigger) event).getHealth() - 1), event);
+      } else {
+        triggers.add(event);
+      }
+    }
     return f_eventTriggers.add(event);
   }
 
   @Override
   public boolean equals(Object obj) {
+    if (obj == this) {
+      return true;
+    }
     if (obj instanceof State) {
       return getName().equals(((State) obj).getName());
     }
@@ -65,12 +91,66 @@ public class State implements Serializable {
   }
 
   /**
-   * Use to get all of the possible events of this State
+   * Use to get all of the possible events of this State, in the order they were added
    *
-   * @return a Collection of Events.
+   * @return an unmodifiable Collection of Events.
    */
   public Collection<Trigger> getEventTriggers() {
-    return f_eventTriggers;
+    return Collections.unmodifiableCollection(f_eventTriggers);
+  }
+
+  /**
+   * Get the health triggers crossed when health falls from one value to another, that is those with
+   * a health value at or above the new health and below the old health.
+   *
+   * @param oldHealth
+   *          The health before the change
+   * @param newHealth
+   *          The health after the change
+   * @return an unmodifiable List of the crossed triggers, highest health value first, empty if health
+   *         did not fall
+   */
+  public List<HealthTrigger> getHealthTriggers(int oldHealth, int newHealth) {
+    final List<HealthTrigger> triggers = getTriggers(HealthTrigger.class);
+    if (newHealth >= oldHealth || triggers.isEmpty()) {
+      return Collections.emptyList();
+    }
+    return triggers.subList(insertionPoint(triggers, oldHealth - 1), insertionPoint(triggers, newHealth - 1));
+  }
+
+  /**
+   * Get the triggers of this state of the given type, in the order they were added, or for health
+   * triggers in descending order of their health value.
+   *
+   * @param type
+   *          The class of trigger wanted, such as {@link pavlik.john.dungeoncrawl.model.events.triggers.SightTrigger}
+   * @return an unmodifiable List of triggers of that type, empty if there are none
+   */
+  @SuppressWarnings("unchecked")
+  public <T extends Trigger> List<T> getTriggers(Class<T> type) {
+    final List<Trigger> triggers = f_triggersByType.get(type);
+    if (triggers == null) {
+      return Collections.emptyList();
+    }
+    return (List<T>) Collections.unmodifiableList(triggers);
+  }
+
+  /**
+   * Binary search a list of health triggers in descending order for the first with a health value
+   * at or below the given health. Triggers with equal values keep the order they were added in.
+   */
+  private static int insertionPoint(List<? extends Trigger> triggers, int health) {
+    int low = 0;
+    int high = triggers.size();
+    while (low < high) {
+      final int middle = (low + high) >>> 1;
+      if (((HealthTrigger) triggers.get(middle)).getHealth() > health) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
   }
 
   /**
@@ -1,11 +1,14 @@
 package pavlik.john.dungeoncrawl.model.events;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Objects;
 import java.util.Set;
 
 import pavlik.john.dungeoncrawl.model.Character;
+import pavlik.john.dungeoncrawl.model.Universe;
 
 /**
  * Used to trigger an {@link Event}.
@@ -23,6 +26,11 @@ public abstract class Trigger extends XMLAttribute {
 
   private final Set<Conditional> f_conditionals;
 
+  /**
+   * The conditionals in the order they are checked, cheapest first
+   */
+  private final Conditional[]    f_orderedConditionals;
+
   /**
    * @param event
    *          The event that gets triggered
@@ -37,6 +45,8 @@ public abstract class Trigger extends XMLAttribute {
     super(tag, value);
     f_event = Objects.requireNonNull(event, "event for trigger " + tag + " cannot be null");
     f_conditionals = Objects.requireNonNull(conditionals, "Event conditionals cannot be null");
+    f_orderedConditionals = conditionals.toArray(new Conditional[conditionals.size()]);
+    Arrays.sort(f_orderedConditionals, Comparator.comparingInt(Conditional::getCost));
   }
 
   /**
@@ -72,11 +82,24 @@ public abstract class Trigger extends XMLAttribute {
    * @return true if all conditions return true, false if any condition fails
    */
   public boolean meetsConditions(Character cause) {
-    for (final Conditional condition : f_conditionals) {
+    for (final Conditional condition : f_orderedConditionals) {
       if (!condition.meetsConditions(cause)) {
         return false;
       }
     }
     return true;
   }
+
+  /**
+   * Resolve the names the conditionals of this trigger refer to, see
+   * {@link Conditional#resolve(Universe)}
+   *
+   * @param world
+   *          The world this trigger belongs to
+   */
+  public void resolveConditionals(Universe world) {
+    for (final Conditional condition : f_orderedConditionals) {
+      condition.resolve(world);
+    }
+  }
 }
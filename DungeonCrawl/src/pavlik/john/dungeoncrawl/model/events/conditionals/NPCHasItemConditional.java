@@ -3,6 +3,8 @@ package pavlik.john.dungeoncrawl.model.events.conditionals;
 import java.util.Objects;
 
 import pavlik.john.dungeoncrawl.model.Character;
+import pavlik.john.dungeoncrawl.model.Item;
+import pavlik.john.dungeoncrawl.model.NonPlayerCharacter;
 import pavlik.john.dungeoncrawl.model.Universe;
 import pavlik.john.dungeoncrawl.model.events.Conditional;
 import pavlik.john.dungeoncrawl.model.events.XMLAttribute;
@@ -22,6 +24,11 @@ public class NPCHasItemConditional extends Conditional {
   String f_npcName;
   Universe  f_world;
   String f_item;
+  /**
+   * The NPC and item named, once they have been found in the world
+   */
+  private NonPlayerCharacter f_resolvedNPC;
+  private Item               f_resolvedItem;
 
   /**
    * Public Constructor
@@ -42,8 +49,22 @@ public class NPCHasItemConditional extends Conditional {
     f_item = Objects.requireNonNull(item, "NPCHasItemConditional item cannot be null");
   }
 
+  @Override
+  public int getCost() {
+    return 5;
+  }
+
   @Override
   public boolean meetsConditions(Character player) {
-    return f_world.getNonPlayerCharacter(f_npcName).getContainer().isPresent(f_world.getItem(f_item));
+    if (f_resolvedNPC == null || f_resolvedItem == null) {
+      resolve(f_world);
+    }
+    return f_resolvedNPC.getContainer().isPresent(f_resolvedItem);
+  }
+
+  @Override
+  public void resolve(Universe world) {
+    f_resolvedNPC = world.getNonPlayerCharacter(f_npcName);
+    f_resolvedItem = world.getItem(f_item);
   }
 }
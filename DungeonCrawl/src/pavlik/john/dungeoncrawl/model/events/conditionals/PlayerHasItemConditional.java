@@ -3,6 +3,8 @@ package pavlik.john.dungeoncrawl.model.events.conditionals;
 import java.util.Objects;
 
 import pavlik.john.dungeoncrawl.model.Character;
+import pavlik.john.dungeoncrawl.model.Item;
+import pavlik.john.dungeoncrawl.model.Universe;
 import pavlik.john.dungeoncrawl.model.events.Conditional;
 import pavlik.john.dungeoncrawl.model.events.XMLAttribute;
 
@@ -20,6 +22,10 @@ public class PlayerHasItemConditional extends Conditional {
    */
   private static final long serialVersionUID = 1L;
   String f_item;
+  /**
+   * The item named, once it has been found in the world
+   */
+  private Item              f_resolvedItem;
 
   /**
    * Public Constructor
@@ -34,8 +40,21 @@ public class PlayerHasItemConditional extends Conditional {
     f_item = Objects.requireNonNull(item, "PlayerHasItemConditional item cannot be null");
   }
 
+  @Override
+  public int getCost() {
+    return 5;
+  }
+
   @Override
   public boolean meetsConditions(Character player) {
-    return player.getContainer().isPresent(player.getLocation().getWorld().getItem(f_item));
+    if (f_resolvedItem == null) {
+      resolve(player.getLocation().getWorld());
+    }
+    return player.getContainer().isPresent(f_resolvedItem);
+  }
+
+  @Override
+  public void resolve(Universe world) {
+    f_resolvedItem = world.getItem(f_item);
   }
 }
@@ -34,6 +34,11 @@ public class PlayerHasMoneyConditional extends Conditional {
     f_money = Objects.requireNonNull(money, "PlayerHasMoneyConditional money cannot be null");
   }
 
+  @Override
+  public int getCost() {
+    return 1;
+  }
+
   @Override
   public boolean meetsConditions(Character player) {
     return player.getMoney() >= f_money;
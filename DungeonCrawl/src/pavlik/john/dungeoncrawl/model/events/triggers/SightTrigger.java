@@ -19,7 +19,12 @@ public class SightTrigger extends Trigger {
   /**
    *
    */
-  private static final long serialVersionUID = 1L;
+  private static final long  serialVersionUID = 1L;
+
+  /**
+   * The value of a sight trigger that watches for any player
+   */
+  public static final String ANY_PLAYER       = "player";
 
   /**
    * Public constructor
@@ -29,7 +34,7 @@ public class SightTrigger extends Trigger {
    * @param tag
    *          The XML tag from persistence
    * @param value
-   *          The name of the character to attack, or 'player' to attack any player
+   *          The name of the character to attack, or {@value #ANY_PLAYER} to attack any player
    * @param conditionals
    *          The pre-conditions that must be met
    */
@@ -40,7 +45,7 @@ public class SightTrigger extends Trigger {
   @Override
   public void execute(Character cause) {
     final String targetName = getValue();
-    if (targetName.equalsIgnoreCase("player") && cause instanceof Player) {
+    if (targetName.equalsIgnoreCase(ANY_PLAYER) && cause instanceof Player) {
       super.execute(cause);
     } else if (cause.getName().equalsIgnoreCase(targetName)) {
       super.execute(cause);
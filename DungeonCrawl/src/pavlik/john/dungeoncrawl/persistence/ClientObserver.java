@@ -0,0 +1,830 @@
+package pavlik.john.dungeoncrawl.persistence;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import pavlik.john.dungeoncrawl.model.Character;
+import pavlik.john.dungeoncrawl.model.CharacterClass;
+import pavlik.john.dungeoncrawl.model.ILocalObserver;
+import pavlik.john.dungeoncrawl.model.Item;
+import pavlik.john.dungeoncrawl.model.Navigation;
+import pavlik.john.dungeoncrawl.model.NonPlayerCharacter;
+import pavlik.john.dungeoncrawl.model.Place;
+import pavlik.john.dungeoncrawl.model.Player;
+import pavlik.john.dungeoncrawl.model.Universe;
+import pavlik.john.dungeoncrawl.model.Weapon;
+import pavlik.john.dungeoncrawl.model.events.triggers.SayTrigger;
+import pavlik.john.dungeoncrawl.view.parser.IDisplayNotifier;
+import pavlik.john.dungeoncrawl.view.parser.Parser;
+
+/**
+ * The server side observer of a single remote client. Every model and parser notification is
+ * encoded as {@link WireProtocol} frames and handed to {@link #transmit(byte[])}, independent of how
+ * the connection is serviced. All frames produced by one notification are transmitted together.
+ * <p>
+ * The observer remembers what it last sent about each entity, so that the mutable state sent ahead
+ * of a notification only carries what actually changed.
+ * <p>
+ * The world only notifies the observer of what its player can perceive, see {@link ILocalObserver},
+ * so a client is not sent events from rooms its player is not in.
+ * <p>
+ * Notifications may arrive on the world timer and on the thread reading the client's commands at
+ * the same time, so every notification is synchronized on this observer.
+ *
+ * @author John
+ */
+abstract class ClientObserver implements IDisplayNotifier, ILocalObserver {
+
+  /**
+   * The mutable fields of a character as last sent to the client
+   */
+  private static final class SentCharacter {
+    int     location;
+    int     health;
+    boolean conscious;
+    int     weapon;
+    int     target;
+    int     money;
+    long    score;
+  }
+
+  private Player                     f_player;
+  private Parser                     f_parser;
+
+  /**
+   * Ids of the places, items and weapons defined on this connection
+   */
+  private final Map<Object, Integer> f_entityIds    = new IdentityHashMap<>();
+  /**
+   * Ids of the characters defined on this connection, indexed by {@link Character#getId()}, with
+   * {@link WireProtocol#NO_ENTITY} for the characters not yet defined
+   */
+  private int[]                      f_characterIds = new int[16];
+  /**
+   * The places whose exits have been sent, indexed by {@link Place#getId()}
+   */
+  private final BitSet               f_placeExits   = new BitSet();
+  private int                        f_nextId       = WireProtocol.NO_ENTITY + 1;
+  private boolean                    f_headerSent   = false;
+  private boolean                    f_worldSent    = false;
+
+  /**
+   * Character state as last sent, keyed by character id
+   */
+  private final Map<Integer, SentCharacter> f_sentCharacters = new HashMap<>();
+  /**
+   * Contents of each character, place and container item as last sent, keyed by the owner's id
+   */
+  private final Map<Integer, Set<Item>>     f_sentContents   = new HashMap<>();
+  /**
+   * The id of the owner each item was last sent in, so that moving an item between owners is seen
+   * exactly as the client applies it
+   */
+  private final Map<Item, Integer>          f_sentOwners     = new IdentityHashMap<>();
+  private final List<Item>                  f_addedItems     = new ArrayList<>();
+  private final List<Item>                  f_removedItems   = new ArrayList<>();
+
+  private final FrameBuffer          f_frame        = new FrameBuffer();
+  private final FrameBuffer          f_output       = new FrameBuffer();
+
+  @Override
+  public synchronized void broadcastMessage(Character player, String speaker, String command) {
+    syncCurrentPlayer();
+    syncCharacter(player);
+    startFrame(WireProtocol.BROADCAST_MESSAGE);
+    writeCharacter(player);
+    f_frame.writeString(speaker);
+    f_frame.writeString(command);
+    endNotification();
+  }
+
+  @Override
+  public synchronized void characterEquippedWeapon(Character character, Weapon weapon) {
+    syncCurrentPlayer();
+    syncCharacter(character);
+    defineItem(weapon);
+    startFrame(WireProtocol.CHARACTER_EQUIPPED_WEAPON);
+    writeCharacter(character);
+    writeEntity(weapon);
+    endNotification();
+  }
+
+  @Override
+  public synchronized void characterHeal(Character character, int heal) {
+    syncCurrentPlayer();
+    syncCharacter(character);
+    startFrame(WireProtocol.CHARACTER_HEAL);
+    writeCharacter(character);
+    f_frame.writeInt(heal);
+    endNotification();
+  }
+
+  @Override
+  public synchronized void characterHitsCharacterFor(Character attacker, String combatMsg, Character target,
+      int damage) {
+    syncCurrentPlayer();
+    syncCharacter(attacker);
+    syncCharacter(target);
+    startFrame(WireProtocol.CHARACTER_HITS_CHARACTER_FOR);
+    writeCharacter(attacker);
+    f_frame.writeString(combatMsg);
+    writeCharacter(target);
+    f_frame.writeInt(damage);
+    endNotification();
+  }
+
+  @Override
+  public synchronized void characterMissedCharacter(Character character, String combatMsg, Character target) {
+    syncCurrentPlayer();
+    syncCharacter(character);
+    syncCharacter(target);
+    startFrame(WireProtocol.CHARACTER_MISSED_CHARACTER);
+    writeCharacter(character);
+    f_frame.writeString(combatMsg);
+    writeCharacter(target);
+    endNotification();
+  }
+
+  @Override
+  public synchronized void characterMoneyChanged(Character character, int money, String moneyName) {
+    syncCurrentPlayer();
+    syncCharacter(character);
+    startFrame(WireProtocol.CHARACTER_MONEY_CHANGED);
+    writeCharacter(character);
+    f_frame.writeInt(money);
+    f_frame.writeString(moneyName);
+    endNotification();
+  }
+
+  @Override
+  public synchronized void characterPutItemOnGround(Character character, Item item, Long totalPoints) {
+    syncCurrentPlayer();
+    syncCharacter(character);
+    syncPlace(character.getLocation());
+    startFrame(WireProtocol.CHARACTER_PUT_ITEM_ON_GROUND);
+    writeCharacter(character);
+    writeEntity(item);
+    f_frame.writeLong(totalPoints);
+    endNotification();
+  }
+
+  @Override
+  public synchronized void characterRespawnCountdown(Character character, int ticksRemaining) {
+    syncCurrentPlayer();
+    syncCharacter(character);
+    startFrame(WireProtocol.CHARACTER_RESPAWN_COUNTDOWN);
+    writeCharacter(character);
+    f_frame.writeInt(ticksRemaining);
+    endNotification();
+  }
+
+  @Override
+  public synchronized void characterRespawned(Character character, Place previousLocation, Place newLocation) {
+    syncCurrentPlayer();
+    syncCharacter(character);
+    definePlace(previousLocation);
+    syncPlace(newLocation);
+    startFrame(WireProtocol.CHARACTER_RESPAWNED);
+    writeCharacter(character);
+    writeEntity(previousLocation);
+    writeEntity(newLocation);
+    endNotification();
+  }
+
+  @Override
+  public synchronized void characterTookMoney(Character fromCharacter, Character toCharacter, int money,
+      String moneyName) {
+    syncCurrentPlayer();
+    syncCharacter(fromCharacter);
+    syncCharacter(toCharacter);
+    startFrame(WireProtocol.CHARACTER_TOOK_MONEY);
+    writeCharacter(fromCharacter);
+    writeCharacter(toCharacter);
+    f_frame.writeInt(money);
+    f_frame.writeString(moneyName);
+    endNotification();
+  }
+
+  @Override
+  public synchronized void characterUnequippedWeapon(Character character) {
+    syncCurrentPlayer();
+    syncCharacter(character);
+    startFrame(WireProtocol.CHARACTER_UNEQUIPPED_WEAPON);
+    writeCharacter(character);
+    endNotification();
+  }
+
+  @Override
+  public synchronized void characterWokeUp(Character character) {
+    syncCurrentPlayer();
+    syncCharacter(character);
+    startFrame(WireProtocol.CHARACTER_WOKE_UP);
+    writeCharacter(character);
+    endNotification();
+  }
+
+  @Override
+  public synchronized void characterWonFight(Character attacker, Character target) {
+    syncCurrentPlayer();
+    syncCharacter(attacker);
+    syncCharacter(target);
+    startFrame(WireProtocol.CHARACTER_WON_FIGHT);
+    writeCharacter(attacker);
+    writeCharacter(target);
+    endNotification();
+  }
+
+  private void defineCharacter(Character character) {
+    if (character == null || definedId(character) != WireProtocol.NO_ENTITY) {
+      return;
+    }
+    definePlace(character.getLocation());
+    final int id = f_nextId++;
+    final int index = character.getId();
+    if (index >= f_characterIds.length) {
+      f_characterIds = Arrays.copyOf(f_characterIds, Math.max(index + 1, f_characterIds.length * 2));
+    }
+    f_characterIds[index] = id;
+    final CharacterClass characterClass = character.getCharacterClass();
+    final Weapon defaultWeapon = characterClass == null ? null : characterClass.getDefaultWeapon();
+    if (defaultWeapon != null && !f_entityIds.containsKey(defaultWeapon)) {
+      f_entityIds.put(defaultWeapon, f_nextId++);
+    }
+    startFrame(character instanceof Player ? WireProtocol.DEFINE_PLAYER : WireProtocol.DEFINE_NPC);
+    f_frame.writeInt(id);
+    f_frame.writeString(character.getName());
+    f_frame.writeString(character.getArticle());
+    f_frame.writeString(character.getDescription());
+    writeEntity(character.getLocation());
+    f_frame.writeBoolean(defaultWeapon != null);
+    if (defaultWeapon != null) {
+      f_frame.writeString(characterClass.getName());
+      f_frame.writeInt(characterClass.getMaxHealth());
+      writeEntity(defaultWeapon);
+      f_frame.writeString(defaultWeapon.getName());
+      f_frame.writeString(defaultWeapon.getUseString());
+      f_frame.writeString(defaultWeapon.getHitSound());
+      f_frame.writeString(defaultWeapon.getMissSound());
+    }
+    endFrame();
+  }
+
+  private void defineItem(Item item) {
+    if (item == null || f_entityIds.containsKey(item)) {
+      return;
+    }
+    final int id = f_nextId++;
+    f_entityIds.put(item, id);
+    if (item instanceof Weapon) {
+      final Weapon weapon = (Weapon) item;
+      startFrame(WireProtocol.DEFINE_WEAPON);
+      f_frame.writeInt(id);
+      f_frame.writeString(weapon.getName());
+      f_frame.writeString(weapon.getArticle());
+      f_frame.writeString(weapon.getDescription());
+      f_frame.writeString(weapon.getUseString());
+      f_frame.writeString(weapon.getHitSound());
+      f_frame.writeString(weapon.getMissSound());
+    } else {
+      startFrame(WireProtocol.DEFINE_ITEM);
+      f_frame.writeInt(id);
+      f_frame.writeString(item.getName());
+      f_frame.writeString(item.getArticle());
+      f_frame.writeString(item.getDescription());
+      f_frame.writeBoolean(item.isTakeable());
+      f_frame.writeBoolean(item.getContainer() != null);
+    }
+    endFrame();
+  }
+
+  /**
+   * Define a place and its exits. Exits refer to other places by id, so the places next to it are
+   * defined too, but their own exits are only sent once something on the client is in one of them.
+   */
+  private void definePlace(Place place) {
+    if (place == null || f_placeExits.get(place.getId())) {
+      return;
+    }
+    f_placeExits.set(place.getId());
+    defineOnePlace(place);
+    int exits = 0;
+    for (final Navigation direction : Navigation.values()) {
+      final Place destination = place.getTravelDestinationToward(direction);
+      if (destination != null) {
+        defineOnePlace(destination);
+        exits++;
+      }
+    }
+    if (exits > 0) {
+      startFrame(WireProtocol.PLACE_EXITS);
+      f_frame.writeInt(f_entityIds.get(place));
+      f_frame.writeInt(exits);
+      for (final Navigation direction : Navigation.values()) {
+        final Place destination = place.getTravelDestinationToward(direction);
+        if (destination != null) {
+          f_frame.write(direction.ordinal());
+          writeEntity(destination);
+        }
+      }
+      endFrame();
+    }
+  }
+
+  /**
+   * Define a place without its exits
+   */
+  private void defineOnePlace(Place place) {
+    if (f_entityIds.containsKey(place)) {
+      return;
+    }
+    if (!f_worldSent) {
+      // Sent ahead of the first place so that the client's world is complete before it is used
+      f_worldSent = true;
+      startFrame(WireProtocol.WORLD_INFO);
+      f_frame.writeString(place.getWorld().getMoneyName());
+      f_frame.writeBoolean(place.getWorld().isGameWon());
+      endFrame();
+    }
+    final int id = f_nextId++;
+    f_entityIds.put(place, id);
+    startFrame(WireProtocol.DEFINE_PLACE);
+    f_frame.writeInt(id);
+    f_frame.writeString(place.getName());
+    f_frame.writeString(place.getArticle());
+    f_frame.writeString(place.getDescription());
+    f_frame.writeBoolean(place.getWinCondition());
+    f_frame.writeString(place.getSound());
+    endFrame();
+  }
+
+  @Override
+  public synchronized void display(String message) throws NullPointerException {
+    startFrame(WireProtocol.DISPLAY);
+    f_frame.writeString(Objects.requireNonNull(message, "message cannot be null"));
+    endNotification();
+  }
+
+  private void endFrame() {
+    f_output.appendFrame(f_frame);
+  }
+
+  /**
+   * Close the current frame and transmit everything produced by this notification
+   */
+  private void endNotification() {
+    endFrame();
+    transmit(f_output.toByteArray());
+    f_output.reset();
+  }
+
+  @Override
+  public synchronized void gameOver(Universe world) {
+    syncCurrentPlayer();
+    for (final Player player : world.getPlayersView()) {
+      syncCharacter(player);
+    }
+    startFrame(WireProtocol.GAME_OVER);
+    f_frame.writeBoolean(world.isGameWon());
+    endNotification();
+    f_parser.shutdown();
+  }
+
+  @Override
+  public synchronized Player getObservedPlayer() {
+    return f_player;
+  }
+
+  @Override
+  public synchronized void playerGainsItem(Character player, Item f_itemName) {
+    syncCurrentPlayer();
+    syncCharacter(player);
+    defineItem(f_itemName);
+    startFrame(WireProtocol.PLAYER_GAINS_ITEM);
+    writeCharacter(player);
+    writeEntity(f_itemName);
+    endNotification();
+  }
+
+  @Override
+  public synchronized void playerJoined(Player player) {
+    syncCurrentPlayer();
+    syncCharacter(player);
+    startFrame(WireProtocol.PLAYER_JOINED);
+    writeCharacter(player);
+    endNotification();
+  }
+
+  @Override
+  public synchronized void playerLosesItem(Character player, Item f_itemName) {
+    syncCurrentPlayer();
+    syncCharacter(player);
+    defineItem(f_itemName);
+    startFrame(WireProtocol.PLAYER_LOSES_ITEM);
+    writeCharacter(player);
+    writeEntity(f_itemName);
+    endNotification();
+  }
+
+  @Override
+  public synchronized void playerMoved(Player player, Place startLocation, Place finishLocation) {
+    syncCurrentPlayer();
+    syncCharacter(player);
+    definePlace(startLocation);
+    syncPlace(finishLocation);
+    startFrame(WireProtocol.PLAYER_MOVED);
+    writeCharacter(player);
+    writeEntity(startLocation);
+    writeEntity(finishLocation);
+    endNotification();
+  }
+
+  @Override
+  public synchronized void playerPutItemInItem(Player player, Item itemMoved, Item itemContainer) {
+    syncCurrentPlayer();
+    syncCharacter(player);
+    syncItem(itemContainer);
+    startFrame(WireProtocol.PLAYER_PUT_ITEM_IN_ITEM);
+    writeCharacter(player);
+    writeEntity(itemMoved);
+    writeEntity(itemContainer);
+    endNotification();
+  }
+
+  @Override
+  public synchronized void playerQuit(Player player) {
+    syncCurrentPlayer();
+    syncCharacter(player);
+    startFrame(WireProtocol.PLAYER_QUIT);
+    writeCharacter(player);
+    endNotification();
+  }
+
+  @Override
+  public synchronized void playerTalkedToNPC(Player player, NonPlayerCharacter npc, List<SayTrigger> currentEvents) {
+    syncCurrentPlayer();
+    syncCharacter(player);
+    syncCharacter(npc);
+    startFrame(WireProtocol.PLAYER_TALKED_TO_NPC);
+    writeCharacter(player);
+    writeCharacter(npc);
+    // Conditions are evaluated here, where the full state of the player is known
+    int count = 0;
+    for (final SayTrigger trigger : currentEvents) {
+      if (trigger.meetsConditions(player)) {
+        count++;
+      }
+    }
+    f_frame.writeInt(count);
+    for (final SayTrigger trigger : currentEvents) {
+      if (trigger.meetsConditions(player)) {
+        f_frame.writeString(trigger.getMessage());
+      }
+    }
+    endNotification();
+  }
+
+  @Override
+  public synchronized void playerTookItemFromGround(Player player, Item item, Long pointsAdded) {
+    syncCurrentPlayer();
+    syncCharacter(player);
+    syncPlace(player.getLocation());
+    startFrame(WireProtocol.PLAYER_TOOK_ITEM_FROM_GROUND);
+    writeCharacter(player);
+    writeEntity(item);
+    f_frame.writeLong(pointsAdded);
+    endNotification();
+  }
+
+  @Override
+  public synchronized void playSound(Character cause, String soundPath) {
+    syncCurrentPlayer();
+    syncCharacter(cause);
+    startFrame(WireProtocol.PLAY_SOUND);
+    writeCharacter(cause);
+    f_frame.writeString(soundPath);
+    endNotification();
+  }
+
+  @Override
+  public synchronized void quit() {
+    startFrame(WireProtocol.QUIT);
+    endNotification();
+    f_parser.shutdown();
+  }
+
+  @Override
+  public synchronized void setCurrentPlayer(Player player) {
+    f_player = player;
+    syncCharacter(player);
+    startFrame(WireProtocol.SET_CURRENT_PLAYER);
+    writeCharacter(player);
+    endNotification();
+  }
+
+  /**
+   * Attach the Parser that interprets the commands of this client. The parser is created with this
+   * observer, so it can only be attached after construction.
+   *
+   * @param parser
+   *          The Parser of the connected client
+   */
+  void setParser(Parser parser) {
+    f_parser = Objects.requireNonNull(parser, "parser cannot be null");
+  }
+
+  @Override
+  public synchronized void setSound(boolean enable) {
+    startFrame(WireProtocol.SET_SOUND);
+    f_frame.writeBoolean(enable);
+    endNotification();
+  }
+
+  /**
+   * Start a new frame, preceded by the stream header if it has not been sent yet.
+   */
+  private void startFrame(byte opcode) {
+    if (!f_headerSent) {
+      f_headerSent = true;
+      f_output.writeInt(WireProtocol.MAGIC);
+      f_output.writeShort(WireProtocol.VERSION);
+    }
+    f_frame.reset();
+    f_frame.write(opcode);
+  }
+
+  /**
+   * Send whichever fields of a character changed since it was last sent, or all of them the first
+   * time. Nothing is sent if the character is unchanged.
+   */
+  private void syncCharacter(Character character) {
+    if (character == null) {
+      return;
+    }
+    defineCharacter(character);
+    definePlace(character.getLocation());
+    defineItem(character.getCurrentWeapon());
+    defineCharacter(character.getCurrentTarget());
+    final Collection<Item> items = character.getContainer().getItems();
+    for (final Item item : items) {
+      defineItem(item);
+    }
+    final int id = definedId(character);
+    final int location = f_entityIds.get(character.getLocation());
+    final int weapon = entityId(character.getCurrentWeapon());
+    final int target = characterId(character.getCurrentTarget());
+    final long score = character instanceof Player ? ((Player) character).getScore() : 0;
+    SentCharacter sent = f_sentCharacters.get(id);
+    int changes = 0;
+    if (sent == null) {
+      sent = new SentCharacter();
+      f_sentCharacters.put(id, sent);
+      changes = WireProtocol.CHANGED_LOCATION | WireProtocol.CHANGED_HEALTH | WireProtocol.CHANGED_WEAPON
+          | WireProtocol.CHANGED_TARGET | WireProtocol.CHANGED_MONEY | WireProtocol.CHANGED_SCORE;
+    } else {
+      if (sent.location != location) {
+        changes |= WireProtocol.CHANGED_LOCATION;
+      }
+      if (sent.health != character.getCurrentHealth() || sent.conscious != character.isConscious()) {
+        changes |= WireProtocol.CHANGED_HEALTH;
+      }
+      if (sent.weapon != weapon) {
+        changes |= WireProtocol.CHANGED_WEAPON;
+      }
+      if (sent.target != target) {
+        changes |= WireProtocol.CHANGED_TARGET;
+      }
+      if (sent.money != character.getMoney()) {
+        changes |= WireProtocol.CHANGED_MONEY;
+      }
+      if (sent.score != score) {
+        changes |= WireProtocol.CHANGED_SCORE;
+      }
+    }
+    if (diffContents(id, items)) {
+      changes |= WireProtocol.CHANGED_ITEMS;
+    }
+    if (changes == 0) {
+      return;
+    }
+    startFrame(WireProtocol.CHARACTER_DELTA);
+    f_frame.writeInt(id);
+    f_frame.write(changes);
+    if ((changes & WireProtocol.CHANGED_LOCATION) != 0) {
+      f_frame.writeInt(location);
+      sent.location = location;
+    }
+    if ((changes & WireProtocol.CHANGED_HEALTH) != 0) {
+      f_frame.writeInt(character.getCurrentHealth());
+      f_frame.writeBoolean(character.isConscious());
+      sent.health = character.getCurrentHealth();
+      sent.conscious = character.isConscious();
+    }
+    if ((changes & WireProtocol.CHANGED_WEAPON) != 0) {
+      f_frame.writeInt(weapon);
+      sent.weapon = weapon;
+    }
+    if ((changes & WireProtocol.CHANGED_TARGET) != 0) {
+      f_frame.writeInt(target);
+      sent.target = target;
+    }
+    if ((changes & WireProtocol.CHANGED_MONEY) != 0) {
+      f_frame.writeInt(character.getMoney());
+      sent.money = character.getMoney();
+    }
+    if ((changes & WireProtocol.CHANGED_SCORE) != 0) {
+      f_frame.writeLong(score);
+      sent.score = score;
+    }
+    if ((changes & WireProtocol.CHANGED_ITEMS) != 0) {
+      writeContentsDelta(id);
+    }
+    endFrame();
+  }
+
+  /**
+   * Send the items added to and removed from a place or container item since it was last sent
+   */
+  private void syncContents(Object owner, Collection<Item> items) {
+    for (final Item item : items) {
+      defineItem(item);
+    }
+    final int id = f_entityIds.get(owner);
+    if (diffContents(id, items)) {
+      startFrame(WireProtocol.CONTENTS_DELTA);
+      f_frame.writeInt(id);
+      writeContentsDelta(id);
+      endFrame();
+    }
+  }
+
+  private void syncCurrentPlayer() {
+    syncCharacter(f_player);
+  }
+
+  private void syncItem(Item item) {
+    if (item == null) {
+      return;
+    }
+    defineItem(item);
+    if (item.getContainer() != null) {
+      syncContents(item, item.getContainer().getItems());
+    }
+  }
+
+  /**
+   * Send the changes to the items on the ground and to every character present
+   */
+  private void syncPlace(Place place) {
+    if (place == null) {
+      return;
+    }
+    definePlace(place);
+    for (final Character character : place.getAllCharacters()) {
+      syncCharacter(character);
+    }
+    syncContents(place, place.getContainer().getItems());
+  }
+
+  @Override
+  public synchronized void takeitemFromItem(Player player, Item itemMoved, Item itemContainer) {
+    syncCurrentPlayer();
+    syncCharacter(player);
+    syncItem(itemContainer);
+    startFrame(WireProtocol.TAKE_ITEM_FROM_ITEM);
+    writeCharacter(player);
+    writeEntity(itemMoved);
+    writeEntity(itemContainer);
+    endNotification();
+  }
+
+  @Override
+  public synchronized void toggleSound() {
+    startFrame(WireProtocol.TOGGLE_SOUND);
+    endNotification();
+  }
+
+  /**
+   * Queue encoded frames to be written to the connected client.
+   *
+   * @param frames
+   *          One or more complete frames, the first of which may be preceded by the stream header
+   */
+  abstract void transmit(byte[] frames);
+
+  @Override
+  public synchronized void worldLoaded(Universe world, String fileName) {
+    startFrame(WireProtocol.WORLD_LOADED);
+    f_frame.writeString(fileName);
+    endNotification();
+    // Every id refers to an entity of the previous world
+    f_entityIds.clear();
+    Arrays.fill(f_characterIds, WireProtocol.NO_ENTITY);
+    f_placeExits.clear();
+    f_nextId = WireProtocol.NO_ENTITY + 1;
+    f_sentCharacters.clear();
+    f_sentContents.clear();
+    f_sentOwners.clear();
+    f_worldSent = false;
+    f_player = null;
+    f_parser.clearPlayer();
+  }
+
+  private int characterId(Character character) {
+    return character == null ? WireProtocol.NO_ENTITY : definedId(character);
+  }
+
+  /**
+   * @return the id the character was defined with on this connection, or
+   *         {@link WireProtocol#NO_ENTITY} if it has not been defined yet
+   */
+  private int definedId(Character character) {
+    final int index = character.getId();
+    if (index == Universe.NO_ID) {
+      throw new IllegalArgumentException(character + " has not been added to a world");
+    }
+    return index < f_characterIds.length ? f_characterIds[index] : WireProtocol.NO_ENTITY;
+  }
+
+  /**
+   * Compare the items an owner holds with the items last sent for it, filling f_addedItems and
+   * f_removedItems.
+   *
+   * @return true if the contents changed
+   */
+  private boolean diffContents(int ownerId, Collection<Item> items) {
+    f_addedItems.clear();
+    f_removedItems.clear();
+    final Set<Item> sent = f_sentContents.get(ownerId);
+    if (sent == null) {
+      f_addedItems.addAll(items);
+      return !items.isEmpty();
+    }
+    for (final Item item : items) {
+      if (!sent.contains(item)) {
+        f_addedItems.add(item);
+      }
+    }
+    // Everything that was sent and is still held plus everything added adds up to the current
+    // contents, unless something was removed
+    if (sent.size() + f_addedItems.size() != items.size()) {
+      final Set<Item> current = Collections.newSetFromMap(new IdentityHashMap<>());
+      current.addAll(items);
+      for (final Item item : sent) {
+        if (!current.contains(item)) {
+          f_removedItems.add(item);
+        }
+      }
+    }
+    return !f_addedItems.isEmpty() || !f_removedItems.isEmpty();
+  }
+
+  private int entityId(Object entity) {
+    return entity == null ? WireProtocol.NO_ENTITY : f_entityIds.get(entity);
+  }
+
+  private void writeCharacter(Character character) {
+    f_frame.writeInt(characterId(character));
+  }
+
+  /**
+   * Write the result of the last {@link #diffContents(int, Collection)} and remember it as sent.
+   * An added item leaves whichever owner it was last sent in, as it does on the client.
+   */
+  private void writeContentsDelta(int ownerId) {
+    final Set<Item> sent = f_sentContents.computeIfAbsent(ownerId, key -> Collections
+        .newSetFromMap(new IdentityHashMap<>()));
+    writeItems(f_addedItems);
+    writeItems(f_removedItems);
+    for (final Item item : f_removedItems) {
+      sent.remove(item);
+      f_sentOwners.remove(item);
+    }
+    for (final Item item : f_addedItems) {
+      final Integer previousOwner = f_sentOwners.put(item, ownerId);
+      if (previousOwner != null) {
+        f_sentContents.get(previousOwner).remove(item);
+      }
+      sent.add(item);
+    }
+  }
+
+  private void writeEntity(Object entity) {
+    f_frame.writeInt(entityId(entity));
+  }
+
+  private void writeItems(Collection<Item> items) {
+    f_frame.writeInt(items.size());
+    for (final Item item : items) {
+      writeEntity(item);
+    }
+  }
+}
@@ -0,0 +1,87 @@
+package pavlik.john.dungeoncrawl.persistence;
+
+import java.util.PriorityQueue;
+
+/**
+ * The batches of many connections waiting to be flushed, in the order they fall due. Each entry
+ * remembers which batch of its {@link OutputBatcher} it was queued for; a batch that was taken
+ * early, because it filled up, leaves its entry behind, and that entry is dropped when it comes up
+ * instead of being judged by the newer batch. Not thread safe, a queue belongs to one event loop.
+ *
+ * @author John
+ *
+ * @param <T>
+ *          The connections whose batches are queued
+ */
+final class FlushQueue<T> {
+
+  private static final class Entry<T> {
+    final T             f_owner;
+    final OutputBatcher f_output;
+    final long          f_batch;
+    final long          f_dueAt;
+
+    Entry(T owner, OutputBatcher output, long batch) {
+      f_owner = owner;
+      f_output = output;
+      f_batch = batch;
+      f_dueAt = output.getDueAt();
+    }
+  }
+
+  // Compared by difference, since System.nanoTime() may overflow
+  private final PriorityQueue<Entry<T>> f_entries = new PriorityQueue<>(
+      (a, b) -> Long.signum(a.f_dueAt - b.f_dueAt));
+
+  /**
+   * Queue a batch to be flushed when it falls due
+   *
+   * @param owner
+   *          The connection the batch belongs to
+   * @param output
+   *          The batcher of the connection
+   * @param batch
+   *          The number of the batch, from {@link OutputBatcher#getBatch()} just after it started
+   */
+  void add(T owner, OutputBatcher output, long batch) {
+    f_entries.add(new Entry<>(owner, output, batch));
+  }
+
+  /**
+   * @return true if no batch is queued
+   */
+  boolean isEmpty() {
+    return f_entries.isEmpty();
+  }
+
+  /**
+   * How long until the first queued batch falls due
+   *
+   * @param now
+   *          The current {@link System#nanoTime()}
+   * @return the nanoseconds remaining, 0 or less if it is due, or {@link Long#MAX_VALUE} if nothing
+   *         is queued
+   */
+  long nanosUntilNext(long now) {
+    final Entry<T> entry = f_entries.peek();
+    return entry == null ? Long.MAX_VALUE : entry.f_dueAt - now;
+  }
+
+  /**
+   * Take the next connection whose queued batch has fallen due and has not been taken yet
+   *
+   * @param now
+   *          The current {@link System#nanoTime()}
+   * @return the connection to flush, or null if no queued batch is due
+   */
+  T pollDue(long now) {
+    Entry<T> entry;
+    while ((entry = f_entries.peek()) != null && entry.f_dueAt - now <= 0) {
+      f_entries.poll();
+      if (entry.f_output.isPending(entry.f_batch)) {
+        return entry.f_owner;
+      }
+    }
+    return null;
+  }
+}
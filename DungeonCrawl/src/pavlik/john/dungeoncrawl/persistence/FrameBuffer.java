@@ -0,0 +1,60 @@
+package pavlik.john.dungeoncrawl.persistence;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A growable byte buffer with the big-endian primitive writers of {@link java.io.DataOutputStream},
+ * but without checked exceptions since nothing can fail while writing to memory. Used to assemble
+ * {@link WireProtocol} frames.
+ *
+ * @author John
+ */
+final class FrameBuffer extends ByteArrayOutputStream {
+
+  FrameBuffer() {
+    super(256);
+  }
+
+  /**
+   * Append the contents of another buffer as one frame, prefixed by its length
+   *
+   * @param frame
+   *          The opcode and fields of the frame
+   */
+  void appendFrame(FrameBuffer frame) {
+    writeInt(frame.count);
+    write(frame.buf, 0, frame.count);
+  }
+
+  void writeBoolean(boolean value) {
+    write(value ? 1 : 0);
+  }
+
+  void writeInt(int value) {
+    write(value >>> 24);
+    write(value >>> 16);
+    write(value >>> 8);
+    write(value);
+  }
+
+  void writeLong(long value) {
+    writeInt((int) (value >>> 32));
+    writeInt((int) value);
+  }
+
+  void writeShort(short value) {
+    write(value >>> 8);
+    write(value);
+  }
+
+  void writeString(String value) {
+    if (value == null) {
+      writeInt(-1);
+    } else {
+      final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      writeInt(bytes.length);
+      write(bytes, 0, bytes.length);
+    }
+  }
+}
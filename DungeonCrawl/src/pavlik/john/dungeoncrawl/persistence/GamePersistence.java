@@ -1,18 +1,25 @@
 package pavlik.john.dungeoncrawl.persistence;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileSystemNotFoundException;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -22,30 +29,19 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Result;
-import javax.xml.transform.Source;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerConfigurationException;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.TransformerFactoryConfigurationError;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.xml.sax.SAXException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
 
 import pavlik.john.dungeoncrawl.exceptions.PersistenceStateException;
 import pavlik.john.dungeoncrawl.model.Character;
 import pavlik.john.dungeoncrawl.model.CharacterClass;
 import pavlik.john.dungeoncrawl.model.Consumable;
 import pavlik.john.dungeoncrawl.model.Container;
+import pavlik.john.dungeoncrawl.model.HasContainer;
 import pavlik.john.dungeoncrawl.model.Navigation;
 import pavlik.john.dungeoncrawl.model.Item;
 import pavlik.john.dungeoncrawl.model.NonPlayerCharacter;
@@ -80,8 +76,8 @@ import pavlik.john.dungeoncrawl.model.events.triggers.SightTrigger;
 import pavlik.john.dungeoncrawl.model.events.triggers.TimeTrigger;
 
 /**
- * The persistence capability for the game. Uses DOM parsing. Separate layer, not part of MVC.
- * Called from Controller.
+ * The persistence capability for the game. Uses StAX parsing and writing, a single pass over the
+ * file either way. Separate layer, not part of MVC. Called from Controller.
  *
  * @author John Pavlik
  *
@@ -89,16 +85,17 @@ import pavlik.john.dungeoncrawl.model.events.triggers.TimeTrigger;
  */
 public class GamePersistence {
 
-  private static Set<Action> buildActions(Node eventElement, Universe world, String npcName, Container npcInventory) {
+  private static Set<Action> buildActions(Map<String, String> event, String text, Universe world, String npcName,
+      Container npcInventory) {
     final Set<Action> actions = new HashSet<>();
     {
-      final String response = getAttributeValue(eventElement, RESPONSE_TAG);
+      final String response = event.get(RESPONSE_TAG);
       if (response != null) {
         actions.add(new MessageAction(response, npcName, RESPONSE_TAG));
       }
     }
     {
-      final String takeItem = getAttributeValue(eventElement, TAKE_ITEM_TAG);
+      final String takeItem = event.get(TAKE_ITEM_TAG);
       if (takeItem != null) {
         final String[] items = takeItem.split(",");
         for (final String item : items) {
@@ -107,7 +104,7 @@ public class GamePersistence {
       }
     }
     {
-      final String giveItem = getAttributeValue(eventElement, GIVE_ITEM_TAG);
+      final String giveItem = event.get(GIVE_ITEM_TAG);
       if (giveItem != null) {
         final String[] items = giveItem.split(",");
         for (final String item : items) {
@@ -116,37 +113,37 @@ public class GamePersistence {
       }
     }
     {
-      final String payMoney = getAttributeValue(eventElement, PAY_MONEY_TAG);
+      final String payMoney = event.get(PAY_MONEY_TAG);
       if (payMoney != null) {
         actions.add(new AdjustMoneyAction(payMoney, false, PAY_MONEY_TAG));
       }
     }
     {
-      final String acceptMoney = getAttributeValue(eventElement, ACCEPT_MONEY_TAG);
+      final String acceptMoney = event.get(ACCEPT_MONEY_TAG);
       if (acceptMoney != null) {
         actions.add(new AdjustMoneyAction(acceptMoney, true, ACCEPT_MONEY_TAG));
       }
     }
     {
-      final String location = getAttributeValue(eventElement, SET_NPC_LOCATION_TAG);
+      final String location = event.get(SET_NPC_LOCATION_TAG);
       if (location != null) {
         actions.add(new SetNPCLocationAction(world, npcName, location, SET_NPC_LOCATION_TAG));
       }
     }
     {
-      final String attackCharacter = getAttributeValue(eventElement, ATTACK_CHARACTER_TAG);
+      final String attackCharacter = event.get(ATTACK_CHARACTER_TAG);
       if (attackCharacter != null) {
         actions.add(new AttackCharacterAction(npcName, attackCharacter, ATTACK_CHARACTER_TAG));
       }
     }
     {
-      final String sound = getAttributeValue(eventElement, SOUND_TAG);
+      final String sound = event.get(SOUND_TAG);
       if (sound != null) {
         actions.add(new PlaySoundAction(world, sound, SOUND_TAG));
       }
     }
     {
-      final String newState = eventElement.getTextContent();
+      final String newState = text;
       if (newState != null && newState.trim().length() > 0) {
         actions.add(new SetNPCStateAction(world, npcName, newState, null));
       }
@@ -154,10 +151,10 @@ public class GamePersistence {
     return actions;
   }
 
-  private static Set<Conditional> buildConditionals(Node eventElement, Universe world, String npcName) {
+  private static Set<Conditional> buildConditionals(Map<String, String> event, Universe world, String npcName) {
     final Set<Conditional> conditionals = new HashSet<>();
     {
-      final String playerHasItem = getAttributeValue(eventElement, PLAYER_HAS_ITEM_TAG);
+      final String playerHasItem = event.get(PLAYER_HAS_ITEM_TAG);
       if (playerHasItem != null) {
         final String[] items = playerHasItem.split(",");
         for (final String item : items) {
@@ -166,13 +163,13 @@ public class GamePersistence {
       }
     }
     {
-      final String playerHasMoney = getAttributeValue(eventElement, PLAYER_HAS_MONEY_TAG);
+      final String playerHasMoney = event.get(PLAYER_HAS_MONEY_TAG);
       if (playerHasMoney != null) {
         conditionals.add(new PlayerHasMoneyConditional(Integer.parseInt(playerHasMoney), PLAYER_HAS_MONEY_TAG));
       }
     }
     {
-      final String npcHasItem = getAttributeValue(eventElement, NPC_HAS_ITEM_TAG);
+      final String npcHasItem = event.get(NPC_HAS_ITEM_TAG);
       if (npcHasItem != null) {
         final String[] items = npcHasItem.split(",");
         for (final String item : items) {
@@ -183,562 +180,768 @@ public class GamePersistence {
     return conditionals;
   }
 
-  private static Element createClassXML(CharacterClass cClass, Element combatElement, Document dom) {
-    final Element classElement = dom.createElement(CLASS_TAG);
-    classElement.setAttribute(NAME_TAG, cClass.getName());
-    classElement.setAttribute(DEFAULT_WEAPON_NAME_TAG, cClass.getDefaultWeapon().getName());
-    classElement.setAttribute(USE_MESSAGE_TAG, cClass.getDefaultWeapon().getUseString());
-    classElement.setAttribute(EFFECT_TAG, (Integer.toString(cClass.getDefaultWeapon().getNumDice()) + "d" + Integer
+  static Trigger buildTrigger(Map<String, String> event, String text, Universe world, String npcName,
+      Container npcInventory) throws PersistenceStateException {
+    final String onSay = event.get(SAY_TAG);
+    final String onAttacked = event.get(ON_ATTACKED_TAG);
+    final String onHealthString = event.get(ON_HP_TAG);
+    final String onSightString = event.get(ON_SIGHT_TAG);
+    final String onTimeString = event.get(ON_TIME_TAG);
+    if (onSay != null) {
+      return new SayTrigger(new Event(buildActions(event, text, world, npcName, npcInventory)), world, onSay, SAY_TAG,
+          buildConditionals(event, world, npcName));
+    } else if (onAttacked != null && onAttacked.toUpperCase().startsWith("Y")) {
+      return new AttackedTrigger(new Event(buildActions(event, text, world, npcName, npcInventory)), ON_ATTACKED_TAG,
+          buildConditionals(event, world, npcName));
+    } else if (onHealthString != null) {
+      try {
+        final int health = Integer.parseInt(onHealthString);
+        if (health < 0) {
+          throw new NumberFormatException();
+        }
+        return new HealthTrigger(health, new Event(buildActions(event, text, world, npcName, npcInventory)), ON_HP_TAG,
+            buildConditionals(event, world, npcName));
+      } catch (final NumberFormatException e) {
+        throw new PersistenceStateException("The " + ON_HP_TAG + " must have an integer value greater or equal to 0: "
+            + onHealthString);
+      }
+    } else if (onSightString != null) {
+      return new SightTrigger(new Event(buildActions(event, text, world, npcName, npcInventory)), ON_SIGHT_TAG,
+          onSightString, buildConditionals(event, world, npcName));
+    } else if (onTimeString != null) {
+      try {
+        final int time = Integer.parseInt(onTimeString);
+        if (time <= 0) {
+          throw new NumberFormatException();
+        }
+        return new TimeTrigger(new Event(buildActions(event, text, world, npcName, npcInventory)), ON_TIME_TAG, time,
+            buildConditionals(event, world, npcName));
+      } catch (final NumberFormatException e) {
+        throw new PersistenceStateException("The onTime value must be an integer greater or equal to 1.");
+      }
+    }
+    throw new PersistenceStateException("At least one trigger must be added to each event, either " + SAY_TAG + ", "
+        + ON_ATTACKED_TAG + ", " + ON_HP_TAG + ", " + ON_SIGHT_TAG + ", or " + ON_TIME_TAG);
+  }
+
+  /**
+   * Start a new line, indented to the depth of the element about to be written
+   */
+  private static void indent(XMLStreamWriter out, int depth) throws XMLStreamException {
+    out.writeCharacters(INDENT, 0, 1 + 2 * depth);
+  }
+
+  /**
+   * Write an attribute of the element just started, unless its value is <code>null</code>
+   */
+  private static void writeAttribute(XMLStreamWriter out, String tag, String value) throws XMLStreamException {
+    if (value != null) {
+      out.writeAttribute(tag, value);
+    }
+  }
+
+  private static void writeClassXML(CharacterClass cClass, XMLStreamWriter out) throws XMLStreamException {
+    indent(out, 2);
+    out.writeStartElement(CLASS_TAG);
+    out.writeAttribute(NAME_TAG, cClass.getName());
+    out.writeAttribute(DEFAULT_WEAPON_NAME_TAG, cClass.getDefaultWeapon().getName());
+    out.writeAttribute(USE_MESSAGE_TAG, cClass.getDefaultWeapon().getUseString());
+    out.writeAttribute(EFFECT_TAG, (Integer.toString(cClass.getDefaultWeapon().getNumDice()) + "d" + Integer
         .toString(cClass.getDefaultWeapon().getNumSides())));
-    classElement.setAttribute(HIT_TAG, Integer.toString(cClass.getDefaultWeapon().getHitChance()));
-    classElement.setAttribute(KO_RECOVER_TAG, Integer.toString(cClass.getKORecovery()));
-    classElement.setAttribute(TARGET_TAG, cClass.getDefaultWeapon().getEffectTarget().toString());
-    classElement.setAttribute(COOLDOWN_TAG, Integer.toString(cClass.getDefaultWeapon().getCooldown()));
-    if (cClass.getDefaultWeapon().getMissSound() != null) {
-      classElement.setAttribute(MISS_SOUND_TAG, cClass.getDefaultWeapon().getMissSound());
-    }
-    if (cClass.getDefaultWeapon().getHitSound() != null) {
-      classElement.setAttribute(HIT_SOUND_TAG, cClass.getDefaultWeapon().getHitSound());
-    }
-    combatElement.appendChild(classElement);
-    final Element hpElement = dom.createElement(HP_TAG);
-    hpElement.setAttribute(MAX_TAG, Integer.toString(cClass.getMaxHealth()));
-    hpElement.setAttribute(REGEN_TAG, Integer.toString(cClass.getHealthRegen()));
-    classElement.appendChild(hpElement);
+    out.writeAttribute(HIT_TAG, Integer.toString(cClass.getDefaultWeapon().getHitChance()));
+    out.writeAttribute(KO_RECOVER_TAG, Integer.toString(cClass.getKORecovery()));
+    out.writeAttribute(TARGET_TAG, cClass.getDefaultWeapon().getEffectTarget().toString());
+    out.writeAttribute(COOLDOWN_TAG, Integer.toString(cClass.getDefaultWeapon().getCooldown()));
+    writeAttribute(out, MISS_SOUND_TAG, cClass.getDefaultWeapon().getMissSound());
+    writeAttribute(out, HIT_SOUND_TAG, cClass.getDefaultWeapon().getHitSound());
+    indent(out, 3);
+    out.writeEmptyElement(HP_TAG);
+    out.writeAttribute(MAX_TAG, Integer.toString(cClass.getMaxHealth()));
+    out.writeAttribute(REGEN_TAG, Integer.toString(cClass.getHealthRegen()));
     for (final String weapon : cClass.getWeaponTypes()) {
-      final Element itemElement = dom.createElement(WEAPON_TAG);
-      itemElement.setAttribute(TYPE_TAG, weapon);
-      classElement.appendChild(itemElement);
+      indent(out, 3);
+      out.writeEmptyElement(USES_TAG);
+      out.writeAttribute(TYPE_TAG, weapon);
     }
-    return combatElement;
+    indent(out, 2);
+    out.writeEndElement();
   }
 
-  private static Element createItemXML(Universe world, Item item, String locationName, Document dom) {
-    Element itemElement = null;
-    if (item instanceof Weapon) {
-      itemElement = dom.createElement(WEAPON_TAG);
-    } else if (item instanceof Consumable) {
-      itemElement = dom.createElement(CONSUMABLE_TAG);
+  /**
+   * Write an item, weapon or consumable
+   *
+   * @param locationName
+   *          The name of the container the item is in, or <code>null</code>
+   * @param requiredItems
+   *          The items the item is crafted from, or <code>null</code>
+   * @param depth
+   *          The depth of the item's element in the file
+   */
+  private static void writeItemXML(WorldView view, Item item, String locationName, Collection<Item> requiredItems,
+      int depth, XMLStreamWriter out) throws XMLStreamException {
+    final String tag = item instanceof Weapon ? WEAPON_TAG : item instanceof Consumable ? CONSUMABLE_TAG : ITEM_TAG;
+    final Map<Place, Long> dropPointsPlaces = item.getDropPointsPlaces();
+    final Map<Place, String> blockedPlaces = item.getPlaceBlockedMessages();
+    final boolean empty = dropPointsPlaces.isEmpty() && blockedPlaces.isEmpty()
+        && (requiredItems == null || requiredItems.isEmpty());
+    indent(out, depth);
+    if (empty) {
+      out.writeEmptyElement(tag);
     } else {
-      itemElement = dom.createElement(ITEM_TAG);
-    }
-    itemElement.setAttribute(NAME_TAG, item.getName());
-    itemElement.setAttribute(ARTICLE_TAG, item.getArticle());
-    itemElement.setAttribute(DESCRIPTION_TAG, item.getDescription());
-    if (locationName != null) {
-      itemElement.setAttribute(LOCATION_TAG, locationName);
-    }
-    itemElement.setAttribute(TAKEPOINTS_TAG, item.getTakePoints().toString());
-    itemElement.setAttribute(DROPPOINTS_TAG, item.getDropPoints().toString());
-    itemElement.setAttribute(TAKEABLE_TAG, item.isTakeable() ? "Y" : "N");
-    itemElement.setAttribute(CANTTAKE_TAG, item.cantTakeMessage());
-    itemElement.setAttribute(IS_CONTAINER_TAG, item.getContainer() != null ? "Y" : "N");
-    for (final Entry<Place, Long> entry : item.getDropPointsPlaces().entrySet()) {
-      final Place place = entry.getKey();
-      final Long points = entry.getValue();
-      final Element dropPlace = dom.createElement(PLACE_TAG);
-      itemElement.appendChild(dropPlace);
-      dropPlace.setAttribute(DROPPOINTS_TAG, points.toString());
-      dropPlace.setTextContent(place.getName());
-    }
-    for (final Entry<Place, String> entry : item.getPlaceBlockedMessages().entrySet()) {
-      final Place place = entry.getKey();
-      final String message = entry.getValue();
-      final Element blockPlace = dom.createElement(PLACE_TAG);
-      itemElement.appendChild(blockPlace);
-      blockPlace.setAttribute(BLOCKEDMSG_TAG, message);
-      blockPlace.setTextContent(place.getName());
+      out.writeStartElement(tag);
     }
+    out.writeAttribute(NAME_TAG, item.getName());
+    writeAttribute(out, ARTICLE_TAG, item.getArticle());
+    writeAttribute(out, DESCRIPTION_TAG, item.getDescription());
+    writeAttribute(out, LOCATION_TAG, locationName);
+    out.writeAttribute(TAKEPOINTS_TAG, item.getTakePoints().toString());
+    out.writeAttribute(DROPPOINTS_TAG, item.getDropPoints().toString());
+    out.writeAttribute(TAKEABLE_TAG, item.isTakeable() ? "Y" : "N");
+    writeAttribute(out, CANTTAKE_TAG, item.cantTakeMessage());
+    out.writeAttribute(IS_CONTAINER_TAG, item.getContainer() != null ? "Y" : "N");
 
     if (item instanceof Consumable) {
       final Consumable consumable = (Consumable) item;
-      itemElement.setAttribute(EFFECT_TAG, (Integer.toString(consumable.getNumDice()) + "d" + Integer
-          .toString(consumable.getNumSides())));
-      itemElement.setAttribute(EFFECTTYPE_TAG, consumable.getEffectType().toString());
-      itemElement.setAttribute(COOLDOWN_TAG, Integer.toString(consumable.getCooldown()));
-      itemElement.setAttribute(USES_TAG, consumable.getUsesRemaining().toString());
-      itemElement.setAttribute(TYPE_TAG, consumable.getType());
-      itemElement.setAttribute(USE_MESSAGE_TAG, consumable.getUseString());
-      itemElement.setAttribute(TARGET_TAG, consumable.getEffectTarget().toString());
-      itemElement.setAttribute(HIT_TAG, Integer.toString(consumable.getHitChance()));
-      if (consumable.getHitSound() != null) {
-        itemElement.setAttribute(HIT_SOUND_TAG, consumable.getHitSound());
-      }
-      if (consumable.getMissSound() != null) {
-        itemElement.setAttribute(MISS_SOUND_TAG, consumable.getMissSound());
-      }
+      out.writeAttribute(EFFECT_TAG, (Integer.toString(consumable.getNumDice()) + "d" + Integer.toString(consumable
+          .getNumSides())));
+      out.writeAttribute(EFFECTTYPE_TAG, consumable.getEffectType().toString());
+      out.writeAttribute(COOLDOWN_TAG, Integer.toString(consumable.getCooldown()));
+      out.writeAttribute(USES_TAG, Integer.toString(view.uses(consumable)));
+      out.writeAttribute(TYPE_TAG, consumable.getType());
+      out.writeAttribute(USE_MESSAGE_TAG, consumable.getUseString());
+      out.writeAttribute(TARGET_TAG, consumable.getEffectTarget().toString());
+      out.writeAttribute(HIT_TAG, Integer.toString(consumable.getHitChance()));
+      writeAttribute(out, HIT_SOUND_TAG, consumable.getHitSound());
+      writeAttribute(out, MISS_SOUND_TAG, consumable.getMissSound());
       if (locationName != null) {
-        final pavlik.john.dungeoncrawl.model.Character character = world.getCharacter(locationName);
-        if (character != null && character.getCurrentWeapon() == item) {
-          itemElement.setAttribute(EQUIP_TAG, "Y");
+        final Character character = view.getWorld().getCharacter(locationName);
+        if (character != null && view.weapon(character) == item) {
+          out.writeAttribute(EQUIP_TAG, "Y");
         }
       }
     }
-    return itemElement;
+    if (empty) {
+      return;
+    }
+
+    for (final Entry<Place, Long> entry : dropPointsPlaces.entrySet()) {
+      indent(out, depth + 1);
+      out.writeStartElement(PLACE_TAG);
+      out.writeAttribute(DROPPOINTS_TAG, entry.getValue().toString());
+      out.writeCharacters(entry.getKey().getName());
+      out.writeEndElement();
+    }
+    for (final Entry<Place, String> entry : blockedPlaces.entrySet()) {
+      indent(out, depth + 1);
+      out.writeStartElement(PLACE_TAG);
+      out.writeAttribute(BLOCKEDMSG_TAG, entry.getValue());
+      out.writeCharacters(entry.getKey().getName());
+      out.writeEndElement();
+    }
+    if (requiredItems != null) {
+      for (final Item requiredItem : requiredItems) {
+        indent(out, depth + 1);
+        out.writeEmptyElement(ITEM_TAG);
+        out.writeAttribute(NAME_TAG, requiredItem.getName());
+      }
+    }
+    indent(out, depth);
+    out.writeEndElement();
+  }
+
+  /**
+   * Write the items in the container of a place, character or item
+   */
+  private static void writeItemsXML(WorldView view, HasContainer owner, String locationName, XMLStreamWriter out)
+      throws XMLStreamException {
+    for (final Item item : view.items(owner)) {
+      writeItemXML(view, item, locationName, null, 1, out);
+    }
   }
 
   /**
-   * Creates an XML tree for a {@link NonPlayerCharacter}.
+   * Writes the XML for a {@link NonPlayerCharacter}.
    *
    * @param npc
    *          the non player character
-   * @return the constructed XML tree.
    */
-  private static Element createNpcXML(NonPlayerCharacter npc, Document dom) {
-    final Element npcElement = dom.createElement(NPC_TAG);
-    npcElement.setAttribute(NAME_TAG, npc.getName());
-    npcElement.setAttribute(ARTICLE_TAG, npc.getArticle());
+  private static void writeNpcXML(WorldView view, NonPlayerCharacter npc, XMLStreamWriter out)
+      throws XMLStreamException {
+    indent(out, 1);
+    out.writeStartElement(NPC_TAG);
+    out.writeAttribute(NAME_TAG, npc.getName());
+    writeAttribute(out, ARTICLE_TAG, npc.getArticle());
     if (npc.getRespawnLocation() != null) {
-      npcElement.setAttribute(RESPAWN_TAG, npc.getRespawnLocation().getName());
+      out.writeAttribute(RESPAWN_TAG, npc.getRespawnLocation().getName());
     }
-    npcElement.setAttribute(LOCATION_TAG, npc.getLocation().getName());
-    npcElement.setAttribute(DESCRIPTION_TAG, npc.getDescription());
-    npcElement.setAttribute(MONEY_TAG, Integer.toString(npc.getMoney()));
-    npcElement.setAttribute(STATE_TAG, npc.getCurrentState().getName());
+    out.writeAttribute(LOCATION_TAG, view.location(npc).getName());
+    writeAttribute(out, DESCRIPTION_TAG, npc.getBaseDescription());
+    out.writeAttribute(MONEY_TAG, Integer.toString(view.money(npc)));
+    out.writeAttribute(STATE_TAG, view.state(npc).getName());
     if (npc.getCharacterClass() != null) {
-      npcElement.setAttribute(CLASS_TAG, npc.getCharacterClass().getName());
+      out.writeAttribute(CLASS_TAG, npc.getCharacterClass().getName());
     }
     for (final State state : npc.getStates()) {
-      final Element stateElement = dom.createElement(STATE_TAG);
-      stateElement.setAttribute(NAME_TAG, state.getName());
-      stateElement.setAttribute(DESCRIPTION_TAG, state.getDescription());
-      npcElement.appendChild(stateElement);
+      indent(out, 2);
+      out.writeStartElement(STATE_TAG);
+      out.writeAttribute(NAME_TAG, state.getName());
+      writeAttribute(out, DESCRIPTION_TAG, state.getDescription());
       for (final Trigger event : state.getEventTriggers()) {
-        final Element eventElement = dom.createElement(EVENT_TAG);
-        stateElement.appendChild(eventElement);
+        String newState = null;
+        indent(out, 3);
+        out.writeStartElement(EVENT_TAG);
         for (final XMLAttribute xml : event.getXMLAttributes()) {
           if (xml.getTag() == null) {
-            eventElement.setTextContent(xml.getValue());
+            newState = xml.getValue();
           } else {
-            eventElement.setAttribute(xml.getTag(), xml.getValue());
+            out.writeAttribute(xml.getTag(), xml.getValue());
           }
         }
+        if (newState != null) {
+          out.writeCharacters(newState);
+        }
+        out.writeEndElement();
       }
+      indent(out, 2);
+      out.writeEndElement();
     }
-    return npcElement;
+    indent(out, 1);
+    out.writeEndElement();
   }
 
   /**
-   * Creates an XML tree for a game place.
+   * Writes the XML for a game place.
    *
    * @param place
    *          the game place.
-   * @return the constructed XML tree.
    */
-  private static Element createPlaceXML(Place place, Document dom) {
-    final Element placeElement = dom.createElement(PLACE_TAG);
-
-    placeElement.setAttribute(NAME_TAG, place.getName());
-    placeElement.setAttribute(ARTICLE_TAG, place.getArticle());
-    if (place.getSound() != null) {
-      placeElement.setAttribute(SOUND_TAG, place.getSound());
-    }
+  private static void writePlaceXML(Place place, XMLStreamWriter out) throws XMLStreamException {
+    indent(out, 1);
+    out.writeStartElement(PLACE_TAG);
+    out.writeAttribute(NAME_TAG, place.getName());
+    writeAttribute(out, ARTICLE_TAG, place.getArticle());
+    writeAttribute(out, SOUND_TAG, place.getSound());
     if (place.getWinCondition()) {
-      placeElement.setAttribute(WIN_TAG, "Y");
+      out.writeAttribute(WIN_TAG, "Y");
     }
-    final Element description = dom.createElement(DESCRIPTION_TAG);
-    description.setTextContent(place.getDescription());
-    placeElement.appendChild(description);
+    indent(out, 2);
+    out.writeStartElement(DESCRIPTION_TAG);
+    out.writeCharacters(place.getDescription());
+    out.writeEndElement();
 
     for (final Navigation possibleDirection : Navigation.values()) {
       if (place.isTravelAllowedToward(possibleDirection)) {
-        final Element neighbor = dom.createElement(TRAVEL_TAG);
-        placeElement.appendChild(neighbor);
-        neighbor.setAttribute(DIRECTION_TAG, possibleDirection.getAbbreviation());
-        neighbor.setTextContent(place.getTravelDestinationToward(possibleDirection).getName());
+        indent(out, 2);
+        out.writeStartElement(TRAVEL_TAG);
+        out.writeAttribute(DIRECTION_TAG, possibleDirection.getAbbreviation());
+        out.writeCharacters(place.getTravelDestinationToward(possibleDirection).getName());
+        out.writeEndElement();
       }
     }
-    return placeElement;
+    indent(out, 1);
+    out.writeEndElement();
   }
 
   /**
-   * Creates an XML tree for the player.
+   * Writes the XML for a player.
    *
    * @param player
    *          the player.
-   * @return the constructed XML tree.
    */
-  private static Element createPlayerXML(Player player, Document dom) {
-    final Element playerElement = dom.createElement(PLAYER_TAG);
-    playerElement.setAttribute(NAME_TAG, player.getName());
-    playerElement.setAttribute(LOCATION_TAG, player.getLocation().getName());
+  private static void writePlayerXML(WorldView view, Player player, XMLStreamWriter out) throws XMLStreamException {
+    indent(out, 1);
+    out.writeEmptyElement(PLAYER_TAG);
+    out.writeAttribute(NAME_TAG, player.getName());
+    out.writeAttribute(LOCATION_TAG, view.location(player).getName());
     if (player.getRespawnLocation() != null) {
-      playerElement.setAttribute(RESPAWN_TAG, player.getRespawnLocation().getName());
+      out.writeAttribute(RESPAWN_TAG, player.getRespawnLocation().getName());
     }
-    playerElement.setAttribute(SCORE_TAG, player.getScore().toString());
-    playerElement.setAttribute(MONEY_TAG, Integer.toString(player.getMoney()));
-    playerElement.setAttribute(ARTICLE_TAG, player.getArticle());
-    playerElement.setAttribute(DESCRIPTION_TAG, player.getDescription());
+    out.writeAttribute(SCORE_TAG, Long.toString(view.score(player)));
+    out.writeAttribute(MONEY_TAG, Integer.toString(view.money(player)));
+    writeAttribute(out, ARTICLE_TAG, player.getArticle());
+    writeAttribute(out, DESCRIPTION_TAG, player.getDescription());
     if (player.getCharacterClass() != null) {
-      playerElement.setAttribute(CLASS_TAG, player.getCharacterClass().getName());
+      out.writeAttribute(CLASS_TAG, player.getCharacterClass().getName());
     }
-    return playerElement;
   }
 
   /**
-   * @param node
-   *          The node to check
-   * @param tag
-   *          The attribute value to check
-   * @return A string containing the text content of the attribute identified by the tag within the
-   *         node or <code>null</code> if the attribute is not found.
+   * Work left to the end of a load, when every element of the world file has been read
    */
-  private static String getAttributeValue(Node node, String tag) {
-    final Node attribute = node.getAttributes().getNamedItem(tag);
-    if (attribute != null) {
-      return attribute.getTextContent();
-    } else {
-      return null;
-    }
+  private interface FixUp {
+    void run() throws PersistenceStateException;
   }
 
-  private static Node getChild(Node node, String tag) {
-    Node child = node.getFirstChild();
-    while (child != null) {
-      if (child.getNodeName().equalsIgnoreCase(tag)) {
-        return child;
+  /**
+   * Reads a world file in a single pass with a StAX {@link XMLStreamReader}, building each element
+   * into the world as soon as it has been read. A reference to something further down the file
+   * (a travel destination, the place of a character or item, the container of an item, a class, an
+   * equipped weapon or the ingredients of a recipe) is kept by name and resolved in a fix-up phase
+   * once the file has been read, so no more than the world under construction and those names is
+   * held in memory.
+   */
+  private static final class WorldLoader {
+    private final XMLStreamReader f_reader;
+    private final Universe        f_world   = new Universe();
+
+    /*
+     * The fix-ups, in the order they are run
+     */
+    private final List<FixUp>     f_placed  = new ArrayList<>();
+    private final List<FixUp>     f_travel  = new ArrayList<>();
+    private final List<FixUp>     f_classes = new ArrayList<>();
+    private final List<FixUp>     f_equip   = new ArrayList<>();
+    private final List<FixUp>     f_storage = new ArrayList<>();
+    private final List<FixUp>     f_recipes = new ArrayList<>();
+
+    WorldLoader(XMLStreamReader reader) {
+      f_reader = reader;
+    }
+
+    /**
+     * @return the attributes of the element the reader is at the start of
+     */
+    private Map<String, String> attributes() {
+      final Map<String, String> attributes = new HashMap<>();
+      for (int i = 0; i < f_reader.getAttributeCount(); i++) {
+        attributes.put(f_reader.getAttributeLocalName(i), f_reader.getAttributeValue(i));
       }
-      child = child.getNextSibling();
+      return attributes;
+    }
+
+    private boolean is(String tag) {
+      return f_reader.getLocalName().equalsIgnoreCase(tag);
+    }
+
+    private boolean isItem() {
+      return is(ITEM_TAG) || is(WEAPON_TAG) || is(CONSUMABLE_TAG);
     }
-    return null;
-  }
 
-  private static List<Node> getChildren(Node root, String tag) {
-    final List<Node> children = new ArrayList<Node>();
-    Node currNode = root.getFirstChild();
-    while (currNode != null) {
-      if (currNode.getNodeName().equalsIgnoreCase(tag)) {
-        children.add(currNode);
+    /**
+     * Move to the start of the next child of the current element
+     *
+     * @return true at the start of a child, false at the end of the current element
+     */
+    private boolean nextChild() throws XMLStreamException {
+      while (f_reader.hasNext()) {
+        switch (f_reader.next()) {
+          case XMLStreamConstants.START_ELEMENT:
+            return true;
+          case XMLStreamConstants.END_ELEMENT:
+            return false;
+          default:
+            break;
+        }
       }
-      currNode = currNode.getNextSibling();
+      return false;
     }
-    return children;
-  }
 
-  private static void loadCharacterXML(Element root, Universe world) throws PersistenceStateException {
-    final List<Node> characters = getChildren(root, NPC_TAG);
-    characters.addAll(getChildren(root, PLAYER_TAG));
-    for (final Node characterElement : characters) {
-      final String name = getAttributeValue(characterElement, NAME_TAG);
-      final String charClass = getAttributeValue(characterElement, CLASS_TAG);
-      final String article = getAttributeValue(characterElement, ARTICLE_TAG);
-      final String moneyString = getAttributeValue(characterElement, MONEY_TAG);
-      String description = getAttributeValue(characterElement, DESCRIPTION_TAG);
-      if (description == null) {
-        description = ""; // Allow for no description
+    /**
+     * Move past the end of the element the reader is at the start of
+     */
+    private void skip() throws XMLStreamException {
+      for (int depth = 1; depth > 0;) {
+        switch (f_reader.next()) {
+          case XMLStreamConstants.START_ELEMENT:
+            depth++;
+            break;
+          case XMLStreamConstants.END_ELEMENT:
+            depth--;
+            break;
+          default:
+            break;
+        }
       }
-      final String locationString = getAttributeValue(characterElement, LOCATION_TAG);
-      final String respawnString = getAttributeValue(characterElement, RESPAWN_TAG);
+    }
 
-      final Container inventory = new Container();
-      Place respawn = null;
-      if (respawnString != null) {
-        respawn = world.getPlace(respawnString);
-        if (respawn == null) {
-          throw new PersistenceStateException("Unable to find place for " + name + " to respawn at: " + respawnString);
+    /**
+     * Move past the end of the element the reader is at the start of
+     *
+     * @return the text within the element
+     */
+    private String text() throws XMLStreamException {
+      final StringBuilder text = new StringBuilder();
+      for (int depth = 1; depth > 0;) {
+        switch (f_reader.next()) {
+          case XMLStreamConstants.START_ELEMENT:
+            depth++;
+            break;
+          case XMLStreamConstants.END_ELEMENT:
+            depth--;
+            break;
+          case XMLStreamConstants.CHARACTERS:
+          case XMLStreamConstants.CDATA:
+          case XMLStreamConstants.SPACE:
+            text.append(f_reader.getText());
+            break;
+          default:
+            break;
         }
       }
-      pavlik.john.dungeoncrawl.model.Character character = null;
-      if (locationString == null) {
-        throw new PersistenceStateException(name + " must have a location string defined");
+      return text.toString();
+    }
+
+    private static void run(List<FixUp> fixUps) throws PersistenceStateException {
+      for (final FixUp fixUp : fixUps) {
+        fixUp.run();
       }
-      final Place location = world.getPlace(locationString);
-      if (location == null) {
-        throw new PersistenceStateException("Unable to find the location " + locationString + " for " + name);
+      fixUps.clear();
+    }
+
+    /**
+     * Run a fix-up now if what it refers to has already been read, otherwise after the whole file
+     */
+    private static void runOrDefer(boolean ready, List<FixUp> fixUps, FixUp fixUp) throws PersistenceStateException {
+      if (ready) {
+        fixUp.run();
+      } else {
+        fixUps.add(fixUp);
       }
-      switch (characterElement.getNodeName()) {
-        case PLAYER_TAG:
-          final String score = getAttributeValue(characterElement, SCORE_TAG);
-          final Player player = world.createPlayer(name, location, article, description, respawn);
-          if (score != null) {
-            try {
-              player.addPoints(Long.parseLong(score));
-            } catch (final NumberFormatException e) {
-              throw new PersistenceStateException(name + "'s score must be an integer number");
-            }
+    }
+
+    private boolean placesRead(Iterable<String> names) {
+      for (final String name : names) {
+        if (name != null && f_world.getPlace(name) == null) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Read the whole world file
+     *
+     * @return the world it describes
+     */
+    Universe load() throws XMLStreamException, PersistenceStateException {
+      if (!nextChild()) {
+        throw new PersistenceStateException("The world file has no root element");
+      }
+      final Map<String, String> root = attributes();
+      final String tickRate = root.get(TICK_TAG);
+      if (tickRate != null) {
+        f_world.setTickRate(Long.parseLong(tickRate));
+      }
+      final String seed = root.get(SEED_TAG);
+      if (seed != null) {
+        f_world.setRandomSeed(Long.parseLong(seed));
+      }
+      final String moneyName = root.get(MONEY_TAG);
+      f_world.setMoneyName(moneyName != null ? moneyName : "money");
+
+      while (nextChild()) {
+        if (is(PLACE_TAG)) {
+          readPlace();
+        } else if (is(COMBAT_TAG)) {
+          readCombat();
+        } else if (is(NPC_TAG)) {
+          readCharacter(false);
+        } else if (is(PLAYER_TAG)) {
+          readCharacter(true);
+        } else if (isItem()) {
+          readItem(true, false);
+        } else if (is(CRAFTING_TAG)) {
+          readCrafting();
+        } else {
+          skip();
+        }
+      }
+
+      run(f_placed);
+      run(f_travel);
+      run(f_classes);
+      run(f_equip);
+      run(f_storage);
+      run(f_recipes);
+      if (f_world.getPlayersView().isEmpty()) {
+        throw new PersistenceStateException("Unable to locate any player elements in the world XML file");
+      }
+      resolveConditionals(f_world);
+      return f_world;
+    }
+
+    private void readPlace() throws XMLStreamException, PersistenceStateException {
+      final Map<String, String> attributes = attributes();
+      final String name = attributes.get(NAME_TAG);
+      final String article = attributes.get(ARTICLE_TAG);
+      final String winConditionString = attributes.get(WIN_TAG);
+      final String sound = attributes.get(SOUND_TAG);
+      String description = null;
+      while (nextChild()) {
+        if (is(DESCRIPTION_TAG) && description == null) {
+          description = text();
+        } else if (is(TRAVEL_TAG)) {
+          final String directionString = f_reader.getAttributeValue(null, DIRECTION_TAG);
+          final Optional<Navigation> option = Navigation.getInstance(directionString);
+          if (!option.isPresent()) {
+            throw new IllegalStateException("\"" + directionString + "\" is not a valid direction for travel from "
+                + "the place named \"" + name + "\"");
           }
-          character = player;
-          break;
-        case NPC_TAG:
-          final String currentStateString = getAttributeValue(characterElement, STATE_TAG);
-          State currentState = null;
-          final Set<State> states = new HashSet<>();
-          for (final Node stateElement : getChildren(characterElement, STATE_TAG)) {
-            final String stateName = getAttributeValue(stateElement, NAME_TAG);
-            String stateDescription = getAttributeValue(stateElement, DESCRIPTION_TAG);
-            if (stateDescription == null) {
-              stateDescription = "";
-            }
-            final State state = new State(stateName, stateDescription);
-            if (currentStateString.equalsIgnoreCase(stateName)) {
-              currentState = state;
-            }
-            if (!states.add(state)) {
-              throw new PersistenceStateException("Duplicate state name detected within single NPC");
+          final Navigation direction = option.get();
+          final String destinationName = text();
+          f_travel.add(() -> {
+            final Place destination = f_world.getPlace(destinationName);
+            if (destination == null) {
+              throw new PersistenceStateException("Unable to find a place named \"" + destinationName
+                  + "\" as the destination when traveling " + direction + " from the place named \"" + name + "\"");
             }
+            f_world.getPlace(name).setTravelDestination(direction, destination);
+          });
+        } else {
+          skip();
+        }
+      }
+      /*
+       * winCondition is set to true only when the WIN_TAG is present (not null) and is a string that
+       * begins with "Y", which allows the user to type "Y", "YES", "YOU BET", or anything else that
+       * would indicate an affirmative answer.
+       */
+      final Boolean winCondition = winConditionString != null && winConditionString.toUpperCase().startsWith("Y");
+      if (name == null || article == null || description == null) {
+        throw new PersistenceStateException("Name, article, and description must be defined for every place");
+      }
+      f_world.createPlace(name, article, description, winCondition, sound);
+    }
 
-            for (final Node eventElement : getChildren(stateElement, EVENT_TAG)) {
-              final String onSay = getAttributeValue(eventElement, SAY_TAG);
-              final String onAttacked = getAttributeValue(eventElement, ON_ATTACKED_TAG);
-              final String onHealthString = getAttributeValue(eventElement, ON_HP_TAG);
-              final String onSightString = getAttributeValue(eventElement, ON_SIGHT_TAG);
-              final String onTimeString = getAttributeValue(eventElement, ON_TIME_TAG);
-              Trigger trigger;
-              if (onSay != null) {
-                trigger = new SayTrigger(new Event(buildActions(eventElement, world, name, inventory)), world, onSay,
-                    SAY_TAG, buildConditionals(eventElement, world, name));
-              } else if (onAttacked != null && onAttacked.toUpperCase().startsWith("Y")) {
-                trigger = new AttackedTrigger(new Event(buildActions(eventElement, world, name, inventory)),
-                    ON_ATTACKED_TAG, buildConditionals(eventElement, world, name));
-              } else if (onHealthString != null) {
-                try {
-                  final int health = Integer.parseInt(onHealthString);
-                  if (health < 0) {
-                    throw new NumberFormatException();
-                  }
-                  trigger = new HealthTrigger(health, new Event(buildActions(eventElement, world, name, inventory)),
-                      ON_HP_TAG, buildConditionals(eventElement, world, name));
-                } catch (final NumberFormatException e) {
-                  throw new PersistenceStateException("The " + ON_HP_TAG
-                      + " must have an integer value greater or equal to 0: " + onHealthString);
-
-                }
-              } else if (onSightString != null) {
-                trigger = new SightTrigger(new Event(buildActions(eventElement, world, name, inventory)), ON_SIGHT_TAG,
-                    onSightString, buildConditionals(eventElement, world, name));
-              } else if (onTimeString != null) {
-                try {
-                  final int time = Integer.parseInt(onTimeString);
-                  if (time <= 0) {
-                    throw new NumberFormatException();
-                  }
-                  trigger = new TimeTrigger(new Event(buildActions(eventElement, world, name, inventory)), ON_TIME_TAG,
-                      time, buildConditionals(eventElement, world, name));
-                } catch (final NumberFormatException e) {
-                  throw new PersistenceStateException("The onTime value must be an integer greater or equal to 1.");
-                }
-              } else {
-                throw new PersistenceStateException("At least one trigger must be added to each event, either "
-                    + SAY_TAG + ", " + ON_ATTACKED_TAG + ", " + ON_HP_TAG + ", " + ON_SIGHT_TAG + ", or " + ON_TIME_TAG);
-              }
-              state.addEventTrigger(trigger);
-            }
-          }
-          character = world.createNPC(name, article, description, inventory, location, states, currentState, respawn);
-          break;
+    private void readCombat() throws XMLStreamException, PersistenceStateException {
+      f_world.setAllowCombat(true);
+      while (nextChild()) {
+        if (is(CLASS_TAG)) {
+          readClass();
+        } else {
+          skip();
+        }
       }
+    }
 
-      if (moneyString != null) {
-        try {
-          character.changeMoney(Integer.parseInt(moneyString));
-        } catch (final NumberFormatException e) {
-          throw new PersistenceStateException(name + "'s money must an integer number");
+    private void readClass() throws XMLStreamException, PersistenceStateException {
+      final Map<String, String> attributes = attributes();
+      final String name = attributes.get(NAME_TAG);
+      final String attackMsg = attributes.get(USE_MESSAGE_TAG);
+      final String KORecovery = attributes.get(KO_RECOVER_TAG);
+      final String attackDmg = attributes.get(EFFECT_TAG);
+      final String hitChance = attributes.get(HIT_TAG);
+      final String cooldownString = attributes.get(COOLDOWN_TAG);
+      final String targetString = attributes.get(TARGET_TAG);
+      final String defaultWeaponName = attributes.get(DEFAULT_WEAPON_NAME_TAG);
+      final String onHitSound = attributes.get(HIT_SOUND_TAG);
+      final String onMissSound = attributes.get(MISS_SOUND_TAG);
+      final List<String> classWeapons = new ArrayList<String>();
+      Map<String, String> hp = null;
+      while (nextChild()) {
+        if (is(HP_TAG) && hp == null) {
+          hp = attributes();
+        } else if (is(USES_TAG)) {
+          classWeapons.add(f_reader.getAttributeValue(null, TYPE_TAG));
         }
+        skip();
       }
-      if (charClass != null) {
-        final CharacterClass checkClass = world.getCharacterClass(charClass);
-        if (checkClass != null) {
-          character.setCharacterClass(checkClass);
+      String damageStrings[] = new String[2];
+      if (attackDmg != null) {
+        if (attackDmg.contains("d")) {
+          damageStrings = attackDmg.split("d");
         } else {
-          throw new PersistenceStateException(name + "'s class was not defined in the combat section");
+          damageStrings[0] = attackDmg;
+          damageStrings[1] = "1";
         }
       }
+      if (name == null) {
+        throw new PersistenceStateException("Every class must have a name attribute defined");
+      }
+      if (hp == null || hp.get(MAX_TAG) == null || hp.get(REGEN_TAG) == null) {
+        throw new PersistenceStateException(name
+            + " class must have a hp element defining the max health and regen rate.");
+      }
+      if (attackMsg == null || KORecovery == null || attackDmg == null || hitChance == null || cooldownString == null
+          || targetString == null || defaultWeaponName == null) {
+        throw new PersistenceStateException(name + " class must have a default attack option defined, including the "
+            + DEFAULT_WEAPON_NAME_TAG + ", " + USE_MESSAGE_TAG + ", " + KO_RECOVER_TAG + ", " + COOLDOWN_TAG + ", "
+            + EFFECT_TAG + "," + TARGET_TAG + ", and " + HIT_TAG);
+      }
+
+      f_world.createCharacterClass(name, Integer.parseInt(hp.get(MAX_TAG)), Integer.parseInt(hp.get(REGEN_TAG)),
+          classWeapons, attackMsg, Integer.parseInt(KORecovery), Integer.parseInt(damageStrings[0]), Integer
+              .parseInt(damageStrings[1]), Integer.parseInt(hitChance), Integer.parseInt(cooldownString), EffectTarget
+              .valueOf(targetString.toUpperCase()), onHitSound, onMissSound, defaultWeaponName);
     }
-    if (world.getPlayers().length == 0) {
-      throw new PersistenceStateException("Unable to locate any player elements in the world XML file");
-    }
-  }
 
-  private static void loadClassXML(Element root, Universe world) throws PersistenceStateException {
-    if (getChild(root, COMBAT_TAG) != null) {
-      world.setAllowCombat(true);
-      for (final Node combatElement : getChildren(root, COMBAT_TAG)) {
-        for (final Node classElement : getChildren(combatElement, CLASS_TAG)) {
-
-          final String name = getAttributeValue(classElement, NAME_TAG);
-          final Node hpElement = getChild(classElement, HP_TAG);
-          final String hpMax = getAttributeValue(hpElement, MAX_TAG);
-          final String hpRegen = getAttributeValue(hpElement, REGEN_TAG);
-          final List<String> classWeapons = new ArrayList<String>();
-          final String attackMsg = getAttributeValue(classElement, USE_MESSAGE_TAG);
-          final String KORecovery = getAttributeValue(classElement, KO_RECOVER_TAG);
-          final String attackDmg = getAttributeValue(classElement, EFFECT_TAG);
-          final String hitChance = getAttributeValue(classElement, HIT_TAG);
-          final String cooldownString = getAttributeValue(classElement, COOLDOWN_TAG);
-          final String targetString = getAttributeValue(classElement, TARGET_TAG);
-          final String defaultWeaponName = getAttributeValue(classElement, DEFAULT_WEAPON_NAME_TAG);
-          final String onHitSound = getAttributeValue(classElement, HIT_SOUND_TAG);
-          final String onMissSound = getAttributeValue(classElement, MISS_SOUND_TAG);
-          String damageStrings[] = new String[2];
-          if (attackDmg != null) {
-            if (attackDmg.contains("d")) {
-              damageStrings = attackDmg.split("d");
-            } else {
-              damageStrings[0] = attackDmg;
-              damageStrings[1] = "1";
-            }
+    private void readCharacter(boolean isPlayer) throws XMLStreamException, PersistenceStateException {
+      final Map<String, String> attributes = attributes();
+      final String name = attributes.get(NAME_TAG);
+      final String charClass = attributes.get(CLASS_TAG);
+      final String article = attributes.get(ARTICLE_TAG);
+      final String moneyString = attributes.get(MONEY_TAG);
+      final String description = attributes.getOrDefault(DESCRIPTION_TAG, ""); // Allow for no description
+      final String locationString = attributes.get(LOCATION_TAG);
+      final String respawnString = attributes.get(RESPAWN_TAG);
+      final String currentStateString = attributes.get(STATE_TAG);
+
+      final Container inventory = new Container();
+      final Set<State> states = new HashSet<>();
+      State currentState = null;
+      while (nextChild()) {
+        if (!isPlayer && is(STATE_TAG)) {
+          final State state = readState(name, inventory);
+          if (currentStateString.equalsIgnoreCase(state.getName())) {
+            currentState = state;
           }
-          for (final Node itemElement : getChildren(classElement, USES_TAG)) {
-            classWeapons.add(getAttributeValue(itemElement, TYPE_TAG));
+          if (!states.add(state)) {
+            throw new PersistenceStateException("Duplicate state name detected within single NPC");
           }
-          if (name == null) {
-            throw new PersistenceStateException("Every class must have a name attribute defined");
+        } else {
+          skip();
+        }
+      }
+
+      final State initialState = currentState;
+      runOrDefer(placesRead(Arrays.asList(locationString, respawnString)), f_placed, () -> {
+        Place respawn = null;
+        if (respawnString != null) {
+          respawn = f_world.getPlace(respawnString);
+          if (respawn == null) {
+            throw new PersistenceStateException("Unable to find place for " + name + " to respawn at: "
+                + respawnString);
           }
-          if (hpElement == null || hpMax == null || hpRegen == null) {
-            throw new PersistenceStateException(name
-                + " class must have a hp element defining the max health and regen rate.");
+        }
+        if (locationString == null) {
+          throw new PersistenceStateException(name + " must have a location string defined");
+        }
+        final Place location = f_world.getPlace(locationString);
+        if (location == null) {
+          throw new PersistenceStateException("Unable to find the location " + locationString + " for " + name);
+        }
+        final Character character;
+        if (isPlayer) {
+          final String score = attributes.get(SCORE_TAG);
+          final Player player = f_world.createPlayer(name, location, article, description, respawn);
+          if (score != null) {
+            try {
+              player.addPoints(Long.parseLong(score));
+            } catch (final NumberFormatException e) {
+              throw new PersistenceStateException(name + "'s score must be an integer number");
+            }
           }
-          if (attackMsg == null || KORecovery == null || attackDmg == null || hitChance == null
-              || cooldownString == null || targetString == null || defaultWeaponName == null) {
-            throw new PersistenceStateException(name
-                + " class must have a default attack option defined, including the " + DEFAULT_WEAPON_NAME_TAG + ", "
-                + USE_MESSAGE_TAG + ", " + KO_RECOVER_TAG + ", " + COOLDOWN_TAG + ", " + EFFECT_TAG + "," + TARGET_TAG
-                + ", and " + HIT_TAG);
+          character = player;
+        } else {
+          character = f_world.createNPC(name, article, description, inventory, location, states, initialState,
+              respawn);
+        }
+        if (moneyString != null) {
+          try {
+            character.changeMoney(Integer.parseInt(moneyString));
+          } catch (final NumberFormatException e) {
+            throw new PersistenceStateException(name + "'s money must an integer number");
           }
-
-          world.createCharacterClass(name, Integer.parseInt(hpMax), Integer.parseInt(hpRegen), classWeapons, attackMsg,
-              Integer.parseInt(KORecovery), Integer.parseInt(damageStrings[0]), Integer.parseInt(damageStrings[1]),
-              Integer.parseInt(hitChance), Integer.parseInt(cooldownString), EffectTarget.valueOf(targetString
-                  .toUpperCase()), onHitSound, onMissSound, defaultWeaponName);
         }
-      }
+        if (charClass != null) {
+          runOrDefer(f_world.getCharacterClass(charClass) != null, f_classes, () -> {
+            final CharacterClass checkClass = f_world.getCharacterClass(charClass);
+            if (checkClass == null) {
+              throw new PersistenceStateException(name + "'s class was not defined in the combat section");
+            }
+            character.setCharacterClass(checkClass);
+          });
+        }
+      });
     }
-  }
 
-  private static void loadCraftingXML(Element root, Universe world) throws PersistenceStateException {
-    final Node craftingNode = getChild(root, CRAFTING_TAG);
-    if (craftingNode == null) {
-      return;
+    private State readState(String npcName, Container inventory) throws XMLStreamException,
+        PersistenceStateException {
+      final Map<String, String> attributes = attributes();
+      final State state = new State(attributes.get(NAME_TAG), attributes.getOrDefault(DESCRIPTION_TAG, ""));
+      while (nextChild()) {
+        if (is(EVENT_TAG)) {
+          final Map<String, String> event = attributes();
+          state.addEventTrigger(buildTrigger(event, text(), f_world, npcName, inventory));
+        } else {
+          skip();
+        }
+      }
+      return state;
     }
-    loadItemXML(craftingNode, world, false);
-    final List<Node> newItemList = getChildren(craftingNode, ITEM_TAG);
-    newItemList.addAll(getChildren(craftingNode, WEAPON_TAG));
-    newItemList.addAll(getChildren(craftingNode, CONSUMABLE_TAG));
 
-    for (final Node newItemNode : newItemList) {
-      final List<Node> requiredItemNodes = getChildren(newItemNode, ITEM_TAG);
-      requiredItemNodes.addAll(getChildren(newItemNode, WEAPON_TAG));
-      requiredItemNodes.addAll(getChildren(newItemNode, CONSUMABLE_TAG));
-      if (requiredItemNodes.isEmpty()) {
-        throw new PersistenceStateException("At least one item must be required to create this new item");
-      }
-      final Set<Item> requiredItemSet = new HashSet<>();
-      for (final Node requiredItemNode : requiredItemNodes) {
-        final String requiredItemName = getAttributeValue(requiredItemNode, NAME_TAG);
-        if (requiredItemName == null) {
-          throw new PersistenceStateException("Must list the name of a required item");
-        }
-        final Item requiredItem = world.getItem(requiredItemName);
-        if (requiredItem == null) {
-          throw new PersistenceStateException("Unable to identify item: " + requiredItemName);
+    private void readCrafting() throws XMLStreamException, PersistenceStateException {
+      while (nextChild()) {
+        if (isItem()) {
+          readItem(false, true);
+        } else {
+          skip();
         }
-        requiredItemSet.add(requiredItem);
-      }
-      final Item newItem = world.getItem(getAttributeValue(newItemNode, NAME_TAG));
-      if (newItem == null) {
-        throw new PersistenceStateException("Unable to find an item named \""
-            + getAttributeValue(newItemNode, NAME_TAG) + "\" during the second pass through the file..."
-            + "did the file change while we were reading it?");
       }
-
-      world.addItemSynthesis(requiredItemSet, newItem);
     }
-  }
 
-  private static void loadItemXML(Node root, Universe world, boolean requiresLocation) throws PersistenceStateException {
-    final List<Node> itemList = getChildren(root, ITEM_TAG);
-    itemList.addAll(getChildren(root, WEAPON_TAG));
-    itemList.addAll(getChildren(root, CONSUMABLE_TAG));
-    /*
-     * First Pass: We need to be careful on creating the map of items because of the possibility
-     * that an item is located inside another item. Hence, we do this in two steps. The first step
-     * is to load in the descriptive information about all the items and instantiate them in the
-     * world.
+    /**
+     * Read an item, weapon or consumable
+     *
+     * @param requiresLocation
+     *          Whether the item must name the container it is in
+     * @param crafted
+     *          Whether the item is crafted from the items named by its child elements
      */
-    for (final Node itemElement : itemList) {
-      final String name = getAttributeValue(itemElement, NAME_TAG);
-      if (name.contains(",")) {
-        throw new PersistenceStateException("Item names cannot contain a comma: " + name);
-      }
-      final String article = getAttributeValue(itemElement, ARTICLE_TAG);
-      String description = getAttributeValue(itemElement, DESCRIPTION_TAG);
-      String takePointsString = getAttributeValue(itemElement, TAKEPOINTS_TAG);
-      String dropPointsString = getAttributeValue(itemElement, DROPPOINTS_TAG);
-      String takeableString = getAttributeValue(itemElement, TAKEABLE_TAG);
-      final String isContainerString = getAttributeValue(itemElement, IS_CONTAINER_TAG);
-
-      if (description == null) {
-        description = "";
+    private void readItem(boolean requiresLocation, boolean crafted) throws XMLStreamException,
+        PersistenceStateException {
+      final boolean isConsumable = is(CONSUMABLE_TAG);
+      final boolean isWeapon = is(WEAPON_TAG);
+      final Map<String, String> attributes = attributes();
+      final List<Entry<String, Map<String, String>>> places = new ArrayList<>();
+      final List<String> requiredItemNames = new ArrayList<>();
+      while (nextChild()) {
+        if (is(PLACE_TAG)) {
+          final Map<String, String> place = attributes();
+          places.add(new SimpleImmutableEntry<>(text(), place));
+        } else if (crafted && isItem()) {
+          final String requiredItemName = f_reader.getAttributeValue(null, NAME_TAG);
+          if (requiredItemName == null) {
+            throw new PersistenceStateException("Must list the name of a required item");
+          }
+          requiredItemNames.add(requiredItemName);
+          skip();
+        } else {
+          skip();
+        }
       }
+
+      final String name = attributes.get(NAME_TAG);
+      final String article = attributes.get(ARTICLE_TAG);
+      final String description = attributes.getOrDefault(DESCRIPTION_TAG, "");
+      final String takePointsString = attributes.getOrDefault(TAKEPOINTS_TAG, "0");
+      final String dropPointsString = attributes.getOrDefault(DROPPOINTS_TAG, "0");
+      final String takeableString = attributes.get(TAKEABLE_TAG);
+      final String isContainerString = attributes.get(IS_CONTAINER_TAG);
+      final String locationString = attributes.get(LOCATION_TAG);
+
       /**
        * Only get the cantTakeMessage if the item is not takeable
        */
-      String cantTakeMessage;
-      if (takeableString != null && !takeableString.toUpperCase().startsWith("Y")) {
-        cantTakeMessage = getAttributeValue(itemElement, CANTTAKE_TAG);
-      } else {
-        takeableString = "Y";
-        cantTakeMessage = "";
-      }
-
-      if (dropPointsString == null) {
-        dropPointsString = "0";
-      }
-      if (takePointsString == null) {
-        takePointsString = "0";
-      }
-
-      final Map<Place, Long> dropPointsMap = new HashMap<>();
-      final Map<Place, String> blockedPlaces = new HashMap<>();
-
+      final Boolean takeable = takeableString == null || takeableString.toUpperCase().startsWith("Y");
+      final String cantTakeMessage = takeable ? "" : attributes.get(CANTTAKE_TAG);
       if (name == null || article == null || cantTakeMessage == null) {
         throw new PersistenceStateException(
             "Name and article must be defined.  CantTakeMessage must be defined if item is takeable.");
       }
-      for (final Node place : getChildren(itemElement, PLACE_TAG)) {
-        final String locationName = place.getTextContent();
-        final Place location = world.getPlace(locationName);
-        if (location == null) {
-          throw new PersistenceStateException("Unable to identify place: " + locationName + " for item: " + name);
-        }
-        final String dropPointsPlace = getAttributeValue(place, DROPPOINTS_TAG);
-        final String blockMessage = getAttributeValue(place, BLOCKEDMSG_TAG);
-        if (dropPointsPlace != null) {
-          dropPointsMap.put(location, Long.parseLong(dropPointsPlace));
-        }
-        if (blockMessage != null) {
-          blockedPlaces.put(location, blockMessage);
-        }
+      if (name.contains(",")) {
+        throw new PersistenceStateException("Item names cannot contain a comma: " + name);
       }
-
       final Long takePoints = Long.parseLong(takePointsString);
       final Long dropPoints = Long.parseLong(dropPointsString);
-      final Boolean takeable = takeableString.toUpperCase().startsWith("Y");
 
       // If isContainer tag is not present, then assume item is not a container
       final Boolean isContainer = isContainerString == null ? false : isContainerString.toUpperCase().startsWith("Y");
 
-      Item item = null;
-      if (itemElement.getNodeName().equalsIgnoreCase(ITEM_TAG)) {
-        item = world.createItem(name.trim(), article, description, takePoints, dropPoints, dropPointsMap, takeable,
-            cantTakeMessage, blockedPlaces, isContainer);
-      } else {
-        final String typeString = getAttributeValue(itemElement, TYPE_TAG);
-        final String effectString = getAttributeValue(itemElement, EFFECT_TAG);
-        final String effectTypeString = getAttributeValue(itemElement, EFFECTTYPE_TAG);
-        final String targetString = getAttributeValue(itemElement, TARGET_TAG);
-        final String hitString = getAttributeValue(itemElement, HIT_TAG);
-        final String usesString = getAttributeValue(itemElement, USES_TAG);
-        final String cooldownString = getAttributeValue(itemElement, COOLDOWN_TAG);
-        final String combatMsgString = getAttributeValue(itemElement, USE_MESSAGE_TAG);
-        final String equippedString = getAttributeValue(itemElement, EQUIP_TAG);
-        final String locationString = getAttributeValue(itemElement, LOCATION_TAG);
-        final String onHitSound = getAttributeValue(itemElement, HIT_SOUND_TAG);
-        final String onMissSound = getAttributeValue(itemElement, MISS_SOUND_TAG);
-
+      final String typeString = attributes.get(TYPE_TAG);
+      final String effectString = attributes.get(EFFECT_TAG);
+      final String effectTypeString = attributes.get(EFFECTTYPE_TAG);
+      final String targetString = attributes.get(TARGET_TAG);
+      final String hitString = attributes.get(HIT_TAG);
+      final String usesString = attributes.get(USES_TAG);
+      final String cooldownString = attributes.get(COOLDOWN_TAG);
+      final String combatMsgString = attributes.get(USE_MESSAGE_TAG);
+      final String onHitSound = attributes.get(HIT_SOUND_TAG);
+      final String onMissSound = attributes.get(MISS_SOUND_TAG);
+      if (isWeapon || isConsumable) {
         Objects.requireNonNull(typeString, name + " " + TYPE_TAG + " must be defined");
         Objects.requireNonNull(effectString, name + " " + EFFECT_TAG + " must be defined");
-        if (itemElement.getNodeName().equalsIgnoreCase(CONSUMABLE_TAG)) {
+        if (isConsumable) {
           Objects.requireNonNull(effectTypeString, name + " " + EFFECTTYPE_TAG + " must be defined");
           Objects.requireNonNull(usesString, name + " " + USES_TAG + " must be defined");
         }
@@ -749,148 +952,125 @@ public class GamePersistence {
         if (requiresLocation) {
           Objects.requireNonNull(locationString, name + " " + LOCATION_TAG + " must be defined");
         }
-        Effect effect = null;
-        if (effectString != null) {
+      }
+      if (crafted && requiredItemNames.isEmpty()) {
+        throw new PersistenceStateException("At least one item must be required to create this new item");
+      }
+
+      final List<String> placeNames = new ArrayList<>();
+      for (final Entry<String, Map<String, String>> place : places) {
+        placeNames.add(place.getKey());
+      }
+      runOrDefer(placesRead(placeNames), f_placed, () -> {
+        final Map<Place, Long> dropPointsMap = new HashMap<>();
+        final Map<Place, String> blockedPlaces = new HashMap<>();
+        for (final Entry<String, Map<String, String>> place : places) {
+          final Place location = f_world.getPlace(place.getKey());
+          if (location == null) {
+            throw new PersistenceStateException("Unable to identify place: " + place.getKey() + " for item: " + name);
+          }
+          final String dropPointsPlace = place.getValue().get(DROPPOINTS_TAG);
+          final String blockMessage = place.getValue().get(BLOCKEDMSG_TAG);
+          if (dropPointsPlace != null) {
+            dropPointsMap.put(location, Long.parseLong(dropPointsPlace));
+          }
+          if (blockMessage != null) {
+            blockedPlaces.put(location, blockMessage);
+          }
+        }
+
+        Item item = null;
+        if (!isWeapon && !isConsumable) {
+          item = f_world.createItem(name.trim(), article, description, takePoints, dropPoints, dropPointsMap, takeable,
+              cantTakeMessage, blockedPlaces, isContainer);
+        } else {
+          Effect effect = null;
           if (effectString.contains("d")) {
             final String[] damageStrings = effectString.split("d");
             effect = new Effect(Integer.parseInt(damageStrings[0]), Integer.parseInt(damageStrings[1]));
           } else {
             effect = new Effect(Integer.parseInt(effectString), 1);
           }
-        }
-        if (itemElement.getNodeName().equalsIgnoreCase(CONSUMABLE_TAG)) {
-          item = world.createConsumable(name.trim(), article, description, takePoints, dropPoints, dropPointsMap,
-              takeable, cantTakeMessage, blockedPlaces, isContainer ? new Container() : null, effect, EffectType
-                  .valueOf(effectTypeString.toUpperCase()), Integer.parseInt(cooldownString), Integer
-                  .parseInt(usesString), typeString, combatMsgString, Integer.parseInt(hitString), EffectTarget
-                  .valueOf(targetString.toUpperCase()), onHitSound, onMissSound);
-        } else {
-          item = world.createWeapon(name.trim(), article, description, takePoints, dropPoints, dropPointsMap,
-              blockedPlaces, isContainer ? new Container() : null, typeString, effect,
-              Integer.parseInt(cooldownString), combatMsgString, Integer.parseInt(hitString), EffectTarget
-                  .valueOf(targetString.toUpperCase()), onHitSound, onMissSound);
-
-          if ((equippedString != null) && (locationString != null) && equippedString.toUpperCase().startsWith("Y")) {
-            final Character character = world.getCharacter(locationString);
-            if (character != null) {
-              character.setCurrentWeapon((Weapon) item);
-            }
+          if (isConsumable) {
+            item = f_world.createConsumable(name.trim(), article, description, takePoints, dropPoints, dropPointsMap,
+                takeable, cantTakeMessage, blockedPlaces, isContainer ? new Container() : null, effect, EffectType
+                    .valueOf(effectTypeString.toUpperCase()), Integer.parseInt(cooldownString), Integer
+                    .parseInt(usesString), typeString, combatMsgString, Integer.parseInt(hitString), EffectTarget
+                    .valueOf(targetString.toUpperCase()), onHitSound, onMissSound);
+          } else {
+            item = f_world.createWeapon(name.trim(), article, description, takePoints, dropPoints, dropPointsMap,
+                blockedPlaces, isContainer ? new Container() : null, typeString, effect, Integer
+                    .parseInt(cooldownString), combatMsgString, Integer.parseInt(hitString), EffectTarget
+                    .valueOf(targetString.toUpperCase()), onHitSound, onMissSound);
           }
         }
-      }
-      for (final Place p : blockedPlaces.keySet()) {
-        p.addItemRequired(item);
-      }
-    }
-    /*
-     * Second Pass
-     */
-    for (final Node itemElement : itemList) {
-      Item current;
-      try {
-        current = world.getItem(getAttributeValue(itemElement, NAME_TAG));
-      } catch (final NullPointerException e) {
-        throw new PersistenceStateException("Unable to find an item named \""
-            + getAttributeValue(itemElement, NAME_TAG) + "\" during the second pass through the file..."
-            + "did the file change while we were reading it?", e);
+        for (final Place p : blockedPlaces.keySet()) {
+          p.addItemRequired(item);
+        }
+      });
+
+      final String equippedString = attributes.get(EQUIP_TAG);
+      if (isWeapon && equippedString != null && locationString != null && equippedString.toUpperCase().startsWith(
+          "Y")) {
+        f_equip.add(() -> {
+          final Character character = f_world.getCharacter(locationString);
+          if (character != null) {
+            character.setCurrentWeapon((Weapon) f_world.getItem(name));
+          }
+        });
       }
 
-      final String locationString = getAttributeValue(itemElement, LOCATION_TAG);
-      Container storage;
-      if (locationString == null && !requiresLocation) {
-        storage = world.getNowherePlace().getContainer();
-      } else if (locationString == null && requiresLocation) {
-        throw new PersistenceStateException("You didn't define a location for item: " + current.toString());
-      } else {
-        storage = world.getContainer(locationString);
-      }
-      if (storage != null) {
-        storage.addItem(current);
-      } else {
-        throw new PersistenceStateException("Unable to store item because can't find location matching: "
-            + locationString);
+      f_storage.add(() -> {
+        final Item current = f_world.getItem(name);
+        Container storage;
+        if (locationString == null && !requiresLocation) {
+          storage = f_world.getNowherePlace().getContainer();
+        } else if (locationString == null && requiresLocation) {
+          throw new PersistenceStateException("You didn't define a location for item: " + current.toString());
+        } else {
+          storage = f_world.getContainer(locationString);
+        }
+        if (storage != null) {
+          storage.addItem(current);
+        } else {
+          throw new PersistenceStateException("Unable to store item because can't find location matching: "
+              + locationString);
+        }
+      });
+
+      if (crafted) {
+        f_recipes.add(() -> {
+          final Set<Item> requiredItemSet = new HashSet<>();
+          for (final String requiredItemName : requiredItemNames) {
+            final Item requiredItem = f_world.getItem(requiredItemName);
+            if (requiredItem == null) {
+              throw new PersistenceStateException("Unable to identify item: " + requiredItemName);
+            }
+            requiredItemSet.add(requiredItem);
+          }
+          f_world.addItemSynthesis(requiredItemSet, f_world.getItem(name));
+        });
       }
     }
   }
 
   /**
-   * Loads all places found within the root XML element into the world under construction.
-   *
-   * @param root
-   *          the root of the save file's XML tree.
-   * @param world
-   *          the game world under construction.
-   * @throws PersistenceStateException
-   *           if anything goes wrong
+   * Resolve the names used by the conditionals of every NPC's triggers, which may refer to NPCs and
+   * items loaded after the trigger was built.
    */
-  private static void loadPlaceXML(Element root, Universe world) throws PersistenceStateException {
-    final List<Node> placeList = getChildren(root, PLACE_TAG);
-
-    /*
-     * First Pass: We need to be careful on creating the map of places because the interconnections
-     * require the places to exist in the world (a chicken and the egg type problem). Hence, we do
-     * this in two steps. The first step is to load in the descriptive information about all the
-     * places and create them all within the world under construction.
-     */
-    for (final Node placeElement : placeList) {
-      final String name = getAttributeValue(placeElement, NAME_TAG);
-      final String article = getAttributeValue(placeElement, ARTICLE_TAG);
-      final String description = getChild(placeElement, DESCRIPTION_TAG).getTextContent();
-      final String winConditionString = getAttributeValue(placeElement, WIN_TAG);
-      final String sound = getAttributeValue(placeElement, SOUND_TAG);
-      /*
-       * winCondition is set to true only when the WIN_TAG is present (not null) and is a string
-       * that begins with "Y", which allows the user to type "Y", "YES", "YOU BET", or anything else
-       * that would indicate an affirmative answer.
-       */
-      final Boolean winCondition = winConditionString != null && winConditionString.toUpperCase().startsWith("Y");
-      if (name == null || article == null || description == null) {
-        throw new PersistenceStateException("Name, article, and description must be defined for every place");
-      }
-
-      world.createPlace(name, article, description, winCondition, sound);
-    }
-    /*
-     * Second Pass: Next, we need to connect the places into a map as specified by the "travel"
-     * elements in the XML.
-     */
-    for (final Node placeElement : placeList) {
-      Place current, destination;
-      try {
-        current = world.getPlace(getAttributeValue(placeElement, NAME_TAG));
-      } catch (final NullPointerException e) {
-        throw new PersistenceStateException("Unable to find a place named \""
-            + getAttributeValue(placeElement, NAME_TAG) + "\" during the second pass through the file..."
-            + "did the file change while we were reading it?", e);
-
-      }
-      final List<Node> travelList = getChildren(placeElement, TRAVEL_TAG);
-      for (final Node t : travelList) {
-        Navigation direction;
-        final Optional<Navigation> option = Navigation.getInstance(getAttributeValue(t, DIRECTION_TAG));
-        if (option.isPresent()) {
-          direction = option.get();
-        } else {
-          throw new IllegalStateException("\"" + getAttributeValue(t, DIRECTION_TAG)
-              + "\" is not a valid direction for travel from " + "the place named \"" + current.getName() + "\"");
+  static void resolveConditionals(Universe world) {
+    for (final NonPlayerCharacter npc : world.getNonPlayerCharacters()) {
+      for (final State state : npc.getStates()) {
+        for (final Trigger trigger : state.getEventTriggers()) {
+          trigger.resolveConditionals(world);
         }
-
-        try {
-          destination = world.getPlace(t.getTextContent());
-        } catch (final NullPointerException e) {
-          throw new PersistenceStateException("Unable to find a place named \"" + t.getTextContent()
-              + "\" as the destination when traveling " + direction + " from the place named \"" + current.getName()
-              + "\"", e);
-        }
-
-        current.setTravelDestination(direction, destination);
       }
     }
   }
 
   /**
    * Loads the game state from the specified {@link java.io.InputStream} and creates a
-   * {@link Universe} usable Universe instance.
+   * {@link Universe} usable Universe instance. The stream is read once, from start to end.
    *
    * @param in
    *          the non-null stream to read the game state from.
@@ -903,48 +1083,25 @@ public class GamePersistence {
       throw new NullPointerException("InputStream was null, unable to load world");
     }
 
-    final Universe world = new Universe();
-    final DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-
     try {
-      // Using factory get an instance of document builder
-      final DocumentBuilder db = dbf.newDocumentBuilder();
-
-      // parse using builder to get DOM representation of the XML file
-      final Document dom = db.parse(in);
-
-      final Element root = dom.getDocumentElement();
-
-      final String tickRate = getAttributeValue(root, TICK_TAG);
-      if (tickRate != null) {
-        world.setTickRate(Long.parseLong(tickRate));
+      final XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(in);
+      try {
+        return new WorldLoader(reader).load();
+      } finally {
+        reader.close();
       }
-
-      final String moneyName = getAttributeValue(root, MONEY_TAG);
-      if (moneyName != null) {
-        world.setMoneyName(moneyName);
-      } else {
-        world.setMoneyName("money");
+    } catch (final XMLStreamException e) {
+      if (e.getNestedException() instanceof IOException) {
+        throw new PersistenceStateException("A system error occurred while reading world file:", e);
       }
-
-      loadPlaceXML(root, world);
-      loadClassXML(root, world);
-      loadCharacterXML(root, world);
-
-      loadItemXML(root, world, true);
-
-      loadCraftingXML(root, world);
-    } catch (final IOException e) {
-      throw new PersistenceStateException("A system error occurred while reading world file:", e);
-    } catch (SAXException | ParserConfigurationException e) {
       throw new PersistenceStateException("A parsing error occured while reading the XML file:", e);
     }
-    return world;
   }
 
   /**
    * Loads the game state from the specified filename on the Java classpath of the running program
-   * and creates a usable Universe instance.
+   * and creates a usable Universe instance. The file may be a world in XML or a snapshot written by
+   * {@link #saveSnapshot(Universe, Path)}.
    *
    * @param file
    *          the {@link Path} representing the full location, on the Java classpath, of the desired
@@ -957,6 +1114,13 @@ public class GamePersistence {
     if (file == null) {
       throw new NullPointerException("Unable to load world file: location was not specified");
     }
+    try {
+      if (WorldSnapshot.isSnapshot(file)) {
+        return WorldSnapshot.read(file);
+      }
+    } catch (final IOException e) {
+      throw new PersistenceStateException("Unable to open world file", e);
+    }
     try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
       return loadWorld(in);
     } catch (final IOException e) {
@@ -1003,141 +1167,131 @@ public class GamePersistence {
           + " due to reason: " + e.getMessage(), e);
     }
   }
-
   /**
-   * Saves the state of the specified {@link Universe} into the specified {@link Path} in XML
-   * format. It is suggested calls to this surround the call with a try-catch block if recovery from
-   * a save problem is desired.
+   * Writes the state of the specified {@link Universe} as the XML of a world file, one element at a
+   * time. The document is started and ended, but the writer is neither flushed nor closed.
    *
    * @param world
-   *          the game state to save.
-   * @param file
-   *          the file to save the game state to.
-   * @throws PersistenceStateException
-   *           if something goes wrong.
+   *          the game state to write.
+   * @param out
+   *          where to write it.
+   * @throws XMLStreamException
+   *           if the writer fails.
    */
-  protected static void saveWorld(Universe world, Path file) throws PersistenceStateException {
-    final DocumentBuilderFactory domFactory = DocumentBuilderFactory.newInstance();
-    try {
-      DocumentBuilder builder;
-      builder = domFactory.newDocumentBuilder();
-
-      final Document dom = builder.newDocument();
-
-      final Element worldElement = dom.createElement(GAME_TAG);
-
-      dom.appendChild(worldElement);
-
-      worldElement.setAttribute(VERSION_TAG, SAVEFILE_VERSION);
-      worldElement.setAttribute(MONEY_TAG, world.getMoneyName());
-      worldElement.setAttribute(TICK_TAG, Long.toString(world.getTickRate()));
+  static void writeWorld(Universe world, XMLStreamWriter out) throws XMLStreamException {
+    writeWorld(new WorldView(world), out);
+  }
 
-      /*
-       * Create XML for Places
-       */
-      for (final Place place : world.getPlaces()) {
-        /*
-         * We don't save the nowhere place to the save file. This place always exists in every world
-         * so its inclusion in the save file XML will cause an attempt on loading a save file into a
-         * model to try and create it again (resulting in an exception).
-         */
-        if (place != world.getNowherePlace()) {
-          worldElement.appendChild(createPlaceXML(place, dom));
-        }
-      }
+  /**
+   * Writes the state of a world as it was when a view of it was captured to an XML stream. See
+   * {@link #writeWorld(Universe, XMLStreamWriter)}.
+   *
+   * @param view
+   *          the view of the game state to write.
+   * @param out
+   *          where to write it.
+   * @throws XMLStreamException
+   *           if the writer fails.
+   */
+  static void writeWorld(WorldView view, XMLStreamWriter out) throws XMLStreamException {
+    final Universe world = view.getWorld();
+    out.writeStartDocument("UTF-8", "1.0");
+    out.writeStartElement(GAME_TAG);
+    out.writeAttribute(VERSION_TAG, SAVEFILE_VERSION);
+    out.writeAttribute(MONEY_TAG, world.getMoneyName());
+    out.writeAttribute(TICK_TAG, Long.toString(world.getTickRate()));
+    out.writeAttribute(SEED_TAG, Long.toString(world.getRandomSeed()));
 
-      /*
-       * Create XML for the Players and each players' items
-       */
-      for (final Player player : world.getPlayers()) {
-        worldElement.appendChild(createPlayerXML(player, dom));
-        for (final Item item : player.getContainer().getItems()) {
-          worldElement.appendChild(createItemXML(world, item, player.getName(), dom));
-        }
+    /*
+     * Places. We don't save the nowhere place to the save file. This place always exists in every
+     * world so its inclusion in the save file XML will cause an attempt on loading a save file into
+     * a model to try and create it again (resulting in an exception).
+     */
+    for (final Place place : world.getPlacesView()) {
+      if (place != world.getNowherePlace()) {
+        writePlaceXML(place, out);
       }
+    }
 
-      /*
-       * Build XML for the items
-       */
+    /*
+     * The Players and each players' items
+     */
+    for (final Player player : world.getPlayersView()) {
+      writePlayerXML(view, player, out);
+      writeItemsXML(view, player, player.getName(), out);
+    }
 
-      for (final Place place : world.getPlaces()) {
-        if (place == world.getNowherePlace()) {
-          continue;
-        }
-        for (final Item item : place.getContainer().getItems()) {
-          worldElement.appendChild(createItemXML(world, item,
-              place == world.getNowherePlace() ? null : place.getName(), dom));
-        }
-      }
-      for (final NonPlayerCharacter npc : world.getNonPlayerCharacters()) {
-        worldElement.appendChild(createNpcXML(npc, dom));
-        for (final Item item : npc.getContainer().getItems()) {
-          worldElement.appendChild(createItemXML(world, item, npc.getName(), dom));
-        }
+    /*
+     * The items
+     */
+    for (final Place place : world.getPlacesView()) {
+      if (place != world.getNowherePlace()) {
+        writeItemsXML(view, place, place.getName(), out);
       }
-      for (final Item container_item : world.getItems()) {
-        if (container_item.getContainer() != null) {
-          for (final Item inside_item : container_item.getContainer().getItems()) {
-            worldElement.appendChild(createItemXML(world, inside_item, container_item.getName(), dom));
-          }
-        }
+    }
+    for (final NonPlayerCharacter npc : world.getNonPlayerCharacters()) {
+      writeNpcXML(view, npc, out);
+      writeItemsXML(view, npc, npc.getName(), out);
+    }
+    for (final Item container_item : world.getItemsView()) {
+      if (container_item.getContainer() != null) {
+        writeItemsXML(view, container_item, container_item.getName(), out);
       }
-      if (!world.getCharacterClasses().isEmpty()) {
-        final Element combatElement = dom.createElement(COMBAT_TAG);
-        for (final CharacterClass cClass : world.getCharacterClasses()) {
-          createClassXML(cClass, combatElement, dom);
-        }
-        worldElement.appendChild(combatElement);
+    }
+    if (!world.getCharacterClassesView().isEmpty()) {
+      indent(out, 1);
+      out.writeStartElement(COMBAT_TAG);
+      for (final CharacterClass cClass : world.getCharacterClassesView()) {
+        writeClassXML(cClass, out);
       }
+      indent(out, 1);
+      out.writeEndElement();
+    }
 
-      final Set<Entry<Set<Item>, Item>> craftingSet = world.getCraftingObjects();
-      if (!craftingSet.isEmpty()) {
-        final Element craftingElement = dom.createElement(CRAFTING_TAG);
-        worldElement.appendChild(craftingElement);
-        for (final Entry<Set<Item>, Item> entry : world.getCraftingObjects()) {
-          final Element craftedItemElement = createItemXML(world, entry.getValue(), null, dom);
-          craftingElement.appendChild(craftedItemElement);
-          for (final Item requiredItem : entry.getKey()) {
-            final Element requiredItemElement = dom.createElement(ITEM_TAG);
-            requiredItemElement.setAttribute(NAME_TAG, requiredItem.getName());
-            craftedItemElement.appendChild(requiredItemElement);
-          }
-        }
+    final Set<Entry<Set<Item>, Item>> craftingSet = view.crafting();
+    if (!craftingSet.isEmpty()) {
+      indent(out, 1);
+      out.writeStartElement(CRAFTING_TAG);
+      for (final Entry<Set<Item>, Item> entry : craftingSet) {
+        writeItemXML(view, entry.getValue(), null, entry.getKey(), 2, out);
       }
+      indent(out, 1);
+      out.writeEndElement();
+    }
+    indent(out, 0);
+    out.writeEndElement();
+    out.writeEndDocument();
+  }
 
-      // Prepare the DOM document for writing
-      final Source source = new DOMSource(dom);
-
-      final TransformerFactory tFactory = TransformerFactory.newInstance();
-      tFactory.setAttribute("indent-number", 2);
-      final Transformer xformer = tFactory.newTransformer();
-      xformer.setOutputProperty(OutputKeys.INDENT, "yes");
-
-      // Prepare the file as an output stream
-      // Moved the FileOutputSteam and OutputStreamWriter instantiation inside of an automatic
-      // resource management block (Java 7 feature), in order to guarantee the file handles
-      // are closed properly.
-      try (OutputStreamWriter osw = new OutputStreamWriter(new BufferedOutputStream(Files.newOutputStream(file)),
-          "UTF-8")) {
-        // Write the DOM document to the file
-        final Result result = new StreamResult(osw);
-        xformer.transform(source, result);
-      } catch (final IOException e) { // Can be thrown by automatic OutputStream.close() call
-        throw new PersistenceStateException("Unable to complete the output of the DOM to the OutputStream", e);
-      }
+  /**
+   * Saves the state of the specified {@link Universe} into the specified {@link Path} in XML
+   * format. The world is written straight to a buffered channel on the file, without building a
+   * document of it first. It is suggested calls to this surround the call with a try-catch block
+   * if recovery from a save problem is desired.
+   *
+   * @param world
+   *          the game state to save.
+   * @param file
+   *          the file to save the game state to.
+   * @throws PersistenceStateException
+   *           if something goes wrong.
+   */
+  protected static void saveWorld(Universe world, Path file) throws PersistenceStateException {
+    saveWorld(new WorldView(world), file);
+  }
 
-    } catch (final TransformerConfigurationException e) {
-      // something went wrong
-      throw new PersistenceStateException("Unable to build DOM source from the DOM document.", e);
-    } catch (final TransformerFactoryConfigurationError e) {
-      // something went wrong
-      throw new PersistenceStateException("Unable to configure the TransformerFactory.", e);
-    } catch (final TransformerException e) {
-      // something went wrong
-      throw new PersistenceStateException("Unable to transform DOM source into a file.", e);
-    } catch (final ParserConfigurationException e) {
-      // something went wrong
-      throw new PersistenceStateException("Unable to configure the DOM document builder for Universe.", e);
+  private static void saveWorld(WorldView view, Path file) throws PersistenceStateException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING);
+        Writer writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(),
+            SAVE_BUFFER_SIZE), SAVE_BUFFER_SIZE)) {
+      final XMLStreamWriter out = XMLOutputFactory.newInstance().createXMLStreamWriter(writer);
+      writeWorld(view, out);
+      out.close();
+    } catch (final IOException e) {
+      throw new PersistenceStateException("Unable to write the world to " + file, e);
+    } catch (final XMLStreamException e) {
+      throw new PersistenceStateException("Unable to write the world as XML to " + file, e);
     }
   }
 
@@ -1161,6 +1315,84 @@ public class GamePersistence {
     saveWorld(world, file);
   }
 
+  /**
+   * Saves the state of a {@link Universe} as it was when the specified view of it was captured
+   * into the specified {@link String} representing a file in XML format. The world may go on
+   * changing while it is saved.
+   *
+   * @param view
+   *          the view of the game state to save, see {@link WorldVersions#capture()}.
+   * @param fileString
+   *          the file to save the game state to.
+   * @throws PersistenceStateException
+   *           if something goes wrong.
+   */
+  public static void saveWorld(WorldView view, String fileString) throws PersistenceStateException {
+    if (view == null) {
+      throw new NullPointerException("view cannot be null");
+    }
+    if (fileString == null) {
+      throw new NullPointerException("fileString cannot be null");
+    }
+    saveWorld(view, Paths.get(fileString).normalize());
+  }
+
+  /**
+   * Saves the state of the specified {@link Universe}, and the tick it has reached, into the
+   * specified {@link Path} as a binary snapshot. A snapshot is much quicker to write and to load
+   * than XML, and is loaded by {@link #loadWorld(Path)} like any other world file.
+   *
+   * @param world
+   *          the game state to save.
+   * @param file
+   *          the file to save the snapshot to.
+   * @throws PersistenceStateException
+   *           if something goes wrong.
+   */
+  protected static void saveSnapshot(Universe world, Path file) throws PersistenceStateException {
+    WorldSnapshot.write(world, file);
+  }
+
+  /**
+   * Saves the state of the specified {@link Universe}, and the tick it has reached, into the
+   * specified {@link String} representing a file as a binary snapshot.
+   *
+   * @param world
+   *          the game state to save.
+   * @param fileString
+   *          the file to save the snapshot to.
+   * @throws PersistenceStateException
+   *           if something goes wrong.
+   */
+  public static void saveSnapshot(Universe world, String fileString) throws PersistenceStateException {
+    if (fileString == null) {
+      throw new NullPointerException("fileString cannot be null");
+    }
+    saveSnapshot(world, Paths.get(fileString).normalize());
+  }
+
+  /**
+   * Saves the state of a {@link Universe}, and the tick it had reached, as it was when the
+   * specified view of it was captured into the specified {@link String} representing a file as a
+   * binary snapshot. The world may go on changing while it is saved.
+   *
+   * @param view
+   *          the view of the game state to save, see {@link WorldVersions#capture()}.
+   * @param fileString
+   *          the file to save the snapshot to.
+   * @throws PersistenceStateException
+   *           if something goes wrong.
+   */
+  public static void saveSnapshot(WorldView view, String fileString) throws PersistenceStateException {
+    if (view == null) {
+      throw new NullPointerException("view cannot be null");
+    }
+    if (fileString == null) {
+      throw new NullPointerException("fileString cannot be null");
+    }
+    WorldSnapshot.write(view, Paths.get(fileString).normalize());
+  }
+
   /**
    * The version of the game as defined by the XML save file format.
    */
@@ -1171,6 +1403,16 @@ public class GamePersistence {
    */
   public static final String  DEFAULT_WORLD           = "/pavlik/john/dungeoncrawl/persistence/DemoWorld.xml";
 
+  /**
+   * The size of the buffer between a save and its file
+   */
+  private static final int    SAVE_BUFFER_SIZE        = 1 << 16;
+
+  /**
+   * A new line and enough indentation for the deepest element of a save file
+   */
+  private static final char[] INDENT                  = "\n        ".toCharArray();
+
   private static final String ARTICLE_TAG             = "article";
   private static final String DESCRIPTION_TAG         = "description";
   private static final String DIRECTION_TAG           = "direction";
@@ -1217,6 +1459,7 @@ public class GamePersistence {
   private static final String USE_MESSAGE_TAG         = "useMessage";
   private static final String EQUIP_TAG               = "equipped";
   private static final String TICK_TAG                = "tickRate";
+  private static final String SEED_TAG                = "seed";
   private static final String CONSUMABLE_TAG          = "consumable";
   private static final String KO_RECOVER_TAG          = "KORecovery";
   private static final String EFFECTTYPE_TAG          = "effectType";
@@ -4,9 +4,9 @@ import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.SocketTimeoutException;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.Objects;
 import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
 
 import pavlik.john.dungeoncrawl.controller.Controller;
 
@@ -34,13 +34,22 @@ public class MultiplayerServerThread extends Thread {
   /**
    * Connection string to send to this server thread in order to establish a connection successfully
    */
-  public static final String                    CONNECTION_STRING = "DUNGEON_CRAWL_1.0";
+  public static final String                    CONNECTION_STRING = "DUNGEON_CRAWL_2.0";
+  /**
+   * Connections the operating system may queue before they are accepted, so that a burst of clients
+   * joining at once is not refused
+   */
+  protected static final int                    ACCEPT_BACKLOG    = 1024;
   private final int                             f_portNumber;
   private final Controller                      f_worldController;
   private final ResourceBundle                  f_messages;
-  private boolean                               f_listening       = true;
+  private volatile boolean                      f_listening       = true;
 
-  private final Collection<ClientHandlerThread> childThreads      = new HashSet<>();
+  /**
+   * Handlers of the clients still connected. Finished handlers are removed as new clients are
+   * accepted, and at least every 500ms.
+   */
+  private final Collection<ClientHandlerThread> childThreads      = ConcurrentHashMap.newKeySet();
 
   /**
    * Public constructor
@@ -72,10 +81,11 @@ public class MultiplayerServerThread extends Thread {
   }
 
   private void enableConnection() {
-    try (ServerSocket serverSocket = new ServerSocket(f_portNumber)) {
+    try (ServerSocket serverSocket = new ServerSocket(f_portNumber, ACCEPT_BACKLOG)) {
       // Listen for 500ms at a time before stopping to check if we should still be listening
       serverSocket.setSoTimeout(500);
       while (f_listening) {
+        childThreads.removeIf(child -> !child.isAlive());
         try {
           final ClientHandlerThread thread = new ClientHandlerThread(f_worldController, f_messages, serverSocket
               .accept());
@@ -109,6 +119,39 @@ public class MultiplayerServerThread extends Thread {
     }
   }
 
+  /**
+   * Count the clients currently connected to this server
+   *
+   * @return the number of client handlers that have not finished
+   */
+  public int getClientCount() {
+    int count = 0;
+    for (final ClientHandlerThread child : childThreads) {
+      if (child.isAlive()) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Get the Controller of the world this server exposes
+   *
+   * @return the Controller passed in at construction
+   */
+  protected Controller getController() {
+    return f_worldController;
+  }
+
+  /**
+   * Get the messages used by the parsers of connected clients
+   *
+   * @return the ResourceBundle passed in at construction
+   */
+  protected ResourceBundle getMessages() {
+    return f_messages;
+  }
+
   /**
    * Check the current port
    *
@@ -118,6 +161,15 @@ public class MultiplayerServerThread extends Thread {
     return f_portNumber;
   }
 
+  /**
+   * Check whether this server should keep accepting and servicing clients
+   *
+   * @return false once {@link #finish()} has been called, true otherwise
+   */
+  protected boolean isListening() {
+    return f_listening;
+  }
+
   @Override
   public void run() {
     enableConnection();
@@ -0,0 +1,238 @@
+package pavlik.john.dungeoncrawl.persistence;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces the frames transmitted to one client so that they are written and flushed together. A
+ * world tick typically produces a burst of notifications for every player; instead of one socket
+ * write per notification, everything transmitted within {@link #getMaxDelayMillis()} of the first
+ * pending frame is written at once, or sooner if the batch grows to {@link #getMaxBytes()}.
+ * <p>
+ * The limits are read from the {@value #FLUSH_BYTES_PROPERTY} and {@value #FLUSH_MILLIS_PROPERTY}
+ * system properties. A delay of 0 writes every notification as soon as it is transmitted.
+ * <p>
+ * A client that reads more slowly than the world changes leaves output pending. Frames only carry
+ * what changed since the last, so none can be dropped; once more than
+ * {@link #getMaxPendingBytes()} would be pending the connection should be closed instead, see
+ * {@link #hasRoomFor(int, long)}. That limit is read from the {@value #MAX_PENDING_PROPERTY} system
+ * property.
+ *
+ * @author John
+ */
+final class OutputBatcher {
+
+  /**
+   * Name of the system property that sets the size in bytes at which a batch is written immediately
+   */
+  static final String FLUSH_BYTES_PROPERTY  = "dungeoncrawl.server.flushBytes";
+  /**
+   * Name of the system property that sets how long in milliseconds a frame may wait for others
+   */
+  static final String FLUSH_MILLIS_PROPERTY = "dungeoncrawl.server.flushMillis";
+  /**
+   * Name of the system property that sets how many bytes may wait for a slow client
+   */
+  static final String MAX_PENDING_PROPERTY  = "dungeoncrawl.server.maxPendingBytes";
+
+  private static final int  DEFAULT_MAX_BYTES   = 16 * 1024;
+  private static final long DEFAULT_MAX_DELAY   = 20;
+  private static final int  DEFAULT_MAX_PENDING = 1024 * 1024;
+
+  /**
+   * Create a batcher with the limits selected by system properties
+   *
+   * @return a new, empty OutputBatcher
+   */
+  static OutputBatcher fromSystemProperties() {
+    return new OutputBatcher(Integer.getInteger(FLUSH_BYTES_PROPERTY, DEFAULT_MAX_BYTES), Long.getLong(
+        FLUSH_MILLIS_PROPERTY, DEFAULT_MAX_DELAY), Integer.getInteger(MAX_PENDING_PROPERTY, DEFAULT_MAX_PENDING));
+  }
+
+  private final int         f_maxBytes;
+  private final long        f_maxDelayNanos;
+  private final int         f_maxPendingBytes;
+  private final FrameBuffer f_pending       = new FrameBuffer();
+  private long              f_firstPendingAt;
+  /**
+   * The number of batches started, which identifies the latest of them
+   */
+  private long              f_batch         = 0;
+  private boolean           f_closed        = false;
+
+  /**
+   * Package constructor
+   *
+   * @param maxBytes
+   *          The size of a batch that is written without waiting any longer, must be positive
+   * @param maxDelayMillis
+   *          How long the first frame of a batch may wait for more, must not be negative
+   * @throws IllegalArgumentException
+   *           if either limit is out of range
+   */
+  OutputBatcher(int maxBytes, long maxDelayMillis) {
+    this(maxBytes, maxDelayMillis, Math.max(maxBytes, DEFAULT_MAX_PENDING));
+  }
+
+  /**
+   * Package constructor
+   *
+   * @param maxBytes
+   *          The size of a batch that is written without waiting any longer, must be positive
+   * @param maxDelayMillis
+   *          How long the first frame of a batch may wait for more, must not be negative
+   * @param maxPendingBytes
+   *          The most bytes that may wait for a slow client, at least maxBytes
+   * @throws IllegalArgumentException
+   *           if any limit is out of range
+   */
+  OutputBatcher(int maxBytes, long maxDelayMillis, int maxPendingBytes) {
+    if (maxBytes < 1) {
+      throw new IllegalArgumentException("maxBytes must be positive");
+    }
+    if (maxDelayMillis < 0) {
+      throw new IllegalArgumentException("maxDelayMillis cannot be negative");
+    }
+    if (maxPendingBytes < maxBytes) {
+      throw new IllegalArgumentException("maxPendingBytes cannot be less than maxBytes");
+    }
+    f_maxBytes = maxBytes;
+    f_maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+    f_maxPendingBytes = maxPendingBytes;
+  }
+
+  /**
+   * Add frames to the current batch
+   *
+   * @param frames
+   *          One or more complete frames
+   * @return true if these are the first frames of a new batch, false if they joined a pending one
+   */
+  synchronized boolean add(byte[] frames) {
+    final boolean first = f_pending.size() == 0;
+    if (first) {
+      f_firstPendingAt = System.nanoTime();
+      f_batch++;
+    }
+    f_pending.write(frames, 0, frames.length);
+    if (first || isFull()) {
+      notifyAll();
+    }
+    return first;
+  }
+
+  /**
+   * Wait until the pending batch is due to be written, then take it. Returns early with whatever is
+   * pending once {@link #close()} has been called.
+   *
+   * @param timeoutMillis
+   *          The longest time to wait for a batch to become due
+   * @return the batch, or null if none became due in time
+   * @throws InterruptedException
+   *           if interrupted while waiting
+   */
+  synchronized byte[] awaitBatch(long timeoutMillis) throws InterruptedException {
+    final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    while (!f_closed) {
+      final long now = System.nanoTime();
+      final long wait = f_pending.size() == 0 ? deadline - now : Math.min(deadline - now, nanosUntilDue(now));
+      if (f_pending.size() > 0 && nanosUntilDue(now) <= 0) {
+        break;
+      }
+      if (wait <= 0) {
+        return null;
+      }
+      TimeUnit.NANOSECONDS.timedWait(this, wait);
+    }
+    return take();
+  }
+
+  /**
+   * Release any thread waiting in {@link #awaitBatch(long)}
+   */
+  synchronized void close() {
+    f_closed = true;
+    notifyAll();
+  }
+
+  /**
+   * @return the number of the latest batch started, see {@link #isPending(long)}
+   */
+  synchronized long getBatch() {
+    return f_batch;
+  }
+
+  /**
+   * @return the {@link System#nanoTime()} at which the latest batch started falls due
+   */
+  synchronized long getDueAt() {
+    return f_firstPendingAt + f_maxDelayNanos;
+  }
+
+  int getMaxBytes() {
+    return f_maxBytes;
+  }
+
+  long getMaxDelayMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(f_maxDelayNanos);
+  }
+
+  int getMaxPendingBytes() {
+    return f_maxPendingBytes;
+  }
+
+  /**
+   * Check whether more frames fit within {@link #getMaxPendingBytes()}
+   *
+   * @param bytes
+   *          The size of the frames to add
+   * @param elsewhere
+   *          Bytes already taken from this batcher that are still waiting to be written
+   * @return false if the client has fallen so far behind that it should be disconnected
+   */
+  synchronized boolean hasRoomFor(int bytes, long elsewhere) {
+    return f_pending.size() + elsewhere + bytes <= f_maxPendingBytes;
+  }
+
+  /**
+   * Check whether a batch is still waiting to be taken
+   *
+   * @param batch
+   *          The number of the batch, from {@link #getBatch()}
+   * @return false if the batch has been taken, even if a newer one is pending
+   */
+  synchronized boolean isPending(long batch) {
+    return f_batch == batch && f_pending.size() > 0;
+  }
+
+  private boolean isFull() {
+    return f_pending.size() >= f_maxBytes;
+  }
+
+  /**
+   * How long until the pending batch must be written
+   *
+   * @param now
+   *          The current {@link System#nanoTime()}
+   * @return the nanoseconds remaining, 0 or less if the batch is due or full
+   */
+  synchronized long nanosUntilDue(long now) {
+    if (isFull()) {
+      return 0;
+    }
+    return f_firstPendingAt + f_maxDelayNanos - now;
+  }
+
+  /**
+   * Take the pending batch without waiting
+   *
+   * @return the pending bytes, or null if nothing is pending
+   */
+  synchronized byte[] take() {
+    if (f_pending.size() == 0) {
+      return null;
+    }
+    final byte[] batch = f_pending.toByteArray();
+    f_pending.reset();
+    return batch;
+  }
+}
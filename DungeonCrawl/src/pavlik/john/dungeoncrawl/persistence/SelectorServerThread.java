@@ -0,0 +1,479 @@
+package pavlik.john.dungeoncrawl.persistence;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.ResourceBundle;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import pavlik.john.dungeoncrawl.controller.Controller;
+import pavlik.john.dungeoncrawl.view.parser.Parser;
+
+/**
+ * A Multiplayer Server Thread that services every client with non-blocking channels. This thread
+ * only accepts new connections, each of which is handed to one of a small fixed set of event loop
+ * threads. An event loop reads command lines from all of its clients and writes their queued output
+ * as the channels become ready, so the number of threads no longer grows with the number of
+ * players. Output is coalesced by an {@link OutputBatcher} per connection.
+ * <p>
+ * An event loop only does I/O. Command lines are parsed on a small pool of worker threads, in the
+ * order each client sent them, so a command waiting for the world lock, or a world tick holding
+ * it, never holds up reading and writing the other clients of the loop.
+ * <p>
+ * Clients see exactly the same protocol as with {@link ClientHandlerThread}: the first line must be
+ * the {@link MultiplayerServerThread#CONNECTION_STRING}, each later line is given to a Parser, and
+ * output is a stream of {@link WireProtocol} frames.
+ *
+ * @author John
+ */
+public class SelectorServerThread extends MultiplayerServerThread {
+
+  /**
+   * A single client connection, owned by one event loop.
+   */
+  private final class Connection extends ClientObserver {
+    private final SocketChannel         f_channel;
+    private final EventLoop             f_loop;
+    private final Parser                f_parser;
+    private final ByteArrayOutputStream f_line           = new ByteArrayOutputStream();
+    private final OutputBatcher         f_output         = OutputBatcher.fromSystemProperties();
+    private final Queue<ByteBuffer>     f_pendingWrites  = new ArrayDeque<>();
+    /**
+     * Bytes taken from the batcher that are still in f_pendingWrites
+     */
+    private final AtomicLong            f_unwritten      = new AtomicLong();
+    private final AtomicBoolean         f_flushScheduled = new AtomicBoolean(false);
+    private final AtomicBoolean         f_closed         = new AtomicBoolean(false);
+    /**
+     * Lines read but not yet parsed
+     */
+    private final AtomicInteger         f_pendingLines   = new AtomicInteger();
+    private SelectionKey                f_key;
+    private boolean                     f_handshaken     = false;
+    /**
+     * Completes once the last line read has been parsed. Only touched by the event loop.
+     */
+    private CompletableFuture<Void>     f_commands       = CompletableFuture.completedFuture(null);
+
+    Connection(SocketChannel channel, EventLoop loop) {
+      f_channel = channel;
+      f_loop = loop;
+      f_parser = new Parser(getController(), this, this, getMessages(), false);
+      setParser(f_parser);
+    }
+
+    void close() {
+      if (!f_closed.compareAndSet(false, true)) {
+        return;
+      }
+      f_clientCount.decrementAndGet();
+      if (f_key != null) {
+        f_key.cancel();
+      }
+      try {
+        f_channel.close();
+      } catch (final IOException e) {
+        e.printStackTrace();
+      }
+      // Queued behind any commands this client sent before leaving
+      runCommand(() -> getController().submit(() -> {
+        getController().releasePlayer(f_parser.getPlayer());
+        getController().getWorld().removeObserver(this);
+        return null;
+      }));
+    }
+
+    /**
+     * Run a command on a worker thread once the commands before it have run
+     */
+    private void runCommand(Runnable command) {
+      f_commands = f_commands.thenRunAsync(() -> {
+        try {
+          command.run();
+        } catch (final RuntimeException e) {
+          // Later commands still run
+          e.printStackTrace();
+        }
+      }, f_workers);
+    }
+
+    private void parse(String line) {
+      if (f_pendingLines.incrementAndGet() > MAX_PENDING_LINES) {
+        // Sending commands faster than they can be applied
+        close();
+        return;
+      }
+      runCommand(() -> {
+        f_pendingLines.decrementAndGet();
+        f_parser.parse(line);
+      });
+    }
+
+    /**
+     * Write whatever is still pending without waiting for the channel, then close it.
+     */
+    void flushAndClose() {
+      final byte[] batch = f_output.take();
+      if (batch != null) {
+        f_pendingWrites.add(ByteBuffer.wrap(batch));
+      }
+      try {
+        ByteBuffer buffer;
+        while ((buffer = f_pendingWrites.peek()) != null && f_channel.write(buffer) > 0) {
+          if (!buffer.hasRemaining()) {
+            f_pendingWrites.poll();
+          }
+        }
+      } catch (final IOException e) {
+        // The client is going away regardless
+      }
+      close();
+    }
+
+    private void processLine(String line) {
+      if (f_handshaken) {
+        parse(line);
+      } else if (line.equals(CONNECTION_STRING)) {
+        f_handshaken = true;
+        parse("play as");
+      } else {
+        close();
+      }
+    }
+
+    void read(ByteBuffer buffer) {
+      buffer.clear();
+      try {
+        if (f_channel.read(buffer) < 0) {
+          close();
+          return;
+        }
+      } catch (final IOException e) {
+        close();
+        return;
+      }
+      buffer.flip();
+      while (buffer.hasRemaining() && !f_closed.get()) {
+        final byte b = buffer.get();
+        if (b == '\n') {
+          final byte[] bytes = f_line.toByteArray();
+          f_line.reset();
+          int length = bytes.length;
+          if (length > 0 && bytes[length - 1] == '\r') {
+            length--;
+          }
+          processLine(new String(bytes, 0, length, f_charset));
+        } else if (f_line.size() < MAX_LINE_LENGTH) {
+          f_line.write(b);
+        } else {
+          close();
+        }
+      }
+    }
+
+    /**
+     * Move the pending batch to the channel
+     */
+    void flush() {
+      f_flushScheduled.set(false);
+      final byte[] batch = f_output.take();
+      if (batch != null) {
+        f_unwritten.addAndGet(batch.length);
+        f_pendingWrites.add(ByteBuffer.wrap(batch));
+        write();
+      }
+    }
+
+    @Override
+    void transmit(byte[] frames) {
+      if (f_closed.get()) {
+        return;
+      }
+      if (!f_output.hasRoomFor(frames.length, f_unwritten.get())) {
+        // Too slow to keep up, rather than holding up the world
+        f_loop.execute(this::close);
+        return;
+      }
+      if (f_output.add(frames)) {
+        // Only this observer starts batches, so this is the number of the one just started
+        final long batch = f_output.getBatch();
+        f_loop.execute(() -> f_loop.scheduleFlush(this, batch));
+      } else if (f_output.nanosUntilDue(System.nanoTime()) <= 0 && f_flushScheduled.compareAndSet(false, true)) {
+        // The batch is full, do not wait for the delay
+        f_loop.execute(this::flush);
+      }
+    }
+
+    void write() {
+      if (f_closed.get()) {
+        return;
+      }
+      try {
+        ByteBuffer buffer;
+        while ((buffer = f_pendingWrites.peek()) != null) {
+          f_channel.write(buffer);
+          if (buffer.hasRemaining()) {
+            // The socket is full, wait for the selector to report it writable again
+            f_key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            return;
+          }
+          f_unwritten.addAndGet(-buffer.capacity());
+          f_pendingWrites.poll();
+        }
+        f_key.interestOps(SelectionKey.OP_READ);
+      } catch (final IOException e) {
+        close();
+      }
+    }
+  }
+
+  /**
+   * A thread that multiplexes many connections on one Selector. Work for a connection that is
+   * produced on other threads, such as output from the world timer, is handed over through
+   * {@link #execute(Runnable)} so that channels and keys are only ever touched by this thread.
+   * <p>
+   * Output is flushed in batches, each queued when it starts and flushed when it falls due. A batch
+   * that fills up is flushed at once and its queued entry is dropped, see {@link FlushQueue}.
+   */
+  private final class EventLoop extends Thread {
+    private final Selector               f_selector;
+    private final Queue<Runnable>        f_tasks      = new ConcurrentLinkedQueue<>();
+    private final FlushQueue<Connection> f_dueFlushes = new FlushQueue<>();
+    private final ByteBuffer             f_readBuffer = ByteBuffer.allocate(8192);
+
+    EventLoop(int index) throws IOException {
+      super("Selector Event Loop " + index);
+      f_selector = Selector.open();
+    }
+
+    void execute(Runnable task) {
+      f_tasks.add(task);
+      f_selector.wakeup();
+    }
+
+    /**
+     * Flush every connection whose batch has fallen due
+     */
+    private void flushDue() {
+      final long now = System.nanoTime();
+      Connection connection;
+      while ((connection = f_dueFlushes.pollDue(now)) != null) {
+        connection.flush();
+      }
+    }
+
+    /**
+     * @return how long the selector may block before the next batch falls due
+     */
+    private long millisUntilNextFlush() {
+      if (f_dueFlushes.isEmpty()) {
+        return 500;
+      }
+      final long nanos = f_dueFlushes.nanosUntilNext(System.nanoTime());
+      return nanos <= 0 ? 0 : Math.min(500, TimeUnit.NANOSECONDS.toMillis(nanos) + 1);
+    }
+
+    void register(SocketChannel channel) {
+      execute(() -> {
+        try {
+          final Connection connection = new Connection(channel, this);
+          connection.f_key = channel.register(f_selector, SelectionKey.OP_READ, connection);
+          f_clientCount.incrementAndGet();
+        } catch (final IOException e) {
+          e.printStackTrace();
+          try {
+            channel.close();
+          } catch (final IOException closeException) {
+            closeException.printStackTrace();
+          }
+        }
+      });
+    }
+
+    void scheduleFlush(Connection connection, long batch) {
+      f_dueFlushes.add(connection, connection.f_output, batch);
+    }
+
+    @Override
+    public void run() {
+      try {
+        while (isListening()) {
+          final long timeout = millisUntilNextFlush();
+          if (timeout > 0) {
+            f_selector.select(timeout);
+          } else {
+            f_selector.selectNow();
+          }
+          Runnable task;
+          while ((task = f_tasks.poll()) != null) {
+            task.run();
+          }
+          final Iterator<SelectionKey> keys = f_selector.selectedKeys().iterator();
+          while (keys.hasNext()) {
+            final SelectionKey key = keys.next();
+            keys.remove();
+            final Connection connection = (Connection) key.attachment();
+            if (key.isValid() && key.isReadable()) {
+              connection.read(f_readBuffer);
+            }
+            if (key.isValid() && key.isWritable()) {
+              connection.write();
+            }
+          }
+          flushDue();
+        }
+      } catch (final IOException e) {
+        e.printStackTrace();
+      } finally {
+        for (final SelectionKey key : f_selector.keys()) {
+          ((Connection) key.attachment()).flushAndClose();
+        }
+        try {
+          f_selector.close();
+        } catch (final IOException e) {
+          e.printStackTrace();
+        }
+      }
+    }
+  }
+
+  /**
+   * The longest command line accepted from a client before the connection is dropped
+   */
+  private static final int      MAX_LINE_LENGTH   = 8192;
+
+  /**
+   * The most command lines a client may have waiting to be parsed before the connection is dropped
+   */
+  private static final int      MAX_PENDING_LINES = 64;
+
+  private final Charset         f_charset         = Charset.defaultCharset();
+  private final EventLoop[]     f_loops;
+  private int                   f_nextLoop        = 0;
+  private final AtomicInteger   f_clientCount     = new AtomicInteger();
+  /**
+   * Parse the command lines read by the event loops
+   */
+  private final ExecutorService f_workers;
+
+  /**
+   * Public constructor that uses one event loop per available processor.
+   *
+   * @param port
+   *          The port to listen on
+   * @param worldController
+   *          The Controller of the current world.
+   * @param messages
+   *          The ResourceBundle of messages created by the host.
+   */
+  public SelectorServerThread(int port, Controller worldController, ResourceBundle messages) {
+    this(port, worldController, messages, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Public constructor
+   *
+   * @param port
+   *          The port to listen on
+   * @param worldController
+   *          The Controller of the current world.
+   * @param messages
+   *          The ResourceBundle of messages created by the host.
+   * @param eventLoops
+   *          The number of event loop threads to spread clients over, must be positive
+   * @throws IllegalArgumentException
+   *           if eventLoops is less than one
+   */
+  public SelectorServerThread(int port, Controller worldController, ResourceBundle messages, int eventLoops) {
+    super(port, worldController, messages);
+    setName("Selector Multiplayer Server Thread");
+    if (eventLoops < 1) {
+      throw new IllegalArgumentException("eventLoops must be positive");
+    }
+    f_loops = new EventLoop[eventLoops];
+    f_workers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+      final Thread thread = new Thread(runnable, "Selector Command Worker");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  private void enableConnection() {
+    try (ServerSocketChannel serverChannel = ServerSocketChannel.open(); Selector acceptSelector = Selector.open()) {
+      serverChannel.bind(new InetSocketAddress(getPort()), ACCEPT_BACKLOG);
+      serverChannel.configureBlocking(false);
+      serverChannel.register(acceptSelector, SelectionKey.OP_ACCEPT);
+      for (int i = 0; i < f_loops.length; i++) {
+        f_loops[i] = new EventLoop(i);
+        f_loops[i].start();
+      }
+      while (isListening()) {
+        // Listen for 500ms at a time before stopping to check if we should still be listening
+        if (acceptSelector.select(500) > 0) {
+          acceptSelector.selectedKeys().clear();
+          SocketChannel channel;
+          while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            f_loops[f_nextLoop].register(channel);
+            f_nextLoop = (f_nextLoop + 1) % f_loops.length;
+          }
+        }
+      }
+    } catch (final IOException e) {
+      System.err.println("Could not listen on port " + getPort());
+      System.exit(-1);
+    }
+  }
+
+  /**
+   * Stop listening, and disconnect all clients after writing their pending output.
+   * SelectorServerThread will terminate in 500ms or less.
+   */
+  @Override
+  public void finish() {
+    super.finish();
+    for (final EventLoop loop : f_loops) {
+      if (loop != null) {
+        loop.f_selector.wakeup();
+      }
+    }
+  }
+
+  @Override
+  public int getClientCount() {
+    return f_clientCount.get();
+  }
+
+  @Override
+  public void run() {
+    enableConnection();
+    for (final EventLoop loop : f_loops) {
+      if (loop != null) {
+        try {
+          loop.join();
+        } catch (final InterruptedException e) {
+          e.printStackTrace();
+        }
+      }
+    }
+    // Lets the commands of the clients just disconnected finish
+    f_workers.shutdown();
+  }
+}
@@ -0,0 +1,80 @@
+package pavlik.john.dungeoncrawl.persistence;
+
+import java.util.Locale;
+import java.util.ResourceBundle;
+
+import pavlik.john.dungeoncrawl.controller.Controller;
+
+/**
+ * The implementations available to host a multiplayer world. The mode is chosen when the JVM starts
+ * through the {@value #MODE_PROPERTY} system property, e.g. <code>-Ddungeoncrawl.server.mode=selector</code>,
+ * and defaults to {@link #THREAD_PER_CLIENT}.
+ *
+ * @author John
+ */
+public enum ServerMode {
+  /**
+   * Every client is serviced by its own set of blocking {@link ClientHandlerThread}s.
+   */
+  THREAD_PER_CLIENT {
+    @Override
+    public MultiplayerServerThread createServer(int port, Controller worldController, ResourceBundle messages) {
+      return new MultiplayerServerThread(port, worldController, messages);
+    }
+  },
+  /**
+   * Every client is multiplexed onto a small fixed set of non-blocking selector event loops.
+   */
+  SELECTOR {
+    @Override
+    public MultiplayerServerThread createServer(int port, Controller worldController, ResourceBundle messages) {
+      return new SelectorServerThread(port, worldController, messages);
+    }
+  };
+
+  /**
+   * Name of the system property that selects the server mode
+   */
+  public static final String MODE_PROPERTY = "dungeoncrawl.server.mode";
+
+  /**
+   * Find the mode with the given name, ignoring case and treating '-' as '_'.
+   *
+   * @param name
+   *          The name of a mode, such as "selector" or "thread-per-client"
+   * @return the matching ServerMode, or {@link #THREAD_PER_CLIENT} if name is null or unknown
+   */
+  public static ServerMode fromName(String name) {
+    if (name != null) {
+      final String normalized = name.trim().toUpperCase(Locale.ENGLISH).replace('-', '_');
+      for (final ServerMode mode : values()) {
+        if (mode.name().equals(normalized)) {
+          return mode;
+        }
+      }
+    }
+    return THREAD_PER_CLIENT;
+  }
+
+  /**
+   * Get the mode selected by the {@value #MODE_PROPERTY} system property
+   *
+   * @return the selected ServerMode, or {@link #THREAD_PER_CLIENT} if none was selected
+   */
+  public static ServerMode fromSystemProperty() {
+    return fromName(System.getProperty(MODE_PROPERTY));
+  }
+
+  /**
+   * Create a server of this mode. The returned thread has not been started.
+   *
+   * @param port
+   *          The port to listen on
+   * @param worldController
+   *          The Controller of the current world.
+   * @param messages
+   *          The ResourceBundle of messages created by the host.
+   * @return a new MultiplayerServerThread
+   */
+  public abstract MultiplayerServerThread createServer(int port, Controller worldController, ResourceBundle messages);
+}
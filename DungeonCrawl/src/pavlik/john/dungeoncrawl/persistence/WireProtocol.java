@@ -0,0 +1,199 @@
+package pavlik.john.dungeoncrawl.persistence;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The binary protocol a multiplayer server uses to send world notifications to its clients. After
+ * the {@link MultiplayerServerThread#CONNECTION_STRING} handshake the server writes a header of
+ * {@link #MAGIC} and {@link #VERSION}, followed by a stream of frames. Every frame is an
+ * <code>int</code> length, an opcode byte and the opcode's fields, so a client can skip frames it
+ * does not understand.
+ * <p>
+ * Entities are never serialized. The first time an entity is referenced on a connection the server
+ * sends a DEFINE frame with its immutable fields under a connection specific integer id, and from
+ * then on refers to it by that id alone. DELTA frames carry the mutable fields of an entity that
+ * changed since they were last sent, ahead of any notification that depends on them. The first
+ * delta for a character carries every field. An id of {@link #NO_ENTITY} stands for null.
+ * <p>
+ * Strings are written as an <code>int</code> byte count followed by UTF-8 bytes, with a count of -1
+ * for null.
+ *
+ * @author John
+ */
+public final class WireProtocol {
+
+  /**
+   * First four bytes written by the server, "DCWP"
+   */
+  public static final int  MAGIC                        = 0x44435750;
+
+  /**
+   * The version of the frame layout described by this class
+   */
+  public static final short VERSION                     = 3;
+
+  /**
+   * The id used to encode a null entity reference
+   */
+  public static final int  NO_ENTITY                    = 0;
+
+  /*
+   * Entity definitions and state
+   */
+
+  /** moneyName, gameWon */
+  public static final byte WORLD_INFO                   = 1;
+  /** id, name, article, description, winCondition, sound */
+  public static final byte DEFINE_PLACE                 = 2;
+  /** place id, count, { direction ordinal byte, place id } */
+  public static final byte PLACE_EXITS                  = 3;
+  /** id, name, article, description, takeable, isContainer */
+  public static final byte DEFINE_ITEM                  = 4;
+  /** id, name, article, description, useString, hitSound, missSound */
+  public static final byte DEFINE_WEAPON                = 5;
+  /**
+   * id, name, article, description, location id, hasClass, [class name, max health, default weapon
+   * id, default weapon name, useString, hitSound, missSound]
+   */
+  public static final byte DEFINE_PLAYER                = 6;
+  /** same fields as {@link #DEFINE_PLAYER} */
+  public static final byte DEFINE_NPC                   = 7;
+  /**
+   * id, changes byte, then for each CHANGED bit that is set, in order: [location id], [health,
+   * conscious], [weapon id], [target id], [money], [score], [added count, { item id }, removed
+   * count, { item id }]
+   */
+  public static final byte CHARACTER_DELTA              = 8;
+  /** place or container item id, added count, { item id }, removed count, { item id } */
+  public static final byte CONTENTS_DELTA               = 9;
+
+  /*
+   * CHARACTER_DELTA changes
+   */
+
+  /** The character moved */
+  public static final int  CHANGED_LOCATION             = 1;
+  /** The character's health or consciousness changed */
+  public static final int  CHANGED_HEALTH               = 1 << 1;
+  /** The character equipped or unequipped a weapon */
+  public static final int  CHANGED_WEAPON               = 1 << 2;
+  /** The character started or stopped attacking */
+  public static final int  CHANGED_TARGET               = 1 << 3;
+  /** The character's money changed */
+  public static final int  CHANGED_MONEY                = 1 << 4;
+  /** The player's score changed */
+  public static final int  CHANGED_SCORE                = 1 << 5;
+  /** Items were added to or removed from the character's inventory */
+  public static final int  CHANGED_ITEMS                = 1 << 6;
+
+  /*
+   * IDisplayNotifier
+   */
+
+  /** message */
+  public static final byte DISPLAY                      = 20;
+  /** (no fields) */
+  public static final byte QUIT                         = 21;
+  /** player id */
+  public static final byte SET_CURRENT_PLAYER           = 22;
+  /** enable */
+  public static final byte SET_SOUND                    = 23;
+  /** (no fields) */
+  public static final byte TOGGLE_SOUND                 = 24;
+
+  /*
+   * IModelObserver, each preceded by the state of the client's current player
+   */
+
+  /** character id, speaker, command */
+  public static final byte BROADCAST_MESSAGE            = 30;
+  /** character id, weapon id */
+  public static final byte CHARACTER_EQUIPPED_WEAPON    = 31;
+  /** character id, heal */
+  public static final byte CHARACTER_HEAL               = 32;
+  /** attacker id, combatMsg, target id, damage */
+  public static final byte CHARACTER_HITS_CHARACTER_FOR = 33;
+  /** attacker id, combatMsg, target id */
+  public static final byte CHARACTER_MISSED_CHARACTER   = 34;
+  /** character id, money, moneyName */
+  public static final byte CHARACTER_MONEY_CHANGED      = 35;
+  /** character id, item id, points */
+  public static final byte CHARACTER_PUT_ITEM_ON_GROUND = 36;
+  /** character id, ticksRemaining */
+  public static final byte CHARACTER_RESPAWN_COUNTDOWN  = 37;
+  /** character id, previous place id, new place id */
+  public static final byte CHARACTER_RESPAWNED          = 38;
+  /** from character id, to character id, money, moneyName */
+  public static final byte CHARACTER_TOOK_MONEY         = 39;
+  /** character id */
+  public static final byte CHARACTER_UNEQUIPPED_WEAPON  = 40;
+  /** character id */
+  public static final byte CHARACTER_WOKE_UP            = 41;
+  /** attacker id, target id */
+  public static final byte CHARACTER_WON_FIGHT          = 42;
+  /** gameWon */
+  public static final byte GAME_OVER                    = 43;
+  /** character id, item id */
+  public static final byte PLAYER_GAINS_ITEM            = 44;
+  /** player id */
+  public static final byte PLAYER_JOINED                = 45;
+  /** character id, item id */
+  public static final byte PLAYER_LOSES_ITEM            = 46;
+  /** player id, start place id, finish place id */
+  public static final byte PLAYER_MOVED                 = 47;
+  /** player id, moved item id, container item id */
+  public static final byte PLAYER_PUT_ITEM_IN_ITEM      = 48;
+  /** player id */
+  public static final byte PLAYER_QUIT                  = 49;
+  /** player id, npc id, count, { say trigger message } */
+  public static final byte PLAYER_TALKED_TO_NPC         = 50;
+  /** player id, item id, points */
+  public static final byte PLAYER_TOOK_ITEM_FROM_GROUND = 51;
+  /** character id, soundPath */
+  public static final byte PLAY_SOUND                   = 52;
+  /** player id, moved item id, container item id */
+  public static final byte TAKE_ITEM_FROM_ITEM          = 53;
+  /** fileName, the client discards every entity it knows about */
+  public static final byte WORLD_LOADED                 = 54;
+
+  /**
+   * Read and validate the header the server writes at the start of the stream
+   *
+   * @param in
+   *          The stream from the server
+   * @throws IOException
+   *           if the stream could not be read or was not written with this version of the protocol
+   */
+  public static void readHeader(DataInput in) throws IOException {
+    final int magic = in.readInt();
+    final short version = in.readShort();
+    if (magic != MAGIC || version != VERSION) {
+      throw new IOException("Unsupported protocol version " + version);
+    }
+  }
+
+  /**
+   * Read a string written by a server
+   *
+   * @param in
+   *          The frame to read from
+   * @return The string, possibly null
+   * @throws IOException
+   *           if the frame could not be read
+   */
+  public static String readString(DataInput in) throws IOException {
+    final int length = in.readInt();
+    if (length < 0) {
+      return null;
+    }
+    final byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private WireProtocol() {
+    // Constants only
+  }
+}
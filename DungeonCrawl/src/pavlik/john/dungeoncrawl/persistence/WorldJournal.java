@@ -0,0 +1,730 @@
+package pavlik.john.dungeoncrawl.persistence;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import pavlik.john.dungeoncrawl.exceptions.PersistenceStateException;
+import pavlik.john.dungeoncrawl.model.Character;
+import pavlik.john.dungeoncrawl.model.Consumable;
+import pavlik.john.dungeoncrawl.model.Container;
+import pavlik.john.dungeoncrawl.model.HasContainer;
+import pavlik.john.dungeoncrawl.model.IWorldJournal;
+import pavlik.john.dungeoncrawl.model.Item;
+import pavlik.john.dungeoncrawl.model.NonPlayerCharacter;
+import pavlik.john.dungeoncrawl.model.Place;
+import pavlik.john.dungeoncrawl.model.Player;
+import pavlik.john.dungeoncrawl.model.Universe;
+import pavlik.john.dungeoncrawl.model.Weapon;
+import pavlik.john.dungeoncrawl.model.events.State;
+
+/**
+ * Autosaves a running world as a snapshot and an append-only journal of the changes made to it
+ * since. Each change is one small record, buffered in memory as it is made. A commit thread writes
+ * the buffered records to the journal and forces them to disk every
+ * {@value #DEFAULT_COMMIT_MILLIS} milliseconds, so one write and one sync cover every change made
+ * in that time. The records are only cut off for a commit while no command or tick is changing the
+ * world, so a commit never holds half of a change such as an item leaving one container for
+ * another. {@link #compact()} writes a new snapshot and starts the journal again once it has grown,
+ * or {@link #startCompaction()} and {@link #compact(WorldView)} do so from a view of the world
+ * without holding it still, and {@link #recover(Path)} loads the snapshot and replays the journal
+ * over it.
+ * <p>
+ * The journal starts with {@link #MAGIC}, the format {@link #VERSION} and the checksum of the
+ * snapshot it follows. A journal whose checksum is not the snapshot's was written before that
+ * snapshot, which already holds its changes, so recovery leaves it out. A compaction that is cut
+ * short therefore loses nothing. After the header come the commits, each the length and CRC-32 of
+ * its records followed by the records. A commit cut short by a crash is dropped whole.
+ *
+ * @author John
+ */
+public final class WorldJournal implements IWorldJournal, Closeable {
+
+  /**
+   * The first four bytes of every journal, "DCJN"
+   */
+  static final int                       MAGIC                 = 0x44434A4E;
+
+  /**
+   * The version of the journal format
+   */
+  static final int                       VERSION               = 1;
+
+  /**
+   * Milliseconds between commits of the journal
+   */
+  public static final long               DEFAULT_COMMIT_MILLIS = 100;
+
+  /**
+   * Bytes the journal grows to before {@link #needsCompaction()}
+   */
+  public static final long               COMPACTION_SIZE       = 1 << 20;
+
+  private static final int               HEADER_SIZE           = 16;
+  private static final int               NONE                  = -1;
+
+  /*
+   * Record types
+   */
+  private static final int               ITEM_ADDED            = 1;
+  private static final int               ITEM_REMOVED          = 2;
+  private static final int               LOCATION              = 3;
+  private static final int               MONEY                 = 4;
+  private static final int               SCORE                 = 5;
+  private static final int               WEAPON                = 6;
+  private static final int               STATE                 = 7;
+  private static final int               USES                  = 8;
+  private static final int               RECIPE_USED           = 9;
+
+  /*
+   * Kinds of container owner
+   */
+  private static final int               PLACE                 = 0;
+  private static final int               CHARACTER             = 1;
+  private static final int               ITEM                  = 2;
+
+  private final Universe                 f_world;
+  private final Path                     f_snapshot;
+  private final FileChannel              f_channel;
+  private final ScheduledExecutorService f_committer;
+  private final Consumer<Runnable>       f_quiesce;
+
+  /*
+   * Records not yet committed, guarded by this. The records are cut off into whole units while the
+   * world is still, and only whole units are committed. The first f_compactionCut units were cut
+   * before a pending compaction and belong in the journal it replaces.
+   */
+  private final ByteArrayOutputStream    f_pending             = new ByteArrayOutputStream();
+  private final DataOutputStream         f_out                 = new DataOutputStream(f_pending);
+  private final List<byte[]>             f_cut                 = new ArrayList<>();
+  private int                            f_compactionCut       = NONE;
+
+  /*
+   * Guards writing to the channel, so records can be appended while a commit is synced
+   */
+  private final Object                   f_commitLock          = new Object();
+  private volatile long                  f_size;
+  private volatile IOException           f_failure;
+
+  private WorldJournal(Universe world, Path snapshot, long commitMillis, Consumer<Runnable> quiesce)
+      throws IOException {
+    f_world = world;
+    f_snapshot = snapshot;
+    f_quiesce = quiesce;
+    f_channel = FileChannel.open(journalFile(snapshot), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.READ);
+    f_committer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      final Thread thread = new Thread(runnable, "World journal");
+      thread.setDaemon(true);
+      return thread;
+    });
+    f_committer.scheduleWithFixedDelay(() -> {
+      try {
+        commit();
+      } catch (final PersistenceStateException e) {
+        // Kept in f_failure and reported by the next commit or compaction
+      }
+    }, commitMillis, commitMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * The journal kept beside a snapshot
+   *
+   * @param snapshot
+   *          The snapshot
+   * @return the journal's file
+   */
+  public static Path journalFile(Path snapshot) {
+    return snapshot.resolveSibling(snapshot.getFileName() + ".journal");
+  }
+
+  /**
+   * Start autosaving a world that only one thread changes: write a snapshot of it and journal its
+   * changes from then on. The world must not change while this runs.
+   *
+   * @param world
+   *          The world
+   * @param snapshot
+   *          The file to keep the snapshot in, with the journal beside it
+   * @param commitMillis
+   *          Milliseconds between commits of the journal
+   * @return the journal, which the world reports its changes to until it is closed
+   * @throws IllegalArgumentException
+   *           if commitMillis is not positive
+   * @throws PersistenceStateException
+   *           if the snapshot or journal cannot be written
+   */
+  public static WorldJournal open(Universe world, Path snapshot, long commitMillis)
+      throws PersistenceStateException {
+    return open(world, snapshot, commitMillis, Runnable::run);
+  }
+
+  /**
+   * Start autosaving a world: write a snapshot of it and journal its changes from then on. The
+   * world must not change while this runs.
+   *
+   * @param world
+   *          The world
+   * @param snapshot
+   *          The file to keep the snapshot in, with the journal beside it
+   * @param commitMillis
+   *          Milliseconds between commits of the journal
+   * @param quiesce
+   *          Runs an action while no command or tick is changing the world, such as under the
+   *          world's exclusive lock. Records are only cut off for a commit by such an action.
+   * @return the journal, which the world reports its changes to until it is closed
+   * @throws IllegalArgumentException
+   *           if commitMillis is not positive
+   * @throws NullPointerException
+   *           if quiesce is null
+   * @throws PersistenceStateException
+   *           if the snapshot or journal cannot be written
+   */
+  public static WorldJournal open(Universe world, Path snapshot, long commitMillis, Consumer<Runnable> quiesce)
+      throws PersistenceStateException {
+    if (commitMillis < 1) {
+      throw new IllegalArgumentException("commitMillis must be positive");
+    }
+    if (quiesce == null) {
+      throw new NullPointerException("quiesce cannot be null");
+    }
+    final WorldJournal journal;
+    try {
+      journal = new WorldJournal(world, snapshot, commitMillis, quiesce);
+    } catch (final IOException e) {
+      throw new PersistenceStateException("Unable to open the world journal for " + snapshot, e);
+    }
+    try {
+      journal.compact();
+    } catch (final PersistenceStateException e) {
+      journal.close();
+      throw e;
+    }
+    world.addJournal(journal);
+    return journal;
+  }
+
+  /**
+   * Load the world autosaved to a snapshot, with the changes in its journal
+   *
+   * @param snapshot
+   *          The snapshot, with the journal beside it. A missing journal has no changes.
+   * @return the world as it was at the last commit of the journal
+   * @throws PersistenceStateException
+   *           if the snapshot cannot be loaded or the journal is damaged
+   */
+  public static Universe recover(Path snapshot) throws PersistenceStateException {
+    final Universe world = GamePersistence.loadWorld(snapshot);
+    final Path file = journalFile(snapshot);
+    if (!Files.exists(file)) {
+      return world;
+    }
+    final ByteBuffer journal;
+    final long checksum;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      journal = channel.map(MapMode.READ_ONLY, 0, channel.size());
+      checksum = checksum(snapshot, false);
+    } catch (final IOException e) {
+      throw new PersistenceStateException("Unable to read the world journal " + file, e);
+    }
+    if (journal.remaining() < HEADER_SIZE) {
+      // Cut short while it was started again after a compaction
+      return world;
+    }
+    if (journal.getInt() != MAGIC) {
+      throw new PersistenceStateException(file + " is not a world journal");
+    }
+    final int version = journal.getInt();
+    if (version != VERSION) {
+      throw new PersistenceStateException("Unable to read version " + version + " of the world journal format");
+    }
+    if (journal.getLong() != checksum) {
+      return world;
+    }
+    final CRC32 crc = new CRC32();
+    try {
+      while (journal.remaining() >= Integer.BYTES * 2) {
+        final int length = journal.getInt();
+        final int expected = journal.getInt();
+        if (length < 0 || length > journal.remaining()) {
+          break;
+        }
+        final ByteBuffer records = journal.slice();
+        records.limit(length);
+        crc.reset();
+        crc.update(records.duplicate());
+        if ((int) crc.getValue() != expected) {
+          break;
+        }
+        journal.position(journal.position() + length);
+        while (records.hasRemaining()) {
+          replay(world, records);
+        }
+      }
+    } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException
+        | NullPointerException | ClassCastException e) {
+      throw new PersistenceStateException("The world journal " + file + " is damaged", e);
+    }
+    return world;
+  }
+
+  private static Container container(Universe world, ByteBuffer records) {
+    final int kind = records.get();
+    final int id = records.getInt();
+    switch (kind) {
+      case PLACE:
+        return world.getPlace(id).getContainer();
+      case CHARACTER:
+        return world.getCharacter(id).getContainer();
+      case ITEM:
+        return world.getItem(id).getContainer();
+      default:
+        throw new IllegalArgumentException("Unknown container owner " + kind);
+    }
+  }
+
+  private static String string(ByteBuffer records) {
+    final byte[] bytes = new byte[records.getInt()];
+    records.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static void replay(Universe world, ByteBuffer records) {
+    final int type = records.get();
+    switch (type) {
+      case ITEM_ADDED: {
+        final Container container = container(world, records);
+        container.addItem(world.getItem(records.getInt()));
+        break;
+      }
+      case ITEM_REMOVED: {
+        final Container container = container(world, records);
+        container.removeItem(world.getItem(records.getInt()));
+        break;
+      }
+      case LOCATION: {
+        final Character character = world.getCharacter(records.getInt());
+        character.setLocation(world.getPlace(records.getInt()));
+        break;
+      }
+      case MONEY: {
+        final Character character = world.getCharacter(records.getInt());
+        character.changeMoney(records.getInt() - character.getMoney());
+        break;
+      }
+      case SCORE: {
+        final Player player = (Player) world.getCharacter(records.getInt());
+        player.addPoints(records.getLong() - player.getScore());
+        break;
+      }
+      case WEAPON: {
+        final Character character = world.getCharacter(records.getInt());
+        final int weapon = records.getInt();
+        if (weapon == NONE) {
+          character.unequip();
+        } else {
+          character.setCurrentWeapon((Weapon) world.getItem(weapon));
+        }
+        break;
+      }
+      case STATE: {
+        final NonPlayerCharacter npc = (NonPlayerCharacter) world.getCharacter(records.getInt());
+        final String name = string(records);
+        for (final State state : npc.getStates()) {
+          if (state.getName().equals(name)) {
+            npc.setCurrentState(state);
+          }
+        }
+        break;
+      }
+      case USES:
+        ((Consumable) world.getItem(records.getInt())).setUsesRemaining(records.getInt());
+        break;
+      case RECIPE_USED: {
+        final Set<Item> ingredients = new HashSet<>();
+        for (int i = records.getInt(); i > 0; i--) {
+          ingredients.add(world.getItem(records.getInt()));
+        }
+        world.synthesizeItems(ingredients);
+        break;
+      }
+      default:
+        throw new IllegalArgumentException("Unknown journal record " + type);
+    }
+  }
+
+  /**
+   * The CRC-32 of a file, optionally forcing it to disk first
+   */
+  private static long checksum(Path file, boolean force) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      if (force) {
+        channel.force(true);
+      }
+      final CRC32 crc = new CRC32();
+      final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+      while (channel.read(buffer) >= 0) {
+        buffer.flip();
+        crc.update(buffer);
+        buffer.clear();
+      }
+      return crc.getValue();
+    }
+  }
+
+  /**
+   * Cut the records made so far off into a unit. Only called while the world is still.
+   */
+  private synchronized void cut() {
+    if (f_pending.size() > 0) {
+      f_cut.add(f_pending.toByteArray());
+      f_pending.reset();
+    }
+  }
+
+  /**
+   * Take the units that may be committed now: all of them, or while a compaction is pending only
+   * those cut before it
+   */
+  private synchronized List<byte[]> take() {
+    final int count = f_compactionCut == NONE ? f_cut.size() : f_compactionCut;
+    final List<byte[]> units = new ArrayList<>(f_cut.subList(0, count));
+    f_cut.subList(0, count).clear();
+    if (f_compactionCut != NONE) {
+      f_compactionCut = 0;
+    }
+    return units;
+  }
+
+  /**
+   * Write units to the journal as one commit and force it to disk, unless an earlier write failed
+   */
+  private void write(List<byte[]> units) {
+    if (f_failure != null || units.isEmpty()) {
+      return;
+    }
+    int length = 0;
+    for (final byte[] unit : units) {
+      length += unit.length;
+    }
+    final ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES * 2 + length);
+    buffer.position(Integer.BYTES * 2);
+    for (final byte[] unit : units) {
+      buffer.put(unit);
+    }
+    final CRC32 crc = new CRC32();
+    crc.update(buffer.array(), Integer.BYTES * 2, length);
+    buffer.putInt(0, length).putInt(Integer.BYTES, (int) crc.getValue()).flip();
+    try {
+      while (buffer.hasRemaining()) {
+        f_channel.write(buffer);
+      }
+      f_channel.force(false);
+      f_size += buffer.limit();
+    } catch (final IOException e) {
+      f_failure = e;
+    }
+  }
+
+  /**
+   * Write the records made since the last commit to the journal and force them to disk. The commit
+   * thread calls this regularly. The records are cut off while the world is still, so that only
+   * whole commands and ticks are committed.
+   *
+   * @throws PersistenceStateException
+   *           if the journal cannot be written, now or at an earlier commit
+   */
+  public void commit() throws PersistenceStateException {
+    final boolean pending;
+    synchronized (this) {
+      pending = f_pending.size() > 0;
+    }
+    if (pending) {
+      // Before f_commitLock, which a compaction holds while the world is held still
+      f_quiesce.accept(this::cut);
+    }
+    synchronized (f_commitLock) {
+      write(take());
+      if (f_failure != null) {
+        throw new PersistenceStateException("Unable to write the world journal for " + f_snapshot, f_failure);
+      }
+    }
+  }
+
+  /**
+   * Write a new snapshot of the world and start the journal again. The world must not change while
+   * this runs. The snapshot is written beside the last one and then moved over it, and the journal
+   * is only started again once it has been, so a crash at any point leaves a snapshot and journal
+   * that recover the world.
+   *
+   * @throws PersistenceStateException
+   *           if the snapshot or journal cannot be written
+   */
+  public void compact() throws PersistenceStateException {
+    synchronized (f_commitLock) {
+      synchronized (this) {
+        cut();
+        f_compactionCut = NONE;
+      }
+      // The snapshot holds every change the journal fails to
+      write(take());
+      final Path written = temporary();
+      WorldSnapshot.write(f_world, written);
+      rotate(written);
+    }
+  }
+
+  /**
+   * Start compacting the journal into a view of the world captured at the same moment, while the
+   * world is held still. The view is written by {@link #compact(WorldView)}, and the changes made
+   * until then are kept back for the new journal.
+   *
+   * @return true if a compaction was started, false if one is already pending
+   */
+  public synchronized boolean startCompaction() {
+    if (f_compactionCut != NONE) {
+      return false;
+    }
+    cut();
+    f_compactionCut = f_cut.size();
+    return true;
+  }
+
+  /**
+   * Finish the compaction started by {@link #startCompaction()}: write a new snapshot from the view
+   * captured with it and start the journal again, as {@link #compact()} does. The world may go on
+   * changing while this runs, so it can be run on another thread. Does nothing if no compaction is
+   * pending.
+   *
+   * @param view
+   *          The view of the world captured when the compaction was started
+   * @throws PersistenceStateException
+   *           if the snapshot or journal cannot be written
+   */
+  public void compact(WorldView view) throws PersistenceStateException {
+    synchronized (f_commitLock) {
+      try {
+        synchronized (this) {
+          if (f_compactionCut == NONE) {
+            return;
+          }
+        }
+        write(take());
+        final Path written = temporary();
+        WorldSnapshot.write(view, written);
+        rotate(written);
+      } finally {
+        synchronized (this) {
+          f_compactionCut = NONE;
+        }
+      }
+    }
+  }
+
+  private Path temporary() {
+    return f_snapshot.resolveSibling(f_snapshot.getFileName() + ".tmp");
+  }
+
+  /**
+   * Move a written snapshot over the last one and start the journal again after it
+   */
+  private void rotate(Path written) throws PersistenceStateException {
+    try {
+      final long checksum = checksum(written, true);
+      Files.move(written, f_snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      header.putInt(MAGIC).putInt(VERSION).putLong(checksum).flip();
+      f_channel.truncate(0);
+      while (header.hasRemaining()) {
+        f_channel.write(header, header.position());
+      }
+      f_channel.position(HEADER_SIZE);
+      f_channel.force(false);
+      f_size = 0;
+      f_failure = null;
+    } catch (final IOException e) {
+      f_failure = e;
+      throw new PersistenceStateException("Unable to start the world journal for " + f_snapshot, e);
+    }
+  }
+
+  /**
+   * @return true once the journal has grown to {@value #COMPACTION_SIZE} bytes since the last
+   *         compaction
+   */
+  public boolean needsCompaction() {
+    return f_size >= COMPACTION_SIZE;
+  }
+
+  /**
+   * Commit what is left and stop journaling the world
+   *
+   * @throws PersistenceStateException
+   *           if the journal cannot be written
+   */
+  public void finish() throws PersistenceStateException {
+    f_world.removeJournal(this);
+    f_committer.shutdown();
+    synchronized (this) {
+      // Its view may hold changes that are only committed to this journal
+      f_compactionCut = NONE;
+    }
+    try {
+      commit();
+    } finally {
+      close();
+    }
+  }
+
+  /**
+   * Stop journaling the world, without committing what is left
+   */
+  @Override
+  public void close() {
+    f_world.removeJournal(this);
+    f_committer.shutdownNow();
+    try {
+      f_channel.close();
+    } catch (final IOException e) {
+      // Nothing was left to write
+    }
+  }
+
+  private void owner(HasContainer owner) throws IOException {
+    if (owner instanceof Place) {
+      f_out.writeByte(PLACE);
+      f_out.writeInt(((Place) owner).getId());
+    } else if (owner instanceof Character) {
+      f_out.writeByte(CHARACTER);
+      f_out.writeInt(((Character) owner).getId());
+    } else {
+      f_out.writeByte(ITEM);
+      f_out.writeInt(((Item) owner).getId());
+    }
+  }
+
+  @Override
+  public synchronized void itemAdded(HasContainer owner, Item item) {
+    try {
+      f_out.writeByte(ITEM_ADDED);
+      owner(owner);
+      f_out.writeInt(item.getId());
+    } catch (final IOException e) {
+      // Only written to memory
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @Override
+  public synchronized void itemRemoved(HasContainer owner, Item item) {
+    try {
+      f_out.writeByte(ITEM_REMOVED);
+      owner(owner);
+      f_out.writeInt(item.getId());
+    } catch (final IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @Override
+  public synchronized void locationChanged(Character character) {
+    try {
+      f_out.writeByte(LOCATION);
+      f_out.writeInt(character.getId());
+      f_out.writeInt(character.getLocation().getId());
+    } catch (final IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @Override
+  public synchronized void moneyChanged(Character character) {
+    try {
+      f_out.writeByte(MONEY);
+      f_out.writeInt(character.getId());
+      f_out.writeInt(character.getMoney());
+    } catch (final IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @Override
+  public synchronized void scoreChanged(Player player) {
+    try {
+      f_out.writeByte(SCORE);
+      f_out.writeInt(player.getId());
+      f_out.writeLong(player.getScore());
+    } catch (final IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @Override
+  public synchronized void weaponChanged(Character character) {
+    final Weapon weapon = character.getCurrentWeapon();
+    try {
+      f_out.writeByte(WEAPON);
+      f_out.writeInt(character.getId());
+      // A class's default weapon is not one of the world's items
+      f_out.writeInt(weapon != null && f_world.getItem(weapon.getId()) == weapon ? weapon.getId() : NONE);
+    } catch (final IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @Override
+  public synchronized void stateChanged(NonPlayerCharacter npc) {
+    try {
+      final byte[] name = npc.getCurrentState().getName().getBytes(StandardCharsets.UTF_8);
+      f_out.writeByte(STATE);
+      f_out.writeInt(npc.getId());
+      f_out.writeInt(name.length);
+      f_out.write(name);
+    } catch (final IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @Override
+  public synchronized void usesChanged(Consumable consumable) {
+    try {
+      f_out.writeByte(USES);
+      f_out.writeInt(consumable.getId());
+      f_out.writeInt(consumable.getUsesRemaining());
+    } catch (final IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @Override
+  public synchronized void recipeUsed(Set<Item> ingredients) {
+    try {
+      f_out.writeByte(RECIPE_USED);
+      f_out.writeInt(ingredients.size());
+      for (final Item item : ingredients) {
+        f_out.writeInt(item.getId());
+      }
+    } catch (final IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,691 @@
+package pavlik.john.dungeoncrawl.persistence;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import pavlik.john.dungeoncrawl.exceptions.PersistenceStateException;
+import pavlik.john.dungeoncrawl.model.Character;
+import pavlik.john.dungeoncrawl.model.CharacterClass;
+import pavlik.john.dungeoncrawl.model.Consumable;
+import pavlik.john.dungeoncrawl.model.Consumable.Effect;
+import pavlik.john.dungeoncrawl.model.Consumable.EffectTarget;
+import pavlik.john.dungeoncrawl.model.Consumable.EffectType;
+import pavlik.john.dungeoncrawl.model.Container;
+import pavlik.john.dungeoncrawl.model.HasContainer;
+import pavlik.john.dungeoncrawl.model.Item;
+import pavlik.john.dungeoncrawl.model.Navigation;
+import pavlik.john.dungeoncrawl.model.NonPlayerCharacter;
+import pavlik.john.dungeoncrawl.model.Place;
+import pavlik.john.dungeoncrawl.model.Player;
+import pavlik.john.dungeoncrawl.model.Universe;
+import pavlik.john.dungeoncrawl.model.Weapon;
+import pavlik.john.dungeoncrawl.model.events.State;
+import pavlik.john.dungeoncrawl.model.events.Trigger;
+import pavlik.john.dungeoncrawl.model.events.XMLAttribute;
+
+/**
+ * A compact binary snapshot of a {@link Universe}, for checkpointing a running world and restoring
+ * it quickly on restart. XML stays the format worlds are written in. A snapshot holds what a save
+ * file holds, and also the tick the world had reached. It is read through a memory mapping of the
+ * file.
+ * <p>
+ * A snapshot starts with {@link #MAGIC} and the format {@link #VERSION}, followed by sections. Each
+ * section is its id and the length of its content in bytes, so a reader can skip a section it does
+ * not know. The first section is the string table. Every string is stored there once and referred
+ * to by its index, -1 for <code>null</code>. Places, items and characters refer to each other by
+ * id, and are restored in the order of their ids so they keep them. Numbers are big-endian.
+ *
+ * @author John
+ */
+final class WorldSnapshot {
+
+  /**
+   * The first four bytes of every snapshot, "DCSN"
+   */
+  static final int         MAGIC      = 0x4443534E;
+
+  /**
+   * The version of the snapshot format
+   */
+  static final int         VERSION    = 1;
+
+  private static final int NONE       = -1;
+
+  /*
+   * Section ids, in the order they are written
+   */
+  private static final int STRINGS    = 1;
+  private static final int WORLD      = 2;
+  private static final int PLACES     = 3;
+  private static final int CLASSES    = 4;
+  private static final int CHARACTERS = 5;
+  private static final int ITEMS      = 6;
+  private static final int CONTENTS   = 7;
+  private static final int CRAFTING   = 8;
+
+  private static final int ITEM       = 0;
+  private static final int CONSUMABLE = 1;
+  private static final int WEAPON     = 2;
+  private static final int PLAYER     = 0;
+  private static final int NPC        = 1;
+
+  /**
+   * Builds the sections of a snapshot in memory, collecting the string table as it goes
+   */
+  private static final class Output {
+    final Map<String, Integer>  f_strings  = new HashMap<>();
+    final List<String>          f_table    = new ArrayList<>();
+    final ByteArrayOutputStream f_sections = new ByteArrayOutputStream();
+    final ByteArrayOutputStream f_section  = new ByteArrayOutputStream();
+    final DataOutputStream      f_out      = new DataOutputStream(f_section);
+
+    void string(String string) throws IOException {
+      if (string == null) {
+        f_out.writeInt(NONE);
+        return;
+      }
+      Integer index = f_strings.get(string);
+      if (index == null) {
+        index = f_table.size();
+        f_strings.put(string, index);
+        f_table.add(string);
+      }
+      f_out.writeInt(index);
+    }
+
+    void id(Place place) throws IOException {
+      f_out.writeInt(place == null ? NONE : place.getId());
+    }
+
+    void endSection(int id) throws IOException {
+      final DataOutputStream header = new DataOutputStream(f_sections);
+      header.writeInt(id);
+      header.writeInt(f_section.size());
+      f_section.writeTo(f_sections);
+      f_section.reset();
+    }
+
+    void writeTo(OutputStream stream) throws IOException {
+      final DataOutputStream out = new DataOutputStream(stream);
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      final ByteArrayOutputStream table = new ByteArrayOutputStream();
+      final DataOutputStream tableOut = new DataOutputStream(table);
+      tableOut.writeInt(f_table.size());
+      for (final String string : f_table) {
+        final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        tableOut.writeInt(bytes.length);
+        tableOut.write(bytes);
+      }
+      out.writeInt(STRINGS);
+      out.writeInt(table.size());
+      table.writeTo(out);
+      f_sections.writeTo(out);
+      out.flush();
+    }
+  }
+
+  /**
+   * Reads the sections of a mapped snapshot
+   */
+  private static final class Input {
+    final Universe f_world = new Universe();
+    String[]       f_table = new String[0];
+    ByteBuffer     f_in;
+
+    String string() {
+      final int index = f_in.getInt();
+      return index == NONE ? null : f_table[index];
+    }
+
+    Place place() {
+      final int id = f_in.getInt();
+      return id == NONE ? null : f_world.getPlace(id);
+    }
+
+    Item item() {
+      return f_world.getItem(f_in.getInt());
+    }
+
+    boolean bool() {
+      return f_in.get() != 0;
+    }
+  }
+
+  private static void writeWorld(WorldView view, Output out) throws IOException {
+    final Universe world = view.getWorld();
+    out.f_out.writeLong(world.getTickRate());
+    out.f_out.writeLong(world.getRandomSeed());
+    out.string(world.getMoneyName());
+    out.f_out.writeBoolean(world.isCombatAllowed());
+    out.f_out.writeLong(view.getCurrentTick());
+    out.endSection(WORLD);
+  }
+
+  private static void readWorld(Input in) {
+    in.f_world.setTickRate(in.f_in.getLong());
+    in.f_world.setRandomSeed(in.f_in.getLong());
+    in.f_world.setMoneyName(in.string());
+    in.f_world.setAllowCombat(in.bool());
+    in.f_world.setCurrentTick(in.f_in.getLong());
+  }
+
+  /**
+   * Every place but the nowhere place, which every world starts with as id 0
+   */
+  private static void writePlaces(Universe world, Output out) throws IOException {
+    final List<Place> places = world.getPlacesView();
+    out.f_out.writeInt(places.size() - 1);
+    for (int id = 1; id < places.size(); id++) {
+      final Place place = places.get(id);
+      out.string(place.getName());
+      out.string(place.getArticle());
+      out.string(place.getDescription());
+      out.f_out.writeBoolean(place.getWinCondition());
+      out.string(place.getSound());
+    }
+    for (int id = 1; id < places.size(); id++) {
+      final Place place = places.get(id);
+      for (final Navigation direction : Navigation.values()) {
+        if (place.isTravelAllowedToward(direction)) {
+          out.f_out.writeByte(direction.ordinal());
+          out.id(place.getTravelDestinationToward(direction));
+        }
+      }
+      out.f_out.writeByte(NONE);
+    }
+    out.endSection(PLACES);
+  }
+
+  private static void readPlaces(Input in) {
+    final int count = in.f_in.getInt();
+    for (int i = 0; i < count; i++) {
+      in.f_world.createPlace(in.string(), in.string(), in.string(), in.bool(), in.string());
+    }
+    for (int id = 1; id <= count; id++) {
+      final Place place = in.f_world.getPlace(id);
+      for (int direction = in.f_in.get(); direction != NONE; direction = in.f_in.get()) {
+        place.setTravelDestination(Navigation.values()[direction], in.place());
+      }
+    }
+  }
+
+  private static void writeClasses(Universe world, Output out) throws IOException {
+    out.f_out.writeInt(world.getCharacterClassesView().size());
+    for (final CharacterClass cClass : world.getCharacterClassesView()) {
+      final Weapon weapon = cClass.getDefaultWeapon();
+      out.string(cClass.getName());
+      out.f_out.writeInt(cClass.getMaxHealth());
+      out.f_out.writeInt(cClass.getHealthRegen());
+      out.f_out.writeInt(cClass.getWeaponTypes().size());
+      for (final String type : cClass.getWeaponTypes()) {
+        out.string(type);
+      }
+      out.string(weapon.getUseString());
+      out.f_out.writeInt(cClass.getKORecovery());
+      out.f_out.writeInt(weapon.getNumDice());
+      out.f_out.writeInt(weapon.getNumSides());
+      out.f_out.writeInt(weapon.getHitChance());
+      out.f_out.writeInt(weapon.getCooldown());
+      out.f_out.writeByte(weapon.getEffectTarget().ordinal());
+      out.string(weapon.getHitSound());
+      out.string(weapon.getMissSound());
+      out.string(weapon.getName());
+    }
+    out.endSection(CLASSES);
+  }
+
+  private static void readClasses(Input in) {
+    for (int count = in.f_in.getInt(); count > 0; count--) {
+      final String name = in.string();
+      final int maxHealth = in.f_in.getInt();
+      final int regen = in.f_in.getInt();
+      final List<String> weaponTypes = new ArrayList<>();
+      for (int types = in.f_in.getInt(); types > 0; types--) {
+        weaponTypes.add(in.string());
+      }
+      in.f_world.createCharacterClass(name, maxHealth, regen, weaponTypes, in.string(), in.f_in.getInt(), in.f_in
+          .getInt(), in.f_in.getInt(), in.f_in.getInt(), in.f_in.getInt(), EffectTarget.values()[in.f_in.get()], in
+          .string(), in.string(), in.string());
+    }
+  }
+
+  /**
+   * Players and NPCs, in the order of their ids. An NPC's events are kept as the attributes they
+   * are saved with in XML.
+   */
+  private static void writeCharacters(WorldView view, Output out) throws IOException {
+    final Universe world = view.getWorld();
+    int count = 0;
+    while (world.getCharacter(count) != null) {
+      count++;
+    }
+    out.f_out.writeInt(count);
+    for (int id = 0; id < count; id++) {
+      final Character character = world.getCharacter(id);
+      final boolean isPlayer = character instanceof Player;
+      out.f_out.writeByte(isPlayer ? PLAYER : NPC);
+      out.string(character.getName());
+      out.string(character.getArticle());
+      out.string(isPlayer ? character.getDescription() : ((NonPlayerCharacter) character).getBaseDescription());
+      out.id(view.location(character));
+      out.id(character.getRespawnLocation());
+      out.f_out.writeInt(view.money(character));
+      out.string(character.getCharacterClass() == null ? null : character.getCharacterClass().getName());
+      if (isPlayer) {
+        out.f_out.writeLong(view.score((Player) character));
+        continue;
+      }
+      final NonPlayerCharacter npc = (NonPlayerCharacter) character;
+      final Collection<State> states = npc.getStates();
+      out.f_out.writeInt(states.size());
+      final State currentState = view.state(npc);
+      int current = NONE;
+      int index = 0;
+      for (final State state : states) {
+        if (state == currentState) {
+          current = index;
+        }
+        index++;
+        out.string(state.getName());
+        out.string(state.getDescription());
+        out.f_out.writeInt(state.getEventTriggers().size());
+        for (final Trigger trigger : state.getEventTriggers()) {
+          final Collection<XMLAttribute> attributes = trigger.getXMLAttributes();
+          out.f_out.writeInt(attributes.size());
+          for (final XMLAttribute attribute : attributes) {
+            out.string(attribute.getTag());
+            out.string(attribute.getValue());
+          }
+        }
+      }
+      out.f_out.writeInt(current);
+    }
+    out.endSection(CHARACTERS);
+  }
+
+  private static void readCharacters(Input in) throws PersistenceStateException {
+    for (int count = in.f_in.getInt(); count > 0; count--) {
+      final boolean isPlayer = in.f_in.get() == PLAYER;
+      final String name = in.string();
+      final String article = in.string();
+      final String description = in.string();
+      final Place location = in.place();
+      final Place respawn = in.place();
+      final int money = in.f_in.getInt();
+      final String className = in.string();
+      final Character character;
+      if (isPlayer) {
+        final Player player = in.f_world.createPlayer(name, location, article, description, respawn);
+        player.addPoints(in.f_in.getLong());
+        character = player;
+      } else {
+        final Container inventory = new Container();
+        final List<State> states = new ArrayList<>();
+        for (int stateCount = in.f_in.getInt(); stateCount > 0; stateCount--) {
+          final State state = new State(in.string(), in.string());
+          for (int events = in.f_in.getInt(); events > 0; events--) {
+            final Map<String, String> event = new LinkedHashMap<>();
+            String text = null;
+            for (int attributes = in.f_in.getInt(); attributes > 0; attributes--) {
+              final String tag = in.string();
+              final String value = in.string();
+              if (tag == null) {
+                text = value;
+              } else {
+                // Lists such as the items taken are one attribute per item
+                event.merge(tag, value, (first, second) -> first + "," + second);
+              }
+            }
+            state.addEventTrigger(GamePersistence.buildTrigger(event, text, in.f_world, name, inventory));
+          }
+          states.add(state);
+        }
+        final State current = states.get(in.f_in.getInt());
+        character = in.f_world.createNPC(name, article, description, inventory, location, new HashSet<>(states),
+            current, respawn);
+      }
+      character.changeMoney(money);
+      if (className != null) {
+        character.setCharacterClass(in.f_world.getCharacterClass(className));
+      }
+    }
+  }
+
+  private static void writeItems(WorldView view, Output out) throws IOException {
+    final List<Item> items = view.getWorld().getItemsView();
+    out.f_out.writeInt(items.size());
+    for (final Item item : items) {
+      out.f_out.writeByte(item instanceof Weapon ? WEAPON : item instanceof Consumable ? CONSUMABLE : ITEM);
+      out.string(item.getName());
+      out.string(item.getArticle());
+      out.string(item.getDescription());
+      out.f_out.writeLong(item.getTakePoints());
+      out.f_out.writeLong(item.getDropPoints());
+      out.f_out.writeBoolean(item.isTakeable());
+      out.string(item.cantTakeMessage());
+      out.f_out.writeBoolean(item.getContainer() != null);
+      out.f_out.writeInt(item.getDropPointsPlaces().size());
+      for (final Entry<Place, Long> entry : item.getDropPointsPlaces().entrySet()) {
+        out.id(entry.getKey());
+        out.f_out.writeLong(entry.getValue());
+      }
+      out.f_out.writeInt(item.getPlaceBlockedMessages().size());
+      for (final Entry<Place, String> entry : item.getPlaceBlockedMessages().entrySet()) {
+        out.id(entry.getKey());
+        out.string(entry.getValue());
+      }
+      if (item instanceof Consumable) {
+        final Consumable consumable = (Consumable) item;
+        out.f_out.writeInt(consumable.getNumDice());
+        out.f_out.writeInt(consumable.getNumSides());
+        out.f_out.writeByte(consumable.getEffectType().ordinal());
+        out.f_out.writeInt(consumable.getCooldown());
+        out.f_out.writeInt(view.uses(consumable));
+        out.string(consumable.getType());
+        out.string(consumable.getUseString());
+        out.f_out.writeInt(consumable.getHitChance());
+        out.f_out.writeByte(consumable.getEffectTarget().ordinal());
+        out.string(consumable.getHitSound());
+        out.string(consumable.getMissSound());
+      }
+    }
+    out.endSection(ITEMS);
+  }
+
+  private static void readItems(Input in) {
+    for (int count = in.f_in.getInt(); count > 0; count--) {
+      final int kind = in.f_in.get();
+      final String name = in.string();
+      final String article = in.string();
+      final String description = in.string();
+      final long takePoints = in.f_in.getLong();
+      final long dropPoints = in.f_in.getLong();
+      final boolean takeable = in.bool();
+      final String cantTakeMessage = in.string();
+      final boolean isContainer = in.bool();
+      final Map<Place, Long> dropPointsMap = new HashMap<>();
+      for (int places = in.f_in.getInt(); places > 0; places--) {
+        dropPointsMap.put(in.place(), in.f_in.getLong());
+      }
+      final Map<Place, String> blockedPlaces = new HashMap<>();
+      for (int places = in.f_in.getInt(); places > 0; places--) {
+        blockedPlaces.put(in.place(), in.string());
+      }
+      final Item item;
+      if (kind == ITEM) {
+        item = in.f_world.createItem(name, article, description, takePoints, dropPoints, dropPointsMap, takeable,
+            cantTakeMessage, blockedPlaces, isContainer);
+      } else {
+        final Effect effect = new Effect(in.f_in.getInt(), in.f_in.getInt());
+        final EffectType effectType = EffectType.values()[in.f_in.get()];
+        final int cooldown = in.f_in.getInt();
+        final int uses = in.f_in.getInt();
+        final String type = in.string();
+        final String useMessage = in.string();
+        final int hitChance = in.f_in.getInt();
+        final EffectTarget target = EffectTarget.values()[in.f_in.get()];
+        final String onHitSound = in.string();
+        final String onMissSound = in.string();
+        if (kind == CONSUMABLE) {
+          item = in.f_world.createConsumable(name, article, description, takePoints, dropPoints, dropPointsMap,
+              takeable, cantTakeMessage, blockedPlaces, isContainer ? new Container() : null, effect, effectType,
+              cooldown, uses, type, useMessage, hitChance, target, onHitSound, onMissSound);
+        } else {
+          item = in.f_world.createWeapon(name, article, description, takePoints, dropPoints, dropPointsMap,
+              blockedPlaces, isContainer ? new Container() : null, type, effect, cooldown, useMessage, hitChance,
+              target, onHitSound, onMissSound);
+        }
+      }
+      for (final Place place : blockedPlaces.keySet()) {
+        place.addItemRequired(item);
+      }
+    }
+  }
+
+  private static void writeContents(WorldView view, HasContainer owner, Output out) throws IOException {
+    final Collection<Item> items = view.items(owner);
+    out.f_out.writeInt(items.size());
+    for (final Item item : items) {
+      out.f_out.writeInt(item.getId());
+    }
+  }
+
+  private static void readContents(Container container, Input in) {
+    for (int count = in.f_in.getInt(); count > 0; count--) {
+      container.addItem(in.item());
+    }
+  }
+
+  /**
+   * What every place, character and container item holds, and the weapon each character has
+   * equipped
+   */
+  private static void writeContents(WorldView view, Output out) throws IOException {
+    final Universe world = view.getWorld();
+    for (final Place place : world.getPlacesView()) {
+      writeContents(view, place, out);
+    }
+    Character character;
+    for (int id = 0; (character = world.getCharacter(id)) != null; id++) {
+      writeContents(view, character, out);
+      final Weapon weapon = view.weapon(character);
+      out.f_out.writeInt(weapon != null && world.getItem(weapon.getId()) == weapon ? weapon.getId() : NONE);
+    }
+    for (final Item item : world.getItemsView()) {
+      if (item.getContainer() != null) {
+        writeContents(view, item, out);
+      }
+    }
+    out.endSection(CONTENTS);
+  }
+
+  private static void readContents(Input in) {
+    for (final Place place : in.f_world.getPlacesView()) {
+      readContents(place.getContainer(), in);
+    }
+    Character character;
+    for (int id = 0; (character = in.f_world.getCharacter(id)) != null; id++) {
+      readContents(character.getContainer(), in);
+      final int weapon = in.f_in.getInt();
+      if (weapon != NONE) {
+        character.setCurrentWeapon((Weapon) in.f_world.getItem(weapon));
+      }
+    }
+    for (final Item item : in.f_world.getItemsView()) {
+      if (item.getContainer() != null) {
+        readContents(item.getContainer(), in);
+      }
+    }
+  }
+
+  private static void writeCrafting(WorldView view, Output out) throws IOException {
+    final Set<Entry<Set<Item>, Item>> crafting = view.crafting();
+    out.f_out.writeInt(crafting.size());
+    for (final Entry<Set<Item>, Item> entry : crafting) {
+      out.f_out.writeInt(entry.getValue().getId());
+      out.f_out.writeInt(entry.getKey().size());
+      for (final Item item : entry.getKey()) {
+        out.f_out.writeInt(item.getId());
+      }
+    }
+    out.endSection(CRAFTING);
+  }
+
+  private static void readCrafting(Input in) {
+    for (int count = in.f_in.getInt(); count > 0; count--) {
+      final Item newItem = in.item();
+      final Set<Item> required = new HashSet<>();
+      for (int items = in.f_in.getInt(); items > 0; items--) {
+        required.add(in.item());
+      }
+      in.f_world.addItemSynthesis(required, newItem);
+    }
+  }
+
+  private static String[] readStrings(ByteBuffer in) {
+    final String[] table = new String[in.getInt()];
+    for (int i = 0; i < table.length; i++) {
+      final byte[] bytes = new byte[in.getInt()];
+      in.get(bytes);
+      table[i] = new String(bytes, StandardCharsets.UTF_8);
+    }
+    return table;
+  }
+
+  /**
+   * @param file
+   *          The file to check
+   * @return true if the file starts like a snapshot
+   * @throws IOException
+   *           if the file cannot be read
+   */
+  static boolean isSnapshot(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      final ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES);
+      while (magic.hasRemaining() && channel.read(magic) >= 0) {
+        // Read until the magic number is complete or the file ends
+      }
+      return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+    }
+  }
+
+  /**
+   * Restore a world from a snapshot, which is memory mapped while it is read
+   *
+   * @param file
+   *          The snapshot
+   * @return the world
+   * @throws PersistenceStateException
+   *           if the file cannot be read or is not a snapshot this version can read
+   */
+  static Universe read(Path file) throws PersistenceStateException {
+    final ByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+    } catch (final IOException e) {
+      throw new PersistenceStateException("Unable to map the world snapshot " + file, e);
+    }
+    try {
+      if (buffer.getInt() != MAGIC) {
+        throw new PersistenceStateException(file + " is not a world snapshot");
+      }
+      final int version = buffer.getInt();
+      if (version != VERSION) {
+        throw new PersistenceStateException("Unable to read version " + version + " of the world snapshot format");
+      }
+      final Input in = new Input();
+      while (buffer.hasRemaining()) {
+        final int id = buffer.getInt();
+        final int length = buffer.getInt();
+        in.f_in = buffer.slice();
+        in.f_in.limit(length);
+        buffer.position(buffer.position() + length);
+        switch (id) {
+          case STRINGS:
+            in.f_table = readStrings(in.f_in);
+            break;
+          case WORLD:
+            readWorld(in);
+            break;
+          case PLACES:
+            readPlaces(in);
+            break;
+          case CLASSES:
+            readClasses(in);
+            break;
+          case CHARACTERS:
+            readCharacters(in);
+            break;
+          case ITEMS:
+            readItems(in);
+            break;
+          case CONTENTS:
+            readContents(in);
+            break;
+          case CRAFTING:
+            readCrafting(in);
+            break;
+          default:
+            // A section of a later version this one can do without
+            break;
+        }
+      }
+      GamePersistence.resolveConditionals(in.f_world);
+      return in.f_world;
+    } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException
+        | NullPointerException | ClassCastException e) {
+      throw new PersistenceStateException("The world snapshot " + file + " is damaged", e);
+    }
+  }
+
+  /**
+   * Take a snapshot of a world
+   *
+   * @param world
+   *          The world
+   * @param file
+   *          The file to write the snapshot to, replacing it if it exists
+   * @throws PersistenceStateException
+   *           if the snapshot cannot be written
+   */
+  static void write(Universe world, Path file) throws PersistenceStateException {
+    write(new WorldView(world), file);
+  }
+
+  /**
+   * Take a snapshot of a world as it was when a view of it was captured
+   *
+   * @param view
+   *          The view of the world
+   * @param file
+   *          The file to write the snapshot to, replacing it if it exists
+   * @throws PersistenceStateException
+   *           if the snapshot cannot be written
+   */
+  static void write(WorldView view, Path file) throws PersistenceStateException {
+    final Universe world = view.getWorld();
+    final Output out = new Output();
+    try {
+      writeWorld(view, out);
+      writePlaces(world, out);
+      writeClasses(world, out);
+      writeCharacters(view, out);
+      writeItems(view, out);
+      writeContents(view, out);
+      writeCrafting(view, out);
+    } catch (final IOException e) {
+      // Only written to memory so far
+      throw new IllegalStateException(e);
+    }
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+      out.writeTo(Channels.newOutputStream(channel));
+    } catch (final IOException e) {
+      throw new PersistenceStateException("Unable to write the world snapshot " + file, e);
+    }
+  }
+
+  private WorldSnapshot() {
+    // Static methods only
+  }
+}
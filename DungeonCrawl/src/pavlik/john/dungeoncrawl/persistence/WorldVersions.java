@@ -0,0 +1,259 @@
+package pavlik.john.dungeoncrawl.persistence;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import pavlik.john.dungeoncrawl.model.Character;
+import pavlik.john.dungeoncrawl.model.Consumable;
+import pavlik.john.dungeoncrawl.model.HasContainer;
+import pavlik.john.dungeoncrawl.model.IWorldJournal;
+import pavlik.john.dungeoncrawl.model.Item;
+import pavlik.john.dungeoncrawl.model.NonPlayerCharacter;
+import pavlik.john.dungeoncrawl.model.Place;
+import pavlik.john.dungeoncrawl.model.Player;
+import pavlik.john.dungeoncrawl.model.Universe;
+import pavlik.john.dungeoncrawl.model.Weapon;
+import pavlik.john.dungeoncrawl.model.events.State;
+
+/**
+ * Keeps the state of a running world that a save writes in immutable versioned records, so that a
+ * {@link WorldView} of the world as it was at one moment can be captured at once and saved on
+ * another thread while the world carries on.
+ * <p>
+ * Every place, character and item has a chain of records, newest first, each holding the state of
+ * the entity as it was left by the changes of one version. It is journaled, so each change to an
+ * entity puts a new record at the head of its chain. Capturing a view just starts a new version,
+ * and the view reads each entity from the newest record no newer than the version it captured.
+ * Older records are only kept while a view is open, and a change made with no view open replaces
+ * the whole chain. Places, travel, items and classes do not change once a world is loaded, so a
+ * view reads them from the world itself. The crafting recipes do change, as recipes are used up,
+ * but the world replaces its map of them rather than changing it, so a view keeps the map it was
+ * captured with.
+ * <p>
+ * A view must be captured while nothing else changes the world, and closed once it has been
+ * saved. The places, characters and items of the world must all have been created before it is
+ * attached.
+ *
+ * @author John
+ */
+public final class WorldVersions implements IWorldJournal {
+
+  private static final Item[] NO_ITEMS = new Item[0];
+
+  /**
+   * The state of one place, character or item after the changes of a version. Only the fields the
+   * entity has are set.
+   */
+  static final class Record {
+    final long   f_version;
+    final Record f_previous;
+    final Item[] f_items;
+    final Place  f_location;
+    final int    f_money;
+    final long   f_score;
+    final Weapon f_weapon;
+    final State  f_state;
+    final int    f_uses;
+
+    Record(long version, Record previous, HasContainer entity) {
+      f_version = version;
+      f_previous = previous;
+      f_items = entity.getContainer() == null ? NO_ITEMS : entity.getContainer().getItems().toArray(NO_ITEMS);
+      if (entity instanceof Character) {
+        final Character character = (Character) entity;
+        f_location = character.getLocation();
+        f_money = character.getMoney();
+        f_weapon = character.getCurrentWeapon();
+      } else {
+        f_location = null;
+        f_money = 0;
+        f_weapon = null;
+      }
+      f_score = entity instanceof Player ? ((Player) entity).getScore() : 0;
+      f_state = entity instanceof NonPlayerCharacter ? ((NonPlayerCharacter) entity).getCurrentState() : null;
+      f_uses = entity instanceof Consumable ? ((Consumable) entity).getUsesRemaining() : 0;
+    }
+  }
+
+  private final Universe                     f_world;
+  private final AtomicReferenceArray<Record> f_places;
+  private final AtomicReferenceArray<Record> f_characters;
+  private final AtomicReferenceArray<Record> f_items;
+  private final AtomicInteger                f_openViews = new AtomicInteger();
+  /**
+   * The version changes are made in, one more than the version of the last view captured
+   */
+  private volatile long                      f_version;
+
+  private WorldVersions(Universe world) {
+    f_world = world;
+    final List<Place> places = world.getPlacesView();
+    f_places = new AtomicReferenceArray<>(places.size());
+    for (final Place place : places) {
+      f_places.set(place.getId(), new Record(0, null, place));
+    }
+    int count = 0;
+    while (world.getCharacter(count) != null) {
+      count++;
+    }
+    f_characters = new AtomicReferenceArray<>(count);
+    for (int id = 0; id < count; id++) {
+      f_characters.set(id, new Record(0, null, world.getCharacter(id)));
+    }
+    final List<Item> items = world.getItemsView();
+    f_items = new AtomicReferenceArray<>(items.size());
+    for (final Item item : items) {
+      f_items.set(item.getId(), new Record(0, null, item));
+    }
+  }
+
+  /**
+   * Start keeping versions of a world, taking its state as it is now as the first. This reads the
+   * whole world, so it is done once, while nothing else changes the world.
+   *
+   * @param world
+   *          The world
+   * @return the versions of the world, to capture views of it from
+   * @throws NullPointerException
+   *           if world is null
+   */
+  public static WorldVersions attach(Universe world) throws NullPointerException {
+    if (world == null) {
+      throw new NullPointerException("world cannot be null");
+    }
+    final WorldVersions versions = new WorldVersions(world);
+    world.addJournal(versions);
+    return versions;
+  }
+
+  /**
+   * Stop keeping versions of the world. Views that are still open can still be read.
+   */
+  public void detach() {
+    f_world.removeJournal(this);
+  }
+
+  /**
+   * Capture a view of the world as it is now, without copying any of it. Must be called while
+   * nothing else changes the world, such as under the world's exclusive lock.
+   *
+   * @return a view of the world, to be closed once it has been read
+   */
+  public WorldView capture() {
+    f_openViews.incrementAndGet();
+    final long version = f_version;
+    f_version = version + 1;
+    return new WorldView(f_world, this, version, f_world.getCurrentTick());
+  }
+
+  /**
+   * A view has been closed
+   */
+  void release() {
+    f_openViews.decrementAndGet();
+  }
+
+  /**
+   * The state of an entity as it was in a version
+   *
+   * @param entity
+   *          A place, character or item of the world
+   * @param version
+   *          The version a view captured
+   * @return the newest record of the entity no newer than version
+   */
+  Record read(HasContainer entity, long version) {
+    Record record = records(entity).get(id(entity));
+    while (record.f_version > version) {
+      record = record.f_previous;
+    }
+    return record;
+  }
+
+  private AtomicReferenceArray<Record> records(HasContainer entity) {
+    if (entity instanceof Place) {
+      return f_places;
+    } else if (entity instanceof Character) {
+      return f_characters;
+    } else {
+      return f_items;
+    }
+  }
+
+  private static int id(HasContainer entity) {
+    if (entity instanceof Place) {
+      return ((Place) entity).getId();
+    } else if (entity instanceof Character) {
+      return ((Character) entity).getId();
+    } else {
+      return ((Item) entity).getId();
+    }
+  }
+
+  /**
+   * Put the state an entity has been left in at the head of its chain. A record made in the same
+   * version as the head replaces it, and with no view open nothing older is needed.
+   */
+  private void refresh(HasContainer entity) {
+    final AtomicReferenceArray<Record> records = records(entity);
+    final int id = id(entity);
+    Record head;
+    Record record;
+    do {
+      head = records.get(id);
+      final long version = f_version;
+      Record previous = null;
+      if (f_openViews.get() > 0) {
+        previous = head.f_version == version ? head.f_previous : head;
+      }
+      record = new Record(version, previous, entity);
+    } while (!records.compareAndSet(id, head, record));
+  }
+
+  @Override
+  public void itemAdded(HasContainer owner, Item item) {
+    refresh(owner);
+  }
+
+  @Override
+  public void itemRemoved(HasContainer owner, Item item) {
+    refresh(owner);
+  }
+
+  @Override
+  public void locationChanged(Character character) {
+    refresh(character);
+  }
+
+  @Override
+  public void moneyChanged(Character character) {
+    refresh(character);
+  }
+
+  @Override
+  public void scoreChanged(Player player) {
+    refresh(player);
+  }
+
+  @Override
+  public void weaponChanged(Character character) {
+    refresh(character);
+  }
+
+  @Override
+  public void stateChanged(NonPlayerCharacter npc) {
+    refresh(npc);
+  }
+
+  @Override
+  public void usesChanged(Consumable consumable) {
+    refresh(consumable);
+  }
+
+  @Override
+  public void recipeUsed(Set<Item> ingredients) {
+    // A view keeps the recipes the world had when it was captured
+  }
+}
@@ -0,0 +1,113 @@
+package pavlik.john.dungeoncrawl.persistence;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import pavlik.john.dungeoncrawl.model.Character;
+import pavlik.john.dungeoncrawl.model.Consumable;
+import pavlik.john.dungeoncrawl.model.HasContainer;
+import pavlik.john.dungeoncrawl.model.Item;
+import pavlik.john.dungeoncrawl.model.NonPlayerCharacter;
+import pavlik.john.dungeoncrawl.model.Place;
+import pavlik.john.dungeoncrawl.model.Player;
+import pavlik.john.dungeoncrawl.model.Universe;
+import pavlik.john.dungeoncrawl.model.Weapon;
+import pavlik.john.dungeoncrawl.model.events.State;
+
+/**
+ * The state of a {@link Universe} that a save writes, as it was when the view was captured by
+ * {@link WorldVersions#capture()}. A captured view does not change as the world does, so it can be
+ * saved on one thread while the world is ticked and played on others. The save writers read the
+ * world through a view, which for a world saved without one simply reads the world as it is.
+ *
+ * @author John
+ */
+public final class WorldView implements AutoCloseable {
+
+  private final Universe                    f_world;
+  private final WorldVersions               f_versions;
+  private final long                        f_version;
+  private final long                        f_tick;
+  private final Set<Entry<Set<Item>, Item>> f_crafting;
+  private boolean                           f_closed;
+
+  /**
+   * A view of the world as it is, for saving a world nothing else is changing
+   */
+  WorldView(Universe world) {
+    this(world, null, 0, 0);
+  }
+
+  WorldView(Universe world, WorldVersions versions, long version, long tick) {
+    f_world = world;
+    f_versions = versions;
+    f_version = version;
+    f_tick = tick;
+    f_crafting = world.getCraftingObjects();
+  }
+
+  /**
+   * @return the world viewed, whose places, items and classes may be read directly
+   */
+  public Universe getWorld() {
+    return f_world;
+  }
+
+  /**
+   * @return the tick the world had reached
+   */
+  public long getCurrentTick() {
+    return f_versions == null ? f_world.getCurrentTick() : f_tick;
+  }
+
+  /**
+   * @return the crafting recipes the world had
+   */
+  Set<Entry<Set<Item>, Item>> crafting() {
+    return f_crafting;
+  }
+
+  /**
+   * Stop viewing the world, so that the versions kept for this view can be let go
+   */
+  @Override
+  public synchronized void close() {
+    if (!f_closed && f_versions != null) {
+      f_versions.release();
+    }
+    f_closed = true;
+  }
+
+  Collection<Item> items(HasContainer owner) {
+    if (f_versions == null) {
+      return owner.getContainer().getItems();
+    }
+    return Arrays.asList(f_versions.read(owner, f_version).f_items);
+  }
+
+  Place location(Character character) {
+    return f_versions == null ? character.getLocation() : f_versions.read(character, f_version).f_location;
+  }
+
+  int money(Character character) {
+    return f_versions == null ? character.getMoney() : f_versions.read(character, f_version).f_money;
+  }
+
+  Weapon weapon(Character character) {
+    return f_versions == null ? character.getCurrentWeapon() : f_versions.read(character, f_version).f_weapon;
+  }
+
+  long score(Player player) {
+    return f_versions == null ? player.getScore() : f_versions.read(player, f_version).f_score;
+  }
+
+  State state(NonPlayerCharacter npc) {
+    return f_versions == null ? npc.getCurrentState() : f_versions.read(npc, f_version).f_state;
+  }
+
+  int uses(Consumable consumable) {
+    return f_versions == null ? consumable.getUsesRemaining() : f_versions.read(consumable, f_version).f_uses;
+  }
+}
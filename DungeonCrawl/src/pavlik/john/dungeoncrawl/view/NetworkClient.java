@@ -1,27 +1,31 @@
 package pavlik.john.dungeoncrawl.view;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
 import java.io.PrintWriter;
 import java.net.Socket;
 import java.net.UnknownHostException;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 import pavlik.john.dungeoncrawl.exceptions.NetworkConnectionClosedException;
-import pavlik.john.dungeoncrawl.model.Character;
 import pavlik.john.dungeoncrawl.model.IModelObserver;
-import pavlik.john.dungeoncrawl.model.Item;
+import pavlik.john.dungeoncrawl.model.Navigation;
 import pavlik.john.dungeoncrawl.model.NonPlayerCharacter;
-import pavlik.john.dungeoncrawl.model.Place;
 import pavlik.john.dungeoncrawl.model.Player;
-import pavlik.john.dungeoncrawl.model.Weapon;
 import pavlik.john.dungeoncrawl.model.Universe;
+import pavlik.john.dungeoncrawl.model.UniverseMirror;
+import pavlik.john.dungeoncrawl.model.events.Event;
 import pavlik.john.dungeoncrawl.model.events.triggers.SayTrigger;
 import pavlik.john.dungeoncrawl.persistence.MultiplayerServerThread;
+import pavlik.john.dungeoncrawl.persistence.WireProtocol;
 import pavlik.john.dungeoncrawl.view.parser.IDisplayNotifier;
 
 /**
@@ -47,152 +51,237 @@ public final class NetworkClient extends Thread {
       f_socket = Objects.requireNonNull(socket, "socket cannot be null");
     }
 
+    private void processFrame(DataInputStream in) throws IOException {
+      final byte opcode = in.readByte();
+      switch (opcode) {
+        case WireProtocol.WORLD_INFO:
+          f_mirror.setWorldInfo(WireProtocol.readString(in), in.readBoolean());
+          break;
+        case WireProtocol.DEFINE_PLACE:
+          f_mirror.definePlace(in.readInt(), WireProtocol.readString(in), WireProtocol.readString(in), WireProtocol
+              .readString(in), in.readBoolean(), WireProtocol.readString(in));
+          break;
+        case WireProtocol.PLACE_EXITS: {
+          final int placeId = in.readInt();
+          final int count = in.readInt();
+          for (int i = 0; i < count; i++) {
+            f_mirror.setExit(placeId, Navigation.values()[in.readByte()], in.readInt());
+          }
+          break;
+        }
+        case WireProtocol.DEFINE_ITEM:
+          f_mirror.defineItem(in.readInt(), WireProtocol.readString(in), WireProtocol.readString(in), WireProtocol
+              .readString(in), in.readBoolean(), in.readBoolean());
+          break;
+        case WireProtocol.DEFINE_WEAPON:
+          f_mirror.defineWeapon(in.readInt(), WireProtocol.readString(in), WireProtocol.readString(in), WireProtocol
+              .readString(in), WireProtocol.readString(in), WireProtocol.readString(in), WireProtocol.readString(in));
+          break;
+        case WireProtocol.DEFINE_PLAYER:
+        case WireProtocol.DEFINE_NPC: {
+          final int id = in.readInt();
+          f_mirror.defineCharacter(id, opcode == WireProtocol.DEFINE_PLAYER, WireProtocol.readString(in), WireProtocol
+              .readString(in), WireProtocol.readString(in), in.readInt());
+          if (in.readBoolean()) {
+            f_mirror.defineCharacterClass(id, WireProtocol.readString(in), in.readInt(), in.readInt(), WireProtocol
+                .readString(in), WireProtocol.readString(in), WireProtocol.readString(in), WireProtocol.readString(in));
+          }
+          break;
+        }
+        case WireProtocol.CHARACTER_DELTA: {
+          final int id = in.readInt();
+          final int changes = in.readByte();
+          if ((changes & WireProtocol.CHANGED_LOCATION) != 0) {
+            f_mirror.setLocation(id, in.readInt());
+          }
+          if ((changes & WireProtocol.CHANGED_HEALTH) != 0) {
+            f_mirror.setHealth(id, in.readInt(), in.readBoolean());
+          }
+          if ((changes & WireProtocol.CHANGED_WEAPON) != 0) {
+            f_mirror.setWeapon(id, in.readInt());
+          }
+          if ((changes & WireProtocol.CHANGED_TARGET) != 0) {
+            f_mirror.setTarget(id, in.readInt());
+          }
+          if ((changes & WireProtocol.CHANGED_MONEY) != 0) {
+            f_mirror.setMoney(id, in.readInt());
+          }
+          if ((changes & WireProtocol.CHANGED_SCORE) != 0) {
+            f_mirror.setScore(id, in.readLong());
+          }
+          if ((changes & WireProtocol.CHANGED_ITEMS) != 0) {
+            f_mirror.changeContents(id, readIds(in), readIds(in));
+          }
+          break;
+        }
+        case WireProtocol.CONTENTS_DELTA:
+          f_mirror.changeContents(in.readInt(), readIds(in), readIds(in));
+          break;
+        case WireProtocol.DISPLAY:
+          f_parserObserver.display(WireProtocol.readString(in));
+          break;
+        case WireProtocol.QUIT:
+          f_parserObserver.quit();
+          break;
+        case WireProtocol.SET_CURRENT_PLAYER:
+          f_currentPlayer = f_mirror.getPlayer(in.readInt());
+          f_parserObserver.setCurrentPlayer(f_currentPlayer);
+          break;
+        case WireProtocol.SET_SOUND:
+          f_parserObserver.setSound(in.readBoolean());
+          break;
+        case WireProtocol.TOGGLE_SOUND:
+          f_parserObserver.toggleSound();
+          break;
+        case WireProtocol.BROADCAST_MESSAGE:
+          f_parserObserver.setCurrentPlayer(f_currentPlayer);
+          f_worldObserver.broadcastMessage(f_mirror.getCharacter(in.readInt()), WireProtocol.readString(in),
+              WireProtocol.readString(in));
+          break;
+        case WireProtocol.CHARACTER_EQUIPPED_WEAPON:
+          f_parserObserver.setCurrentPlayer(f_currentPlayer);
+          f_worldObserver.characterEquippedWeapon(f_mirror.getCharacter(in.readInt()), f_mirror.getWeapon(in
+              .readInt()));
+          break;
+        case WireProtocol.CHARACTER_HEAL:
+          f_parserObserver.setCurrentPlayer(f_currentPlayer);
+          f_worldObserver.characterHeal(f_mirror.getCharacter(in.readInt()), in.readInt());
+          break;
+        case WireProtocol.CHARACTER_HITS_CHARACTER_FOR:
+          f_parserObserver.setCurrentPlayer(f_currentPlayer);
+          f_worldObserver.characterHitsCharacterFor(f_mirror.getCharacter(in.readInt()), WireProtocol.readString(in),
+              f_mirror.getCharacter(in.readInt()), in.readInt());
+          break;
+        case WireProtocol.CHARACTER_MISSED_CHARACTER:
+          f_parserObserver.setCurrentPlayer(f_currentPlayer);
+          f_worldObserver.characterMissedCharacter(f_mirror.getCharacter(in.readInt()), WireProtocol.readString(in),
+              f_mirror.getCharacter(in.readInt()));
+          break;
+        case WireProtocol.CHARACTER_MONEY_CHANGED:
+          f_parserObserver.setCurrentPlayer(f_currentPlayer);
+          f_worldObserver.characterMoneyChanged(f_mirror.getCharacter(in.readInt()), in.readInt(), WireProtocol
+              .readString(in));
+          break;
+        case WireProtocol.CHARACTER_PUT_ITEM_ON_GROUND:
+          f_parserObserver.setCurrentPlayer(f_currentPlayer);
+          f_worldObserver.characterPutItemOnGround(f_mirror.getCharacter(in.readInt()), f_mirror.getItem(in.readInt()),
+              in.readLong());
+          break;
+        case WireProtocol.CHARACTER_RESPAWN_COUNTDOWN:
+          f_parserObserver.setCurrentPlayer(f_currentPlayer);
+          f_worldObserver.characterRespawnCountdown(f_mirror.getCharacter(in.readInt()), in.readInt());
+          break;
+        case WireProtocol.CHARACTER_RESPAWNED:
+          f_parserObserver.setCurrentPlayer(f_currentPlayer);
+          f_worldObserver.characterRespawned(f_mirror.getCharacter(in.readInt()), f_mirror.getPlace(in.readInt()),
+              f_mirror.getPlace(in.readInt()));
+          break;
+        case WireProtocol.CHARACTER_TOOK_MONEY:
+          f_parserObserver.setCurrentPlayer(f_currentPlayer);
+          f_worldObserver.characterTookMoney(f_mirror.getCharacter(in.readInt()), f_mirror.getCharacter(in.readInt()),
+              in.readInt(), WireProtocol.readString(in));
+          break;
+        case WireProtocol.CHARACTER_UNEQUIPPED_WEAPON:
+          f_parserObserver.setCurrentPlayer(f_currentPlayer);
+          f_worldObserver.characterUnequippedWeapon(f_mirror.getCharacter(in.readInt()));
+          break;
+        case WireProtocol.CHARACTER_WOKE_UP:
+          f_parserObserver.setCurrentPlayer(f_currentPlayer);
+          f_worldObserver.characterWokeUp(f_mirror.getCharacter(in.readInt()));
+          break;
+        case WireProtocol.CHARACTER_WON_FIGHT:
+          f_parserObserver.setCurrentPlayer(f_currentPlayer);
+          f_worldObserver.characterWonFight(f_mirror.getCharacter(in.readInt()), f_mirror.getCharacter(in.readInt()));
+          break;
+        case WireProtocol.GAME_OVER:
+          f_parserObserver.setCurrentPlayer(f_currentPlayer);
+          if (in.readBoolean()) {
+            f_mirror.getWorld().setGameOver(true);
+          }
+          f_worldObserver.gameOver(f_mirror.getWorld());
+          break;
+        case WireProtocol.PLAYER_GAINS_ITEM:
+          f_parserObserver.setCurrentPlayer(f_currentPlayer);
+          f_worldObserver.playerGainsItem(f_mirror.getCharacter(in.readInt()), f_mirror.getItem(in.readInt()));
+          break;
+        case WireProtocol.PLAYER_JOINED:
+          f_parserObserver.setCurrentPlayer(f_currentPlayer);
+          f_worldObserver.playerJoined(f_mirror.getPlayer(in.readInt()));
+          break;
+        case WireProtocol.PLAYER_LOSES_ITEM:
+          f_parserObserver.setCurrentPlayer(f_currentPlayer);
+          f_worldObserver.playerLosesItem(f_mirror.getCharacter(in.readInt()), f_mirror.getItem(in.readInt()));
+          break;
+        case WireProtocol.PLAYER_MOVED:
+          f_parserObserver.setCurrentPlayer(f_currentPlayer);
+          f_worldObserver.playerMoved(f_mirror.getPlayer(in.readInt()), f_mirror.getPlace(in.readInt()), f_mirror
+              .getPlace(in.readInt()));
+          break;
+        case WireProtocol.PLAYER_PUT_ITEM_IN_ITEM:
+          f_parserObserver.setCurrentPlayer(f_currentPlayer);
+          f_worldObserver.playerPutItemInItem(f_mirror.getPlayer(in.readInt()), f_mirror.getItem(in.readInt()),
+              f_mirror.getItem(in.readInt()));
+          break;
+        case WireProtocol.PLAYER_QUIT:
+          f_parserObserver.setCurrentPlayer(f_currentPlayer);
+          f_worldObserver.playerQuit(f_mirror.getPlayer(in.readInt()));
+          break;
+        case WireProtocol.PLAYER_TALKED_TO_NPC: {
+          f_parserObserver.setCurrentPlayer(f_currentPlayer);
+          final Player player = f_mirror.getPlayer(in.readInt());
+          final NonPlayerCharacter npc = f_mirror.getNonPlayerCharacter(in.readInt());
+          final int count = in.readInt();
+          final List<SayTrigger> triggers = new ArrayList<>(count);
+          for (int i = 0; i < count; i++) {
+            // The server only sends the triggers whose conditions the player meets
+            triggers.add(new SayTrigger(new Event(new HashSet<>()), f_mirror.getWorld(), WireProtocol.readString(in),
+                "onSay", new HashSet<>()));
+          }
+          f_worldObserver.playerTalkedToNPC(player, npc, triggers);
+          break;
+        }
+        case WireProtocol.PLAYER_TOOK_ITEM_FROM_GROUND:
+          f_parserObserver.setCurrentPlayer(f_currentPlayer);
+          f_worldObserver.playerTookItemFromGround(f_mirror.getPlayer(in.readInt()), f_mirror.getItem(in.readInt()),
+              in.readLong());
+          break;
+        case WireProtocol.PLAY_SOUND:
+          f_parserObserver.setCurrentPlayer(f_currentPlayer);
+          f_worldObserver.playSound(f_mirror.getCharacter(in.readInt()), WireProtocol.readString(in));
+          break;
+        case WireProtocol.TAKE_ITEM_FROM_ITEM:
+          f_parserObserver.setCurrentPlayer(f_currentPlayer);
+          f_worldObserver.takeitemFromItem(f_mirror.getPlayer(in.readInt()), f_mirror.getItem(in.readInt()), f_mirror
+              .getItem(in.readInt()));
+          break;
+        case WireProtocol.WORLD_LOADED:
+          f_mirror.reset();
+          f_currentPlayer = null;
+          f_worldObserver.worldLoaded(f_mirror.getWorld(), WireProtocol.readString(in));
+          break;
+        default:
+          // A frame from a newer server, skip it
+      }
+    }
+
+    private int[] readIds(DataInputStream in) throws IOException {
+      final int[] ids = new int[in.readInt()];
+      for (int i = 0; i < ids.length; i++) {
+        ids[i] = in.readInt();
+      }
+      return ids;
+    }
+
     @Override
     public void run() {
-      try (ObjectInputStream networkInput = new ObjectInputStream(f_socket.getInputStream());) {
+      try (DataInputStream networkInput = new DataInputStream(new BufferedInputStream(f_socket.getInputStream()));) {
+        WireProtocol.readHeader(networkInput);
         while (!finished) {
-          final String message = (String) networkInput.readObject();
-          if (message != null) {
-            switch (message) {
-              case "broadcastMessage":
-                f_parserObserver.setCurrentPlayer((Player) networkInput.readObject());
-                f_worldObserver.broadcastMessage((Character) networkInput.readObject(), (String) networkInput
-                    .readObject(), (String) networkInput.readObject());
-                break;
-              case "characterEquippedWeapon":
-                f_parserObserver.setCurrentPlayer((Player) networkInput.readObject());
-                f_worldObserver.characterEquippedWeapon((pavlik.john.dungeoncrawl.model.Character) networkInput
-                    .readObject(), (Weapon) networkInput.readObject());
-                break;
-              case "characterHeal":
-                f_parserObserver.setCurrentPlayer((Player) networkInput.readObject());
-                f_worldObserver.characterHeal((Character) networkInput.readObject(), (int) networkInput.readObject());
-                break;
-              case "characterHitsCharacterFor":
-                f_parserObserver.setCurrentPlayer((Player) networkInput.readObject());
-                f_worldObserver.characterHitsCharacterFor((Character) networkInput.readObject(), (String) networkInput
-                    .readObject(), (Character) networkInput.readObject(), (int) networkInput.readObject());
-                break;
-              case "characterMissedCharacter":
-                f_parserObserver.setCurrentPlayer((Player) networkInput.readObject());
-                f_worldObserver.characterMissedCharacter((Character) networkInput.readObject(), (String) networkInput
-                    .readObject(), (Character) networkInput.readObject());
-                break;
-              case "characterMoneyChanged":
-                f_parserObserver.setCurrentPlayer((Player) networkInput.readObject());
-                f_worldObserver.characterMoneyChanged((Character) networkInput.readObject(), (int) networkInput
-                    .readObject(), (String) networkInput.readObject());
-                break;
-              case "characterPutItemOnGround":
-                f_parserObserver.setCurrentPlayer((Player) networkInput.readObject());
-                f_worldObserver.characterPutItemOnGround((Character) networkInput.readObject(), (Item) networkInput
-                    .readObject(), (long) networkInput.readObject());
-                break;
-              case "characterRespawnCountdown":
-                f_parserObserver.setCurrentPlayer((Player) networkInput.readObject());
-                f_worldObserver.characterRespawnCountdown((Character) networkInput.readObject(), (int) networkInput
-                    .readObject());
-                break;
-              case "characterRespawned":
-                f_parserObserver.setCurrentPlayer((Player) networkInput.readObject());
-                f_worldObserver.characterRespawned((Character) networkInput.readObject(), (Place) networkInput
-                    .readObject(), (Place) networkInput.readObject());
-                break;
-              case "characterTookMoney":
-                f_parserObserver.setCurrentPlayer((Player) networkInput.readObject());
-                f_worldObserver.characterTookMoney((Character) networkInput.readObject(), (Character) networkInput
-                    .readObject(), (int) networkInput.readObject(), (String) networkInput.readObject());
-                break;
-              case "characterWokeUp":
-                f_parserObserver.setCurrentPlayer((Player) networkInput.readObject());
-                f_worldObserver.characterWokeUp((Character) networkInput.readObject());
-                break;
-              case "characterWonFight":
-                f_parserObserver.setCurrentPlayer((Player) networkInput.readObject());
-                f_worldObserver.characterWonFight((Character) networkInput.readObject(), (Character) networkInput
-                    .readObject());
-                break;
-              case "gameOver":
-                f_parserObserver.setCurrentPlayer((Player) networkInput.readObject());
-                f_worldObserver.gameOver((Universe) networkInput.readObject());
-                break;
-              case "playerGainsItem":
-                f_parserObserver.setCurrentPlayer((Player) networkInput.readObject());
-                f_worldObserver
-                .playerGainsItem((Character) networkInput.readObject(), (Item) networkInput.readObject());
-                break;
-              case "playerJoined":
-                f_parserObserver.setCurrentPlayer((Player) networkInput.readObject());
-                f_worldObserver.playerJoined((Player) networkInput.readObject());
-                break;
-              case "playerLosesItem":
-                f_parserObserver.setCurrentPlayer((Player) networkInput.readObject());
-                f_worldObserver
-                .playerLosesItem((Character) networkInput.readObject(), (Item) networkInput.readObject());
-                break;
-              case "playerMoved":
-                f_parserObserver.setCurrentPlayer((Player) networkInput.readObject());
-                f_worldObserver.playerMoved((Player) networkInput.readObject(), (Place) networkInput.readObject(),
-                    (Place) networkInput.readObject());
-                break;
-              case "playerPutItemInItem":
-                f_parserObserver.setCurrentPlayer((Player) networkInput.readObject());
-                f_worldObserver.playerPutItemInItem((Player) networkInput.readObject(), (Item) networkInput
-                    .readObject(), (Item) networkInput.readObject());
-                break;
-              case "playerQuit":
-                f_parserObserver.setCurrentPlayer((Player) networkInput.readObject());
-                f_worldObserver.playerQuit((Player) networkInput.readObject());
-                break;
-              case "playerTalkedToNPC":
-                f_parserObserver.setCurrentPlayer((Player) networkInput.readObject());
-                final Player player = (Player) networkInput.readObject();
-                final NonPlayerCharacter npc = (NonPlayerCharacter) networkInput.readObject();
-                final SayTrigger[] triggers = (SayTrigger[]) networkInput.readObject();
-                f_worldObserver.playerTalkedToNPC(player, npc, Arrays.asList(triggers));
-                break;
-              case "playerTookItemFromGround":
-                f_parserObserver.setCurrentPlayer((Player) networkInput.readObject());
-                f_worldObserver.playerTookItemFromGround((Player) networkInput.readObject(), (Item) networkInput
-                    .readObject(), (Long) networkInput.readObject());
-                break;
-              case "playSound":
-                f_parserObserver.setCurrentPlayer((Player) networkInput.readObject());
-                f_worldObserver.playSound((Character) networkInput.readObject(), (String) networkInput.readObject());
-                break;
-              case "takeitemFromItem":
-                f_parserObserver.setCurrentPlayer((Player) networkInput.readObject());
-                f_worldObserver.takeitemFromItem((Player) networkInput.readObject(), (Item) networkInput.readObject(),
-                    (Item) networkInput.readObject());
-                break;
-              case "worldLoaded":
-                f_parserObserver.setCurrentPlayer((Player) networkInput.readObject());
-                f_worldObserver.worldLoaded((Universe) networkInput.readObject(), (String) networkInput.readObject());
-                break;
-              case "quit":
-                f_parserObserver.quit();
-                break;
-              case "setCurrentPlayer":
-                f_parserObserver.setCurrentPlayer((Player) networkInput.readObject());
-                break;
-              case "setSound":
-                f_parserObserver.setSound((boolean) networkInput.readObject());
-                break;
-              case "toggleSound":
-                f_parserObserver.toggleSound();
-                break;
-              case "characterUnequippedWeapon":
-                f_parserObserver.setCurrentPlayer((Player) networkInput.readObject());
-                f_worldObserver.characterUnequippedWeapon((Character) networkInput.readObject());
-                break;
-              default:
-                f_parserObserver.display(message);
-            }
-          } else {
-            finish();
-          }
+          final byte[] frame = new byte[networkInput.readInt()];
+          networkInput.readFully(frame);
+          processFrame(new DataInputStream(new ByteArrayInputStream(frame)));
         }
-      } catch (final IOException | ClassNotFoundException e) {
+      } catch (final IOException e) {
         finish();
         f_parserObserver.display("Multiplay server shutdown: " + e.getMessage());
       }
@@ -238,6 +327,13 @@ public final class NetworkClient extends Thread {
 
   private final IDisplayNotifier f_parserObserver;
 
+  /**
+   * The entities of the server's world, as last reported by the server
+   */
+  private final UniverseMirror   f_mirror         = new UniverseMirror();
+
+  private Player                 f_currentPlayer;
+
   /**
    * Will attempt to connect to a server running on the localhost on the default port.
    *
@@ -303,6 +399,15 @@ public final class NetworkClient extends Thread {
     }
   }
 
+  /**
+   * Access the copy of the server's world kept by this client
+   *
+   * @return the mirrored Universe
+   */
+  public Universe getWorld() {
+    return f_mirror.getWorld();
+  }
+
   /**
    * Returns the next message pending to be displayed to the user or null if no messages are
    * pending.
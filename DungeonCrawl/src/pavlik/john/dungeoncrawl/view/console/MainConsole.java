@@ -69,7 +69,7 @@ public final class MainConsole {
     public void gameOver(Universe world) {
       f_continuePlaying = false;
       display(f_messages.getString(world.isGameWon() ? Messages.VICTORY : Messages.QUIT));
-      for (final Player player : world.getPlayers()) {
+      for (final Player player : world.getPlayersView()) {
         display(f_messages.getString(Messages.SCORE_MESSAGE).replace(Messages.SCORE_TAG, player.getScore().toString())
             .replace(Messages.NAME_TAG, player.getName()));
       }
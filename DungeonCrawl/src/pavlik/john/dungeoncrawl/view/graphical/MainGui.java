@@ -21,6 +21,7 @@ import java.io.IOException;
 import java.lang.reflect.Field;
 import java.util.ArrayDeque;
 import java.util.Deque;
+import java.util.List;
 import java.util.Optional;
 import java.util.ResourceBundle;
 import java.util.prefs.Preferences;
@@ -192,7 +193,7 @@ public final class MainGui extends JFrame {
     @Override
     public void gameOver(Universe world) {
       String message = f_messages.getString(world.isGameWon() ? Messages.VICTORY : Messages.QUIT);
-      for (final Player player : world.getPlayers()) {
+      for (final Player player : world.getPlayersView()) {
         message += TextUtilities.LINESEP
             + f_messages.getString(Messages.SCORE_MESSAGE).replace(Messages.SCORE_TAG, player.getScore().toString())
             .replace(Messages.NAME_TAG, player.getName());
@@ -650,10 +651,15 @@ public final class MainGui extends JFrame {
         }
       });
 
+      // Tab completes names rather than moving the focus
+      f_messageField.setFocusTraversalKeysEnabled(false);
       f_messageField.addKeyListener(new KeyAdapter() {
         @Override
         public void keyPressed(KeyEvent e) {
-          if (e.getKeyCode() == KeyEvent.VK_UP) {
+          if (e.getKeyCode() == KeyEvent.VK_TAB) {
+            e.consume();
+            completeCommand(f_messageField, graphicalParserWorldObserver);
+          } else if (e.getKeyCode() == KeyEvent.VK_UP) {
             previousCommands.addLast(f_messageField.getText());
             f_messageField.setText(previousCommands.removeFirst());
           } else if (e.getKeyCode() == KeyEvent.VK_DOWN) {
@@ -676,6 +682,35 @@ public final class MainGui extends JFrame {
 
   }
 
+  /**
+   * Complete the name at the end of the command being typed. A single match replaces it; with
+   * several, it is extended as far as they agree and the matches are displayed.
+   */
+  private void completeCommand(JTextField field, GraphicalParserWorldObserver display) {
+    final List<String> completions = f_parser.complete(field.getText());
+    if (completions.isEmpty()) {
+      return;
+    }
+    String common = completions.get(0);
+    for (final String completion : completions) {
+      int length = 0;
+      while (length < common.length() && length < completion.length()
+          && java.lang.Character.toUpperCase(common.charAt(length)) == java.lang.Character.toUpperCase(completion
+              .charAt(length))) {
+        length++;
+      }
+      common = common.substring(0, length);
+    }
+    if (completions.size() == 1) {
+      common += " ";
+    } else {
+      display.display(String.join(", ", completions));
+    }
+    if (common.length() > field.getText().length()) {
+      field.setText(common);
+    }
+  }
+
   // private boolean isViewAtBottom() {
   // final JScrollBar sb = f_outputScrollPane.getVerticalScrollBar();
   // final int min = sb.getValue() + sb.getVisibleAmount();
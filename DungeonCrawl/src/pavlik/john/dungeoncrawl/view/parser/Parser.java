@@ -2,14 +2,18 @@ package pavlik.john.dungeoncrawl.view.parser;
 
 import java.io.File;
 import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.ResourceBundle;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import pavlik.john.dungeoncrawl.controller.Outcome;
 import pavlik.john.dungeoncrawl.controller.Result;
 import pavlik.john.dungeoncrawl.controller.Controller;
 import pavlik.john.dungeoncrawl.exceptions.NetworkConnectionClosedException;
@@ -21,8 +25,10 @@ import pavlik.john.dungeoncrawl.model.Item;
 import pavlik.john.dungeoncrawl.model.NonPlayerCharacter;
 import pavlik.john.dungeoncrawl.model.Place;
 import pavlik.john.dungeoncrawl.model.Player;
+import pavlik.john.dungeoncrawl.model.Universe;
 import pavlik.john.dungeoncrawl.model.events.triggers.SayTrigger;
 import pavlik.john.dungeoncrawl.persistence.MultiplayerServerThread;
+import pavlik.john.dungeoncrawl.persistence.ServerMode;
 import pavlik.john.dungeoncrawl.properties.Messages;
 import pavlik.john.dungeoncrawl.view.NetworkClient;
 import pavlik.john.dungeoncrawl.view.TextUtilities;
@@ -66,7 +72,7 @@ public final class Parser {
 
   private final boolean           f_admin;
 
-  private NetworkClient           f_networkClient = null;
+  private volatile NetworkClient  f_networkClient = null;
 
   /**
    * Constructs a text command parser with the specified observer and Controller. The controller is
@@ -179,8 +185,8 @@ public final class Parser {
     for (final String name : itemNames) {
       itemNameSet.add(name.trim());
     }
-    final Result result = f_worldController.synthesizeItems(f_player, itemNameSet);
-    switch (result) {
+    final Outcome result = f_worldController.synthesizeItems(f_player, itemNameSet);
+    switch (result.getResult()) {
       case SUCCESS:
         // do nothing, every player was notified through the worldObserver
         break;
@@ -265,8 +271,8 @@ public final class Parser {
       final Container destination = location.getContainer();
       final Container source = f_player.getContainer();
       final String itemName = newCommand[1];
-      final Result result = f_worldController.swapItem(f_player, destination, source, itemName, Item.Action.DROP);
-      switch (result) {
+      final Outcome result = f_worldController.swapItem(f_player, destination, source, itemName, Item.Action.DROP);
+      switch (result.getResult()) {
         case ITEM_NOT_FOUND:
           f_parserObserver.display(f_messages.getString(Messages.ITEM_NOT_FOUND).replace(Messages.ITEM_TAG, itemName));
           break;
@@ -303,6 +309,49 @@ public final class Parser {
     }
   }
 
+  /**
+   * Complete the name at the end of a command being typed, for tab completion. The most trailing
+   * words that start the name of something in the world are completed; an article before them is
+   * kept.
+   *
+   * @param command
+   *          The command typed so far
+   * @return the command completed with each name it could end in, in order of the names, or an
+   *         empty list if it ends in no name
+   */
+  public List<String> complete(String command) {
+    final NetworkClient client = f_networkClient;
+    final Universe world = client == null ? f_worldController.getWorld() : client.getWorld();
+    int start = 0;
+    while (true) {
+      final int space = command.indexOf(' ', start);
+      final String words = command.substring(start);
+      if (!words.trim().isEmpty() && !isArticle(world, space < 0 ? words : command.substring(start, space))) {
+        final List<String> names = world.completeName(words);
+        if (!names.isEmpty()) {
+          final List<String> completions = new ArrayList<>(names.size());
+          for (final String name : names) {
+            completions.add(command.substring(0, start) + name);
+          }
+          return completions;
+        }
+      }
+      if (space < 0) {
+        return Collections.emptyList();
+      }
+      start = space + 1;
+    }
+  }
+
+  private static boolean isArticle(Universe world, String word) {
+    for (final String article : world.getValidArticles()) {
+      if (!article.isEmpty() && article.equalsIgnoreCase(word)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   /**
    * Constructs a message containing some (hopefully useful) help to the user about what the game
    * commands do.
@@ -325,8 +374,8 @@ public final class Parser {
   }
 
   private void giveItem(String item, String toPlayer) {
-    final Result result = f_worldController.giveItem(item, f_player, toPlayer);
-    switch (result) {
+    final Outcome result = f_worldController.giveItem(item, f_player, toPlayer);
+    switch (result.getResult()) {
       case ITEM_NOT_FOUND:
         f_parserObserver.display(f_messages.getString(Messages.ITEM_NOT_FOUND).replace(Messages.ITEM_TAG,
             result.getReason()));
@@ -343,8 +392,8 @@ public final class Parser {
   }
 
   private void giveMoney(String money, String toPlayer) {
-    final Result result = f_worldController.giveMoney(money, f_player, toPlayer);
-    switch (result) {
+    final Outcome result = f_worldController.giveMoney(money, f_player, toPlayer);
+    switch (result.getResult()) {
       case INSUFFICIENT_MONEY:
         f_parserObserver.display(f_messages.getString(Messages.INSUFFICIENT_MONEY));
         break;
@@ -453,6 +502,9 @@ public final class Parser {
    * users command is understood (i.e., parsed) a specific method is invoked on the controller. If
    * the parser couldn't understand the user's command an error message is sent.
    *
+   * If the controller queues commands, the command is submitted to it and this returns without
+   * waiting for it to be applied.
+   *
    * @param command
    *          the users's command to the game.
    * @param includeLineSep
@@ -461,11 +513,18 @@ public final class Parser {
    */
   public void parse(String command, boolean includeLineSep) {
     if (f_networkClient == null) {
-      try {
-        parseLocal(command, includeLineSep);
-      } catch (final IllegalStateException e) {
-        f_worldController.getWorld().notifyException(e.toString());
-      }
+      f_worldController.submit(() -> {
+        try {
+          parseLocal(command, includeLineSep);
+        } catch (final IllegalStateException e) {
+          f_worldController.getWorld().notifyException(e.toString());
+        }
+        return null;
+      }).whenComplete((ignored, e) -> {
+        if (e != null && !(e instanceof CancellationException)) {
+          e.printStackTrace();
+        }
+      });
     } else {
       try {
         f_networkClient.parseCommand(command);
@@ -645,7 +704,7 @@ public final class Parser {
         final SayTrigger trigger = currentEvents.get(Integer.parseInt(words[0]) - 1);
         if (trigger.meetsConditions(f_player)) {
           try {
-            trigger.execute(f_player);
+            f_worldController.executeTrigger(f_player, trigger);
           } catch (final IllegalStateException e) {
             f_parserObserver
                 .display("There has been a fault detected in the state of the world.  "
@@ -757,12 +816,13 @@ public final class Parser {
       return;
     }
     if (f_multiplayer == null) {
+      int port;
       try {
-        final int port = Integer.parseInt(substring);
-        f_multiplayer = new MultiplayerServerThread(port, f_worldController, f_messages);
+        port = Integer.parseInt(substring);
       } catch (final NumberFormatException e) {
-        f_multiplayer = new MultiplayerServerThread(f_worldController, f_messages);
+        port = MultiplayerServerThread.getDefaultPort();
       }
+      f_multiplayer = ServerMode.fromSystemProperty().createServer(port, f_worldController, f_messages);
 
       f_multiplayer.start();
       f_parserObserver.display(f_messages.getString(Messages.SERVER_STARTED).replace(Messages.PORT_TAG,
@@ -791,8 +851,8 @@ public final class Parser {
       final Container source = f_player.getLocation().getContainer();
       final Container destination = f_player.getContainer();
       final String itemName = newCommand[1];
-      final Result result = f_worldController.swapItem(f_player, destination, source, itemName, Item.Action.TAKE);
-      switch (result) {
+      final Outcome result = f_worldController.swapItem(f_player, destination, source, itemName, Item.Action.TAKE);
+      switch (result.getResult()) {
         case ITEM_NOT_TAKEABLE:
           f_parserObserver.display(result.getReason());
           break;
@@ -843,14 +903,14 @@ public final class Parser {
     if (newCommand.length == 1) {
       f_parserObserver.display(f_messages.getString(Messages.MISSING_ITEM));
     } else {
-      Result result = f_worldController.useItem(f_player, newCommand[1], f_player.getName());
-      if (!result.equals(Result.SUCCESS)) {
+      Outcome result = f_worldController.useItem(f_player, newCommand[1], f_player.getName());
+      if (result.getResult() != Result.SUCCESS) {
         final Matcher m = Pattern.compile("(.+) on (.+)").matcher(newCommand[1].trim());
-        while (m.find() && result.equals(Result.ITEM_NOT_FOUND)) {
+        while (m.find() && result.getResult() == Result.ITEM_NOT_FOUND) {
           result = f_worldController.useItem(f_player, m.group(1), m.group(2));
         }
       }
-      switch (result) {
+      switch (result.getResult()) {
         case CANT_USE_ITEM:
           f_parserObserver.display(f_messages.getString(Messages.CANT_USE_MSG));
           break;
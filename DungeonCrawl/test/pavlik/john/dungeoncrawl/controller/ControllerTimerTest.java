@@ -0,0 +1,154 @@
+package pavlik.john.dungeoncrawl.controller;
+
+import java.util.HashSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import pavlik.john.dungeoncrawl.exceptions.PersistenceStateException;
+import pavlik.john.dungeoncrawl.model.Character;
+import pavlik.john.dungeoncrawl.model.Universe;
+import pavlik.john.dungeoncrawl.model.events.Event;
+import pavlik.john.dungeoncrawl.model.events.Trigger;
+import pavlik.john.dungeoncrawl.persistence.GamePersistence;
+import junit.framework.TestCase;
+
+/**
+ * @author John
+ * @see ControllerTimer
+ */
+public class ControllerTimerTest extends TestCase {
+
+  private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+  private Controller        f_controller;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    f_controller = new Controller(GamePersistence.DEFAULT_WORLD, false);
+    f_controller.stopWorld();
+  }
+
+  /**
+   * Test method for 'pavlik.john.dungeoncrawl.controller.ControllerTimer.tickIfDue(long)' with
+   * {@link TickPolicy#CATCH_UP}
+   */
+  public void testCatchUp() {
+    final ControllerTimer timer = new ControllerTimer(f_controller, TickPolicy.CATCH_UP);
+    final long start = System.nanoTime();
+    timer.restart(100);
+    final long now = start + TICK_NANOS * 31 / 2;
+    int ran = 0;
+    while (timer.tickIfDue(now)) {
+      ran++;
+    }
+    assertEquals(TickPolicy.MAX_CATCH_UP_TICKS, ran);
+    final TickStatistics statistics = timer.getStatistics();
+    assertEquals(ran, statistics.getTicks());
+    assertEquals(15 - ran, statistics.getSkippedTicks());
+    assertEquals(ran, f_controller.getWorld().getCurrentTick());
+    assertTrue(statistics.getMaxLagNanos() >= TICK_NANOS * (ran - 1));
+    assertTrue(timer.nanosUntilDue(now) > 0);
+  }
+
+  /**
+   * Test method for 'pavlik.john.dungeoncrawl.controller.ControllerTimer.tickIfDue(long)' with
+   * {@link TickPolicy#SKIP}
+   */
+  public void testSkip() {
+    final ControllerTimer timer = new ControllerTimer(f_controller, TickPolicy.SKIP);
+    final long start = System.nanoTime();
+    timer.restart(100);
+    assertFalse(timer.tickIfDue(start));
+    final long now = start + TICK_NANOS * 11 / 2;
+    assertTrue(timer.tickIfDue(now));
+    assertFalse(timer.tickIfDue(now));
+    final TickStatistics statistics = timer.getStatistics();
+    assertEquals(1, statistics.getTicks());
+    assertEquals(4, statistics.getSkippedTicks());
+    assertTrue(statistics.getLastLagNanos() < TICK_NANOS);
+    assertTrue(timer.tickIfDue(now + TICK_NANOS));
+    assertEquals(2, timer.getStatistics().getTicks());
+  }
+
+  /**
+   * A timer does nothing until it knows the tick rate, and loading a world starts counting again
+   */
+  public void testRestart() {
+    final ControllerTimer timer = new ControllerTimer(f_controller, TickPolicy.CATCH_UP);
+    assertEquals(Long.MAX_VALUE, timer.nanosUntilDue(System.nanoTime()));
+    assertFalse(timer.tickIfDue(Long.MAX_VALUE));
+    timer.restart(100);
+    assertTrue(timer.tickIfDue(System.nanoTime() + TICK_NANOS * 2));
+    timer.restart(100);
+    assertEquals(0, timer.getStatistics().getTicks());
+    try {
+      timer.restart(0);
+      fail("A tick rate of 0 should be rejected");
+    } catch (final IllegalArgumentException e) {
+      // Expected
+    }
+  }
+
+  /**
+   * A tick counted for a world that is replaced while the tick waits for the world lock is dropped,
+   * rather than applied to the new world with the old world's tick number
+   */
+  public void testReloadWhileTickWaits() throws Exception {
+    final ControllerTimer timer = f_controller.getTimer();
+    final Universe oldWorld = f_controller.getWorld();
+    final long start = System.nanoTime();
+    while (timer.tickIfDue(start + TimeUnit.MILLISECONDS.toNanos(oldWorld.getTickRate()) * 5)) {
+      // Let the old world reach a few ticks
+    }
+    assertTrue(oldWorld.getCurrentTick() > 0);
+
+    final CountDownLatch held = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    // Holds the world lock, then reloads the world once the tick is waiting for it
+    final Trigger reload = new Trigger(new Event(new HashSet<>()), "test", "reload", new HashSet<>()) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      public void execute(Character cause) {
+        held.countDown();
+        try {
+          release.await();
+          f_controller.loadWorld(GamePersistence.DEFAULT_WORLD);
+        } catch (final InterruptedException | PersistenceStateException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+    };
+    final Thread holder = new Thread(() -> f_controller.executeTrigger(null, reload));
+    holder.start();
+    held.await();
+
+    final boolean[] ran = { true };
+    final Thread ticker = new Thread(() -> ran[0] = timer.tickIfDue(Long.MAX_VALUE / 2));
+    ticker.start();
+    final long deadline = System.currentTimeMillis() + 5000;
+    while (ticker.getState() != Thread.State.WAITING && System.currentTimeMillis() < deadline) {
+      Thread.sleep(1);
+    }
+    assertEquals(Thread.State.WAITING, ticker.getState());
+    release.countDown();
+    holder.join();
+    ticker.join();
+
+    assertFalse(ran[0]);
+    assertNotSame(oldWorld, f_controller.getWorld());
+    assertEquals(0, f_controller.getWorld().getCurrentTick());
+    assertEquals(0, timer.getStatistics().getTicks());
+  }
+
+  /**
+   * Test method for 'pavlik.john.dungeoncrawl.controller.TickPolicy.fromName(String)'
+   */
+  public void testPolicyFromName() {
+    assertEquals(TickPolicy.SKIP, TickPolicy.fromName(" Skip "));
+    assertEquals(TickPolicy.CATCH_UP, TickPolicy.fromName("catch-up"));
+    assertEquals(TickPolicy.CATCH_UP, TickPolicy.fromName(null));
+    assertEquals(TickPolicy.CATCH_UP, TickPolicy.fromName("sometimes"));
+  }
+}
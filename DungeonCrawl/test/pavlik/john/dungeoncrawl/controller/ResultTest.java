@@ -11,11 +11,16 @@ import junit.framework.TestCase;
 public class ResultTest extends TestCase {
 
   /**
-   * Test method for 'pavlik.john.dungeoncrawl.controller.Result.setReason()' and 'getReason()'.
+   * Test method for 'pavlik.john.dungeoncrawl.controller.Result.withReason()'.
    */
-  public void testSetReason() {
-    final Result result = Result.SUCCESS;
-    result.setReason("reason");
-    assertEquals("reason", result.getReason());
+  public void testWithReason() {
+    final Outcome outcome = Result.ITEM_NOT_FOUND.withReason("reason");
+    assertEquals(Result.ITEM_NOT_FOUND, outcome.getResult());
+    assertEquals("reason", outcome.getReason());
+    final Outcome other = Result.ITEM_NOT_FOUND.withReason("other");
+    assertEquals("other", other.getReason());
+    assertEquals("reason", outcome.getReason());
+    assertNull(Outcome.of(Result.ITEM_NOT_FOUND).getReason());
+    assertSame(Outcome.of(Result.SUCCESS), Outcome.of(Result.SUCCESS));
   }
 }
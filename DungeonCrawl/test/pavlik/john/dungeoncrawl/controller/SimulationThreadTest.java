@@ -0,0 +1,95 @@
+package pavlik.john.dungeoncrawl.controller;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import pavlik.john.dungeoncrawl.persistence.GamePersistence;
+import junit.framework.TestCase;
+
+/**
+ * @author John
+ * @see SimulationThread
+ */
+public class SimulationThreadTest extends TestCase {
+
+  private Controller f_controller;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    f_controller = new Controller(GamePersistence.DEFAULT_WORLD, true);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    f_controller.stopWorld();
+    super.tearDown();
+  }
+
+  /**
+   * Commands are applied in the order submitted, on one thread that is not the caller's
+   */
+  public void testSubmitInOrder() throws InterruptedException, ExecutionException {
+    final List<Integer> applied = new ArrayList<>();
+    final List<CompletableFuture<Thread>> futures = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      final int command = i;
+      futures.add(f_controller.submit(() -> {
+        applied.add(command);
+        return Thread.currentThread();
+      }));
+    }
+    final Thread simulation = futures.get(0).get();
+    assertNotSame(Thread.currentThread(), simulation);
+    for (int i = 0; i < futures.size(); i++) {
+      assertSame(simulation, futures.get(i).get());
+    }
+    for (int i = 0; i < applied.size(); i++) {
+      assertEquals(i, applied.get(i).intValue());
+    }
+    assertEquals(Result.SUCCESS, f_controller.submit(() -> Result.SUCCESS).get());
+  }
+
+  /**
+   * Commands still queued when the world stops are cancelled rather than left waiting forever
+   */
+  public void testStopCancels() throws InterruptedException {
+    final CountDownLatch release = new CountDownLatch(1);
+    f_controller.submit(() -> {
+      try {
+        return release.await(5, TimeUnit.SECONDS);
+      } catch (final InterruptedException e) {
+        return false;
+      }
+    });
+    final CompletableFuture<Result> waiting = f_controller.submit(() -> Result.SUCCESS);
+    f_controller.stopWorld();
+    release.countDown();
+    try {
+      waiting.get();
+      fail("A command queued behind a stopped world should be cancelled");
+    } catch (final CancellationException | ExecutionException e) {
+      // Expected
+    }
+    assertTrue(f_controller.submit(() -> Result.SUCCESS).isCompletedExceptionally());
+  }
+
+  /**
+   * Without a queue, commands are applied before submit returns
+   */
+  public void testWithoutQueue() throws Exception {
+    final Controller direct = new Controller(GamePersistence.DEFAULT_WORLD, false);
+    try {
+      final CompletableFuture<Thread> future = direct.submit(() -> Thread.currentThread());
+      assertTrue(future.isDone());
+      assertSame(Thread.currentThread(), future.get());
+    } finally {
+      direct.stopWorld();
+    }
+  }
+}
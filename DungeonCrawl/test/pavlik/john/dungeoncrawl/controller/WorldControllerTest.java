@@ -120,10 +120,10 @@ public class WorldControllerTest extends TestCase {
    * Test method for 'pavlik.john.dungeoncrawl.controller.Controller.giveItem'
    */
   public void testGiveItem() {
-    assertEquals(Result.SUCCESS, f_wc.giveItem("basic dagger", player, "chris"));
-    assertEquals(Result.ITEM_NOT_FOUND, f_wc.giveItem("basic dagger", player, "chris"));
-    assertEquals(Result.ITEM_NOT_FOUND, f_wc.giveItem("rock", player, "chris"));
-    assertEquals(Result.CHARACTER_NOT_FOUND, f_wc.giveItem("ground dagger", player, "old man"));
+    assertEquals(Result.SUCCESS, f_wc.giveItem("basic dagger", player, "chris").getResult());
+    assertEquals(Result.ITEM_NOT_FOUND, f_wc.giveItem("basic dagger", player, "chris").getResult());
+    assertEquals(Result.ITEM_NOT_FOUND, f_wc.giveItem("rock", player, "chris").getResult());
+    assertEquals(Result.CHARACTER_NOT_FOUND, f_wc.giveItem("ground dagger", player, "old man").getResult());
   }
 
   /**
@@ -131,12 +131,12 @@ public class WorldControllerTest extends TestCase {
    * Player, Player)'
    */
   public void testGiveMoney() {
-    assertEquals(Result.SUCCESS, f_wc.giveMoney("20", player, "chris"));
-    assertEquals(Result.INSUFFICIENT_MONEY, f_wc.giveMoney("35", player, "chris"));
-    assertEquals(Result.INSUFFICIENT_MONEY, f_wc.giveMoney("0", player, "chris"));
-    assertEquals(Result.INSUFFICIENT_MONEY, f_wc.giveMoney("-5", player, "chris"));
-    assertEquals(Result.CHARACTER_NOT_FOUND, f_wc.giveMoney("1", player, "old man"));
-    assertEquals(Result.CHARACTER_NOT_FOUND, f_wc.giveMoney("1", player, "no one"));
+    assertEquals(Result.SUCCESS, f_wc.giveMoney("20", player, "chris").getResult());
+    assertEquals(Result.INSUFFICIENT_MONEY, f_wc.giveMoney("35", player, "chris").getResult());
+    assertEquals(Result.INSUFFICIENT_MONEY, f_wc.giveMoney("0", player, "chris").getResult());
+    assertEquals(Result.INSUFFICIENT_MONEY, f_wc.giveMoney("-5", player, "chris").getResult());
+    assertEquals(Result.CHARACTER_NOT_FOUND, f_wc.giveMoney("1", player, "old man").getResult());
+    assertEquals(Result.CHARACTER_NOT_FOUND, f_wc.giveMoney("1", player, "no one").getResult());
   }
 
   /**
@@ -214,19 +214,19 @@ public class WorldControllerTest extends TestCase {
    */
   public void testSwapItem() {
     assertEquals(Result.SUCCESS, f_wc.swapItem(player, player.getLocation().getContainer(), player.getContainer(),
-        "basic dagger", Action.DROP));
+        "basic dagger", Action.DROP).getResult());
     assertEquals(Result.SUCCESS, f_wc.swapItem(player, player.getContainer(), player.getLocation().getContainer(),
-        "basic dagger", Action.TAKE));
+        "basic dagger", Action.TAKE).getResult());
     assertEquals(Result.ITEM_NOT_TAKEABLE, f_wc.swapItem(player, player.getContainer(), player.getLocation()
-        .getContainer(), "rock", Action.TAKE));
+        .getContainer(), "rock", Action.TAKE).getResult());
     assertEquals(Result.ITEM_NOT_FOUND, f_wc.swapItem(player, player.getContainer(), player.getLocation()
-        .getContainer(), "penny", Action.TAKE));
+        .getContainer(), "penny", Action.TAKE).getResult());
 
     assertEquals(Result.SUCCESS, f_wc.swapItem(player, player.getContainer(), player.getLocation().getContainer(),
-        "ground dagger", Action.TAKE));
+        "ground dagger", Action.TAKE).getResult());
     assertTrue(5L == player.getScore());
     assertEquals(Result.SUCCESS, f_wc.swapItem(player, player.getLocation().getContainer(), player.getContainer(),
-        "ground dagger", Action.DROP));
+        "ground dagger", Action.DROP).getResult());
     assertTrue(15L == player.getScore());
   }
 
@@ -239,13 +239,13 @@ public class WorldControllerTest extends TestCase {
     itemSet.add("basic dagger");
     itemSet.add("ground dagger");
     assertFalse(f_wc.getItemForPlayer(player, "Adamantium dagger", false).isPresent());
-    assertEquals(Result.SUCCESS, f_wc.synthesizeItems(player, itemSet));
+    assertEquals(Result.SUCCESS, f_wc.synthesizeItems(player, itemSet).getResult());
     assertTrue(f_wc.getItemForPlayer(player, "Adamantium dagger", false).isPresent());
-    assertEquals(Result.ITEM_NOT_FOUND, f_wc.synthesizeItems(player, itemSet));
+    assertEquals(Result.ITEM_NOT_FOUND, f_wc.synthesizeItems(player, itemSet).getResult());
     assertEquals("basic dagger", f_wc.synthesizeItems(player, itemSet).getReason());
     itemSet.clear();
     itemSet.add("Sack of trinkets");
-    assertEquals(Result.NO_ITEM_CREATED, f_wc.synthesizeItems(player, itemSet));
+    assertEquals(Result.NO_ITEM_CREATED, f_wc.synthesizeItems(player, itemSet).getResult());
   }
 
   /**
@@ -316,20 +316,20 @@ public class WorldControllerTest extends TestCase {
    * item, String target)
    */
   public void testUseItem() {
-    assertEquals(Result.CHARACTER_NOT_FOUND, f_wc.useItem(player, "healing potion", "old man"));
-    assertEquals(Result.CHARACTER_NOT_FOUND, f_wc.useItem(player, "healing potion", "nobody"));
-    assertEquals(Result.ITEM_NOT_FOUND, f_wc.useItem(player, "no item", "jay"));
-    assertEquals(Result.ALREADY_IN_COMBAT, f_wc.useItem(player, "healing potion", "chris"));
+    assertEquals(Result.CHARACTER_NOT_FOUND, f_wc.useItem(player, "healing potion", "old man").getResult());
+    assertEquals(Result.CHARACTER_NOT_FOUND, f_wc.useItem(player, "healing potion", "nobody").getResult());
+    assertEquals(Result.ITEM_NOT_FOUND, f_wc.useItem(player, "no item", "jay").getResult());
+    assertEquals(Result.ALREADY_IN_COMBAT, f_wc.useItem(player, "healing potion", "chris").getResult());
     f_wc.tick(5);
-    assertEquals(Result.SUCCESS, f_wc.useItem(player, "healing potion", "chris"));
-    assertEquals(Result.ALREADY_IN_COMBAT, f_wc.useItem(player, "healing potion", "chris"));
+    assertEquals(Result.SUCCESS, f_wc.useItem(player, "healing potion", "chris").getResult());
+    assertEquals(Result.ALREADY_IN_COMBAT, f_wc.useItem(player, "healing potion", "chris").getResult());
     f_wc.tick(10);
-    assertEquals(Result.SUCCESS, f_wc.useItem(player, "healing potion", "jay"));
+    assertEquals(Result.SUCCESS, f_wc.useItem(player, "healing potion", "jay").getResult());
     f_wc.tick(15);
-    assertEquals(Result.ITEM_CONSUMED, f_wc.useItem(player, "healing potion", "player"));
-    assertEquals(Result.SUCCESS, f_wc.useItem(player, "basic dagger", "jay"));
+    assertEquals(Result.ITEM_CONSUMED, f_wc.useItem(player, "healing potion", "player").getResult());
+    assertEquals(Result.SUCCESS, f_wc.useItem(player, "basic dagger", "jay").getResult());
     f_wc.swapItem(player, player.getContainer(), player.getLocation().getContainer(), "sack of trinkets", Action.TAKE);
-    assertEquals(Result.CANT_USE_ITEM, f_wc.useItem(player, "Sack of Trinkets", "player"));
+    assertEquals(Result.CANT_USE_ITEM, f_wc.useItem(player, "Sack of Trinkets", "player").getResult());
   }
 
   /**
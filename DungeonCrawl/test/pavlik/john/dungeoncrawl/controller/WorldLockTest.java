@@ -0,0 +1,102 @@
+package pavlik.john.dungeoncrawl.controller;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import pavlik.john.dungeoncrawl.model.Place;
+import pavlik.john.dungeoncrawl.model.Player;
+import pavlik.john.dungeoncrawl.model.Universe;
+import junit.framework.TestCase;
+
+/**
+ * @author John
+ * @see WorldLock
+ */
+public class WorldLockTest extends TestCase {
+
+  private WorldLock f_lock;
+  private Place     f_Dayton, f_Columbus;
+  private Player    f_first, f_second;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    final Universe world = new Universe();
+    f_lock = new WorldLock();
+    f_Dayton = world.createPlace("city of Dayton", "the", "Dayton", false, null);
+    f_Columbus = world.createPlace("city of Columbus", "the", "Columbus", false, null);
+    f_first = world.createPlayer("First", f_Dayton, "", "First", f_Dayton);
+    f_second = world.createPlayer("Second", f_Columbus, "", "Second", f_Columbus);
+  }
+
+  /**
+   * Commands in different places must not wait for each other
+   */
+  public void testDifferentPlacesRunTogether() throws InterruptedException {
+    final CountDownLatch inDayton = new CountDownLatch(1);
+    final CountDownLatch inColumbus = new CountDownLatch(1);
+    final AtomicBoolean together = new AtomicBoolean();
+    final Thread other = new Thread(() -> f_lock.aroundCharacter(f_second, () -> {
+      inColumbus.countDown();
+      try {
+        together.set(inDayton.await(5, TimeUnit.SECONDS));
+      } catch (final InterruptedException e) {
+        e.printStackTrace();
+      }
+      return null;
+    }));
+    other.start();
+    assertTrue(f_lock.aroundCharacter(f_first, () -> {
+      inDayton.countDown();
+      try {
+        return inColumbus.await(5, TimeUnit.SECONDS);
+      } catch (final InterruptedException e) {
+        return false;
+      }
+    }));
+    other.join();
+    assertTrue(together.get());
+  }
+
+  /**
+   * An exclusive command must wait for a command holding a place
+   */
+  public void testExclusiveWaitsForPlaces() throws InterruptedException {
+    final CountDownLatch holding = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final Thread other = new Thread(() -> f_lock.aroundCharacter(f_first, () -> {
+      holding.countDown();
+      try {
+        release.await();
+      } catch (final InterruptedException e) {
+        e.printStackTrace();
+      }
+      return null;
+    }));
+    other.start();
+    assertTrue(holding.await(5, TimeUnit.SECONDS));
+    final AtomicBoolean ran = new AtomicBoolean();
+    final Thread exclusive = new Thread(() -> f_lock.exclusive(() -> ran.set(true)));
+    exclusive.start();
+    exclusive.join(200);
+    assertFalse(ran.get());
+    release.countDown();
+    exclusive.join();
+    assertTrue(ran.get());
+    other.join();
+  }
+
+  /**
+   * Asking for the world exclusively while holding a place would deadlock, so it must fail instead
+   */
+  public void testNoUpgrade() {
+    try {
+      f_lock.aroundCharacter(f_first, () -> f_lock.exclusive(() -> Boolean.TRUE), f_Columbus);
+      fail("Upgrading the world lock should throw");
+    } catch (final IllegalStateException e) {
+      // Expected
+    }
+    assertEquals(Boolean.TRUE, f_lock.exclusive(() -> f_lock.aroundCharacter(f_second, () -> Boolean.TRUE)));
+  }
+}
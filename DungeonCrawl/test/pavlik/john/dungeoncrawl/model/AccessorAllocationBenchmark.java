@@ -0,0 +1,164 @@
+package pavlik.john.dungeoncrawl.model;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import pavlik.john.dungeoncrawl.model.Consumable.EffectTarget;
+import pavlik.john.dungeoncrawl.model.events.State;
+import pavlik.john.dungeoncrawl.properties.Messages;
+import pavlik.john.dungeoncrawl.view.GameObserver;
+
+/**
+ * A microbenchmark, run by hand rather than with the unit tests, of the bytes allocated by the
+ * world accessors that save, broadcast and list players use, and by a tick and a broadcast. Each
+ * accessor is measured as it was, returning a copy, and as a read-only view; list views are walked
+ * by index and set views by iterator. The run fails if iterating a view allocates more than a
+ * single iterator, or as much as iterating the copy.
+ * <p>
+ * Usage: <code>AccessorAllocationBenchmark [operations]</code>, for example
+ * <code>AccessorAllocationBenchmark 200000</code>.
+ *
+ * @author John
+ */
+public final class AccessorAllocationBenchmark {
+
+  private interface Operation {
+    int run();
+  }
+
+  /**
+   * An observer that displays nothing, its player is somewhere else
+   */
+  private static final class QuietObserver extends GameObserver {
+    QuietObserver() {
+      super(Messages.loadMessages("en", "US"));
+    }
+
+    @Override
+    public void display(String message) {
+      s_sink += message.length();
+    }
+
+    @Override
+    public void gameOver(Universe world) {
+      // Nothing to show
+    }
+
+    @Override
+    public void quit() {
+      // Nothing to close
+    }
+
+    @Override
+    public void worldLoaded(Universe world, String fileName) {
+      // Nothing to show
+    }
+  }
+
+  private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory
+                                                                   .getThreadMXBean();
+
+  /**
+   * The most a view may allocate, an iterator the JIT could not eliminate
+   */
+  private static final int                              ITERATOR_BYTES = 64;
+
+  private static long                                   s_sink;
+
+  private static double bytesPerOperation(Operation operation, int operations) {
+    for (int i = 0; i < operations; i++) {
+      s_sink += operation.run();
+    }
+    final long thread = Thread.currentThread().getId();
+    final long start = THREADS.getThreadAllocatedBytes(thread);
+    for (int i = 0; i < operations; i++) {
+      s_sink += operation.run();
+    }
+    return (THREADS.getThreadAllocatedBytes(thread) - start) / (double) operations;
+  }
+
+  private static Universe createWorld() {
+    final Universe world = new Universe();
+    for (int i = 0; i < 200; i++) {
+      final Place place = world.createPlace("Room " + i, "the", "A room", false, null);
+      world.createItem("Rock " + i, "a", "A rock", 0L, 0L, new HashMap<>(), true, "", new HashMap<>(), false);
+      final State state = new State("idle", "");
+      world.createNPC("Rat " + i, "a", "A rat", new Container(), place, Collections.singleton(state), state, null);
+      if (i % 10 == 0) {
+        world.createPlayer("Player " + i, place, "", "A player", place);
+        world.createCharacterClass("Class " + i, 100, 1, new ArrayList<>(), "", 0, 1, 1, 100, 0,
+            EffectTarget.SINGLE, null, null, "fists");
+      }
+    }
+    for (int i = 0; i < 8; i++) {
+      final QuietObserver observer = new QuietObserver();
+      observer.setCurrentPlayer(world.createPlayer("Watcher " + i, world.getNowherePlace(), "", "", null));
+      world.addObserver(observer);
+    }
+    return world;
+  }
+
+  private static <T> int count(List<T> entities) {
+    int count = 0;
+    for (int i = 0; i < entities.size(); i++) {
+      count += entities.get(i) == null ? 0 : 1;
+    }
+    return count;
+  }
+
+  private static <T> int count(Iterable<T> entities) {
+    int count = 0;
+    for (final T entity : entities) {
+      count += entity == null ? 0 : 1;
+    }
+    return count;
+  }
+
+  private static boolean compare(String accessor, Operation copy, Operation view, int operations) {
+    final double before = bytesPerOperation(copy, operations);
+    final double after = bytesPerOperation(view, operations);
+    System.out.println(String.format("%-18s copy %10.1f bytes/op, view %8.1f bytes/op", accessor, before, after));
+    return after < before && after <= ITERATOR_BYTES;
+  }
+
+  /**
+   * Run the benchmark
+   *
+   * @param args
+   *          operations, optional
+   */
+  public static void main(String[] args) {
+    final int operations = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+    final Universe world = createWorld();
+    final Player speaker = world.getPlayer("Player 0");
+
+    boolean passed = compare("places", () -> count(world.getPlaces()), () -> count(world.getPlacesView()),
+        operations / 100);
+    passed &= compare("items", () -> count(world.getItems()), () -> count(world.getItemsView()), operations / 100);
+    passed &= compare("character classes", () -> count(world.getCharacterClasses()),
+        () -> count(world.getCharacterClassesView()), operations);
+    passed &= compare("players", () -> world.getPlayers().length, () -> count(world.getPlayersView()), operations);
+    passed &= compare("observers", () -> count(world.getObservers()), () -> count(world.getObserversView()),
+        operations);
+
+    final long[] tick = { world.getCurrentTick() };
+    System.out.println(String.format("%-18s %10.1f bytes/op", "tick", bytesPerOperation(() -> {
+      world.tick(++tick[0]);
+      return 1;
+    }, operations)));
+    System.out.println(String.format("%-18s %10.1f bytes/op", "broadcast", bytesPerOperation(() -> {
+      world.broadcastMessage(speaker, "Player 0", "hello");
+      return 1;
+    }, operations)));
+
+    System.out.println(passed ? "PASSED" : "FAILED: iterating a view allocates more than an iterator");
+    System.exit(passed ? 0 : 1);
+  }
+
+  private AccessorAllocationBenchmark() {
+    // Run through main
+  }
+}
@@ -1,6 +1,7 @@
 package pavlik.john.dungeoncrawl.model;
 
 import java.util.HashMap;
+import java.util.SplittableRandom;
 
 import pavlik.john.dungeoncrawl.model.Consumable;
 import pavlik.john.dungeoncrawl.model.Consumable.Effect;
@@ -147,6 +148,20 @@ public class ConsumableTest extends TestCase {
     assertTrue(con.hitTarget(null));
   }
 
+  /**
+   * The same seed rolls the same effects
+   */
+  public void testSeededEffect() {
+    final Effect effect = new Effect(5, 20);
+    final SplittableRandom first = new SplittableRandom(42);
+    final SplittableRandom second = new SplittableRandom(42);
+    for (int i = 0; i < 100; i++) {
+      final int rolled = effect.calculate(first);
+      assertEquals(rolled, effect.calculate(second));
+      assertTrue(rolled >= 5 && rolled <= 100);
+    }
+  }
+
   /**
    *
    */
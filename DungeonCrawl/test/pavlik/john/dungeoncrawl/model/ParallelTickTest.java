@@ -0,0 +1,117 @@
+package pavlik.john.dungeoncrawl.model;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+import pavlik.john.dungeoncrawl.model.Consumable.EffectTarget;
+import pavlik.john.dungeoncrawl.model.events.State;
+
+/**
+ * @author John
+ * @see ParallelTick
+ */
+public class ParallelTickTest extends TestCase {
+
+  private static final int ROOMS = 12;
+  private static final int TICKS = 60;
+
+  /**
+   * A world of rooms, each with a knight attacking a rat that respawns in the shrine. Every attack
+   * hits for a fixed amount, so a run has one outcome.
+   */
+  private static Universe createWorld(int threads, List<String> notified) {
+    final Universe world = new Universe();
+    world.setTickParallelism(threads);
+    world.addObserver((IModelObserver) Proxy.newProxyInstance(ParallelTickTest.class.getClassLoader(),
+        new Class<?>[] { IModelObserver.class }, (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "equals":
+              return proxy == args[0];
+            case "hashCode":
+              return System.identityHashCode(proxy);
+            default:
+              notified.add(method.getName() + Arrays.toString(args));
+              return null;
+          }
+        }));
+    final CharacterClass knight = world.createCharacterClass("Knight", 40, 1, new ArrayList<>(), "slashes", 5, 3, 1,
+        100, 2, EffectTarget.SINGLE, null, null, "sword");
+    final CharacterClass rat = world.createCharacterClass("Rat", 10, 1, new ArrayList<>(), "bites", 4, 1, 1, 100, 1,
+        EffectTarget.SINGLE, null, null, "teeth");
+    final Place shrine = world.createPlace("Shrine", "the", "A shrine", false, null);
+    for (int i = 0; i < ROOMS; i++) {
+      final Place room = world.createPlace("Room " + i, "the", "A room", false, null);
+      final State state = new State("idle", "");
+      final NonPlayerCharacter attacker = world.createNPC("Knight " + i, "a", "A knight", new Container(), room,
+          Collections.singleton(state), state, room);
+      final NonPlayerCharacter victim = world.createNPC("Rat " + i, "a", "A rat", new Container(), room,
+          Collections.singleton(state), state, shrine);
+      attacker.setCharacterClass(knight);
+      victim.setCharacterClass(rat);
+      victim.changeMoney(i + 1);
+      attacker.startAttack(victim);
+    }
+    return world;
+  }
+
+  private static String describe(Universe world) {
+    final StringBuilder state = new StringBuilder();
+    for (final NonPlayerCharacter npc : world.getNonPlayerCharacters()) {
+      state.append(npc.getName()).append(' ').append(npc.getLocation().getName()).append(' ')
+          .append(npc.getCurrentHealth()).append(' ').append(npc.isConscious()).append(' ').append(npc.getMoney())
+          .append('\n');
+    }
+    return state.toString();
+  }
+
+  private static void run(Universe world) {
+    for (long tick = 1; tick <= TICKS; tick++) {
+      world.tick(tick);
+    }
+  }
+
+  /**
+   * A parallel tick has the same outcome, and notifies observers in the same order, every time
+   */
+  public void testDeterministic() {
+    final List<String> first = new ArrayList<>();
+    final Universe firstWorld = createWorld(4, first);
+    run(firstWorld);
+    final List<String> second = new ArrayList<>();
+    final Universe secondWorld = createWorld(4, second);
+    run(secondWorld);
+    assertEquals(describe(firstWorld), describe(secondWorld));
+    assertEquals(first, second);
+    assertFalse(first.isEmpty());
+    firstWorld.setTickParallelism(1);
+    secondWorld.setTickParallelism(1);
+  }
+
+  /**
+   * Characters moving to another place are applied in the merge, and fights end as they do on one
+   * thread
+   */
+  public void testMerge() {
+    final Universe serial = createWorld(1, new ArrayList<>());
+    run(serial);
+    final Universe parallel = createWorld(4, new ArrayList<>());
+    assertEquals(4, parallel.getTickParallelism());
+    run(parallel);
+    assertEquals(describe(serial), describe(parallel));
+
+    final Place shrine = parallel.getPlace("Shrine");
+    for (int i = 0; i < ROOMS; i++) {
+      final NonPlayerCharacter rat = parallel.getNonPlayerCharacter("Rat " + i);
+      assertSame(shrine, rat.getLocation());
+      assertSame(rat, shrine.getCharacter("Rat " + i));
+      assertNull(parallel.getPlace("Room " + i).getCharacter("Rat " + i));
+      assertEquals(i + 1, parallel.getNonPlayerCharacter("Knight " + i).getMoney());
+    }
+    parallel.setTickParallelism(1);
+    assertEquals(1, parallel.getTickParallelism());
+  }
+}
@@ -1,12 +1,17 @@
 package pavlik.john.dungeoncrawl.model;
 
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
 
 import pavlik.john.dungeoncrawl.model.Container;
 import pavlik.john.dungeoncrawl.model.Navigation;
 import pavlik.john.dungeoncrawl.model.Item;
 import pavlik.john.dungeoncrawl.model.Place;
 import pavlik.john.dungeoncrawl.model.Universe;
+import pavlik.john.dungeoncrawl.model.events.Event;
+import pavlik.john.dungeoncrawl.model.events.State;
+import pavlik.john.dungeoncrawl.model.events.triggers.SightTrigger;
 import junit.framework.TestCase;
 
 /**
@@ -202,4 +207,32 @@ public class PlaceTest extends TestCase {
     }
   }
 
+  /**
+   * Test method for 'pavlik.john.dungeoncrawl.model.Place.getArrivalTriggers(Character)'
+   */
+  public void testGetArrivalTriggers() {
+    final Event event = new Event(new HashSet<>());
+    final State watching = new State("watching", "");
+    final SightTrigger anyPlayer = new SightTrigger(event, "onSight", SightTrigger.ANY_PLAYER, new HashSet<>());
+    watching.addEventTrigger(anyPlayer);
+    watching.addEventTrigger(new SightTrigger(event, "onSight", "Scout", new HashSet<>()));
+    final State calm = new State("calm", "");
+    final Set<State> states = new HashSet<>();
+    states.add(watching);
+    states.add(calm);
+    final NonPlayerCharacter guard = f_world.createNPC("Guard", "a", "A guard", new Container(), f_Dayton, states,
+        watching, null);
+    final Player hero = f_world.createPlayer("Hero", f_Columbus, "", "A hero", f_Columbus);
+
+    assertEquals(1, f_Dayton.getArrivalTriggers(hero).size());
+    assertSame(anyPlayer, f_Dayton.getArrivalTriggers(hero).get(0));
+    assertTrue(f_Columbus.getArrivalTriggers(hero).isEmpty());
+    guard.setCurrentState(calm);
+    assertTrue(f_Dayton.getArrivalTriggers(hero).isEmpty());
+    guard.setCurrentState(watching);
+    assertEquals(1, f_Dayton.getArrivalTriggers(hero).size());
+    guard.setLocation(f_Columbus);
+    assertTrue(f_Dayton.getArrivalTriggers(hero).isEmpty());
+    assertEquals(1, f_Columbus.getArrivalTriggers(hero).size());
+  }
 }
@@ -0,0 +1,59 @@
+package pavlik.john.dungeoncrawl.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * @author John
+ * @see TimingWheel
+ */
+public class TimingWheelTest extends TestCase {
+
+  private TimingWheel f_wheel;
+  private List<Long>  f_ran;
+
+  @Override
+  protected void setUp() {
+    f_wheel = new TimingWheel(0);
+    f_ran = new ArrayList<>();
+  }
+
+  /**
+   * Events run at their tick in order, including those that move down from the higher levels
+   */
+  public void testAdvanceTo() {
+    final long[] ticks = { 5000, 3, 70, 64, 1, 4096, 300000 };
+    for (final long tick : ticks) {
+      f_wheel.schedule(tick, f_ran::add);
+    }
+    assertEquals(ticks.length, f_wheel.size());
+    f_wheel.advanceTo(64);
+    assertEquals(3, f_ran.size());
+    assertEquals(Long.valueOf(64), f_ran.get(2));
+    f_wheel.advanceTo(300000);
+    assertEquals(ticks.length, f_ran.size());
+    for (int i = 1; i < f_ran.size(); i++) {
+      assertTrue(f_ran.get(i - 1) < f_ran.get(i));
+    }
+    assertEquals(0, f_wheel.size());
+    assertEquals(300000, f_wheel.getCurrentTick());
+  }
+
+  /**
+   * Events may schedule more events, and an event in the past is due on the next tick
+   */
+  public void testSchedule() {
+    f_wheel.schedule(10, tick -> {
+      f_ran.add(tick);
+      f_wheel.schedule(tick + 10, f_ran::add);
+    });
+    f_wheel.advanceTo(25);
+    assertEquals(2, f_ran.size());
+    assertEquals(Long.valueOf(20), f_ran.get(1));
+    f_wheel.schedule(5, f_ran::add);
+    f_wheel.advanceTo(26);
+    assertEquals(Long.valueOf(26), f_ran.get(2));
+  }
+}
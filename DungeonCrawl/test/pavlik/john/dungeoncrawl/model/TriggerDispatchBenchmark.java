@@ -0,0 +1,91 @@
+package pavlik.john.dungeoncrawl.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+
+import pavlik.john.dungeoncrawl.model.Consumable.Effect;
+import pavlik.john.dungeoncrawl.model.Consumable.EffectTarget;
+import pavlik.john.dungeoncrawl.model.events.Event;
+import pavlik.john.dungeoncrawl.model.events.State;
+import pavlik.john.dungeoncrawl.model.events.triggers.AttackedTrigger;
+import pavlik.john.dungeoncrawl.model.events.triggers.HealthTrigger;
+import pavlik.john.dungeoncrawl.model.events.triggers.SightTrigger;
+
+/**
+ * A microbenchmark, run by hand rather than with the unit tests, of a player hitting an NPC whose
+ * state has an attacked trigger, health triggers well below its health and a growing number of
+ * sight triggers. The run fails if an attack on the NPC with the most triggers costs more than the
+ * given factor times an attack on the NPC with the fewest.
+ * <p>
+ * Usage: <code>TriggerDispatchBenchmark [attacks] [maxFactor]</code>, for example
+ * <code>TriggerDispatchBenchmark 200000 3</code>.
+ *
+ * @author John
+ */
+public final class TriggerDispatchBenchmark {
+
+  private static final int[] TRIGGERS_PER_STATE = { 1, 10, 100, 1000, 10000 };
+
+  private static long nanosPerAttack(int triggers, int attacks) {
+    final Universe world = new Universe();
+    final Place arena = world.createPlace("arena", "the", "An arena", false, null);
+    final CharacterClass characterClass = world.createCharacterClass("Fighter", Integer.MAX_VALUE, 0,
+        new ArrayList<>(), "", 0, 1, 1, 100, 0, EffectTarget.SINGLE, null, null, "fists");
+
+    final Event event = new Event(new HashSet<>());
+    final Set<State> states = new HashSet<>();
+    final State state = new State("fighting", "");
+    state.addEventTrigger(new AttackedTrigger(event, "onAttacked", new HashSet<>()));
+    for (int i = 0; i < triggers; i++) {
+      state.addEventTrigger(new SightTrigger(event, "onSight", "", new HashSet<>()));
+      state.addEventTrigger(new HealthTrigger(i + 1, event, "onHealth", new HashSet<>()));
+    }
+    states.add(state);
+    final NonPlayerCharacter npc = world.createNPC("Dummy", "a", "A training dummy", new Container(), arena,
+        states, state, null);
+    npc.setCharacterClass(characterClass);
+    final Player player = world.createPlayer("Fighter", arena, "", "A fighter", arena);
+    player.setCharacterClass(characterClass);
+    final Weapon weapon = new Weapon("stick", "a", "", 0, 0, new HashMap<>(), new HashMap<>(), null, "stick",
+        new Effect(1, 1), 0, "poke", 100, EffectTarget.SINGLE, null, null);
+
+    final long start = System.nanoTime();
+    for (int i = 0; i < attacks; i++) {
+      player.useItem(weapon, npc);
+    }
+    return (System.nanoTime() - start) / attacks;
+  }
+
+  /**
+   * Run the benchmark
+   *
+   * @param args
+   *          attacks and maxFactor, both optional
+   */
+  public static void main(String[] args) {
+    final int attacks = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+    final double maxFactor = args.length > 1 ? Double.parseDouble(args[1]) : 3;
+
+    // Warm up before measuring
+    for (final int triggers : TRIGGERS_PER_STATE) {
+      nanosPerAttack(triggers, attacks);
+    }
+    final long[] nanos = new long[TRIGGERS_PER_STATE.length];
+    for (int i = 0; i < TRIGGERS_PER_STATE.length; i++) {
+      nanos[i] = nanosPerAttack(TRIGGERS_PER_STATE[i], attacks);
+      System.out.println(TRIGGERS_PER_STATE[i] * 2 + 1 + " triggers: " + nanos[i] + "ns per attack");
+    }
+    final long fewest = Math.min(nanos[0], nanos[1]);
+    final boolean passed = nanos[nanos.length - 1] <= fewest * maxFactor;
+    System.out.println(passed ? "PASSED" : "FAILED: attack cost grows with the number of triggers");
+    if (!passed) {
+      System.exit(1);
+    }
+  }
+
+  private TriggerDispatchBenchmark() {
+    // Run through main
+  }
+}
@@ -0,0 +1,80 @@
+package pavlik.john.dungeoncrawl.model;
+
+import junit.framework.TestCase;
+
+/**
+ * @author John
+ * @see UniverseMirror
+ */
+public class UniverseMirrorTest extends TestCase {
+
+  private UniverseMirror f_mirror;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    f_mirror = new UniverseMirror();
+    f_mirror.definePlace(1, "Field", "the", "A field", false, null);
+    f_mirror.defineCharacter(2, true, "Braum", "", "A fighter", 1);
+    f_mirror.defineItem(3, "flower", "a", "A flower", true, false);
+  }
+
+  /**
+   * Test that adding an item to a new owner takes it away from the old one
+   */
+  public void testChangeContents() {
+    f_mirror.changeContents(1, new int[] { 3 }, new int[0]);
+    assertTrue(f_mirror.getPlace(1).getContainer().getItems().contains(f_mirror.getItem(3)));
+
+    f_mirror.changeContents(2, new int[] { 3 }, new int[0]);
+    assertTrue(f_mirror.getPlace(1).getContainer().getItems().isEmpty());
+    assertTrue(f_mirror.getPlayer(2).getContainer().getItems().contains(f_mirror.getItem(3)));
+
+    // A late removal from the old owner must not disturb the new one
+    f_mirror.changeContents(1, new int[0], new int[] { 3 });
+    assertTrue(f_mirror.getPlayer(2).getContainer().getItems().contains(f_mirror.getItem(3)));
+  }
+
+  /**
+   * Test that mirroring combat, a class and every other change runs no game rules: nothing is
+   * scheduled, so the mirror's clock can still be set
+   */
+  public void testNoSimulation() {
+    f_mirror.defineCharacter(4, false, "Marisa", "", "A witch", 1);
+    f_mirror.defineCharacterClass(2, "Fighter", 30, 5, "fists", "punches", null, null);
+    f_mirror.defineCharacterClass(4, "Mage", 20, 6, "staff", "casts", null, null);
+    f_mirror.setTarget(2, 4);
+    f_mirror.setWeapon(4, 6);
+    f_mirror.setHealth(4, 0, false);
+    f_mirror.setMoney(2, 10);
+    f_mirror.setScore(2, 50);
+
+    final Player braum = f_mirror.getPlayer(2);
+    assertTrue(braum.inCombat());
+    assertSame(f_mirror.getCharacter(4), braum.getCurrentTarget());
+    assertEquals(30, braum.getCurrentHealth());
+    assertEquals(10, braum.getMoney());
+    assertEquals(50, braum.getScore().longValue());
+    assertSame(f_mirror.getWeapon(6), f_mirror.getCharacter(4).getCurrentWeapon());
+    assertFalse(f_mirror.getCharacter(4).isConscious());
+    f_mirror.getWorld().setCurrentTick(100);
+
+    f_mirror.setTarget(2, 0);
+    assertFalse(braum.inCombat());
+    assertNull(braum.getCurrentTarget());
+  }
+
+  /**
+   * Test that the same object is returned for an id and that wrong types are rejected
+   */
+  public void testGet() {
+    assertSame(f_mirror.getPlayer(2), f_mirror.getCharacter(2));
+    assertNull(f_mirror.getPlace(0));
+    try {
+      f_mirror.getPlace(2);
+      fail("Expected an IllegalStateException for a character id");
+    } catch (final IllegalStateException e) {
+      // expected
+    }
+  }
+}
@@ -1,7 +1,14 @@
 package pavlik.john.dungeoncrawl.model;
 
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Set;
+import java.util.function.Supplier;
+
+import pavlik.john.dungeoncrawl.model.Consumable.EffectTarget;
 
 import pavlik.john.dungeoncrawl.model.Item;
 import pavlik.john.dungeoncrawl.model.Place;
@@ -24,6 +31,81 @@ public class WorldTest extends TestCase {
     f_world.createPlayer("player", f_world.getNowherePlace(), "", "", null);
   }
 
+  /**
+   * Entities get dense ids in the order they are created, and names are found ignoring case and a
+   * leading article
+   */
+  public void testIds() {
+    final Place nowhere = f_world.getNowherePlace();
+    final Place place = f_world.createPlace("Cave", "the", "A cave", false, null);
+    assertEquals(0, nowhere.getId());
+    assertEquals(1, place.getId());
+    assertSame(place, f_world.getPlace(1));
+    assertNull(f_world.getPlace(2));
+    assertNull(f_world.getPlace(Universe.NO_ID));
+
+    final Item sword = f_world.createItem("Sword", "a", "A sword", 0L, 0L, new HashMap<>(), true, "",
+        new HashMap<>(), false);
+    assertEquals(0, sword.getId());
+    assertSame(sword, f_world.getItem(0));
+    assertSame(sword, f_world.getItem("a SWORD"));
+    assertSame(sword, f_world.getItem("a  sword"));
+    assertNull(f_world.getItem("an sword"));
+    assertSame(place, f_world.getPlace("The cave"));
+
+    final Player player = f_world.getPlayer("player");
+    assertEquals(0, player.getId());
+    final Player second = f_world.createPlayer("Second", place, "", "", null);
+    assertEquals(1, second.getId());
+    assertSame(second, f_world.getCharacter(1));
+    assertFalse(player.equals(second));
+    assertTrue(second.equals(f_world.getPlayer("second")));
+  }
+
+  /**
+   * Test method for pavlik.john.dungeoncrawl.model.Universe.resolve(String) and completeName(String)
+   */
+  public void testResolve() {
+    final Place place = f_world.createPlace("Rusty Gate", "the", "A gate", false, null);
+    final Item key = f_world.createItem("Rusty Key", "a", "A key", 0L, 0L, new HashMap<>(), true, "",
+        new HashMap<>(), false);
+    // The article arrives after the place was indexed
+    f_world.createItem("Rope", "some", "A rope", 0L, 0L, new HashMap<>(), true, "", new HashMap<>(), false);
+
+    assertSame(place, f_world.resolve("the  rusty GATE").getEntity());
+    assertEquals(NameIndex.Kind.PLACE, f_world.resolve("some rusty gate").getKind());
+    assertSame(key, f_world.resolve("a rusty key").getItem());
+    assertEquals(NameIndex.Kind.ITEM, f_world.resolve("rusty key").getKind());
+    assertEquals(NameIndex.Kind.PLAYER, f_world.resolve("Player").getKind());
+    assertNull(f_world.resolve("rusty"));
+
+    assertEquals(Arrays.asList("Rusty Gate", "Rusty Key"), f_world.completeName("the rus"));
+    assertEquals(Arrays.asList("Rusty Key"), f_world.completeName("rusty k"));
+    assertTrue(f_world.completeName("sword").isEmpty());
+  }
+
+  /**
+   * Test that names are resolved while players join on another thread, without either waiting on
+   * the other
+   */
+  public void testResolveWhilePlayersJoin() throws InterruptedException {
+    final Place place = f_world.createPlace("Rusty Gate", "the", "A gate", false, null);
+    final Thread joiner = new Thread(() -> {
+      for (int i = 0; i < 2000; i++) {
+        f_world.createPlayer("joiner " + i, place, "", "A player", null);
+      }
+    });
+    joiner.start();
+    while (joiner.isAlive()) {
+      assertSame(place, f_world.getPlace("the rusty gate"));
+      assertNull(f_world.getItem("rusty gate"));
+      f_world.completeName("joiner 1");
+    }
+    joiner.join();
+    assertNotNull(f_world.getPlayer("Joiner 1999"));
+    assertEquals(1111, f_world.completeName("joiner 1").size());
+  }
+
   /**
    * Test method for pavlik.john.dungeoncrawl.model.Universe.isGameWon()
    */
@@ -85,6 +167,120 @@ public class WorldTest extends TestCase {
 
   }
 
+  /**
+   * An observer of the player, that records the names of the notifications it is given
+   */
+  private static ILocalObserver createObserver(Player player, List<String> notified) {
+    return createObserverOf(() -> player, notified);
+  }
+
+  /**
+   * An observer of whichever player the supplier gives, that records the names of the
+   * notifications it is given
+   */
+  private static ILocalObserver createObserverOf(Supplier<Player> player, List<String> notified) {
+    return (ILocalObserver) Proxy.newProxyInstance(WorldTest.class.getClassLoader(),
+        new Class<?>[] { ILocalObserver.class }, (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "getObservedPlayer":
+              return player.get();
+            case "equals":
+              return proxy == args[0];
+            case "hashCode":
+              return System.identityHashCode(proxy);
+            default:
+              break;
+          }
+          notified.add(method.getName());
+          return null;
+        });
+  }
+
+  /**
+   * Events that happen somewhere only reach the observers of players there, events of the whole
+   * world reach everyone
+   */
+  public void testLocalObservers() {
+    final Place hall = f_world.createPlace("Hall", "the", "A hall", false, null);
+    final Place cellar = f_world.createPlace("Cellar", "the", "A cellar", false, null);
+    final Player alice = f_world.createPlayer("Alice", hall, "", "", null);
+    final Player bob = f_world.createPlayer("Bob", cellar, "", "", null);
+    final List<String> aliceHeard = new ArrayList<>();
+    final List<String> bobHeard = new ArrayList<>();
+    final List<String> nobodyHeard = new ArrayList<>();
+    f_world.addObserver(createObserver(alice, aliceHeard));
+    f_world.addObserver(createObserver(bob, bobHeard));
+    f_world.addObserver(createObserver(null, nobodyHeard));
+
+    f_world.broadcastMessage(alice, "Alice", "hello");
+    assertEquals(Arrays.asList("broadcastMessage"), aliceHeard);
+    assertTrue(bobHeard.isEmpty());
+    assertEquals(Arrays.asList("broadcastMessage"), nobodyHeard);
+
+    // A move is seen from both ends
+    alice.setLocation(cellar);
+    f_world.playerMoved(alice, hall, cellar);
+    assertEquals(Arrays.asList("broadcastMessage", "playerMoved"), aliceHeard);
+    assertEquals(Arrays.asList("playerMoved"), bobHeard);
+
+    f_world.worldLoaded("world.xml");
+    assertEquals("worldLoaded", bobHeard.get(bobHeard.size() - 1));
+    assertEquals(3, nobodyHeard.size());
+
+    final int heard = aliceHeard.size();
+    f_world.removeObserver(f_world.getObservers().stream()
+        .filter(o -> ((ILocalObserver) o).getObservedPlayer() == alice).findFirst().get());
+    f_world.broadcastMessage(bob, "Bob", "bye");
+    assertEquals(heard, aliceHeard.size());
+    assertEquals("broadcastMessage", bobHeard.get(bobHeard.size() - 1));
+  }
+
+  /**
+   * An observer that changes player hears about the new player's place once the world is told
+   */
+  public void testObservedPlayerChanged() {
+    final Place hall = f_world.createPlace("Hall", "the", "A hall", false, null);
+    final Place cellar = f_world.createPlace("Cellar", "the", "A cellar", false, null);
+    final Player alice = f_world.createPlayer("Alice", hall, "", "", null);
+    final Player bob = f_world.createPlayer("Bob", cellar, "", "", null);
+    final Player[] observed = { alice };
+    final List<String> heard = new ArrayList<>();
+    final ILocalObserver observer = createObserverOf(() -> observed[0], heard);
+    f_world.addObserver(observer);
+
+    observed[0] = bob;
+    f_world.broadcastMessage(bob, "Bob", "hello");
+    assertTrue(heard.isEmpty());
+    f_world.observedPlayerChanged(observer);
+    f_world.broadcastMessage(bob, "Bob", "hello");
+    assertEquals(Arrays.asList("broadcastMessage"), heard);
+    f_world.broadcastMessage(alice, "Alice", "hello");
+    assertEquals(1, heard.size());
+  }
+
+  /**
+   * A character's rolls are determined by the world's seed and the character, not by the rolls of
+   * other characters
+   */
+  public void testRandomSeed() {
+    final Universe other = new Universe();
+    other.createPlayer("player", other.getNowherePlace(), "", "", null);
+    final Player player = f_world.createPlayer("Rolling player", f_world.getNowherePlace(), "", "", null);
+    final Player otherPlayer = other.createPlayer("Rolling player", other.getNowherePlace(), "", "", null);
+    f_world.setRandomSeed(99);
+    other.setRandomSeed(99);
+    for (int i = 0; i < 10; i++) {
+      // Only one world's other player rolls
+      other.getPlayer("player").getRandom().nextInt(100);
+      assertEquals(player.getRandom().nextInt(100), otherPlayer.getRandom().nextInt(100));
+    }
+    // A new seed starts new sequences
+    final long next = player.getRandom().nextLong();
+    f_world.setRandomSeed(100);
+    assertFalse(next == player.getRandom().nextLong());
+  }
+
+
   /**
    * Test method for pavlik.john.dungeoncrawl.model.Universe.createPlace()
    */
@@ -153,4 +349,29 @@ public class WorldTest extends TestCase {
     } catch (final NullPointerException e) {
     }
   }
+
+  /**
+   * Test method for pavlik.john.dungeoncrawl.model.Universe.tick(), which only ticks characters that
+   * have something to do
+   */
+  public void testTickActiveCharacters() {
+    final Player player = f_world.getPlayer("player");
+    player.setCharacterClass(new CharacterClass("Class", 100, 5, new ArrayList<>(), "", 0, 5, 5, 100, 0,
+        EffectTarget.SINGLE, null, null, "weapon"));
+    assertFalse(player.needsTick());
+
+    player.changeHealth(player, -8);
+    assertTrue(player.needsTick());
+    f_world.tick(15);
+    assertEquals(97, player.getCurrentHealth());
+    f_world.tick(30);
+    assertEquals(100, player.getCurrentHealth());
+    assertFalse(player.needsTick());
+
+    // Back at full health the player has been dropped from the tick, so health set without going
+    // through combat does not regenerate
+    player.mirrorState(50, true);
+    f_world.tick(45);
+    assertEquals(50, player.getCurrentHealth());
+  }
 }
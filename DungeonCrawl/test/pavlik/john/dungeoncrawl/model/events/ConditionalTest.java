@@ -1,7 +1,13 @@
 package pavlik.john.dungeoncrawl.model.events;
 
+import java.util.HashSet;
+import java.util.Set;
+
 import pavlik.john.dungeoncrawl.model.events.Action;
 import pavlik.john.dungeoncrawl.model.events.Conditional;
+import pavlik.john.dungeoncrawl.model.events.Event;
+import pavlik.john.dungeoncrawl.model.events.Trigger;
+import pavlik.john.dungeoncrawl.model.events.triggers.AttackedTrigger;
 import junit.framework.TestCase;
 
 /**
@@ -44,4 +50,50 @@ public class ConditionalTest extends TestCase {
     conditional.meetsConditions(null);
     // Not throwing an exception is enough to complete the test
   }
+
+  /**
+   * Test method for pavlik.john.dungeoncrawl.model.events.Trigger#meetsConditions(Character), which
+   * checks the cheapest conditionals first and stops at the first that fails
+   */
+  public void testCheapestFirst() {
+    assertEquals(Conditional.DEFAULT_COST, conditional.getCost());
+    final Set<Conditional> conditionals = new HashSet<>();
+    conditionals.add(new Conditional("costlyTag", "costly") {
+
+      /**
+       *
+       */
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      public int getCost() {
+        return 100;
+      }
+
+      @Override
+      public boolean meetsConditions(pavlik.john.dungeoncrawl.model.Character c) {
+        fail("The costly conditional should not be checked after a cheaper one failed");
+        return true;
+      }
+    });
+    conditionals.add(new Conditional("cheapTag", "cheap") {
+
+      /**
+       *
+       */
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      public int getCost() {
+        return 1;
+      }
+
+      @Override
+      public boolean meetsConditions(pavlik.john.dungeoncrawl.model.Character c) {
+        return false;
+      }
+    });
+    final Trigger trigger = new AttackedTrigger(new Event(new HashSet<>()), "onAttacked", conditionals);
+    assertFalse(trigger.meetsConditions(null));
+  }
 }
@@ -1,12 +1,17 @@
 package pavlik.john.dungeoncrawl.model.events;
 
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import pavlik.john.dungeoncrawl.model.events.Action;
 import pavlik.john.dungeoncrawl.model.events.Conditional;
 import pavlik.john.dungeoncrawl.model.events.Event;
 import pavlik.john.dungeoncrawl.model.events.State;
+import pavlik.john.dungeoncrawl.model.events.Trigger;
+import pavlik.john.dungeoncrawl.model.events.triggers.AttackedTrigger;
+import pavlik.john.dungeoncrawl.model.events.triggers.HealthTrigger;
+import pavlik.john.dungeoncrawl.model.events.triggers.SightTrigger;
 import junit.framework.TestCase;
 
 /**
@@ -82,4 +87,43 @@ public class StateTest extends TestCase {
     assertEquals("State1", state.getName());
   }
 
+  /**
+   * Test method for pavlik.john.dungeoncrawl.model.State#getTriggers(Class)
+   */
+  public void testGetTriggers() {
+    final Trigger sight = new SightTrigger(event, "onSight", "", new HashSet<>());
+    final Trigger attacked = new AttackedTrigger(event, "onAttacked", new HashSet<>());
+    final Trigger sight2 = new SightTrigger(event, "onSight", "", new HashSet<>());
+    state.addEventTrigger(sight);
+    state.addEventTrigger(attacked);
+    state.addEventTrigger(sight2);
+    assertEquals(3, state.getEventTriggers().size());
+    final List<SightTrigger> sightTriggers = state.getTriggers(SightTrigger.class);
+    assertEquals(2, sightTriggers.size());
+    assertSame(sight, sightTriggers.get(0));
+    assertSame(sight2, sightTriggers.get(1));
+    assertEquals(1, state.getTriggers(AttackedTrigger.class).size());
+    assertTrue(state.getTriggers(HealthTrigger.class).isEmpty());
+  }
+
+  /**
+   * Test method for pavlik.john.dungeoncrawl.model.State#getHealthTriggers(int, int)
+   */
+  public void testGetHealthTriggers() {
+    final HealthTrigger at25 = new HealthTrigger(25, event, "onHealth", new HashSet<>());
+    final HealthTrigger at75 = new HealthTrigger(75, event, "onHealth", new HashSet<>());
+    final HealthTrigger at50 = new HealthTrigger(50, event, "onHealth", new HashSet<>());
+    state.addEventTrigger(at25);
+    state.addEventTrigger(at75);
+    state.addEventTrigger(at50);
+    assertEquals(3, state.getTriggers(HealthTrigger.class).size());
+    assertSame(at75, state.getTriggers(HealthTrigger.class).get(0));
+    final List<HealthTrigger> crossed = state.getHealthTriggers(100, 50);
+    assertEquals(2, crossed.size());
+    assertSame(at75, crossed.get(0));
+    assertSame(at50, crossed.get(1));
+    assertTrue(state.getHealthTriggers(50, 26).isEmpty());
+    assertEquals(1, state.getHealthTriggers(26, 25).size());
+    assertTrue(state.getHealthTriggers(25, 100).isEmpty());
+  }
 }
@@ -0,0 +1,68 @@
+package pavlik.john.dungeoncrawl.persistence;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import pavlik.john.dungeoncrawl.model.Navigation;
+import pavlik.john.dungeoncrawl.model.Place;
+import pavlik.john.dungeoncrawl.model.Player;
+import pavlik.john.dungeoncrawl.model.Universe;
+
+/**
+ * @author John
+ * @see ClientObserver
+ */
+public class ClientObserverTest extends TestCase {
+
+  private static final int PLACES = 100000;
+
+  private final List<byte[]> f_sent = new ArrayList<>();
+  private Place[]            f_corridor;
+  private Player             f_player;
+  private ClientObserver     f_observer;
+
+  @Override
+  protected void setUp() {
+    final Universe world = new Universe();
+    f_corridor = new Place[PLACES];
+    for (int i = 0; i < PLACES; i++) {
+      f_corridor[i] = world.createPlace("place " + i, "the", "A stretch of corridor", false, null);
+      if (i > 0) {
+        f_corridor[i - 1].setTravelDestination(Navigation.NORTH, f_corridor[i]);
+        f_corridor[i].setTravelDestination(Navigation.SOUTH, f_corridor[i - 1]);
+      }
+    }
+    f_player = world.createPlayer("walker", f_corridor[0], "", "A player", null);
+    f_observer = new ClientObserver() {
+      @Override
+      void transmit(byte[] frames) {
+        f_sent.add(frames);
+      }
+    };
+  }
+
+  /**
+   * Test that a client joining a long corridor is only sent the places next to its player, and is
+   * sent the next one as its player walks on
+   */
+  public void testDefinePlaceIsShallow() {
+    f_observer.playerJoined(f_player);
+    assertEquals(1, f_sent.size());
+    assertTrue(f_sent.get(0).length < 1024);
+    assertTrue(contains(f_sent.get(0), "place 1"));
+    assertFalse(contains(f_sent.get(0), "place 2"));
+
+    f_player.setLocation(f_corridor[1]);
+    f_observer.playerMoved(f_player, f_corridor[0], f_corridor[1]);
+    assertEquals(2, f_sent.size());
+    assertTrue(f_sent.get(1).length < 1024);
+    assertTrue(contains(f_sent.get(1), "place 2"));
+    assertFalse(contains(f_sent.get(1), "place 3"));
+  }
+
+  private static boolean contains(byte[] frames, String text) {
+    return new String(frames, StandardCharsets.UTF_8).contains(text);
+  }
+}
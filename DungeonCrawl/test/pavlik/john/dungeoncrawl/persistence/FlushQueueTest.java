@@ -0,0 +1,58 @@
+package pavlik.john.dungeoncrawl.persistence;
+
+import junit.framework.TestCase;
+
+/**
+ * @author John
+ * @see FlushQueue
+ */
+public class FlushQueueTest extends TestCase {
+
+  /**
+   * Test that a connection whose batch filled up and was flushed early does not hold up a
+   * connection queued behind it
+   */
+  public void testFullBatchDoesNotDelayOthers() throws InterruptedException {
+    final FlushQueue<String> queue = new FlushQueue<>();
+    final OutputBatcher filling = new OutputBatcher(4, 50);
+    final OutputBatcher waiting = new OutputBatcher(1024, 50);
+
+    filling.add(new byte[] { 1 });
+    queue.add("filling", filling, filling.getBatch());
+    Thread.sleep(2);
+    waiting.add(new byte[] { 1 });
+    queue.add("waiting", waiting, waiting.getBatch());
+    final long waitingDue = waiting.getDueAt();
+
+    // The first batch fills up and is taken at once, then a second one starts
+    filling.add(new byte[] { 2, 3, 4 });
+    assertNotNull(filling.take());
+    Thread.sleep(2);
+    filling.add(new byte[] { 5 });
+    queue.add("filling", filling, filling.getBatch());
+    final long fillingDue = filling.getDueAt();
+    assertTrue(fillingDue - waitingDue > 0);
+
+    assertNull(queue.pollDue(waitingDue - 1));
+    assertEquals("waiting", queue.pollDue(waitingDue));
+    assertNull(queue.pollDue(waitingDue));
+    assertTrue(queue.nanosUntilNext(waitingDue) > 0);
+    assertEquals("filling", queue.pollDue(fillingDue));
+    assertNull(queue.pollDue(fillingDue));
+    assertTrue(queue.isEmpty());
+  }
+
+  /**
+   * Test that a batch taken before it fell due is not flushed again
+   */
+  public void testTakenBatchIsDropped() {
+    final FlushQueue<String> queue = new FlushQueue<>();
+    final OutputBatcher batcher = new OutputBatcher(1024, 50);
+    batcher.add(new byte[] { 1 });
+    queue.add("connection", batcher, batcher.getBatch());
+    final long due = batcher.getDueAt();
+    batcher.take();
+    assertNull(queue.pollDue(due));
+    assertTrue(queue.isEmpty());
+  }
+}
@@ -0,0 +1,116 @@
+package pavlik.john.dungeoncrawl.persistence;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import pavlik.john.dungeoncrawl.controller.Controller;
+import pavlik.john.dungeoncrawl.properties.Messages;
+
+/**
+ * A load harness, run by hand rather than with the unit tests, that connects a large number of
+ * idle clients to a multiplayer server in this JVM and reports the threads and heap the server needs
+ * to hold them. The run fails if the server does not accept every client, or if it exceeds the
+ * given limits once they are all connected.
+ * <p>
+ * Usage: <code>IdleClientsLoadBenchmark [mode] [clients] [maxThreads] [maxHeapMB]</code>, for example
+ * <code>IdleClientsLoadBenchmark selector 10000 64 512</code>. Each client needs two file descriptors,
+ * so raise the open file limit first.
+ *
+ * @author John
+ */
+public final class IdleClientsLoadBenchmark {
+
+  private static final int PORT = 58670;
+
+  private static long heapUsedMegabytes(MemoryMXBean memory) {
+    System.gc();
+    return memory.getHeapMemoryUsage().getUsed() / (1024 * 1024);
+  }
+
+  /**
+   * Run the load test
+   *
+   * @param args
+   *          mode, clients, maxThreads and maxHeapMB, all optional
+   * @throws Exception
+   *           if the test could not be run
+   */
+  public static void main(String[] args) throws Exception {
+    final ServerMode mode = ServerMode.fromName(args.length > 0 ? args[0] : "selector");
+    final int clients = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+    final int maxThreads = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+    final long maxHeap = args.length > 3 ? Long.parseLong(args[3]) : 512;
+
+    final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    final Controller controller = new Controller();
+    final MultiplayerServerThread server = mode.createServer(PORT, controller, Messages.loadMessages("en", "US"));
+    server.start();
+    Thread.sleep(500);
+    final int baseThreads = threads.getThreadCount();
+    final long baseHeap = heapUsedMegabytes(memory);
+    System.out.println(mode + ": " + baseThreads + " threads and " + baseHeap + "MB heap before connecting");
+
+    final ByteBuffer handshake = ByteBuffer.wrap((MultiplayerServerThread.CONNECTION_STRING + "\n").getBytes(
+        StandardCharsets.US_ASCII));
+    final List<SocketChannel> channels = new ArrayList<>(clients);
+    final long start = System.nanoTime();
+    try {
+      for (int i = 0; i < clients; i++) {
+        final SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", PORT));
+        channel.write(handshake.duplicate());
+        channels.add(channel);
+      }
+      for (int waited = 0; server.getClientCount() < clients && waited < 300; waited++) {
+        Thread.sleep(100);
+      }
+      final long connectMillis = (System.nanoTime() - start) / 1000000;
+      final int connected = server.getClientCount();
+      final int serverThreads = threads.getThreadCount() - baseThreads;
+      final long serverHeap = heapUsedMegabytes(memory) - baseHeap;
+      System.out.println(connected + " of " + clients + " clients connected in " + connectMillis + "ms using "
+          + serverThreads + " more threads and " + serverHeap + "MB more heap");
+
+      boolean passed = true;
+      if (connected < clients) {
+        System.out.println("FAILED: not every client was accepted");
+        passed = false;
+      }
+      if (serverThreads > maxThreads) {
+        System.out.println("FAILED: more than " + maxThreads + " threads");
+        passed = false;
+      }
+      if (serverHeap > maxHeap) {
+        System.out.println("FAILED: more than " + maxHeap + "MB heap");
+        passed = false;
+      }
+      System.out.println(passed ? "PASSED" : "FAILED");
+      if (!passed) {
+        System.exit(1);
+      }
+    } finally {
+      for (final SocketChannel channel : channels) {
+        try {
+          channel.close();
+        } catch (final IOException e) {
+          e.printStackTrace();
+        }
+      }
+      server.finish();
+      server.join(5000);
+      controller.stopWorld();
+    }
+  }
+
+  private IdleClientsLoadBenchmark() {
+    // Run through main
+  }
+}
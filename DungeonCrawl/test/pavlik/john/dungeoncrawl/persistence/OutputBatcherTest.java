@@ -0,0 +1,58 @@
+package pavlik.john.dungeoncrawl.persistence;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+/**
+ * @author John
+ * @see OutputBatcher
+ */
+public class OutputBatcherTest extends TestCase {
+
+  /**
+   * Test that frames transmitted close together are taken as one batch
+   */
+  public void testAdd() {
+    final OutputBatcher batcher = new OutputBatcher(1024, 1000);
+    assertTrue(batcher.add(new byte[] { 1, 2 }));
+    assertFalse(batcher.add(new byte[] { 3 }));
+    assertTrue(batcher.nanosUntilDue(System.nanoTime()) > 0);
+    assertTrue(Arrays.equals(new byte[] { 1, 2, 3 }, batcher.take()));
+    assertNull(batcher.take());
+  }
+
+  /**
+   * Test that a client too slow to take its output runs out of room
+   */
+  public void testHasRoomFor() {
+    final OutputBatcher batcher = new OutputBatcher(2, 1000, 4);
+    assertTrue(batcher.hasRoomFor(4, 0));
+    batcher.add(new byte[] { 1, 2, 3 });
+    assertTrue(batcher.hasRoomFor(1, 0));
+    assertFalse(batcher.hasRoomFor(1, 1));
+    assertFalse(batcher.hasRoomFor(2, 0));
+    batcher.take();
+    assertTrue(batcher.hasRoomFor(2, 2));
+  }
+
+  /**
+   * Test that a full batch is due without waiting for the delay
+   */
+  public void testAwaitBatchFull() throws InterruptedException {
+    final OutputBatcher batcher = new OutputBatcher(4, 60000);
+    batcher.add(new byte[] { 1, 2 });
+    assertNull(batcher.awaitBatch(10));
+    batcher.add(new byte[] { 3, 4 });
+    assertEquals(4, batcher.awaitBatch(10).length);
+  }
+
+  /**
+   * Test that a batch is due once its delay has passed
+   */
+  public void testAwaitBatchDelay() throws InterruptedException {
+    final OutputBatcher batcher = new OutputBatcher(1024, 0);
+    batcher.add(new byte[] { 1 });
+    assertEquals(1, batcher.awaitBatch(1000).length);
+  }
+}
@@ -1,10 +1,26 @@
 package pavlik.john.dungeoncrawl.persistence;
 
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.stream.XMLOutputFactory;
 
 import pavlik.john.dungeoncrawl.TestConstants;
 import pavlik.john.dungeoncrawl.exceptions.PersistenceStateException;
+import pavlik.john.dungeoncrawl.model.Item;
+import pavlik.john.dungeoncrawl.model.Navigation;
+import pavlik.john.dungeoncrawl.model.Player;
 import pavlik.john.dungeoncrawl.model.Universe;
+import pavlik.john.dungeoncrawl.model.Consumable.EffectTarget;
 import pavlik.john.dungeoncrawl.persistence.GamePersistence;
 import junit.framework.TestCase;
 
@@ -50,6 +66,114 @@ public class PersistenceSaveLoadTest extends TestCase {
     }
   }
 
+  /**
+   * The seed of the world's random numbers is saved, so a session can be replayed from the save
+   */
+  public void testSaveLoadSeed() throws Exception {
+    Universe w = new Universe();
+    w.createPlayer("defaultPlayer", w.getNowherePlace(), "", "", null);
+    w.setRandomSeed(1234567890123L);
+    GamePersistence.saveWorld(w, Paths.get(TestConstants.SAVEFILE));
+    w = GamePersistence.loadWorld(Paths.get(TestConstants.SAVEFILE));
+    assertEquals(1234567890123L, w.getRandomSeed());
+  }
+
+  /**
+   * The weapon types a class can use are saved in a form the loader reads
+   */
+  public void testSaveLoadClassWeapons() throws Exception {
+    Universe w = new Universe();
+    w.createPlayer("defaultPlayer", w.getNowherePlace(), "", "", null);
+    w.createCharacterClass("Rogue", 20, 1, Arrays.asList("knife", "bow"), "punch", 10, 2, 1, 80, 3,
+        EffectTarget.SINGLE, null, null, "Hand");
+    GamePersistence.saveWorld(w, Paths.get(TestConstants.SAVEFILE));
+    w = GamePersistence.loadWorld(Paths.get(TestConstants.SAVEFILE));
+    assertEquals(Arrays.asList("knife", "bow"), new ArrayList<>(w.getCharacterClass("Rogue").getWeaponTypes()));
+  }
+
+  /**
+   * A snapshot restores everything a save file does, and the tick the world had reached
+   */
+  public void testSnapshot() throws Exception {
+    final Universe w = GamePersistence.loadWorld(GamePersistence.DEFAULT_WORLD);
+    w.setCurrentTick(4321);
+    GamePersistence.saveSnapshot(w, Paths.get(TestConstants.SAVEFILE));
+    final Universe restored = GamePersistence.loadWorld(Paths.get(TestConstants.SAVEFILE));
+    assertEquals(4321, restored.getCurrentTick());
+    assertEquals(w.getPlacesView().size(), restored.getPlacesView().size());
+    assertEquals(w.getItemsView().size(), restored.getItemsView().size());
+    assertEquals(w.getCraftingObjects().size(), restored.getCraftingObjects().size());
+    assertEquals(toXML(w), toXML(restored));
+  }
+
+  /**
+   * A damaged snapshot is reported rather than loaded
+   */
+  public void testSnapshotTruncated() throws Exception {
+    final Universe w = GamePersistence.loadWorld(GamePersistence.DEFAULT_WORLD);
+    GamePersistence.saveSnapshot(w, Paths.get(TestConstants.SAVEFILE));
+    final byte[] bytes = Files.readAllBytes(Paths.get(TestConstants.SAVEFILE));
+    Files.write(Paths.get(TestConstants.SAVEFILE), Arrays.copyOf(bytes, bytes.length / 2));
+    try {
+      GamePersistence.loadWorld(Paths.get(TestConstants.SAVEFILE));
+      fail();
+    } catch (final PersistenceStateException e) {
+    }
+  }
+
+  /**
+   * The lines of a world's save file with their attributes sorted, sorted in turn, as crafting
+   * recipes and the attributes of events are saved in no particular order
+   */
+  private static List<String> toXML(Universe world) throws Exception {
+    final StringWriter xml = new StringWriter();
+    GamePersistence.writeWorld(world, XMLOutputFactory.newInstance().createXMLStreamWriter(xml));
+    final List<String> lines = new ArrayList<>();
+    final Pattern attribute = Pattern.compile(" \\w+=\"[^\"]*\"");
+    for (final String line : xml.toString().split("\n")) {
+      final List<String> attributes = new ArrayList<>();
+      final Matcher matcher = attribute.matcher(line);
+      while (matcher.find()) {
+        attributes.add(matcher.group());
+      }
+      Collections.sort(attributes);
+      lines.add(matcher.replaceAll("") + attributes);
+    }
+    Collections.sort(lines);
+    return lines;
+  }
+
+  /**
+   * Characters and items may name places, classes and containers further down the file
+   */
+  public void testLoadForwardReferences() throws Exception {
+    final String xml = "<dungeoncrawl>"
+        + "<weapon name=\"Dagger\" article=\"a\" location=\"Hero\" equipped=\"Y\" type=\"knife\" effect=\"1d4\""
+        + " target=\"single\" hitChance=\"90\" cooldown=\"2\" useMessage=\"stab\"/>"
+        + "<item name=\"Coin\" article=\"a\" location=\"Box\"/>"
+        + "<item name=\"Box\" article=\"a\" location=\"Cellar\" isContainer=\"Y\">"
+        + "<place blockedMsg=\"Shut\">Attic</place></item>"
+        + "<player name=\"Hero\" article=\"\" location=\"Cellar\" respawn=\"Attic\" class=\"Rogue\"/>"
+        + "<place name=\"Cellar\" article=\"the\"><description>Damp</description>"
+        + "<travel direction=\"u\">Attic</travel></place>"
+        + "<place name=\"Attic\" article=\"the\"><description>Dusty</description></place>"
+        + "<combat><class name=\"Rogue\" defaultWeaponName=\"Hand\" useMessage=\"punch\" effect=\"2\" hitChance=\"80\""
+        + " KORecovery=\"10\" cooldown=\"3\" target=\"single\"><hp max=\"20\" regenRate=\"1\"/>"
+        + "<uses type=\"knife\"/></class></combat>"
+        + "</dungeoncrawl>";
+    final Universe w = GamePersistence.loadWorld(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    final Player hero = w.getPlayer("Hero");
+    assertSame(w.getPlace("Cellar"), hero.getLocation());
+    assertSame(w.getPlace("Attic"), hero.getRespawnLocation());
+    assertEquals("Rogue", hero.getCharacterClass().getName());
+    assertSame(w.getItem("Dagger"), hero.getCurrentWeapon());
+    final Item box = w.getItem("Box");
+    assertTrue(w.getPlace("Cellar").getContainer().getItems().contains(box));
+    assertTrue(box.getContainer().getItems().contains(w.getItem("Coin")));
+    assertEquals("Shut", box.getPlaceBlockedMessages().get(w.getPlace("Attic")));
+    assertTrue(w.getPlace("Cellar").isTravelAllowedToward(Navigation.UP));
+  }
+
   /**
    * Test for pavlik.john.dungeoncrawl.persistence.GamePersistence.saveWorld and loadWorld
    */
@@ -0,0 +1,34 @@
+package pavlik.john.dungeoncrawl.persistence;
+
+import junit.framework.TestCase;
+
+/**
+ * @author John
+ * @see ServerMode
+ */
+public class ServerModeTest extends TestCase {
+
+  /**
+   * Test method for pavlik.john.dungeoncrawl.persistence.ServerMode#fromName(String)
+   */
+  public void testFromName() {
+    assertEquals(ServerMode.SELECTOR, ServerMode.fromName("selector"));
+    assertEquals(ServerMode.SELECTOR, ServerMode.fromName(" SELECTOR "));
+    assertEquals(ServerMode.THREAD_PER_CLIENT, ServerMode.fromName("thread-per-client"));
+    assertEquals(ServerMode.THREAD_PER_CLIENT, ServerMode.fromName("unknown"));
+    assertEquals(ServerMode.THREAD_PER_CLIENT, ServerMode.fromName(null));
+  }
+
+  /**
+   * Test method for pavlik.john.dungeoncrawl.persistence.ServerMode#fromSystemProperty()
+   */
+  public void testFromSystemProperty() {
+    System.setProperty(ServerMode.MODE_PROPERTY, "selector");
+    try {
+      assertEquals(ServerMode.SELECTOR, ServerMode.fromSystemProperty());
+    } finally {
+      System.clearProperty(ServerMode.MODE_PROPERTY);
+    }
+    assertEquals(ServerMode.THREAD_PER_CLIENT, ServerMode.fromSystemProperty());
+  }
+}
@@ -0,0 +1,57 @@
+package pavlik.john.dungeoncrawl.persistence;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+/**
+ * @author John
+ * @see WireProtocol
+ */
+public class WireProtocolTest extends TestCase {
+
+  /**
+   * Test method for pavlik.john.dungeoncrawl.persistence.WireProtocol#readHeader(java.io.DataInput)
+   */
+  public void testReadHeader() throws IOException {
+    final FrameBuffer header = new FrameBuffer();
+    header.writeInt(WireProtocol.MAGIC);
+    header.writeShort(WireProtocol.VERSION);
+    WireProtocol.readHeader(new DataInputStream(new ByteArrayInputStream(header.toByteArray())));
+
+    final FrameBuffer oldHeader = new FrameBuffer();
+    oldHeader.writeInt(WireProtocol.MAGIC);
+    oldHeader.writeShort((short) 1);
+    try {
+      WireProtocol.readHeader(new DataInputStream(new ByteArrayInputStream(oldHeader.toByteArray())));
+      fail("Expected an IOException for an unsupported version");
+    } catch (final IOException e) {
+      // expected
+    }
+  }
+
+  /**
+   * Test that a frame written by a FrameBuffer reads back field by field
+   */
+  public void testFrameRoundTrip() throws IOException {
+    final FrameBuffer frame = new FrameBuffer();
+    frame.write(WireProtocol.DISPLAY);
+    frame.writeString("café");
+    frame.writeString(null);
+    frame.writeBoolean(true);
+    frame.writeLong(-5L);
+    final FrameBuffer stream = new FrameBuffer();
+    stream.appendFrame(frame);
+
+    final DataInputStream in = new DataInputStream(new ByteArrayInputStream(stream.toByteArray()));
+    assertEquals(frame.size(), in.readInt());
+    assertEquals(WireProtocol.DISPLAY, in.readByte());
+    assertEquals("café", WireProtocol.readString(in));
+    assertNull(WireProtocol.readString(in));
+    assertTrue(in.readBoolean());
+    assertEquals(-5L, in.readLong());
+    assertEquals(0, in.available());
+  }
+}
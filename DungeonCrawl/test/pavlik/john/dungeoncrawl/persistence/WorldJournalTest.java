@@ -0,0 +1,250 @@
+package pavlik.john.dungeoncrawl.persistence;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import junit.framework.TestCase;
+import pavlik.john.dungeoncrawl.TestConstants;
+import pavlik.john.dungeoncrawl.model.Consumable;
+import pavlik.john.dungeoncrawl.model.Item;
+import pavlik.john.dungeoncrawl.model.NonPlayerCharacter;
+import pavlik.john.dungeoncrawl.model.Player;
+import pavlik.john.dungeoncrawl.model.Universe;
+import pavlik.john.dungeoncrawl.model.events.State;
+
+/**
+ * @author John
+ * @see WorldJournal
+ */
+public class WorldJournalTest extends TestCase {
+
+  private static final Path SNAPSHOT = Paths.get(TestConstants.TMP_PATH + "journal_test.snapshot");
+
+  /**
+   * Long enough between commits that a test makes every commit itself
+   */
+  private static final long ONE_MINUTE = 60000;
+
+  private static Universe createWorld() throws Exception {
+    final Universe world = GamePersistence.loadWorld(GamePersistence.DEFAULT_WORLD);
+    world.setCurrentTick(100);
+    return world;
+  }
+
+  /**
+   * Change the demo world in every way a journal records
+   */
+  static void play(Universe world) {
+    final Player braum = world.getPlayer("Braum");
+    final NonPlayerCharacter marisa = world.getNonPlayerCharacter("Marisa");
+    final Consumable potion = (Consumable) world.getItem("Marisa's Potion");
+    marisa.getContainer().moveItem(braum.getContainer(), potion);
+    braum.useItem(potion, braum);
+    braum.changeMoney(25);
+    braum.addPoints(10L);
+    braum.unequip();
+    for (final State state : marisa.getStates()) {
+      if (state.getName().equals("trusting")) {
+        marisa.setCurrentState(state);
+      }
+    }
+    braum.setLocation(world.getPlace("Field"));
+    world.getPlace("Field").getContainer().moveItem(braum.getContainer(), world.getItem("magic flower"));
+  }
+
+  static void assertPlayed(Universe world) {
+    final Player braum = world.getPlayer("Braum");
+    final Consumable potion = (Consumable) world.getItem("Marisa's Potion");
+    assertTrue(braum.getContainer().isPresent(potion));
+    assertFalse(world.getNonPlayerCharacter("Marisa").getContainer().isPresent(potion));
+    assertEquals(1, potion.getUsesRemaining().intValue());
+    assertEquals(25, braum.getMoney());
+    assertEquals(10, braum.getScore().longValue());
+    assertNotSame(world.getItem("bronze sword"), braum.getCurrentWeapon());
+    assertEquals("trusting", world.getNonPlayerCharacter("Marisa").getCurrentState().getName());
+    assertSame(world.getPlace("Field"), braum.getLocation());
+    assertSame(braum, world.getPlace("Field").getCharacter("Braum"));
+    assertTrue(braum.getContainer().isPresent(world.getItem("magic flower")));
+    assertFalse(world.getPlace("Field").getContainer().isPresent(world.getItem("magic flower")));
+  }
+
+  /**
+   * A world is recovered as it was at the last commit of its journal
+   */
+  public void testRecover() throws Exception {
+    final Universe world = createWorld();
+    final WorldJournal journal = WorldJournal.open(world, SNAPSHOT, ONE_MINUTE);
+    assertSame(journal, world.getJournal());
+    play(world);
+    journal.commit();
+    // Changed after the last commit, so lost in a crash
+    world.getPlayer("Braum").changeMoney(5);
+    journal.close();
+    assertNull(world.getJournal());
+
+    final Universe recovered = WorldJournal.recover(SNAPSHOT);
+    assertPlayed(recovered);
+    assertEquals(100, recovered.getCurrentTick());
+  }
+
+  /**
+   * The commit thread commits changes without being asked
+   */
+  public void testGroupCommit() throws Exception {
+    final Universe world = createWorld();
+    final WorldJournal journal = WorldJournal.open(world, SNAPSHOT, 5);
+    play(world);
+    // Wait for the journal to stop growing
+    final long deadline = System.currentTimeMillis() + 5000;
+    long size = 16;
+    long previous;
+    do {
+      previous = size;
+      Thread.sleep(50);
+      size = Files.size(WorldJournal.journalFile(SNAPSHOT));
+    } while ((size == 16 || size != previous) && System.currentTimeMillis() < deadline);
+    journal.close();
+    assertPlayed(WorldJournal.recover(SNAPSHOT));
+  }
+
+  /**
+   * A compaction writes the changes so far into the snapshot and starts the journal again
+   */
+  public void testCompact() throws Exception {
+    final Universe world = createWorld();
+    final WorldJournal journal = WorldJournal.open(world, SNAPSHOT, ONE_MINUTE);
+    play(world);
+    journal.compact();
+    assertEquals(16, Files.size(WorldJournal.journalFile(SNAPSHOT)));
+    assertFalse(journal.needsCompaction());
+    world.getPlayer("Braum").changeMoney(5);
+    journal.finish();
+
+    final Universe recovered = WorldJournal.recover(SNAPSHOT);
+    assertEquals(30, recovered.getPlayer("Braum").getMoney());
+    recovered.getPlayer("Braum").changeMoney(-5);
+    assertPlayed(recovered);
+  }
+
+  /**
+   * A commit waits for a change under way to finish, so an item is never committed as removed from
+   * one container without being added to the other
+   */
+  public void testCommitWholeUnits() throws Exception {
+    final Universe world = createWorld();
+    final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    final WorldJournal journal = WorldJournal.open(world, SNAPSHOT, ONE_MINUTE, action -> {
+      lock.writeLock().lock();
+      try {
+        action.run();
+      } finally {
+        lock.writeLock().unlock();
+      }
+    });
+    final Player braum = world.getPlayer("Braum");
+    final Item flower = world.getItem("magic flower");
+    final Thread committer = new Thread(() -> {
+      try {
+        journal.commit();
+      } catch (final Exception e) {
+        throw new IllegalStateException(e);
+      }
+    });
+    lock.readLock().lock();
+    try {
+      world.getPlace("Field").getContainer().removeItem(flower);
+      committer.start();
+      final long deadline = System.currentTimeMillis() + 5000;
+      while (committer.getState() != Thread.State.WAITING && System.currentTimeMillis() < deadline) {
+        Thread.sleep(1);
+      }
+      assertEquals(Thread.State.WAITING, committer.getState());
+      braum.getContainer().addItem(flower);
+    } finally {
+      lock.readLock().unlock();
+    }
+    committer.join();
+    journal.close();
+
+    final Universe recovered = WorldJournal.recover(SNAPSHOT);
+    assertTrue(recovered.getPlayer("Braum").getContainer().isPresent(recovered.getItem("magic flower")));
+    assertFalse(recovered.getPlace("Field").getContainer().isPresent(recovered.getItem("magic flower")));
+  }
+
+  /**
+   * A compaction started with the world still is written from a view while the world goes on
+   * changing, and the changes made meanwhile go to the new journal
+   */
+  public void testCompactView() throws Exception {
+    final Universe world = createWorld();
+    final WorldVersions versions = WorldVersions.attach(world);
+    final WorldJournal journal = WorldJournal.open(world, SNAPSHOT, ONE_MINUTE);
+    play(world);
+    assertTrue(journal.startCompaction());
+    try (WorldView view = versions.capture()) {
+      assertFalse(journal.startCompaction());
+      world.getPlayer("Braum").changeMoney(5);
+      journal.commit();
+      journal.compact(view);
+    }
+    assertEquals(16, Files.size(WorldJournal.journalFile(SNAPSHOT)));
+    assertTrue(journal.startCompaction());
+    journal.finish();
+
+    final Universe recovered = WorldJournal.recover(SNAPSHOT);
+    assertEquals(30, recovered.getPlayer("Braum").getMoney());
+    recovered.getPlayer("Braum").changeMoney(-5);
+    assertPlayed(recovered);
+  }
+
+  /**
+   * A recipe used up after the snapshot stays used up once the world is recovered
+   */
+  public void testRecoverRecipeUsed() throws Exception {
+    final Universe world = createWorld();
+    final WorldJournal journal = WorldJournal.open(world, SNAPSHOT, ONE_MINUTE);
+    final Set<Item> ingredients = new HashSet<>(
+        Arrays.asList(world.getItem("sturdy branch"), world.getItem("shiny gem")));
+    assertSame(world.getItem("mage's wand"), world.synthesizeItems(ingredients));
+    journal.finish();
+
+    final Universe recovered = WorldJournal.recover(SNAPSHOT);
+    assertNull(recovered.synthesizeItems(
+        new HashSet<>(Arrays.asList(recovered.getItem("sturdy branch"), recovered.getItem("shiny gem")))));
+  }
+
+  /**
+   * A commit cut short by a crash is left out, and so is a journal of an earlier snapshot
+   */
+  public void testRecoverDamaged() throws Exception {
+    final Universe world = createWorld();
+    final WorldJournal journal = WorldJournal.open(world, SNAPSHOT, ONE_MINUTE);
+    play(world);
+    journal.finish();
+    final Path file = WorldJournal.journalFile(SNAPSHOT);
+    final byte[] committed = Files.readAllBytes(file);
+    Files.write(file, new byte[] { 0, 0, 0, 40, 1, 2, 3, 4, 5 }, StandardOpenOption.APPEND);
+    assertPlayed(WorldJournal.recover(SNAPSHOT));
+
+    committed[committed.length - 1] ^= 1;
+    Files.write(file, committed);
+    assertEquals(0, WorldJournal.recover(SNAPSHOT).getPlayer("Braum").getMoney());
+
+    committed[committed.length - 1] ^= 1;
+    committed[8] ^= 1;
+    Files.write(file, committed);
+    assertEquals(0, WorldJournal.recover(SNAPSHOT).getPlayer("Braum").getMoney());
+
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      channel.truncate(10);
+    }
+    assertEquals(0, WorldJournal.recover(SNAPSHOT).getPlayer("Braum").getMoney());
+  }
+}
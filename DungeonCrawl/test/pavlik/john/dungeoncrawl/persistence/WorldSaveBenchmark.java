@@ -0,0 +1,184 @@
+package pavlik.john.dungeoncrawl.persistence;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMResult;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.w3c.dom.Document;
+
+import pavlik.john.dungeoncrawl.model.Container;
+import pavlik.john.dungeoncrawl.model.Navigation;
+import pavlik.john.dungeoncrawl.model.Place;
+import pavlik.john.dungeoncrawl.model.Universe;
+import pavlik.john.dungeoncrawl.model.Consumable.EffectTarget;
+import pavlik.john.dungeoncrawl.model.events.State;
+
+/**
+ * A benchmark, run by hand rather than with the unit tests, of saving a large world. The streaming
+ * save of {@link GamePersistence#saveWorld(Universe, Path)} is compared with the way worlds used
+ * to be saved: the whole world built into a DOM document, then written out by an identity
+ * transform. Both write the same elements. The run fails if streaming is not faster or needs as
+ * much heap, or if the streamed file does not load back into the same world.
+ * <p>
+ * The peak heap of a save is the most the heap grew by while saving. Run with a small young
+ * generation so the peak shows what a save keeps live rather than when the collector ran.
+ * <p>
+ * Usage: <code>WorldSaveBenchmark [places] [runs]</code>, for example
+ * <code>java -Xmn16m WorldSaveBenchmark 20000 5</code>.
+ *
+ * @author John
+ */
+public final class WorldSaveBenchmark {
+
+  private interface Save {
+    void run(Universe world, Path file) throws Exception;
+  }
+
+  private static final List<MemoryPoolMXBean> HEAP = new ArrayList<>();
+
+  static {
+    for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        HEAP.add(pool);
+      }
+    }
+  }
+
+  private static Universe createWorld(int places) {
+    final Universe world = new Universe();
+    world.setAllowCombat(true);
+    world.createCharacterClass("Rat", 10, 1, new ArrayList<>(), "bites", 4, 1, 1, 100, 1, EffectTarget.SINGLE, null,
+        null, "teeth");
+    Place previous = null;
+    for (int i = 0; i < places; i++) {
+      final Place place = world.createPlace("Room " + i, "the", "A long and winding room, number " + i, false, null);
+      if (previous != null) {
+        place.setTravelDestination(Navigation.WEST, previous);
+        previous.setTravelDestination(Navigation.EAST, place);
+      }
+      previous = place;
+      place.getContainer().addItem(world.createItem("Rock " + i, "a", "A rock", 1L, 0L, new HashMap<>(), true, "",
+          new HashMap<>(), false));
+      final State state = new State("idle", "It is resting");
+      final Container inventory = new Container();
+      world.createNPC("Rat " + i, "a", "A rat", inventory, place, Collections.singleton(state), state, place)
+          .setCharacterClass(world.getCharacterClass("Rat"));
+      if (i % 100 == 0) {
+        world.createPlayer("Player " + i, place, "", "A player", place);
+      }
+    }
+    return world;
+  }
+
+  /**
+   * Save as worlds used to be saved, through a document and a transformer
+   */
+  private static void saveWithDocument(Universe world, Path file) throws Exception {
+    final Document dom = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+    GamePersistence.writeWorld(world, XMLOutputFactory.newInstance().createXMLStreamWriter(new DOMResult(dom)));
+    final Transformer transformer = TransformerFactory.newInstance().newTransformer();
+    transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+    try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+      transformer.transform(new DOMSource(dom), new StreamResult(out));
+    }
+  }
+
+  private static long heapUsed() {
+    long used = 0;
+    for (final MemoryPoolMXBean pool : HEAP) {
+      used += pool.getUsage().getUsed();
+    }
+    return used;
+  }
+
+  private static long heapPeak() {
+    long peak = 0;
+    for (final MemoryPoolMXBean pool : HEAP) {
+      peak += pool.getPeakUsage().getUsed();
+    }
+    return peak;
+  }
+
+  /**
+   * @return the median time in milliseconds and the largest peak heap growth in megabytes
+   */
+  private static double[] measure(String name, Save save, Universe world, Path file, int runs) throws Exception {
+    save.run(world, file); // Warm up
+    final double[] times = new double[runs];
+    double peak = 0;
+    for (int i = 0; i < runs; i++) {
+      System.gc();
+      final long before = heapUsed();
+      for (final MemoryPoolMXBean pool : HEAP) {
+        pool.resetPeakUsage();
+      }
+      final long start = System.nanoTime();
+      save.run(world, file);
+      times[i] = (System.nanoTime() - start) / 1e6;
+      peak = Math.max(peak, (heapPeak() - before) / (1024.0 * 1024.0));
+    }
+    Arrays.sort(times);
+    final double time = times[runs / 2];
+    System.out.println(String.format("%-10s %10.1f ms %10.1f MB peak heap %10d bytes", name, time, peak, Files
+        .size(file)));
+    return new double[] { time, peak };
+  }
+
+  /**
+   * Run the benchmark
+   *
+   * @param args
+   *          places and runs, optional
+   * @throws Exception
+   *           if a save fails
+   */
+  public static void main(String[] args) throws Exception {
+    final int places = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+    final int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+    final Universe world = createWorld(places);
+    final Path file = Files.createTempFile("world", ".xml");
+    try {
+      final double[] document = measure("document", WorldSaveBenchmark::saveWithDocument, world, file, runs);
+      final double[] stream = measure("stream", GamePersistence::saveWorld, world, file, runs);
+
+      final Universe loaded = GamePersistence.loadWorld(file);
+      final boolean same = loaded.getPlacesView().size() == world.getPlacesView().size()
+          && loaded.getNonPlayerCharacters().size() == world.getNonPlayerCharacters().size()
+          && loaded.getPlayersView().size() == world.getPlayersView().size()
+          && loaded.getPlace("Room 1").getTravelDestinationToward(Navigation.WEST) == loaded.getPlace("Room 0")
+          && loaded.getNonPlayerCharacter("Rat 1").getCharacterClass() != null;
+      final boolean passed = same && stream[0] < document[0] && stream[1] < document[1];
+      System.out.println(passed ? "PASSED" : same ? "FAILED: streaming is not faster and smaller"
+          : "FAILED: the streamed file does not load back into the same world");
+      System.exit(passed ? 0 : 1);
+    } catch (final IOException e) {
+      e.printStackTrace();
+      System.exit(1);
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  private WorldSaveBenchmark() {
+    // Run through main
+  }
+}
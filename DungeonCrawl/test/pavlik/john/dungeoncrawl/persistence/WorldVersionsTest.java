@@ -0,0 +1,128 @@
+package pavlik.john.dungeoncrawl.persistence;
+
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamWriter;
+
+import junit.framework.TestCase;
+import pavlik.john.dungeoncrawl.TestConstants;
+import pavlik.john.dungeoncrawl.model.Player;
+import pavlik.john.dungeoncrawl.model.Universe;
+
+/**
+ * @author John
+ * @see WorldVersions
+ */
+public class WorldVersionsTest extends TestCase {
+
+  private static final String SNAPSHOT = TestConstants.TMP_PATH + "versions_test.snapshot";
+  private static final Path   AUTOSAVE = Paths.get(TestConstants.TMP_PATH + "versions_test_autosave.snapshot");
+
+  private static String toXML(WorldView view) throws Exception {
+    final StringWriter xml = new StringWriter();
+    final XMLStreamWriter out = XMLOutputFactory.newInstance().createXMLStreamWriter(xml);
+    GamePersistence.writeWorld(view, out);
+    out.close();
+    return xml.toString();
+  }
+
+  /**
+   * A view is saved as the world was when it was captured, however the world changes after
+   */
+  public void testCapture() throws Exception {
+    final Universe world = GamePersistence.loadWorld(GamePersistence.DEFAULT_WORLD);
+    world.setCurrentTick(100);
+    final WorldVersions versions = WorldVersions.attach(world);
+    final String before = toXML(new WorldView(world));
+    final WorldView view = versions.capture();
+    WorldJournalTest.play(world);
+    world.setCurrentTick(200);
+    WorldJournalTest.assertPlayed(world);
+    assertEquals(before, toXML(view));
+    assertEquals(100, view.getCurrentTick());
+    view.close();
+
+    try (WorldView after = versions.capture()) {
+      assertEquals(toXML(new WorldView(world)), toXML(after));
+      assertEquals(200, after.getCurrentTick());
+    }
+    versions.detach();
+    assertNull(world.getJournal());
+  }
+
+  /**
+   * Views captured at different times each keep their own version
+   */
+  public void testViews() throws Exception {
+    final Universe world = GamePersistence.loadWorld(GamePersistence.DEFAULT_WORLD);
+    final WorldVersions versions = WorldVersions.attach(world);
+    final Player braum = world.getPlayer("Braum");
+    try (WorldView first = versions.capture()) {
+      braum.changeMoney(25);
+      braum.changeMoney(5);
+      try (WorldView second = versions.capture()) {
+        braum.changeMoney(10);
+        assertEquals(0, first.money(braum));
+        assertEquals(30, second.money(braum));
+      }
+    }
+    braum.changeMoney(1);
+    try (WorldView last = versions.capture()) {
+      assertEquals(41, last.money(braum));
+    }
+  }
+
+  /**
+   * A view keeps the crafting recipes it was captured with, even once one is used up
+   */
+  public void testRecipesVersioned() throws Exception {
+    final Universe world = GamePersistence.loadWorld(GamePersistence.DEFAULT_WORLD);
+    final WorldVersions versions = WorldVersions.attach(world);
+    final int recipes = world.getCraftingObjects().size();
+    try (WorldView view = versions.capture()) {
+      final String before = toXML(view);
+      assertSame(world.getItem("mage's wand"), world.synthesizeItems(
+          new HashSet<>(Arrays.asList(world.getItem("sturdy branch"), world.getItem("shiny gem")))));
+      assertEquals(recipes - 1, world.getCraftingObjects().size());
+      assertEquals(recipes, view.crafting().size());
+      assertEquals(before, toXML(view));
+    }
+    try (WorldView after = versions.capture()) {
+      assertEquals(recipes - 1, after.crafting().size());
+    }
+  }
+
+  /**
+   * A snapshot of a view may be written on one thread while the world changes on another, as well
+   * as journaled at once
+   */
+  public void testSaveWhileChanging() throws Exception {
+    final Universe world = GamePersistence.loadWorld(GamePersistence.DEFAULT_WORLD);
+    world.setCurrentTick(100);
+    final WorldVersions versions = WorldVersions.attach(world);
+    final WorldJournal journal = WorldJournal.open(world, AUTOSAVE, 60000);
+    final WorldView view = versions.capture();
+    final Thread saver = new Thread(() -> {
+      try (WorldView captured = view) {
+        GamePersistence.saveSnapshot(captured, SNAPSHOT);
+      } catch (final Exception e) {
+        throw new IllegalStateException(e);
+      }
+    });
+    saver.start();
+    WorldJournalTest.play(world);
+    saver.join();
+    journal.finish();
+
+    final Universe saved = GamePersistence.loadWorld(SNAPSHOT);
+    assertEquals(0, saved.getPlayer("Braum").getMoney());
+    assertNotSame(saved.getPlace("Field"), saved.getPlayer("Braum").getLocation());
+    assertEquals("curious", saved.getNonPlayerCharacter("Marisa").getCurrentState().getName());
+    WorldJournalTest.assertPlayed(WorldJournal.recover(AUTOSAVE));
+  }
+}